@@ -28,7 +28,9 @@
 package org.objectweb.asm.tree.analysis;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -60,7 +62,7 @@ public class Analyzer<V extends Value> implements Opcodes {
 
   private InsnList insns;
 
-  private List<TryCatchBlockNode>[] handlers;
+  private ExceptionHandlers handlers;
 
   private Frame<V>[] frames;
 
@@ -68,10 +70,29 @@ public class Analyzer<V extends Value> implements Opcodes {
 
   private boolean[] queued;
 
+  /**
+   * The instructions to be analyzed, as a binary heap of positions in {@link #order}. Instructions
+   * are analyzed in reverse postorder, which reduces the number of iterations needed to reach the
+   * fix point in methods with loops.
+   */
   private int[] queue;
 
   private int top;
 
+  /** The instructions of the method, in reverse postorder. */
+  private int[] order;
+
+  /** The position of each instruction in {@link #order}. */
+  private int[] positions;
+
+  private AnalyzerListener listener;
+
+  private int iterations;
+
+  private int executions;
+
+  private int merges;
+
   /**
    * Constructs a new {@link Analyzer}.
    *
@@ -97,31 +118,24 @@ public class Analyzer<V extends Value> implements Opcodes {
   public Frame<V>[] analyze(final String owner, final MethodNode m) throws AnalyzerException {
     if ((m.access & (ACC_ABSTRACT | ACC_NATIVE)) != 0) {
       frames = (Frame<V>[]) new Frame<?>[0];
+      if (listener != null) {
+        listener.methodAnalyzed(owner, m, 0, 0, 0);
+      }
       return frames;
     }
     n = m.instructions.size();
     insns = m.instructions;
-    handlers = (List<TryCatchBlockNode>[]) new List<?>[n];
     frames = (Frame<V>[]) new Frame<?>[n];
     subroutines = new Subroutine[n];
     queued = new boolean[n];
     queue = new int[n];
     top = 0;
+    iterations = 0;
+    executions = 0;
+    merges = 0;
 
     // computes exception handlers for each instruction
-    for (int i = 0; i < m.tryCatchBlocks.size(); ++i) {
-      TryCatchBlockNode tcb = m.tryCatchBlocks.get(i);
-      int begin = insns.indexOf(tcb.start);
-      int end = insns.indexOf(tcb.end);
-      for (int j = begin; j < end; ++j) {
-        List<TryCatchBlockNode> insnHandlers = handlers[j];
-        if (insnHandlers == null) {
-          insnHandlers = new ArrayList<TryCatchBlockNode>();
-          handlers[j] = insnHandlers;
-        }
-        insnHandlers.add(tcb);
-      }
-    }
+    handlers = new ExceptionHandlers(insns, m.tryCatchBlocks);
 
     // computes the subroutine for each instruction:
     Subroutine main = new Subroutine(null, m.maxLocals, null);
@@ -145,9 +159,217 @@ public class Analyzer<V extends Value> implements Opcodes {
       }
     }
 
+    // computes the order in which the instructions must be analyzed
+    computeOrder();
+
+    // initializes the data structures for the control flow analysis
+    Frame<V> current = newFrame(m.maxLocals, m.maxStack);
+    Frame<V> handler = newFrame(m.maxLocals, m.maxStack);
+    initFrame(owner, m, current);
+    merge(0, current, null);
+
+    init(owner, m);
+
+    // control flow analysis
+    propagate(m, current, handler);
+
+    if (listener != null) {
+      listener.methodAnalyzed(owner, m, iterations, executions, merges);
+    }
+    return frames;
+  }
+
+  /**
+   * Analyzes the given method again, after some of its instructions have been changed. Only the
+   * frames of the instructions which can be reached from the changed instructions are recomputed,
+   * the other frames are reused from the previous analysis. The changed instructions are the
+   * instructions inserted in the method since the previous analysis, the instructions following or
+   * targeted by the removed instructions, and the given modified instructions. Jump and switch
+   * instructions whose labels are changed must be replaced with new instructions (e.g. with {@link
+   * InsnList#set}), instead of being modified in place. Likewise, if a try catch block is removed,
+   * its handler must be given as a modified instruction. If the maximum stack size or number of
+   * local variables of the method has changed, or if the method contains JSR instructions, the
+   * method is fully analyzed again.
+   *
+   * @param owner the internal name of the class to which the method belongs.
+   * @param m the method to be analyzed.
+   * @param previousInsns the instructions of the method when it was previously analyzed (see {@link
+   *     InsnList#toArray}).
+   * @param previousFrames the frames computed by the previous analysis of the method. The frames
+   *     which are reused are shared between this array and the returned one, and must not be
+   *     modified.
+   * @param modifiedInsns the instructions of the method which have been modified in place since
+   *     the previous analysis. The instructions which followed or were targeted by them in the
+   *     previous analysis are also considered as changed.
+   * @return the symbolic state of the execution stack frame at each bytecode instruction of the
+   *     method, as returned by {@link #analyze(String, MethodNode)}.
+   * @throws AnalyzerException if a problem occurs during the analysis.
+   */
+  @SuppressWarnings("unchecked")
+  public Frame<V>[] reanalyze(
+      final String owner,
+      final MethodNode m,
+      final AbstractInsnNode[] previousInsns,
+      final Frame<V>[] previousFrames,
+      final Collection<? extends AbstractInsnNode> modifiedInsns)
+      throws AnalyzerException {
+    if ((m.access & (ACC_ABSTRACT | ACC_NATIVE)) != 0 || m.instructions.size() == 0) {
+      return analyze(owner, m);
+    }
+    for (int i = 0; i < previousFrames.length; ++i) {
+      Frame<V> previousFrame = previousFrames[i];
+      if (previousFrame != null) {
+        if (previousFrame.getLocals() != m.maxLocals
+            || previousFrame.getMaxStackSize() != m.maxStack) {
+          return analyze(owner, m);
+        }
+        break;
+      }
+    }
+    n = m.instructions.size();
+    insns = m.instructions;
+    frames = (Frame<V>[]) new Frame<?>[n];
+    subroutines = new Subroutine[n];
+    queued = new boolean[n];
+    queue = new int[n];
+    top = 0;
+    iterations = 0;
+    executions = 0;
+    merges = 0;
+    handlers = new ExceptionHandlers(insns, m.tryCatchBlocks);
+
+    // finds the changed instructions, i.e. the instructions whose predecessors may have changed
+    Map<AbstractInsnNode, Integer> previousIndices =
+        new IdentityHashMap<AbstractInsnNode, Integer>(2 * previousInsns.length);
+    for (int i = 0; i < previousInsns.length; ++i) {
+      previousIndices.put(previousInsns[i], i);
+    }
+    boolean[] changed = new boolean[n];
+    boolean[] kept = new boolean[previousInsns.length];
+    for (int i = 0; i < n; ++i) {
+      AbstractInsnNode insnNode = insns.get(i);
+      if (insnNode.getOpcode() == JSR) {
+        return analyze(owner, m);
+      }
+      Integer previousIndex = previousIndices.get(insnNode);
+      if (previousIndex == null) {
+        changed[i] = true;
+      } else {
+        int p = previousIndex.intValue();
+        kept[p] = true;
+        frames[i] = previousFrames[p];
+        AbstractInsnNode previousNode = i == 0 ? null : insns.get(i - 1);
+        changed[i] = (p == 0 ? null : previousInsns[p - 1]) != previousNode;
+        // the last instruction may now fall off the end of the code
+        changed[i] |= i == n - 1 && p != previousInsns.length - 1;
+      }
+    }
+    for (AbstractInsnNode insnNode : modifiedInsns) {
+      changed[insns.indexOf(insnNode)] = true;
+      // the previous successors of a modified instruction may no longer be its successors (e.g.
+      // if an IFEQ is changed to a GOTO), so their frames must be recomputed
+      Integer previousIndex = previousIndices.get(insnNode);
+      if (previousIndex != null && previousIndex.intValue() + 1 < previousInsns.length) {
+        setChanged(changed, previousInsns[previousIndex.intValue() + 1]);
+      }
+      setTargetsChanged(changed, insnNode);
+    }
+    for (int p = 0; p < previousInsns.length; ++p) {
+      if (!kept[p]) {
+        setTargetsChanged(changed, previousInsns[p]);
+      }
+    }
+    for (TryCatchBlockNode tcb : m.tryCatchBlocks) {
+      Integer previousStart = previousIndices.get(tcb.start);
+      Integer previousEnd = previousIndices.get(tcb.end);
+      boolean tcbChanged =
+          previousStart == null
+              || previousEnd == null
+              || changed[insns.indexOf(tcb.start)]
+              || changed[insns.indexOf(tcb.end)];
+      if (!tcbChanged) {
+        for (int p = previousStart.intValue(); p < previousEnd.intValue(); ++p) {
+          if (!kept[p]) {
+            tcbChanged = true;
+            break;
+          }
+        }
+      }
+      if (tcbChanged) {
+        changed[insns.indexOf(tcb.handler)] = true;
+      }
+    }
+
+    // computes the affected instructions, i.e. the instructions reachable from a changed one
+    computeOrder();
+    boolean[] affected = new boolean[n];
+    int[] stack = new int[n];
+    int stackSize = 0;
+    for (int i = 0; i < n; ++i) {
+      if (changed[i]) {
+        affected[i] = true;
+        stack[stackSize++] = i;
+      }
+    }
+    while (stackSize > 0) {
+      int insn = stack[--stackSize];
+      int successor;
+      for (int i = 0; (successor = getSuccessor(insn, i)) != -1; ++i) {
+        if (!affected[successor]) {
+          affected[successor] = true;
+          stack[stackSize++] = successor;
+        }
+      }
+    }
+    if (affected[n - 1] && fallsThrough(insns.get(n - 1))) {
+      // lets analyze check whether execution can actually fall off the end of the code
+      return analyze(owner, m);
+    }
+
     // initializes the data structures for the control flow analysis
+    for (int i = 0; i < n; ++i) {
+      if (affected[i]) {
+        frames[i] = null;
+      }
+    }
+    for (int i = 0; i < n; ++i) {
+      if (!affected[i] && frames[i] != null) {
+        int successor;
+        for (int j = 0; (successor = getSuccessor(i, j)) != -1; ++j) {
+          if (affected[successor]) {
+            queued[i] = true;
+            offer(i);
+            break;
+          }
+        }
+      }
+    }
     Frame<V> current = newFrame(m.maxLocals, m.maxStack);
     Frame<V> handler = newFrame(m.maxLocals, m.maxStack);
+    if (affected[0]) {
+      initFrame(owner, m, current);
+      merge(0, current, null);
+    }
+
+    init(owner, m);
+
+    // control flow analysis, restricted to the affected instructions
+    propagate(m, current, handler);
+
+    if (listener != null) {
+      listener.methodAnalyzed(owner, m, iterations, executions, merges);
+    }
+    return frames;
+  }
+
+  /**
+   * Sets the given frame to the frame at the beginning of the given method.
+   *
+   * @param owner the internal name of the class to which the method belongs.
+   * @param m the method to be analyzed.
+   * @param current the frame to be initialized.
+   */
+  private void initFrame(final String owner, final MethodNode m, final Frame<V> current) {
     current.setReturn(interpreter.newValue(Type.getReturnType(m.desc)));
     Type[] args = Type.getArgumentTypes(m.desc);
     int local = 0;
@@ -164,13 +386,53 @@ public class Analyzer<V extends Value> implements Opcodes {
     while (local < m.maxLocals) {
       current.setLocal(local++, interpreter.newValue(null));
     }
-    merge(0, current, null);
+  }
 
-    init(owner, m);
+  private void setChanged(final boolean[] changed, final AbstractInsnNode insnNode) {
+    int index = insns.indexOf(insnNode);
+    if (index >= 0 && index < n && insns.get(index) == insnNode) {
+      changed[index] = true;
+    }
+  }
 
-    // control flow analysis
+  private void setTargetsChanged(final boolean[] changed, final AbstractInsnNode insnNode) {
+    if (insnNode instanceof JumpInsnNode) {
+      setChanged(changed, ((JumpInsnNode) insnNode).label);
+    } else if (insnNode instanceof LookupSwitchInsnNode) {
+      setChanged(changed, ((LookupSwitchInsnNode) insnNode).dflt);
+      for (LabelNode label : ((LookupSwitchInsnNode) insnNode).labels) {
+        setChanged(changed, label);
+      }
+    } else if (insnNode instanceof TableSwitchInsnNode) {
+      setChanged(changed, ((TableSwitchInsnNode) insnNode).dflt);
+      for (LabelNode label : ((TableSwitchInsnNode) insnNode).labels) {
+        setChanged(changed, label);
+      }
+    }
+  }
+
+  private static boolean fallsThrough(final AbstractInsnNode insnNode) {
+    int opcode = insnNode.getOpcode();
+    return opcode != GOTO
+        && opcode != TABLESWITCH
+        && opcode != LOOKUPSWITCH
+        && opcode != RET
+        && opcode != ATHROW
+        && (opcode < IRETURN || opcode > RETURN);
+  }
+
+  /**
+   * Runs the control flow analysis loop, until the work list is empty.
+   *
+   * @param m the method to be analyzed.
+   * @param current a frame used to execute the instructions.
+   * @param handler a frame used to compute the frames at the beginning of exception handlers.
+   * @throws AnalyzerException if a problem occurs during the analysis.
+   */
+  private void propagate(final MethodNode m, final Frame<V> current, final Frame<V> handler)
+      throws AnalyzerException {
     while (top > 0) {
-      int insn = queue[--top];
+      int insn = poll();
       Frame<V> f = frames[insn];
       Subroutine subroutine = subroutines[insn];
       queued[insn] = false;
@@ -188,6 +450,7 @@ public class Analyzer<V extends Value> implements Opcodes {
           newControlFlowEdge(insn, insn + 1);
         } else {
           current.init(f).execute(insnNode, interpreter);
+          ++executions;
           subroutine = subroutine == null ? null : subroutine.copy();
 
           if (insnNode instanceof JumpInsnNode) {
@@ -258,7 +521,7 @@ public class Analyzer<V extends Value> implements Opcodes {
           }
         }
 
-        List<TryCatchBlockNode> insnHandlers = handlers[insn];
+        List<TryCatchBlockNode> insnHandlers = handlers.get(insn);
         if (insnHandlers != null) {
           for (int i = 0; i < insnHandlers.size(); ++i) {
             TryCatchBlockNode tcb = insnHandlers.get(i);
@@ -285,8 +548,99 @@ public class Analyzer<V extends Value> implements Opcodes {
             insnNode, "Error at instruction " + insn + ": " + e.getMessage(), e);
       }
     }
+  }
 
-    return frames;
+  /**
+   * Computes {@link #order} and {@link #positions}, with a depth first traversal of the control
+   * flow graph. The instructions which are not reachable come first, in code order.
+   */
+  private void computeOrder() {
+    order = new int[n];
+    positions = new int[n];
+    boolean[] visited = new boolean[n];
+    int[] stack = new int[n];
+    int[] nextSuccessors = new int[n];
+    int stackSize = 0;
+    int position = n;
+    visited[0] = true;
+    stack[stackSize++] = 0;
+    while (stackSize > 0) {
+      int insn = stack[stackSize - 1];
+      int successor = getSuccessor(insn, nextSuccessors[insn]++);
+      if (successor == -1) {
+        --stackSize;
+        positions[insn] = --position;
+      } else if (!visited[successor]) {
+        visited[successor] = true;
+        stack[stackSize++] = successor;
+      }
+    }
+    int unreachablePosition = 0;
+    for (int i = 0; i < n; ++i) {
+      if (!visited[i]) {
+        positions[i] = unreachablePosition++;
+      }
+      order[positions[i]] = i;
+    }
+  }
+
+  /**
+   * Returns a successor of the given instruction in the control flow graph. The instruction
+   * following a JSR instruction is considered as one of its successors.
+   *
+   * @param insn an instruction index.
+   * @param index the index of the requested successor.
+   * @return the index of the requested successor, or -1 if there is no such successor.
+   */
+  private int getSuccessor(final int insn, final int index) {
+    AbstractInsnNode insnNode = insns.get(insn);
+    int insnOpcode = insnNode.getOpcode();
+    int i = index;
+    if (insnNode instanceof JumpInsnNode) {
+      if (i == 0) {
+        return insns.indexOf(((JumpInsnNode) insnNode).label);
+      }
+      --i;
+      if (insnOpcode != GOTO && insn + 1 < n) {
+        if (i == 0) {
+          return insn + 1;
+        }
+        --i;
+      }
+    } else if (insnNode instanceof LookupSwitchInsnNode) {
+      LookupSwitchInsnNode lsi = (LookupSwitchInsnNode) insnNode;
+      if (i == 0) {
+        return insns.indexOf(lsi.dflt);
+      }
+      --i;
+      if (i < lsi.labels.size()) {
+        return insns.indexOf(lsi.labels.get(i));
+      }
+      i -= lsi.labels.size();
+    } else if (insnNode instanceof TableSwitchInsnNode) {
+      TableSwitchInsnNode tsi = (TableSwitchInsnNode) insnNode;
+      if (i == 0) {
+        return insns.indexOf(tsi.dflt);
+      }
+      --i;
+      if (i < tsi.labels.size()) {
+        return insns.indexOf(tsi.labels.get(i));
+      }
+      i -= tsi.labels.size();
+    } else if (insnOpcode != RET
+        && insnOpcode != ATHROW
+        && (insnOpcode < IRETURN || insnOpcode > RETURN)
+        && insn + 1 < n) {
+      if (i == 0) {
+        return insn + 1;
+      }
+      --i;
+    }
+    List<TryCatchBlockNode> insnHandlers = handlers.get(insn);
+    if (insnHandlers != null && i < insnHandlers.size()) {
+      return insns.indexOf(insnHandlers.get(i).handler);
+    }
+    return -1;
   }
 
   private void findSubroutine(int insn, final Subroutine sub, final List<AbstractInsnNode> calls)
@@ -327,7 +681,7 @@ public class Analyzer<V extends Value> implements Opcodes {
       }
 
       // calls findSubroutine recursively on exception handler successors
-      List<TryCatchBlockNode> insnHandlers = handlers[insn];
+      List<TryCatchBlockNode> insnHandlers = handlers.get(insn);
       if (insnHandlers != null) {
         for (int i = 0; i < insnHandlers.size(); ++i) {
           TryCatchBlockNode tcb = insnHandlers.get(i);
@@ -370,10 +724,21 @@ public class Analyzer<V extends Value> implements Opcodes {
    * Returns the exception handlers for the given instruction.
    *
    * @param insn the index of an instruction of the last recently analyzed method.
-   * @return a list of {@link TryCatchBlockNode} objects.
+   * @return a list of {@link TryCatchBlockNode} objects, or <tt>null</tt> if the instruction is not
+   *     covered by any try catch block. This list is shared by the consecutive instructions covered
+   *     by the same try catch blocks, and must not be modified.
    */
   public List<TryCatchBlockNode> getHandlers(final int insn) {
-    return handlers[insn];
+    return handlers.get(insn);
+  }
+
+  /**
+   * Sets the listener to be notified after the analysis of each method.
+   *
+   * @param listener a listener, or <tt>null</tt>.
+   */
+  public void setListener(final AnalyzerListener listener) {
+    this.listener = listener;
   }
 
   /**
@@ -463,6 +828,7 @@ public class Analyzer<V extends Value> implements Opcodes {
       changes = true;
     } else {
       changes = oldFrame.merge(frame, interpreter);
+      ++merges;
     }
 
     if (oldSubroutine == null) {
@@ -477,7 +843,7 @@ public class Analyzer<V extends Value> implements Opcodes {
     }
     if (changes && !queued[insn]) {
       queued[insn] = true;
-      queue[top++] = insn;
+      offer(insn);
     }
   }
 
@@ -499,6 +865,7 @@ public class Analyzer<V extends Value> implements Opcodes {
       changes = true;
     } else {
       changes = oldFrame.merge(afterRET, interpreter);
+      ++merges;
     }
 
     if (oldSubroutine != null && subroutineBeforeJSR != null) {
@@ -506,7 +873,46 @@ public class Analyzer<V extends Value> implements Opcodes {
     }
     if (changes && !queued[insn]) {
       queued[insn] = true;
-      queue[top++] = insn;
+      offer(insn);
+    }
+  }
+
+  private void offer(final int insn) {
+    // sifts up the position of insn in the queue binary heap
+    int position = positions[insn];
+    int i = top++;
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (queue[parent] <= position) {
+        break;
+      }
+      queue[i] = queue[parent];
+      i = parent;
+    }
+    queue[i] = position;
+  }
+
+  private int poll() {
+    ++iterations;
+    int first = queue[0];
+    int last = queue[--top];
+    // sifts down last from the root of the queue binary heap
+    int i = 0;
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= top) {
+        break;
+      }
+      if (child + 1 < top && queue[child + 1] < queue[child]) {
+        ++child;
+      }
+      if (last <= queue[child]) {
+        break;
+      }
+      queue[i] = queue[child];
+      i = child;
     }
+    queue[i] = last;
+    return order[first];
   }
 }
@@ -0,0 +1,394 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * A backward dataflow analyzer, whose facts are sets of bits. The set at the end of an instruction
+ * is the union of the sets at the beginning of its successors, and the set at the beginning of an
+ * instruction is computed from the set at its end with the "gen" and "kill" sets of this
+ * instruction, as <tt>gen | (out &amp; ~kill)</tt>. Since an exception can be thrown before an
+ * instruction is executed, the set at the beginning of its exception handlers is also included in
+ * the set at its beginning. A JSR instruction is followed by its subroutine, and a RET instruction
+ * by the instructions following the JSR instructions which call its subroutine.
+ *
+ * <p>The analysis is done on the basic blocks of a {@link ControlFlowGraph}, with a "gen" and
+ * "kill" set per basic block, and only the sets at the beginning and end of each basic block are
+ * stored. The set of any other instruction is recomputed when it is requested. Subclasses define
+ * the facts of the analysis with {@link #getBitCount} and {@link #transfer}.
+ */
+public abstract class BackwardAnalyzer {
+
+  private InsnList insns;
+
+  private ControlFlowGraph graph;
+
+  /** The number of long values used to store each set. */
+  private int setSize;
+
+  /** The set at the beginning of each basic block. */
+  private long[][] blockIns;
+
+  /** The set at the end of each basic block. */
+  private long[][] blockOuts;
+
+  /**
+   * Analyzes the given method.
+   *
+   * @param m the method to be analyzed. Its instructions must not be modified until the last call
+   *     to {@link #getIn} or {@link #getOut}.
+   */
+  public void analyze(final MethodNode m) {
+    insns = m.instructions;
+    graph = new ControlFlowGraph(m);
+    setSize = (getBitCount(m) + 63) >>> 6;
+    int blockCount = graph.getBlockCount();
+
+    // computes the gen and kill sets of each basic block
+    long[][] blockGens = new long[blockCount][setSize];
+    long[][] blockKills = new long[blockCount][setSize];
+    long[] gen = new long[setSize];
+    long[] kill = new long[setSize];
+    for (int block = 0; block < blockCount; ++block) {
+      long[] blockGen = blockGens[block];
+      long[] blockKill = blockKills[block];
+      for (int insn = graph.getBlockEnd(block) - 1; insn >= graph.getBlockStart(block); --insn) {
+        transfer(insn, gen, kill);
+        for (int i = 0; i < setSize; ++i) {
+          blockGen[i] = gen[i] | (blockGen[i] & ~kill[i]);
+          blockKill[i] |= kill[i];
+        }
+      }
+    }
+
+    // computes the successors and predecessors of each basic block, with edges from the RET
+    // instructions (instead of the JSR instructions) to the instructions following the JSRs
+    int[][] successors = new int[blockCount][];
+    int[][] predecessors = new int[blockCount][];
+    for (int block = 0; block < blockCount; ++block) {
+      successors[block] = graph.getNormalSuccessors(block);
+      predecessors[block] = graph.getPredecessors(block);
+    }
+    addReturnEdges(successors, predecessors);
+
+    // computes the fixpoint, starting with the last blocks
+    blockIns = new long[blockCount][setSize];
+    blockOuts = new long[blockCount][setSize];
+    boolean[] queued = new boolean[blockCount];
+    int[] queue = new int[blockCount];
+    int head = 0;
+    int queueSize = 0;
+    for (int block = blockCount - 1; block >= 0; --block) {
+      queued[block] = true;
+      queue[queueSize++] = block;
+    }
+    while (queueSize > 0) {
+      int block = queue[head];
+      head = head + 1 == blockCount ? 0 : head + 1;
+      --queueSize;
+      queued[block] = false;
+      long[] out = blockOuts[block];
+      int[] blockSuccessors = successors[block];
+      for (int j = 0; j < blockSuccessors.length; ++j) {
+        long[] successorIn = blockIns[blockSuccessors[j]];
+        for (int i = 0; i < setSize; ++i) {
+          out[i] |= successorIn[i];
+        }
+      }
+      long[] in = blockIns[block];
+      long[] blockGen = blockGens[block];
+      long[] blockKill = blockKills[block];
+      int[] handlers = graph.getExceptionSuccessors(block);
+      boolean changed = false;
+      for (int i = 0; i < setSize; ++i) {
+        long newIn = blockGen[i] | (out[i] & ~blockKill[i]);
+        for (int j = 0; j < handlers.length; ++j) {
+          newIn |= blockIns[handlers[j]][i];
+        }
+        if (newIn != in[i]) {
+          in[i] = newIn;
+          changed = true;
+        }
+      }
+      if (changed) {
+        int[] blockPredecessors = predecessors[block];
+        for (int j = 0; j < blockPredecessors.length; ++j) {
+          int predecessor = blockPredecessors[j];
+          if (!queued[predecessor]) {
+            queued[predecessor] = true;
+            int tail = head + queueSize;
+            queue[tail >= blockCount ? tail - blockCount : tail] = predecessor;
+            ++queueSize;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Replaces the edge from each basic block ending with a JSR instruction to the next block with
+   * edges to this next block from the blocks ending with a RET instruction of the called
+   * subroutine. A subroutine contains the blocks reachable from its first block without entering
+   * another subroutine (a block ending with a RET instruction may belong to several subroutines, in
+   * which case it has edges to the blocks following the calls of each of them).
+   *
+   * @param successors the successors of each basic block, updated in place.
+   * @param predecessors the predecessors of each basic block, updated in place.
+   */
+  private void addReturnEdges(final int[][] successors, final int[][] predecessors) {
+    // finds the subroutines, and the blocks following their JSR instructions
+    Map<Integer, List<Integer>> returnBlocks = new HashMap<Integer, List<Integer>>();
+    for (int i = 0; i < insns.size() - 1; ++i) {
+      AbstractInsnNode insnNode = insns.get(i);
+      if (insnNode.getOpcode() == Opcodes.JSR) {
+        Integer subroutine = graph.getBlock(insns.indexOf(((JumpInsnNode) insnNode).label));
+        int returnBlock = graph.getBlock(i + 1);
+        List<Integer> blocks = returnBlocks.get(subroutine);
+        if (blocks == null) {
+          blocks = new ArrayList<Integer>();
+          returnBlocks.put(subroutine, blocks);
+        }
+        blocks.add(returnBlock);
+        // the instruction following a JSR is reached via the RET instruction(s) of the subroutine
+        if (returnBlock != subroutine.intValue()) {
+          int block = graph.getBlock(i);
+          successors[block] = removeBlock(successors[block], returnBlock);
+        }
+      }
+    }
+    if (returnBlocks.isEmpty()) {
+      return;
+    }
+
+    // finds the RET instructions of each subroutine with a depth first search
+    int blockCount = graph.getBlockCount();
+    boolean[] visited = new boolean[blockCount];
+    int[] stack = new int[blockCount];
+    for (Map.Entry<Integer, List<Integer>> entry : returnBlocks.entrySet()) {
+      Arrays.fill(visited, false);
+      int stackSize = 0;
+      visited[entry.getKey().intValue()] = true;
+      stack[stackSize++] = entry.getKey().intValue();
+      while (stackSize > 0) {
+        int block = stack[--stackSize];
+        AbstractInsnNode lastInsn = insns.get(graph.getBlockEnd(block) - 1);
+        int calledSubroutine = -1;
+        if (lastInsn.getOpcode() == Opcodes.RET) {
+          for (Integer returnBlock : entry.getValue()) {
+            successors[block] = addBlock(successors[block], returnBlock.intValue());
+            predecessors[returnBlock.intValue()] =
+                addBlock(predecessors[returnBlock.intValue()], block);
+          }
+        } else if (lastInsn.getOpcode() == Opcodes.JSR) {
+          calledSubroutine = graph.getBlock(insns.indexOf(((JumpInsnNode) lastInsn).label));
+        }
+        int[] blockSuccessors = graph.getSuccessors(block);
+        for (int j = 0; j < blockSuccessors.length; ++j) {
+          int successor = blockSuccessors[j];
+          if (!visited[successor] && (successor != calledSubroutine || successor == block + 1)) {
+            visited[successor] = true;
+            stack[stackSize++] = successor;
+          }
+        }
+      }
+    }
+  }
+
+  /** Returns the given blocks without the given block. */
+  private static int[] removeBlock(final int[] blocks, final int block) {
+    int[] newBlocks = new int[blocks.length];
+    int newBlockCount = 0;
+    for (int i = 0; i < blocks.length; ++i) {
+      if (blocks[i] != block) {
+        newBlocks[newBlockCount++] = blocks[i];
+      }
+    }
+    int[] result = new int[newBlockCount];
+    System.arraycopy(newBlocks, 0, result, 0, newBlockCount);
+    return result;
+  }
+
+  /** Returns the given blocks with the given block added, if it does not already contain it. */
+  private static int[] addBlock(final int[] blocks, final int block) {
+    for (int i = 0; i < blocks.length; ++i) {
+      if (blocks[i] == block) {
+        return blocks;
+      }
+    }
+    int[] newBlocks = new int[blocks.length + 1];
+    System.arraycopy(blocks, 0, newBlocks, 0, blocks.length);
+    newBlocks[blocks.length] = block;
+    return newBlocks;
+  }
+
+  /**
+   * Returns the control flow graph of the last recently analyzed method.
+   *
+   * @return the control flow graph of the last recently analyzed method.
+   */
+  public ControlFlowGraph getControlFlowGraph() {
+    return graph;
+  }
+
+  /**
+   * Returns the set at the beginning of the given instruction of the last recently analyzed
+   * method. This set is recomputed from the set at the end of its basic block.
+   *
+   * @param insn the index of an instruction of the last recently analyzed method.
+   * @return the set at the beginning of this instruction.
+   */
+  public long[] getIn(final int insn) {
+    return getSet(insn, true);
+  }
+
+  /**
+   * Returns the set at the end of the given instruction of the last recently analyzed method. This
+   * set is recomputed from the set at the end of its basic block.
+   *
+   * @param insn the index of an instruction of the last recently analyzed method.
+   * @return the set at the end of this instruction.
+   */
+  public long[] getOut(final int insn) {
+    return getSet(insn, false);
+  }
+
+  /**
+   * Returns the set at the beginning of each instruction of the last recently analyzed method. The
+   * sets are recomputed from the sets at the end of each basic block, in linear time.
+   *
+   * @return the set at the beginning of each instruction of the last recently analyzed method.
+   */
+  public long[][] getIns() {
+    long[][] ins = new long[insns.size()][];
+    long[] gen = new long[setSize];
+    long[] kill = new long[setSize];
+    for (int block = 0; block < graph.getBlockCount(); ++block) {
+      long[] handlerIn = getHandlerIn(block);
+      long[] set = blockOuts[block];
+      for (int insn = graph.getBlockEnd(block) - 1; insn >= graph.getBlockStart(block); --insn) {
+        transfer(insn, gen, kill);
+        long[] in = new long[setSize];
+        for (int i = 0; i < setSize; ++i) {
+          in[i] = gen[i] | handlerIn[i] | (set[i] & ~kill[i]);
+        }
+        ins[insn] = in;
+        set = in;
+      }
+    }
+    return ins;
+  }
+
+  private long[] getSet(final int insn, final boolean in) {
+    int block = graph.getBlock(insn);
+    long[] handlerIn = getHandlerIn(block);
+    long[] set = blockOuts[block].clone();
+    long[] gen = new long[setSize];
+    long[] kill = new long[setSize];
+    int last = in ? insn : insn + 1;
+    for (int i = graph.getBlockEnd(block) - 1; i >= last; --i) {
+      transfer(i, gen, kill);
+      for (int j = 0; j < setSize; ++j) {
+        set[j] = gen[j] | handlerIn[j] | (set[j] & ~kill[j]);
+      }
+    }
+    return set;
+  }
+
+  /** Returns the union of the sets at the beginning of the handlers of the given basic block. */
+  private long[] getHandlerIn(final int block) {
+    long[] handlerIn = new long[setSize];
+    int[] handlers = graph.getExceptionSuccessors(block);
+    for (int j = 0; j < handlers.length; ++j) {
+      long[] in = blockIns[handlers[j]];
+      for (int i = 0; i < setSize; ++i) {
+        handlerIn[i] |= in[i];
+      }
+    }
+    return handlerIn;
+  }
+
+  private void transfer(final int insn, final long[] gen, final long[] kill) {
+    for (int i = 0; i < setSize; ++i) {
+      gen[i] = 0;
+      kill[i] = 0;
+    }
+    transfer(insns.get(insn), gen, kill);
+  }
+
+  /**
+   * Returns whether the given set contains the given bit.
+   *
+   * @param set a set returned by this analyzer.
+   * @param bit a bit index.
+   * @return whether the given set contains the given bit.
+   */
+  public static boolean contains(final long[] set, final int bit) {
+    return (set[bit >>> 6] & (1L << bit)) != 0;
+  }
+
+  /**
+   * Adds a bit to the given set.
+   *
+   * @param set a gen or kill set passed to {@link #transfer}.
+   * @param bit a bit index, smaller than the value returned by {@link #getBitCount}.
+   */
+  protected static void add(final long[] set, final int bit) {
+    set[bit >>> 6] |= 1L << bit;
+  }
+
+  /**
+   * Returns the number of bits of the sets of this analysis.
+   *
+   * @param m the method to be analyzed.
+   * @return the number of bits of the sets of this analysis.
+   */
+  protected abstract int getBitCount(MethodNode m);
+
+  /**
+   * Computes the gen and kill sets of the given instruction. The set at the beginning of this
+   * instruction is computed from the set at its end, out, as <tt>gen | (out &amp; ~kill)</tt>.
+   *
+   * @param insnNode an instruction of the analyzed method.
+   * @param gen an empty set, to which the bits generated by this instruction must be added with
+   *     {@link #add}.
+   * @param kill an empty set, to which the bits killed by this instruction must be added with
+   *     {@link #add}.
+   */
+  protected abstract void transfer(AbstractInsnNode insnNode, long[] gen, long[] kill);
+}
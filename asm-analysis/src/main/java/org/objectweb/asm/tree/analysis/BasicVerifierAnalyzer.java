@@ -0,0 +1,52 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+/**
+ * An {@link Analyzer} with the semantics of a {@link BasicVerifier}, which uses frames storing the
+ * {@link BasicValue}s as byte codes, and executing the instructions directly on these codes. The
+ * computed frames and the thrown {@link AnalyzerException}s are the same as those of an {@link
+ * Analyzer} using a {@link BasicVerifier}, but the analysis is faster and uses less memory.
+ */
+public class BasicVerifierAnalyzer extends Analyzer<BasicValue> {
+
+  /** Constructs a new {@link BasicVerifierAnalyzer}. */
+  public BasicVerifierAnalyzer() {
+    super(new BasicVerifier());
+  }
+
+  @Override
+  protected Frame<BasicValue> newFrame(final int nLocals, final int nStack) {
+    return new BasicVerifierFrame(nLocals, nStack);
+  }
+
+  @Override
+  protected Frame<BasicValue> newFrame(final Frame<? extends BasicValue> src) {
+    return new BasicVerifierFrame((BasicVerifierFrame) src);
+  }
+}
@@ -0,0 +1,962 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MultiANewArrayInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+/**
+ * A {@link Frame} of {@link BasicValue}s which stores its values as small integer codes in a byte
+ * array, and which symbolically executes instructions with the semantics of {@link BasicVerifier}.
+ * The interpreter passed to the {@link #execute} and {@link #merge(Frame, Interpreter)} methods is
+ * ignored. The values, and the exceptions thrown for invalid code, are the same as those of a
+ * {@link Frame} used with a {@link BasicVerifier}, but no {@link BasicValue}, {@link Type} or
+ * {@link java.util.List} is allocated during the analysis.
+ */
+final class BasicVerifierFrame extends Frame<BasicValue> implements Opcodes {
+
+  /** The code of {@link BasicValue#UNINITIALIZED_VALUE}. */
+  private static final byte UNINITIALIZED = 0;
+
+  /** The code of {@link BasicValue#INT_VALUE}. */
+  private static final byte INT = 1;
+
+  /** The code of {@link BasicValue#FLOAT_VALUE}. */
+  private static final byte FLOAT = 2;
+
+  /** The code of {@link BasicValue#LONG_VALUE}. */
+  private static final byte LONG = 3;
+
+  /** The code of {@link BasicValue#DOUBLE_VALUE}. */
+  private static final byte DOUBLE = 4;
+
+  /** The code of {@link BasicValue#REFERENCE_VALUE}. */
+  private static final byte REFERENCE = 5;
+
+  /** The code of {@link BasicValue#RETURNADDRESS_VALUE}. */
+  private static final byte RETURN_ADDRESS = 6;
+
+  /** The code of the <tt>null</tt> value, used for the void type. */
+  private static final byte VOID = 7;
+
+  /** The {@link BasicValue} corresponding to each value code. */
+  private static final BasicValue[] VALUES = {
+    BasicValue.UNINITIALIZED_VALUE,
+    BasicValue.INT_VALUE,
+    BasicValue.FLOAT_VALUE,
+    BasicValue.LONG_VALUE,
+    BasicValue.DOUBLE_VALUE,
+    BasicValue.REFERENCE_VALUE,
+    BasicValue.RETURNADDRESS_VALUE,
+    null
+  };
+
+  /**
+   * The expected type of the (first) operand of the unary and binary instructions whose operands
+   * have fixed types, indexed by opcode.
+   */
+  private static final byte[] OPERAND1 = new byte[202];
+
+  /** The expected type of the second operand of the binary instructions, indexed by opcode. */
+  private static final byte[] OPERAND2 = new byte[202];
+
+  /** The expected type of the third operand of the array store instructions, indexed by opcode. */
+  private static final byte[] OPERAND3 = new byte[202];
+
+  /**
+   * The type of the value pushed by the instructions whose result has a fixed type, indexed by
+   * opcode, or {@link #VOID} if they do not push a value.
+   */
+  private static final byte[] RESULT = new byte[202];
+
+  static {
+    set(INT, UNINITIALIZED, INT, INEG, I2B, I2C, I2S);
+    set(INT, UNINITIALIZED, LONG, I2L);
+    set(INT, UNINITIALIZED, FLOAT, I2F);
+    set(INT, UNINITIALIZED, DOUBLE, I2D);
+    set(LONG, UNINITIALIZED, LONG, LNEG);
+    set(LONG, UNINITIALIZED, INT, L2I);
+    set(LONG, UNINITIALIZED, FLOAT, L2F);
+    set(LONG, UNINITIALIZED, DOUBLE, L2D);
+    set(FLOAT, UNINITIALIZED, FLOAT, FNEG);
+    set(FLOAT, UNINITIALIZED, INT, F2I);
+    set(FLOAT, UNINITIALIZED, LONG, F2L);
+    set(FLOAT, UNINITIALIZED, DOUBLE, F2D);
+    set(DOUBLE, UNINITIALIZED, DOUBLE, DNEG);
+    set(DOUBLE, UNINITIALIZED, INT, D2I);
+    set(DOUBLE, UNINITIALIZED, LONG, D2L);
+    set(DOUBLE, UNINITIALIZED, FLOAT, D2F);
+    set(INT, UNINITIALIZED, VOID, IFEQ, IFNE, IFLT, IFGE, IFGT, IFLE, TABLESWITCH, LOOKUPSWITCH);
+    set(INT, UNINITIALIZED, REFERENCE, NEWARRAY, ANEWARRAY);
+    set(INT, INT, INT, IADD, ISUB, IMUL, IDIV, IREM, ISHL, ISHR, IUSHR, IAND, IOR, IXOR);
+    set(LONG, LONG, LONG, LADD, LSUB, LMUL, LDIV, LREM, LAND, LOR, LXOR);
+    set(LONG, INT, LONG, LSHL, LSHR, LUSHR);
+    set(FLOAT, FLOAT, FLOAT, FADD, FSUB, FMUL, FDIV, FREM);
+    set(DOUBLE, DOUBLE, DOUBLE, DADD, DSUB, DMUL, DDIV, DREM);
+    set(LONG, LONG, INT, LCMP);
+    set(FLOAT, FLOAT, INT, FCMPL, FCMPG);
+    set(DOUBLE, DOUBLE, INT, DCMPL, DCMPG);
+    set(INT, INT, VOID, IF_ICMPEQ, IF_ICMPNE, IF_ICMPLT, IF_ICMPGE, IF_ICMPGT, IF_ICMPLE);
+    set(REFERENCE, REFERENCE, VOID, IF_ACMPEQ, IF_ACMPNE);
+    set(REFERENCE, INT, INT, IALOAD, BALOAD, CALOAD, SALOAD);
+    set(REFERENCE, INT, LONG, LALOAD);
+    set(REFERENCE, INT, FLOAT, FALOAD);
+    set(REFERENCE, INT, DOUBLE, DALOAD);
+    set(REFERENCE, INT, REFERENCE, AALOAD);
+    set(INT, UNINITIALIZED, VOID, IRETURN);
+    set(LONG, UNINITIALIZED, VOID, LRETURN);
+    set(FLOAT, UNINITIALIZED, VOID, FRETURN);
+    set(DOUBLE, UNINITIALIZED, VOID, DRETURN);
+    OPERAND3[IASTORE] = INT;
+    OPERAND3[LASTORE] = LONG;
+    OPERAND3[FASTORE] = FLOAT;
+    OPERAND3[DASTORE] = DOUBLE;
+    OPERAND3[AASTORE] = REFERENCE;
+    OPERAND3[BASTORE] = INT;
+    OPERAND3[CASTORE] = INT;
+    OPERAND3[SASTORE] = INT;
+  }
+
+  /** The expected return type of the analyzed method, or {@link #VOID}. */
+  private byte returnValue;
+
+  /** The local variables and operand stack of this frame, as value codes. */
+  private final byte[] values;
+
+  /** The number of local variables of this frame. */
+  private final int locals;
+
+  /** The number of elements in the operand stack. */
+  private int top;
+
+  /**
+   * Constructs a new frame with the given size.
+   *
+   * @param nLocals the maximum number of local variables of the frame.
+   * @param nStack the maximum stack size of the frame.
+   */
+  BasicVerifierFrame(final int nLocals, final int nStack) {
+    super(0, 0);
+    this.values = new byte[nLocals + nStack];
+    this.locals = nLocals;
+  }
+
+  /**
+   * Constructs a new frame that is identical to the given frame.
+   *
+   * @param src a frame.
+   */
+  BasicVerifierFrame(final BasicVerifierFrame src) {
+    this(src.locals, src.values.length - src.locals);
+    init(src);
+  }
+
+  private static void set(
+      final byte operand1, final byte operand2, final byte result, final int... opcodes) {
+    for (int opcode : opcodes) {
+      OPERAND1[opcode] = operand1;
+      OPERAND2[opcode] = operand2;
+      RESULT[opcode] = result;
+    }
+  }
+
+  /**
+   * Returns the code of the given value.
+   *
+   * @param value a {@link BasicValue}, or <tt>null</tt>.
+   * @return the code of the given value.
+   */
+  private static byte getCode(final BasicValue value) {
+    if (value == null) {
+      return VOID;
+    }
+    if (value.isReference()) {
+      return REFERENCE;
+    }
+    Type type = value.getType();
+    if (type == null) {
+      return UNINITIALIZED;
+    }
+    switch (type.getSort()) {
+      case Type.VOID:
+        return RETURN_ADDRESS;
+      case Type.FLOAT:
+        return FLOAT;
+      case Type.LONG:
+        return LONG;
+      case Type.DOUBLE:
+        return DOUBLE;
+      default:
+        return INT;
+    }
+  }
+
+  /**
+   * Returns the code of the value of the given type, as returned by {@link
+   * BasicInterpreter#newValue}.
+   *
+   * @param desc a type descriptor.
+   * @param index the index of the first character of the type in 'desc'.
+   * @return the code of the value of the given type.
+   */
+  private static byte getCode(final String desc, final int index) {
+    switch (desc.charAt(index)) {
+      case 'V':
+        return VOID;
+      case 'Z':
+      case 'C':
+      case 'B':
+      case 'S':
+      case 'I':
+        return INT;
+      case 'F':
+        return FLOAT;
+      case 'J':
+        return LONG;
+      case 'D':
+        return DOUBLE;
+      default:
+        return REFERENCE;
+    }
+  }
+
+  /**
+   * Returns the index of the character following the type starting at the given index.
+   *
+   * @param desc a method descriptor.
+   * @param index the index of the first character of a type in 'desc'.
+   * @return the index of the character following this type.
+   */
+  private static int skipType(final String desc, final int index) {
+    int i = index;
+    while (desc.charAt(i) == '[') {
+      ++i;
+    }
+    if (desc.charAt(i) == 'L') {
+      i = desc.indexOf(';', i);
+    }
+    return i + 1;
+  }
+
+  private static int getSize(final byte code) {
+    return code == LONG || code == DOUBLE ? 2 : 1;
+  }
+
+  @Override
+  public Frame<BasicValue> init(final Frame<? extends BasicValue> src) {
+    BasicVerifierFrame frame = (BasicVerifierFrame) src;
+    returnValue = frame.returnValue;
+    System.arraycopy(frame.values, 0, values, 0, values.length);
+    top = frame.top;
+    return this;
+  }
+
+  @Override
+  public void setReturn(final BasicValue v) {
+    returnValue = getCode(v);
+  }
+
+  @Override
+  public int getLocals() {
+    return locals;
+  }
+
+  @Override
+  public int getMaxStackSize() {
+    return values.length - locals;
+  }
+
+  @Override
+  public BasicValue getLocal(final int i) throws IndexOutOfBoundsException {
+    return VALUES[getLocalCode(i)];
+  }
+
+  @Override
+  public void setLocal(final int i, final BasicValue value) throws IndexOutOfBoundsException {
+    setLocalCode(i, getCode(value));
+  }
+
+  @Override
+  public int getStackSize() {
+    return top;
+  }
+
+  @Override
+  public BasicValue getStack(final int i) throws IndexOutOfBoundsException {
+    return VALUES[values[i + locals]];
+  }
+
+  @Override
+  public void clearStack() {
+    top = 0;
+  }
+
+  @Override
+  public BasicValue pop() throws IndexOutOfBoundsException {
+    return VALUES[popCode()];
+  }
+
+  @Override
+  public void push(final BasicValue value) throws IndexOutOfBoundsException {
+    pushCode(getCode(value));
+  }
+
+  private byte getLocalCode(final int i) {
+    if (i >= locals) {
+      throw new IndexOutOfBoundsException("Trying to access an inexistant local variable");
+    }
+    return values[i];
+  }
+
+  private void setLocalCode(final int i, final byte code) {
+    if (i >= locals) {
+      throw new IndexOutOfBoundsException("Trying to access an inexistant local variable " + i);
+    }
+    values[i] = code;
+  }
+
+  private byte popCode() {
+    if (top == 0) {
+      throw new IndexOutOfBoundsException("Cannot pop operand off an empty stack.");
+    }
+    return values[--top + locals];
+  }
+
+  /**
+   * Pops the given number of values from the operand stack.
+   *
+   * @param count the number of values to pop.
+   * @return the index in {@link #values} of the first (i.e. deepest) popped value.
+   */
+  private int popCodes(final int count) {
+    if (count > top) {
+      throw new IndexOutOfBoundsException("Cannot pop operand off an empty stack.");
+    }
+    top -= count;
+    return locals + top;
+  }
+
+  private void pushCode(final byte code) {
+    if (top + locals >= values.length) {
+      throw new IndexOutOfBoundsException("Insufficient maximum stack size.");
+    }
+    values[top++ + locals] = code;
+  }
+
+  @Override
+  public void execute(final AbstractInsnNode insn, final Interpreter<BasicValue> interpreter)
+      throws AnalyzerException {
+    byte value1, value2, value3, value4;
+    int var;
+
+    int opcode = insn.getOpcode();
+    switch (opcode) {
+      case NOP:
+      case GOTO:
+      case RET:
+        break;
+      case ICONST_M1:
+      case ICONST_0:
+      case ICONST_1:
+      case ICONST_2:
+      case ICONST_3:
+      case ICONST_4:
+      case ICONST_5:
+      case BIPUSH:
+      case SIPUSH:
+        pushCode(INT);
+        break;
+      case LCONST_0:
+      case LCONST_1:
+        pushCode(LONG);
+        break;
+      case FCONST_0:
+      case FCONST_1:
+      case FCONST_2:
+        pushCode(FLOAT);
+        break;
+      case DCONST_0:
+      case DCONST_1:
+        pushCode(DOUBLE);
+        break;
+      case ACONST_NULL:
+      case NEW:
+        pushCode(REFERENCE);
+        break;
+      case LDC:
+        pushCode(getLdcCode(((LdcInsnNode) insn).cst));
+        break;
+      case JSR:
+        pushCode(RETURN_ADDRESS);
+        break;
+      case ILOAD:
+      case LLOAD:
+      case FLOAD:
+      case DLOAD:
+      case ALOAD:
+        value1 = getLocalCode(((VarInsnNode) insn).var);
+        checkCopy(insn, value1);
+        pushCode(value1);
+        break;
+      case ISTORE:
+      case LSTORE:
+      case FSTORE:
+      case DSTORE:
+      case ASTORE:
+        value1 = popCode();
+        checkCopy(insn, value1);
+        var = ((VarInsnNode) insn).var;
+        setLocalCode(var, value1);
+        if (getSize(value1) == 2) {
+          setLocalCode(var + 1, UNINITIALIZED);
+        }
+        if (var > 0 && getSize(getLocalCode(var - 1)) == 2) {
+          setLocalCode(var - 1, UNINITIALIZED);
+        }
+        break;
+      case IASTORE:
+      case LASTORE:
+      case FASTORE:
+      case DASTORE:
+      case AASTORE:
+      case BASTORE:
+      case CASTORE:
+      case SASTORE:
+        value3 = popCode();
+        value2 = popCode();
+        value1 = popCode();
+        if (value1 != REFERENCE && opcode != AASTORE) {
+          throw new AnalyzerException(
+              insn,
+              "First argument",
+              "a " + VALUES[REFERENCE] + " array reference",
+              VALUES[value1]);
+        } else if (value2 != INT) {
+          throw new AnalyzerException(insn, "Second argument", VALUES[INT], VALUES[value2]);
+        } else if (value3 != OPERAND3[opcode]) {
+          throw new AnalyzerException(
+              insn, "Third argument", VALUES[OPERAND3[opcode]], VALUES[value3]);
+        }
+        break;
+      case POP:
+        if (getSize(popCode()) == 2) {
+          throw new AnalyzerException(insn, "Illegal use of POP");
+        }
+        break;
+      case POP2:
+        if (getSize(popCode()) == 1 && getSize(popCode()) != 1) {
+          throw new AnalyzerException(insn, "Illegal use of POP2");
+        }
+        break;
+      case DUP:
+        value1 = popCode();
+        if (getSize(value1) != 1) {
+          throw new AnalyzerException(insn, "Illegal use of DUP");
+        }
+        pushCode(value1);
+        pushCode(value1);
+        break;
+      case DUP_X1:
+        value1 = popCode();
+        value2 = popCode();
+        if (getSize(value1) != 1 || getSize(value2) != 1) {
+          throw new AnalyzerException(insn, "Illegal use of DUP_X1");
+        }
+        pushCode(value1);
+        pushCode(value2);
+        pushCode(value1);
+        break;
+      case DUP_X2:
+        value1 = popCode();
+        if (getSize(value1) == 1) {
+          value2 = popCode();
+          if (getSize(value2) == 1) {
+            value3 = popCode();
+            if (getSize(value3) == 1) {
+              pushCode(value1);
+              pushCode(value3);
+              pushCode(value2);
+              pushCode(value1);
+              break;
+            }
+          } else {
+            pushCode(value1);
+            pushCode(value2);
+            pushCode(value1);
+            break;
+          }
+        }
+        throw new AnalyzerException(insn, "Illegal use of DUP_X2");
+      case DUP2:
+        value1 = popCode();
+        if (getSize(value1) == 1) {
+          value2 = popCode();
+          if (getSize(value2) == 1) {
+            pushCode(value2);
+            pushCode(value1);
+            pushCode(value2);
+            pushCode(value1);
+            break;
+          }
+        } else {
+          pushCode(value1);
+          pushCode(value1);
+          break;
+        }
+        throw new AnalyzerException(insn, "Illegal use of DUP2");
+      case DUP2_X1:
+        value1 = popCode();
+        if (getSize(value1) == 1) {
+          value2 = popCode();
+          if (getSize(value2) == 1) {
+            value3 = popCode();
+            if (getSize(value3) == 1) {
+              pushCode(value2);
+              pushCode(value1);
+              pushCode(value3);
+              pushCode(value2);
+              pushCode(value1);
+              break;
+            }
+          }
+        } else {
+          value2 = popCode();
+          if (getSize(value2) == 1) {
+            pushCode(value1);
+            pushCode(value2);
+            pushCode(value1);
+            break;
+          }
+        }
+        throw new AnalyzerException(insn, "Illegal use of DUP2_X1");
+      case DUP2_X2:
+        value1 = popCode();
+        if (getSize(value1) == 1) {
+          value2 = popCode();
+          if (getSize(value2) == 1) {
+            value3 = popCode();
+            if (getSize(value3) == 1) {
+              value4 = popCode();
+              if (getSize(value4) == 1) {
+                pushCode(value2);
+                pushCode(value1);
+                pushCode(value4);
+                pushCode(value3);
+                pushCode(value2);
+                pushCode(value1);
+                break;
+              }
+            } else {
+              pushCode(value2);
+              pushCode(value1);
+              pushCode(value3);
+              pushCode(value2);
+              pushCode(value1);
+              break;
+            }
+          }
+        } else {
+          value2 = popCode();
+          if (getSize(value2) == 1) {
+            value3 = popCode();
+            if (getSize(value3) == 1) {
+              pushCode(value1);
+              pushCode(value3);
+              pushCode(value2);
+              pushCode(value1);
+              break;
+            }
+          } else {
+            pushCode(value1);
+            pushCode(value2);
+            pushCode(value1);
+            break;
+          }
+        }
+        throw new AnalyzerException(insn, "Illegal use of DUP2_X2");
+      case SWAP:
+        value2 = popCode();
+        value1 = popCode();
+        if (getSize(value1) != 1 || getSize(value2) != 1) {
+          throw new AnalyzerException(insn, "Illegal use of SWAP");
+        }
+        pushCode(value2);
+        pushCode(value1);
+        break;
+      case INEG:
+      case LNEG:
+      case FNEG:
+      case DNEG:
+      case I2L:
+      case I2F:
+      case I2D:
+      case L2I:
+      case L2F:
+      case L2D:
+      case F2I:
+      case F2L:
+      case F2D:
+      case D2I:
+      case D2L:
+      case D2F:
+      case I2B:
+      case I2C:
+      case I2S:
+      case IFEQ:
+      case IFNE:
+      case IFLT:
+      case IFGE:
+      case IFGT:
+      case IFLE:
+      case TABLESWITCH:
+      case LOOKUPSWITCH:
+      case NEWARRAY:
+      case ANEWARRAY:
+        value1 = popCode();
+        checkValue(insn, value1, OPERAND1[opcode]);
+        if (opcode == NEWARRAY) {
+          int operand = ((IntInsnNode) insn).operand;
+          if (operand < T_BOOLEAN || operand > T_LONG) {
+            throw new AnalyzerException(insn, "Invalid array type");
+          }
+        }
+        if (RESULT[opcode] != VOID) {
+          pushCode(RESULT[opcode]);
+        }
+        break;
+      case IALOAD:
+      case LALOAD:
+      case FALOAD:
+      case DALOAD:
+      case AALOAD:
+      case BALOAD:
+      case CALOAD:
+      case SALOAD:
+      case IADD:
+      case LADD:
+      case FADD:
+      case DADD:
+      case ISUB:
+      case LSUB:
+      case FSUB:
+      case DSUB:
+      case IMUL:
+      case LMUL:
+      case FMUL:
+      case DMUL:
+      case IDIV:
+      case LDIV:
+      case FDIV:
+      case DDIV:
+      case IREM:
+      case LREM:
+      case FREM:
+      case DREM:
+      case ISHL:
+      case LSHL:
+      case ISHR:
+      case LSHR:
+      case IUSHR:
+      case LUSHR:
+      case IAND:
+      case LAND:
+      case IOR:
+      case LOR:
+      case IXOR:
+      case LXOR:
+      case LCMP:
+      case FCMPL:
+      case FCMPG:
+      case DCMPL:
+      case DCMPG:
+      case IF_ICMPEQ:
+      case IF_ICMPNE:
+      case IF_ICMPLT:
+      case IF_ICMPGE:
+      case IF_ICMPGT:
+      case IF_ICMPLE:
+      case IF_ACMPEQ:
+      case IF_ACMPNE:
+        value2 = popCode();
+        value1 = popCode();
+        checkValues(insn, value1, OPERAND1[opcode], value2, OPERAND2[opcode]);
+        if (RESULT[opcode] != VOID) {
+          pushCode(RESULT[opcode]);
+        }
+        break;
+      case IINC:
+        var = ((IincInsnNode) insn).var;
+        checkValue(insn, getLocalCode(var), INT);
+        setLocalCode(var, INT);
+        break;
+      case IRETURN:
+      case LRETURN:
+      case FRETURN:
+      case DRETURN:
+      case ARETURN:
+        value1 = popCode();
+        if (opcode == ARETURN) {
+          checkReference(insn, value1);
+        } else {
+          checkValue(insn, value1, OPERAND1[opcode]);
+        }
+        if (value1 != returnValue) {
+          throw new AnalyzerException(
+              insn, "Incompatible return type", VALUES[returnValue], VALUES[value1]);
+        }
+        break;
+      case RETURN:
+        if (returnValue != VOID) {
+          throw new AnalyzerException(insn, "Incompatible return type");
+        }
+        break;
+      case GETSTATIC:
+        pushCode(getCode(((FieldInsnNode) insn).desc, 0));
+        break;
+      case PUTSTATIC:
+        checkValue(insn, popCode(), getCode(((FieldInsnNode) insn).desc, 0));
+        break;
+      case GETFIELD:
+        checkValue(insn, popCode(), REFERENCE);
+        pushCode(getCode(((FieldInsnNode) insn).desc, 0));
+        break;
+      case PUTFIELD:
+        value2 = popCode();
+        value1 = popCode();
+        checkValues(insn, value1, REFERENCE, value2, getCode(((FieldInsnNode) insn).desc, 0));
+        break;
+      case INVOKEVIRTUAL:
+      case INVOKESPECIAL:
+      case INVOKEINTERFACE:
+        executeInvoke(insn, ((MethodInsnNode) insn).desc, true);
+        break;
+      case INVOKESTATIC:
+        executeInvoke(insn, ((MethodInsnNode) insn).desc, false);
+        break;
+      case INVOKEDYNAMIC:
+        executeInvoke(insn, ((InvokeDynamicInsnNode) insn).desc, false);
+        break;
+      case ARRAYLENGTH:
+        value1 = popCode();
+        if (value1 != REFERENCE) {
+          throw new AnalyzerException(insn, null, "an array reference", VALUES[value1]);
+        }
+        pushCode(INT);
+        break;
+      case ATHROW:
+      case MONITORENTER:
+      case MONITOREXIT:
+      case IFNULL:
+      case IFNONNULL:
+        checkReference(insn, popCode());
+        break;
+      case CHECKCAST:
+        checkReference(insn, popCode());
+        pushCode(REFERENCE);
+        break;
+      case INSTANCEOF:
+        checkReference(insn, popCode());
+        pushCode(INT);
+        break;
+      case MULTIANEWARRAY:
+        var = ((MultiANewArrayInsnNode) insn).dims;
+        int index = popCodes(var);
+        for (int i = 0; i < var; ++i) {
+          checkValue(insn, values[index + i], INT);
+        }
+        pushCode(REFERENCE);
+        break;
+      default:
+        throw new RuntimeException("Illegal opcode " + opcode);
+    }
+  }
+
+  private static byte getLdcCode(final Object cst) {
+    if (cst instanceof Integer) {
+      return INT;
+    } else if (cst instanceof Float) {
+      return FLOAT;
+    } else if (cst instanceof Long) {
+      return LONG;
+    } else if (cst instanceof Double) {
+      return DOUBLE;
+    } else if (cst instanceof String || cst instanceof Handle) {
+      return REFERENCE;
+    } else if (cst instanceof Type) {
+      int sort = ((Type) cst).getSort();
+      if (sort == Type.OBJECT || sort == Type.ARRAY || sort == Type.METHOD) {
+        return REFERENCE;
+      }
+    }
+    throw new IllegalArgumentException("Illegal LDC constant " + cst);
+  }
+
+  /**
+   * Symbolically executes a method invocation instruction.
+   *
+   * @param insn a method invocation instruction.
+   * @param desc the descriptor of the invoked method.
+   * @param hasOwner whether the instruction pops a method owner before the method arguments.
+   * @throws AnalyzerException if the popped values do not have the expected types.
+   */
+  private void executeInvoke(final AbstractInsnNode insn, final String desc, final boolean hasOwner)
+      throws AnalyzerException {
+    int count = hasOwner ? 1 : 0;
+    int i = 1;
+    while (desc.charAt(i) != ')') {
+      i = skipType(desc, i);
+      ++count;
+    }
+    byte returnCode = getCode(desc, i + 1);
+    int index = popCodes(count);
+    if (hasOwner && values[index++] != REFERENCE) {
+      throw new AnalyzerException(
+          insn, "Method owner", VALUES[REFERENCE], VALUES[values[index - 1]]);
+    }
+    int argument = 0;
+    i = 1;
+    while (desc.charAt(i) != ')') {
+      byte expected = getCode(desc, i);
+      byte value = values[index++];
+      ++argument;
+      if (value != expected) {
+        throw new AnalyzerException(insn, "Argument " + argument, VALUES[expected], VALUES[value]);
+      }
+      i = skipType(desc, i);
+    }
+    if (returnCode != VOID) {
+      pushCode(returnCode);
+    }
+  }
+
+  /**
+   * Checks the type of a value loaded from or stored into a local variable, like {@link
+   * BasicVerifier#copyOperation}.
+   */
+  private static void checkCopy(final AbstractInsnNode insn, final byte value)
+      throws AnalyzerException {
+    switch (insn.getOpcode()) {
+      case ILOAD:
+      case ISTORE:
+        checkValue(insn, value, INT);
+        break;
+      case LLOAD:
+      case LSTORE:
+        checkValue(insn, value, LONG);
+        break;
+      case FLOAD:
+      case FSTORE:
+        checkValue(insn, value, FLOAT);
+        break;
+      case DLOAD:
+      case DSTORE:
+        checkValue(insn, value, DOUBLE);
+        break;
+      case ALOAD:
+        checkReference(insn, value);
+        break;
+      default:
+        if (value != REFERENCE && value != RETURN_ADDRESS) {
+          throw new AnalyzerException(
+              insn, null, "an object reference or a return address", VALUES[value]);
+        }
+        break;
+    }
+  }
+
+  private static void checkValue(
+      final AbstractInsnNode insn, final byte value, final byte expected)
+      throws AnalyzerException {
+    if (value != expected) {
+      throw new AnalyzerException(insn, null, VALUES[expected], VALUES[value]);
+    }
+  }
+
+  private static void checkValues(
+      final AbstractInsnNode insn,
+      final byte value1,
+      final byte expected1,
+      final byte value2,
+      final byte expected2)
+      throws AnalyzerException {
+    if (value1 != expected1) {
+      throw new AnalyzerException(insn, "First argument", VALUES[expected1], VALUES[value1]);
+    } else if (value2 != expected2) {
+      throw new AnalyzerException(insn, "Second argument", VALUES[expected2], VALUES[value2]);
+    }
+  }
+
+  private static void checkReference(final AbstractInsnNode insn, final byte value)
+      throws AnalyzerException {
+    if (value != REFERENCE) {
+      throw new AnalyzerException(insn, null, "an object reference", VALUES[value]);
+    }
+  }
+
+  @Override
+  public boolean merge(
+      final Frame<? extends BasicValue> frame, final Interpreter<BasicValue> interpreter)
+      throws AnalyzerException {
+    BasicVerifierFrame other = (BasicVerifierFrame) frame;
+    if (top != other.top) {
+      throw new AnalyzerException(null, "Incompatible stack heights");
+    }
+    // The BasicValue lattice is flat: two different values merge to UNINITIALIZED.
+    boolean changes = false;
+    for (int i = 0; i < locals + top; ++i) {
+      if (values[i] != other.values[i] && values[i] != UNINITIALIZED) {
+        values[i] = UNINITIALIZED;
+        changes = true;
+      }
+    }
+    return changes;
+  }
+
+  @Override
+  public boolean merge(final Frame<? extends BasicValue> frame, final boolean[] access) {
+    BasicVerifierFrame other = (BasicVerifierFrame) frame;
+    boolean changes = false;
+    for (int i = 0; i < locals; ++i) {
+      if (!access[i] && values[i] != other.values[i]) {
+        values[i] = other.values[i];
+        changes = true;
+      }
+    }
+    return changes;
+  }
+}
@@ -0,0 +1,178 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import java.util.HashMap;
+import java.util.List;
+
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+
+/**
+ * A {@link SourceInterpreter} for the instructions of a single method, whose {@link SourceValue}
+ * sources are bit sets indexed by instruction index. The values produced by each instruction are
+ * created once and then reused, and the values resulting from merge operations are shared when
+ * they are equal. The memory and time needed to analyze large methods with many control flow joins
+ * are therefore proportional to the number of distinct values, instead of the number of merges.
+ * The computed frames are equal to those computed with a {@link SourceInterpreter}.
+ */
+public class BitSetSourceInterpreter extends SourceInterpreter {
+
+  /** The instructions of the analyzed method. */
+  private final InsnList insns;
+
+  /** The empty set of instructions. */
+  private final InsnBitSet emptySet;
+
+  /** The values with an empty set of sources, indexed by size. */
+  private final SourceValue[] emptyValues;
+
+  /**
+   * The values produced by the instructions of the analyzed method, indexed by 3 times the
+   * instruction index plus the value size, or <tt>null</tt> if they have not been created yet.
+   */
+  private final SourceValue[] insnValues;
+
+  /** The values resulting from merge operations, used to share equal values. */
+  private final HashMap<SourceValue, SourceValue> mergedValues;
+
+  /**
+   * Constructs a new {@link BitSetSourceInterpreter}.
+   *
+   * @param insns the instructions of the method to be analyzed.
+   */
+  public BitSetSourceInterpreter(final InsnList insns) {
+    super(ASM6);
+    this.insns = insns;
+    this.emptySet = new InsnBitSet(insns);
+    this.emptyValues = new SourceValue[3];
+    this.insnValues = new SourceValue[3 * insns.size()];
+    this.mergedValues = new HashMap<SourceValue, SourceValue>();
+  }
+
+  @Override
+  public SourceValue newValue(final Type type) {
+    if (type == Type.VOID_TYPE) {
+      return null;
+    }
+    int size = type == null ? 1 : type.getSize();
+    SourceValue value = emptyValues[size];
+    if (value == null) {
+      value = new SourceValue(size, emptySet);
+      emptyValues[size] = value;
+    }
+    return value;
+  }
+
+  @Override
+  public SourceValue newOperation(final AbstractInsnNode insn) {
+    return getValue(insn, super.newOperation(insn).size);
+  }
+
+  @Override
+  public SourceValue copyOperation(final AbstractInsnNode insn, final SourceValue value) {
+    return getValue(insn, value.getSize());
+  }
+
+  @Override
+  public SourceValue unaryOperation(final AbstractInsnNode insn, final SourceValue value) {
+    return getValue(insn, super.unaryOperation(insn, value).size);
+  }
+
+  @Override
+  public SourceValue binaryOperation(
+      final AbstractInsnNode insn, final SourceValue value1, final SourceValue value2) {
+    return getValue(insn, super.binaryOperation(insn, value1, value2).size);
+  }
+
+  @Override
+  public SourceValue ternaryOperation(
+      final AbstractInsnNode insn,
+      final SourceValue value1,
+      final SourceValue value2,
+      final SourceValue value3) {
+    return getValue(insn, 1);
+  }
+
+  @Override
+  public SourceValue naryOperation(
+      final AbstractInsnNode insn, final List<? extends SourceValue> values) {
+    return getValue(insn, super.naryOperation(insn, values).size);
+  }
+
+  @Override
+  public SourceValue merge(final SourceValue d, final SourceValue w) {
+    InsnBitSet dInsns = getInsnBitSet(d);
+    InsnBitSet union = dInsns.union(getInsnBitSet(w));
+    if (union == dInsns && d.size == w.size) {
+      return d;
+    }
+    SourceValue value = new SourceValue(Math.min(d.size, w.size), union);
+    SourceValue mergedValue = mergedValues.get(value);
+    if (mergedValue == null) {
+      mergedValues.put(value, value);
+      return value;
+    }
+    return mergedValue;
+  }
+
+  /**
+   * Returns the value produced by the given instruction.
+   *
+   * @param insn an instruction of the analyzed method.
+   * @param size the size of the value produced by this instruction.
+   * @return a value of the given size whose only source is the given instruction.
+   */
+  private SourceValue getValue(final AbstractInsnNode insn, final int size) {
+    int index = insns.indexOf(insn);
+    SourceValue value = insnValues[3 * index + size];
+    if (value == null) {
+      value = new SourceValue(size, emptySet.add(index));
+      insnValues[3 * index + size] = value;
+    }
+    return value;
+  }
+
+  /**
+   * Returns the sources of the given value as an {@link InsnBitSet}.
+   *
+   * @param value a value.
+   * @return the sources of the given value as an {@link InsnBitSet}.
+   */
+  private InsnBitSet getInsnBitSet(final SourceValue value) {
+    if (value.insns instanceof InsnBitSet && emptySet.hasSameInsns((InsnBitSet) value.insns)) {
+      return (InsnBitSet) value.insns;
+    }
+    InsnBitSet set = emptySet;
+    for (AbstractInsnNode insn : value.insns) {
+      set = set.add(insns.indexOf(insn));
+    }
+    return set;
+  }
+}
@@ -0,0 +1,404 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import java.util.List;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+/**
+ * A semantic bytecode analyzer which only stores the frames at the beginning of each basic block.
+ * The frame of any other instruction is recomputed when it is requested, by symbolically executing
+ * the instructions between the beginning of its basic block and this instruction. This uses much
+ * less memory than an {@link Analyzer} for large methods, if only a few frames are requested. The
+ * computed frames are the same as those of an {@link Analyzer} if the {@link Interpreter}
+ * operations are distributive with respect to its merge operation, which is the case of the
+ * interpreters provided in this package. Methods containing JSR instructions are analyzed with an
+ * {@link Analyzer}, and only the frames at the beginning of each basic block are kept.
+ *
+ * @param <V> type of the Value used for the analysis.
+ */
+public class BlockAnalyzer<V extends Value> implements Opcodes {
+
+  private final Interpreter<V> interpreter;
+
+  private InsnList insns;
+
+  /** The index of the basic block of each instruction. */
+  private int[] insnBlocks;
+
+  /** The index of the first instruction of each basic block. */
+  private int[] blockStarts;
+
+  /** The frame at the beginning of each basic block, or <tt>null</tt> for unreachable blocks. */
+  private Frame<V>[] blockFrames;
+
+  private ExceptionHandlers handlers;
+
+  private boolean[] queued;
+
+  private int[] queue;
+
+  private int top;
+
+  /**
+   * Constructs a new {@link BlockAnalyzer}.
+   *
+   * @param interpreter the interpreter to be used to symbolically interpret the bytecode
+   *     instructions.
+   */
+  public BlockAnalyzer(final Interpreter<V> interpreter) {
+    this.interpreter = interpreter;
+  }
+
+  /**
+   * Analyzes the given method. The instructions of the method must not be modified until the last
+   * call to {@link #getFrame}.
+   *
+   * @param owner the internal name of the class to which the method belongs.
+   * @param m the method to be analyzed.
+   * @throws AnalyzerException if a problem occurs during the analysis.
+   */
+  @SuppressWarnings("unchecked")
+  public void analyze(final String owner, final MethodNode m) throws AnalyzerException {
+    insns = m.instructions;
+    if ((m.access & (ACC_ABSTRACT | ACC_NATIVE)) != 0) {
+      insnBlocks = new int[0];
+      blockStarts = new int[0];
+      blockFrames = (Frame<V>[]) new Frame<?>[0];
+      return;
+    }
+    int n = insns.size();
+
+    // computes exception handlers for each instruction
+    handlers = new ExceptionHandlers(insns, m.tryCatchBlocks);
+
+    // computes the basic blocks
+    boolean hasSubroutines = computeBlocks(m);
+    int blockCount = blockStarts.length;
+    blockFrames = (Frame<V>[]) new Frame<?>[blockCount];
+    if (hasSubroutines) {
+      Frame<V>[] frames =
+          new Analyzer<V>(interpreter) {
+            @Override
+            protected Frame<V> newFrame(final int nLocals, final int nStack) {
+              return BlockAnalyzer.this.newFrame(nLocals, nStack);
+            }
+
+            @Override
+            protected Frame<V> newFrame(final Frame<? extends V> src) {
+              return BlockAnalyzer.this.newFrame(src);
+            }
+          }.analyze(owner, m);
+      for (int i = 0; i < blockCount; ++i) {
+        blockFrames[i] = frames[blockStarts[i]];
+      }
+      handlers = null;
+      return;
+    }
+    queued = new boolean[blockCount];
+    queue = new int[blockCount];
+    top = 0;
+
+    // initializes the data structures for the control flow analysis
+    Frame<V> current = newFrame(m.maxLocals, m.maxStack);
+    Frame<V> handler = newFrame(m.maxLocals, m.maxStack);
+    current.setReturn(interpreter.newValue(Type.getReturnType(m.desc)));
+    Type[] args = Type.getArgumentTypes(m.desc);
+    int local = 0;
+    if ((m.access & ACC_STATIC) == 0) {
+      Type ctype = Type.getObjectType(owner);
+      current.setLocal(local++, interpreter.newValue(ctype));
+    }
+    for (int i = 0; i < args.length; ++i) {
+      current.setLocal(local++, interpreter.newValue(args[i]));
+      if (args[i].getSize() == 2) {
+        current.setLocal(local++, interpreter.newValue(null));
+      }
+    }
+    while (local < m.maxLocals) {
+      current.setLocal(local++, interpreter.newValue(null));
+    }
+    merge(0, current);
+
+    // control flow analysis
+    while (top > 0) {
+      int block = queue[--top];
+      queued[block] = false;
+      current.init(blockFrames[block]);
+      int end = block + 1 < blockCount ? blockStarts[block + 1] : n;
+      int insn = blockStarts[block];
+      AbstractInsnNode insnNode = null;
+      try {
+        for (; insn < end; ++insn) {
+          insnNode = insns.get(insn);
+          List<TryCatchBlockNode> insnHandlers = handlers.get(insn);
+          if (insnHandlers != null) {
+            for (int i = 0; i < insnHandlers.size(); ++i) {
+              TryCatchBlockNode tcb = insnHandlers.get(i);
+              Type type;
+              if (tcb.type == null) {
+                type = Type.getObjectType("java/lang/Throwable");
+              } else {
+                type = Type.getObjectType(tcb.type);
+              }
+              handler.init(current);
+              handler.clearStack();
+              handler.push(interpreter.newValue(type));
+              merge(insnBlocks[insns.indexOf(tcb.handler)], handler);
+            }
+          }
+          int insnType = insnNode.getType();
+          if (insnType != AbstractInsnNode.LABEL
+              && insnType != AbstractInsnNode.LINE
+              && insnType != AbstractInsnNode.FRAME) {
+            current.execute(insnNode, interpreter);
+          }
+        }
+        insn = end - 1;
+        int insnOpcode = insnNode.getOpcode();
+        if (insnNode instanceof JumpInsnNode) {
+          if (insnOpcode != GOTO) {
+            mergeNext(end, current);
+          }
+          merge(insnBlocks[insns.indexOf(((JumpInsnNode) insnNode).label)], current);
+        } else if (insnNode instanceof LookupSwitchInsnNode) {
+          LookupSwitchInsnNode lsi = (LookupSwitchInsnNode) insnNode;
+          merge(insnBlocks[insns.indexOf(lsi.dflt)], current);
+          for (int j = 0; j < lsi.labels.size(); ++j) {
+            merge(insnBlocks[insns.indexOf(lsi.labels.get(j))], current);
+          }
+        } else if (insnNode instanceof TableSwitchInsnNode) {
+          TableSwitchInsnNode tsi = (TableSwitchInsnNode) insnNode;
+          merge(insnBlocks[insns.indexOf(tsi.dflt)], current);
+          for (int j = 0; j < tsi.labels.size(); ++j) {
+            merge(insnBlocks[insns.indexOf(tsi.labels.get(j))], current);
+          }
+        } else if (insnOpcode != ATHROW && (insnOpcode < IRETURN || insnOpcode > RETURN)) {
+          mergeNext(end, current);
+        }
+      } catch (AnalyzerException e) {
+        throw new AnalyzerException(
+            e.node, "Error at instruction " + insn + ": " + e.getMessage(), e);
+      } catch (Exception e) {
+        throw new AnalyzerException(
+            insnNode, "Error at instruction " + insn + ": " + e.getMessage(), e);
+      }
+    }
+    handlers = null;
+    queued = null;
+    queue = null;
+  }
+
+  /**
+   * Computes the basic blocks of the given method, i.e. {@link #insnBlocks} and {@link
+   * #blockStarts}.
+   *
+   * @param m the method to be analyzed.
+   * @return whether the method contains JSR or RET instructions.
+   */
+  private boolean computeBlocks(final MethodNode m) {
+    int n = insns.size();
+    boolean hasSubroutines = false;
+    boolean[] blockStart = new boolean[n + 1];
+    blockStart[0] = true;
+    for (int i = 0; i < m.tryCatchBlocks.size(); ++i) {
+      blockStart[insns.indexOf(m.tryCatchBlocks.get(i).handler)] = true;
+    }
+    for (int i = 0; i < n; ++i) {
+      AbstractInsnNode insnNode = insns.get(i);
+      int insnOpcode = insnNode.getOpcode();
+      if (insnNode instanceof JumpInsnNode) {
+        blockStart[insns.indexOf(((JumpInsnNode) insnNode).label)] = true;
+        blockStart[i + 1] = true;
+        hasSubroutines |= insnOpcode == JSR;
+      } else if (insnNode instanceof LookupSwitchInsnNode) {
+        LookupSwitchInsnNode lsi = (LookupSwitchInsnNode) insnNode;
+        blockStart[insns.indexOf(lsi.dflt)] = true;
+        for (int j = 0; j < lsi.labels.size(); ++j) {
+          blockStart[insns.indexOf(lsi.labels.get(j))] = true;
+        }
+        blockStart[i + 1] = true;
+      } else if (insnNode instanceof TableSwitchInsnNode) {
+        TableSwitchInsnNode tsi = (TableSwitchInsnNode) insnNode;
+        blockStart[insns.indexOf(tsi.dflt)] = true;
+        for (int j = 0; j < tsi.labels.size(); ++j) {
+          blockStart[insns.indexOf(tsi.labels.get(j))] = true;
+        }
+        blockStart[i + 1] = true;
+      } else if (insnOpcode == RET
+          || insnOpcode == ATHROW
+          || (insnOpcode >= IRETURN && insnOpcode <= RETURN)) {
+        blockStart[i + 1] = true;
+        hasSubroutines |= insnOpcode == RET;
+      }
+    }
+    int blockCount = 0;
+    for (int i = 0; i < n; ++i) {
+      if (blockStart[i]) {
+        ++blockCount;
+      }
+    }
+    insnBlocks = new int[n];
+    blockStarts = new int[blockCount];
+    int block = -1;
+    for (int i = 0; i < n; ++i) {
+      if (blockStart[i]) {
+        blockStarts[++block] = i;
+      }
+      insnBlocks[i] = block;
+    }
+    return hasSubroutines;
+  }
+
+  /**
+   * Returns the symbolic stack frame of the given instruction of the last recently analyzed
+   * method. The frame is recomputed from the frame at the beginning of the basic block containing
+   * this instruction.
+   *
+   * @param insn the index of an instruction of the last recently analyzed method.
+   * @return the symbolic state of the execution stack frame just before the execution of the given
+   *     instruction, or <tt>null</tt> if this instruction cannot be reached (dead code).
+   * @throws AnalyzerException if a problem occurs during the symbolic execution of the instructions
+   *     preceding the given one in its basic block.
+   */
+  public Frame<V> getFrame(final int insn) throws AnalyzerException {
+    int block = insnBlocks[insn];
+    if (blockFrames[block] == null) {
+      return null;
+    }
+    Frame<V> frame = newFrame(blockFrames[block]);
+    for (int i = blockStarts[block]; i < insn; ++i) {
+      AbstractInsnNode insnNode = insns.get(i);
+      int insnType = insnNode.getType();
+      if (insnType != AbstractInsnNode.LABEL
+          && insnType != AbstractInsnNode.LINE
+          && insnType != AbstractInsnNode.FRAME) {
+        frame.execute(insnNode, interpreter);
+      }
+    }
+    return frame;
+  }
+
+  /**
+   * Returns the symbolic stack frame of each instruction of the last recently analyzed method. The
+   * frames are recomputed from the frames at the beginning of each basic block, and are not stored
+   * in this analyzer.
+   *
+   * @return the symbolic state of the execution stack frame at each bytecode instruction of the
+   *     method, as returned by {@link Analyzer#analyze}.
+   * @throws AnalyzerException if a problem occurs during the symbolic execution of the
+   *     instructions.
+   */
+  @SuppressWarnings("unchecked")
+  public Frame<V>[] getFrames() throws AnalyzerException {
+    Frame<V>[] frames = (Frame<V>[]) new Frame<?>[insnBlocks.length];
+    for (int block = 0; block < blockStarts.length; ++block) {
+      if (blockFrames[block] == null) {
+        continue;
+      }
+      int end = block + 1 < blockStarts.length ? blockStarts[block + 1] : insnBlocks.length;
+      Frame<V> frame = newFrame(blockFrames[block]);
+      for (int i = blockStarts[block]; i < end; ++i) {
+        frames[i] = newFrame(frame);
+        AbstractInsnNode insnNode = insns.get(i);
+        int insnType = insnNode.getType();
+        if (i + 1 < end
+            && insnType != AbstractInsnNode.LABEL
+            && insnType != AbstractInsnNode.LINE
+            && insnType != AbstractInsnNode.FRAME) {
+          frame.execute(insnNode, interpreter);
+        }
+      }
+    }
+    return frames;
+  }
+
+  /**
+   * Returns the number of basic blocks of the last recently analyzed method.
+   *
+   * @return the number of basic blocks of the last recently analyzed method.
+   */
+  public int getBlockCount() {
+    return blockStarts.length;
+  }
+
+  /**
+   * Constructs a new frame with the given size.
+   *
+   * @param nLocals the maximum number of local variables of the frame.
+   * @param nStack the maximum stack size of the frame.
+   * @return the created frame.
+   */
+  protected Frame<V> newFrame(final int nLocals, final int nStack) {
+    return new Frame<V>(nLocals, nStack);
+  }
+
+  /**
+   * Constructs a new frame that is identical to the given frame.
+   *
+   * @param src a frame.
+   * @return the created frame.
+   */
+  protected Frame<V> newFrame(final Frame<? extends V> src) {
+    return new Frame<V>(src);
+  }
+
+  // -------------------------------------------------------------------------
+
+  private void mergeNext(final int insn, final Frame<V> frame) throws AnalyzerException {
+    if (insn >= insnBlocks.length) {
+      throw new AnalyzerException(null, "Execution can fall off end of the code");
+    }
+    merge(insnBlocks[insn], frame);
+  }
+
+  private void merge(final int block, final Frame<V> frame) throws AnalyzerException {
+    Frame<V> oldFrame = blockFrames[block];
+    boolean changes;
+    if (oldFrame == null) {
+      blockFrames[block] = newFrame(frame);
+      changes = true;
+    } else {
+      changes = oldFrame.merge(frame, interpreter);
+    }
+    if (changes && !queued[block]) {
+      queued[block] = true;
+      queue[top++] = block;
+    }
+  }
+}
@@ -0,0 +1,790 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+/**
+ * The control flow graph of a method, with its dominator tree and its natural loops. The basic
+ * blocks are ranges of consecutive instructions, identified by their index in code order (the
+ * first block, which contains the first instruction, is the entry block). All the instructions of
+ * a basic block are covered by the same try catch blocks, and the handlers of these try catch
+ * blocks are successors of the basic block. A JSR instruction has two successors: the subroutine
+ * and the following instruction. A RET instruction has no successor.
+ *
+ * <p>The dominator tree is computed with the Lengauer-Tarjan algorithm, and the natural loops are
+ * computed from the back edges of the graph, i.e. the edges whose destination dominates their
+ * source. Loops which have the same header are merged, and the retreating edges of irreducible
+ * loops, which are not back edges, are ignored.
+ */
+public class ControlFlowGraph implements Opcodes {
+
+  private static final int[] NO_BLOCKS = new int[0];
+
+  /** The index of the basic block of each instruction. */
+  private final int[] insnBlocks;
+
+  /** The index of the first instruction of each basic block, plus the number of instructions. */
+  private final int[] blockStarts;
+
+  /** The successors of each basic block, in increasing order. */
+  private final int[][] successors;
+
+  /** The successors of each basic block, excluding its exception handlers, in increasing order. */
+  private final int[][] normalSuccessors;
+
+  /** The exception handler blocks of each basic block, in increasing order. */
+  private final int[][] exceptionSuccessors;
+
+  /** The predecessors of each basic block, in increasing order. */
+  private final int[][] predecessors;
+
+  /**
+   * The index of each basic block in the depth first order of the control flow graph, or -1 for
+   * the basic blocks which cannot be reached from the entry block.
+   */
+  private final int[] preorder;
+
+  /** The parent of each reachable basic block in the depth first spanning tree of the graph. */
+  private final int[] spanningTreeParents;
+
+  /** The basic blocks which can be reached from the entry block, in depth first order. */
+  private final int[] vertices;
+
+  /** The immediate dominator of each basic block, or -1 for the entry and unreachable blocks. */
+  private final int[] dominators;
+
+  /** The index of each basic block in the preorder traversal of the dominator tree. */
+  private final int[] dominatorPreorder;
+
+  /** The index of each basic block in the postorder traversal of the dominator tree. */
+  private final int[] dominatorPostorder;
+
+  /** The header block of each loop. The outer loops come before the inner loops. */
+  private int[] loopHeaders;
+
+  /** The immediately enclosing loop of each loop, or -1 for the outermost loops. */
+  private int[] loopParents;
+
+  /** The innermost loop containing each basic block, or -1 for blocks outside of any loop. */
+  private final int[] blockLoops;
+
+  /**
+   * Constructs the control flow graph of the given method.
+   *
+   * @param m a method, which must not be modified while this graph is used.
+   */
+  public ControlFlowGraph(final MethodNode m) {
+    InsnList insns = m.instructions;
+    int n = insns.size();
+    blockStarts = computeBlocks(m);
+    insnBlocks = new int[n];
+    int blockCount = blockStarts.length - 1;
+    for (int block = 0; block < blockCount; ++block) {
+      for (int insn = blockStarts[block]; insn < blockStarts[block + 1]; ++insn) {
+        insnBlocks[insn] = block;
+      }
+    }
+    successors = new int[blockCount][];
+    normalSuccessors = new int[blockCount][];
+    exceptionSuccessors = new int[blockCount][];
+    predecessors = new int[blockCount][];
+    computeEdges(m);
+    preorder = new int[blockCount];
+    spanningTreeParents = new int[blockCount];
+    vertices = computePreorder();
+    dominators = new int[blockCount];
+    computeDominators();
+    dominatorPreorder = new int[blockCount];
+    dominatorPostorder = new int[blockCount];
+    computeDominatorOrders();
+    blockLoops = new int[blockCount];
+    computeLoops();
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Basic blocks and edges
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns the number of basic blocks of this graph.
+   *
+   * @return the number of basic blocks of this graph (0 for a method without code).
+   */
+  public int getBlockCount() {
+    return blockStarts.length - 1;
+  }
+
+  /**
+   * Returns the basic block containing the given instruction.
+   *
+   * @param insn the index of an instruction of the method.
+   * @return the index of the basic block containing this instruction.
+   */
+  public int getBlock(final int insn) {
+    return insnBlocks[insn];
+  }
+
+  /**
+   * Returns the first instruction of the given basic block.
+   *
+   * @param block the index of a basic block.
+   * @return the index of the first instruction of this block.
+   */
+  public int getBlockStart(final int block) {
+    return blockStarts[block];
+  }
+
+  /**
+   * Returns the end of the given basic block.
+   *
+   * @param block the index of a basic block.
+   * @return the index of the instruction following the last instruction of this block (exclusive).
+   */
+  public int getBlockEnd(final int block) {
+    return blockStarts[block + 1];
+  }
+
+  /**
+   * Returns the successors of the given basic block.
+   *
+   * @param block the index of a basic block.
+   * @return the successors of this block, in increasing order, including the exception handlers of
+   *     its instructions. The returned array must not be modified.
+   */
+  public int[] getSuccessors(final int block) {
+    return successors[block];
+  }
+
+  /**
+   * Returns the successors of the given basic block, excluding its exception handlers.
+   *
+   * @param block the index of a basic block.
+   * @return the blocks to which the last instruction of this block can transfer control, in
+   *     increasing order. The returned array must not be modified.
+   */
+  public int[] getNormalSuccessors(final int block) {
+    return normalSuccessors[block];
+  }
+
+  /**
+   * Returns the exception handlers of the given basic block.
+   *
+   * @param block the index of a basic block.
+   * @return the blocks starting with an exception handler of the instructions of this block, in
+   *     increasing order. Some of them may also be normal successors of this block. The returned
+   *     array must not be modified.
+   */
+  public int[] getExceptionSuccessors(final int block) {
+    return exceptionSuccessors[block];
+  }
+
+  /**
+   * Returns the predecessors of the given basic block.
+   *
+   * @param block the index of a basic block.
+   * @return the predecessors of this block, in increasing order, including the blocks whose
+   *     instructions are covered by an exception handler starting this block. The returned array
+   *     must not be modified.
+   */
+  public int[] getPredecessors(final int block) {
+    return predecessors[block];
+  }
+
+  /**
+   * Returns whether the given basic block can be reached from the entry block.
+   *
+   * @param block the index of a basic block.
+   * @return whether this block can be reached from the entry block.
+   */
+  public boolean isReachable(final int block) {
+    return preorder[block] != -1;
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Dominator tree
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns the immediate dominator of the given basic block.
+   *
+   * @param block the index of a basic block.
+   * @return the index of the immediate dominator of this block, or -1 if it is the entry block or
+   *     if it cannot be reached from the entry block.
+   */
+  public int getImmediateDominator(final int block) {
+    return dominators[block];
+  }
+
+  /**
+   * Returns whether a basic block dominates another one. This takes constant time.
+   *
+   * @param block1 the index of a basic block.
+   * @param block2 the index of a basic block.
+   * @return whether both blocks can be reached from the entry block and every path from the entry
+   *     block to block2 goes through block1. In particular, a reachable block dominates itself.
+   */
+  public boolean dominates(final int block1, final int block2) {
+    return preorder[block1] != -1
+        && preorder[block2] != -1
+        && dominatorPreorder[block1] <= dominatorPreorder[block2]
+        && dominatorPostorder[block2] <= dominatorPostorder[block1];
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Loops
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns the number of natural loops of this graph.
+   *
+   * @return the number of natural loops of this graph.
+   */
+  public int getLoopCount() {
+    return loopHeaders.length;
+  }
+
+  /**
+   * Returns the header of the given loop.
+   *
+   * @param loop the index of a loop. The outer loops have a smaller index than the inner loops.
+   * @return the index of the header block of this loop, which dominates all the blocks of the loop.
+   */
+  public int getLoopHeader(final int loop) {
+    return loopHeaders[loop];
+  }
+
+  /**
+   * Returns the loop immediately enclosing the given loop.
+   *
+   * @param loop the index of a loop.
+   * @return the index of the innermost loop strictly containing this loop, or -1 if there is none.
+   */
+  public int getParentLoop(final int loop) {
+    return loopParents[loop];
+  }
+
+  /**
+   * Returns the innermost loop containing the given basic block.
+   *
+   * @param block the index of a basic block.
+   * @return the index of the innermost loop containing this block, or -1 if there is none.
+   */
+  public int getLoop(final int block) {
+    return blockLoops[block];
+  }
+
+  /**
+   * Returns the number of loops containing the given basic block.
+   *
+   * @param block the index of a basic block.
+   * @return the number of loops containing this block (0 if it is not in any loop).
+   */
+  public int getLoopDepth(final int block) {
+    int depth = 0;
+    for (int loop = blockLoops[block]; loop != -1; loop = loopParents[loop]) {
+      ++depth;
+    }
+    return depth;
+  }
+
+  /**
+   * Returns whether the given loop contains the given basic block.
+   *
+   * @param loop the index of a loop.
+   * @param block the index of a basic block.
+   * @return whether this block belongs to this loop, or to one of its inner loops.
+   */
+  public boolean isInLoop(final int loop, final int block) {
+    for (int l = blockLoops[block]; l >= loop; l = loopParents[l]) {
+      if (l == loop) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Graph construction
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Computes the value of {@link #blockStarts}. A basic block starts at the first instruction, at
+   * each jump target and exception handler, after each jump, switch, return, throw and ret
+   * instruction, and at the start and end of each try catch block.
+   */
+  private static int[] computeBlocks(final MethodNode m) {
+    InsnList insns = m.instructions;
+    int n = insns.size();
+    boolean[] blockStart = new boolean[n + 1];
+    if (n > 0) {
+      blockStart[0] = true;
+    }
+    for (int i = 0; i < m.tryCatchBlocks.size(); ++i) {
+      TryCatchBlockNode tcb = m.tryCatchBlocks.get(i);
+      blockStart[insns.indexOf(tcb.start)] = true;
+      blockStart[insns.indexOf(tcb.end)] = true;
+      blockStart[insns.indexOf(tcb.handler)] = true;
+    }
+    for (int i = 0; i < n; ++i) {
+      AbstractInsnNode insnNode = insns.get(i);
+      int insnOpcode = insnNode.getOpcode();
+      if (insnNode instanceof JumpInsnNode) {
+        blockStart[insns.indexOf(((JumpInsnNode) insnNode).label)] = true;
+        blockStart[i + 1] = true;
+      } else if (insnNode instanceof LookupSwitchInsnNode) {
+        LookupSwitchInsnNode lsi = (LookupSwitchInsnNode) insnNode;
+        blockStart[insns.indexOf(lsi.dflt)] = true;
+        for (int j = 0; j < lsi.labels.size(); ++j) {
+          blockStart[insns.indexOf(lsi.labels.get(j))] = true;
+        }
+        blockStart[i + 1] = true;
+      } else if (insnNode instanceof TableSwitchInsnNode) {
+        TableSwitchInsnNode tsi = (TableSwitchInsnNode) insnNode;
+        blockStart[insns.indexOf(tsi.dflt)] = true;
+        for (int j = 0; j < tsi.labels.size(); ++j) {
+          blockStart[insns.indexOf(tsi.labels.get(j))] = true;
+        }
+        blockStart[i + 1] = true;
+      } else if (insnOpcode == RET
+          || insnOpcode == ATHROW
+          || (insnOpcode >= IRETURN && insnOpcode <= RETURN)) {
+        blockStart[i + 1] = true;
+      }
+    }
+    int blockCount = 0;
+    for (int i = 0; i < n; ++i) {
+      if (blockStart[i]) {
+        ++blockCount;
+      }
+    }
+    int[] blockStarts = new int[blockCount + 1];
+    int block = 0;
+    for (int i = 0; i < n; ++i) {
+      if (blockStart[i]) {
+        blockStarts[block++] = i;
+      }
+    }
+    blockStarts[blockCount] = n;
+    return blockStarts;
+  }
+
+  /** Computes the successors and the predecessors of each basic block. */
+  private void computeEdges(final MethodNode m) {
+    InsnList insns = m.instructions;
+    int blockCount = getBlockCount();
+    ExceptionHandlers handlers = new ExceptionHandlers(insns, m.tryCatchBlocks);
+    boolean[] isSuccessor = new boolean[blockCount];
+    int[] blockSuccessors = new int[blockCount];
+    boolean[] isHandler = new boolean[blockCount];
+    int[] blockHandlerBlocks = new int[blockCount];
+    int[] predecessorCounts = new int[blockCount];
+    for (int block = 0; block < blockCount; ++block) {
+      int successorCount = 0;
+      AbstractInsnNode insnNode = insns.get(blockStarts[block + 1] - 1);
+      int insnOpcode = insnNode.getOpcode();
+      if (insnNode instanceof JumpInsnNode) {
+        int target = getBlock(insns, ((JumpInsnNode) insnNode).label);
+        successorCount = add(target, isSuccessor, blockSuccessors, successorCount);
+        if (insnOpcode != GOTO && block + 1 < blockCount) {
+          successorCount = add(block + 1, isSuccessor, blockSuccessors, successorCount);
+        }
+      } else if (insnNode instanceof LookupSwitchInsnNode) {
+        LookupSwitchInsnNode lsi = (LookupSwitchInsnNode) insnNode;
+        int target = getBlock(insns, lsi.dflt);
+        successorCount = add(target, isSuccessor, blockSuccessors, successorCount);
+        for (int j = 0; j < lsi.labels.size(); ++j) {
+          target = getBlock(insns, lsi.labels.get(j));
+          successorCount = add(target, isSuccessor, blockSuccessors, successorCount);
+        }
+      } else if (insnNode instanceof TableSwitchInsnNode) {
+        TableSwitchInsnNode tsi = (TableSwitchInsnNode) insnNode;
+        int target = getBlock(insns, tsi.dflt);
+        successorCount = add(target, isSuccessor, blockSuccessors, successorCount);
+        for (int j = 0; j < tsi.labels.size(); ++j) {
+          target = getBlock(insns, tsi.labels.get(j));
+          successorCount = add(target, isSuccessor, blockSuccessors, successorCount);
+        }
+      } else if (insnOpcode != RET
+          && insnOpcode != ATHROW
+          && (insnOpcode < IRETURN || insnOpcode > RETURN)
+          && block + 1 < blockCount) {
+        successorCount = add(block + 1, isSuccessor, blockSuccessors, successorCount);
+      }
+      int normalSuccessorCount = successorCount;
+      exceptionSuccessors[block] = NO_BLOCKS;
+      List<TryCatchBlockNode> blockHandlers = handlers.get(blockStarts[block]);
+      if (blockHandlers != null) {
+        int handlerCount = 0;
+        for (int j = 0; j < blockHandlers.size(); ++j) {
+          int target = getBlock(insns, blockHandlers.get(j).handler);
+          successorCount = add(target, isSuccessor, blockSuccessors, successorCount);
+          handlerCount = add(target, isHandler, blockHandlerBlocks, handlerCount);
+        }
+        exceptionSuccessors[block] = new int[handlerCount];
+        System.arraycopy(blockHandlerBlocks, 0, exceptionSuccessors[block], 0, handlerCount);
+        Arrays.sort(exceptionSuccessors[block]);
+        for (int i = 0; i < handlerCount; ++i) {
+          isHandler[blockHandlerBlocks[i]] = false;
+        }
+      }
+      if (successorCount == 0) {
+        successors[block] = NO_BLOCKS;
+        normalSuccessors[block] = NO_BLOCKS;
+      } else {
+        successors[block] = new int[successorCount];
+        System.arraycopy(blockSuccessors, 0, successors[block], 0, successorCount);
+        Arrays.sort(successors[block]);
+        if (normalSuccessorCount == successorCount) {
+          normalSuccessors[block] = successors[block];
+        } else {
+          normalSuccessors[block] = new int[normalSuccessorCount];
+          System.arraycopy(blockSuccessors, 0, normalSuccessors[block], 0, normalSuccessorCount);
+          Arrays.sort(normalSuccessors[block]);
+        }
+        for (int i = 0; i < successorCount; ++i) {
+          isSuccessor[blockSuccessors[i]] = false;
+          ++predecessorCounts[blockSuccessors[i]];
+        }
+      }
+    }
+    for (int block = 0; block < blockCount; ++block) {
+      predecessors[block] =
+          predecessorCounts[block] == 0 ? NO_BLOCKS : new int[predecessorCounts[block]];
+      predecessorCounts[block] = 0;
+    }
+    for (int block = 0; block < blockCount; ++block) {
+      int[] successorsOfBlock = successors[block];
+      for (int i = 0; i < successorsOfBlock.length; ++i) {
+        int successor = successorsOfBlock[i];
+        predecessors[successor][predecessorCounts[successor]++] = block;
+      }
+    }
+  }
+
+  /**
+   * Adds a block to a set of blocks.
+   *
+   * @param block the block to be added.
+   * @param isElement whether each block belongs to the set.
+   * @param elements the elements of the set.
+   * @param size the number of elements of the set.
+   * @return the new number of elements of the set.
+   */
+  private static int add(
+      final int block, final boolean[] isElement, final int[] elements, final int size) {
+    if (isElement[block]) {
+      return size;
+    }
+    isElement[block] = true;
+    elements[size] = block;
+    return size + 1;
+  }
+
+  private int getBlock(final InsnList insns, final LabelNode label) {
+    return insnBlocks[insns.indexOf(label)];
+  }
+
+  /**
+   * Computes {@link #preorder} and {@link #spanningTreeParents} with an iterative depth first
+   * traversal of the graph.
+   *
+   * @return the reachable blocks, in depth first order.
+   */
+  private int[] computePreorder() {
+    int blockCount = getBlockCount();
+    int[] order = new int[blockCount];
+    int orderSize = 0;
+    for (int block = 0; block < blockCount; ++block) {
+      preorder[block] = -1;
+    }
+    if (blockCount > 0) {
+      int[] stack = new int[blockCount];
+      int[] nextSuccessors = new int[blockCount];
+      int stackSize = 0;
+      preorder[0] = orderSize;
+      order[orderSize++] = 0;
+      stack[stackSize++] = 0;
+      while (stackSize > 0) {
+        int block = stack[stackSize - 1];
+        int[] blockSuccessors = successors[block];
+        if (nextSuccessors[block] == blockSuccessors.length) {
+          --stackSize;
+        } else {
+          int successor = blockSuccessors[nextSuccessors[block]++];
+          if (preorder[successor] == -1) {
+            preorder[successor] = orderSize;
+            spanningTreeParents[successor] = block;
+            order[orderSize++] = successor;
+            stack[stackSize++] = successor;
+          }
+        }
+      }
+    }
+    int[] result = new int[orderSize];
+    System.arraycopy(order, 0, result, 0, orderSize);
+    return result;
+  }
+
+  /**
+   * Computes {@link #dominators} with the Lengauer-Tarjan algorithm, using path compression. All
+   * the arrays used in this method, except {@link #dominators}, are indexed by depth first order.
+   */
+  private void computeDominators() {
+    int n = vertices.length;
+    int[] parent = new int[n];
+    for (int v = 1; v < n; ++v) {
+      parent[v] = preorder[spanningTreeParents[vertices[v]]];
+    }
+    int[] semi = new int[n];
+    int[] idom = new int[n];
+    int[] ancestor = new int[n];
+    int[] label = new int[n];
+    int[] bucketHeads = new int[n];
+    int[] bucketNexts = new int[n];
+    int[] stack = new int[n];
+    for (int v = 0; v < n; ++v) {
+      semi[v] = v;
+      ancestor[v] = -1;
+      label[v] = v;
+      bucketHeads[v] = -1;
+    }
+    for (int w = n - 1; w > 0; --w) {
+      int[] blockPredecessors = predecessors[vertices[w]];
+      for (int i = 0; i < blockPredecessors.length; ++i) {
+        int v = preorder[blockPredecessors[i]];
+        if (v != -1) {
+          int u = eval(v, ancestor, label, semi, stack);
+          if (semi[u] < semi[w]) {
+            semi[w] = semi[u];
+          }
+        }
+      }
+      bucketNexts[w] = bucketHeads[semi[w]];
+      bucketHeads[semi[w]] = w;
+      int p = parent[w];
+      ancestor[w] = p;
+      for (int v = bucketHeads[p]; v != -1; v = bucketNexts[v]) {
+        int u = eval(v, ancestor, label, semi, stack);
+        idom[v] = semi[u] < semi[v] ? u : p;
+      }
+      bucketHeads[p] = -1;
+    }
+    for (int w = 1; w < n; ++w) {
+      if (idom[w] != semi[w]) {
+        idom[w] = idom[idom[w]];
+      }
+    }
+    for (int block = 0; block < dominators.length; ++block) {
+      dominators[block] = -1;
+    }
+    for (int w = 1; w < n; ++w) {
+      dominators[vertices[w]] = vertices[idom[w]];
+    }
+  }
+
+  /**
+   * Returns the vertex with the minimum semi-dominator on the path from the given vertex to the
+   * root of its tree in the forest built by the Lengauer-Tarjan algorithm, and compresses this
+   * path.
+   *
+   * @param v a vertex, i.e. the depth first order of a reachable basic block.
+   * @param ancestor the ancestor of each vertex in the forest, or -1 for the roots.
+   * @param label the vertex with the minimum semi-dominator on the compressed path of each vertex.
+   * @param semi the semi-dominator of each vertex.
+   * @param stack a stack large enough to contain all the vertices.
+   * @return the vertex with the minimum semi-dominator on the path from v to the root of its tree.
+   */
+  private static int eval(
+      final int v, final int[] ancestor, final int[] label, final int[] semi, final int[] stack) {
+    if (ancestor[v] == -1) {
+      return v;
+    }
+    int stackSize = 0;
+    int x = v;
+    while (ancestor[ancestor[x]] != -1) {
+      stack[stackSize++] = x;
+      x = ancestor[x];
+    }
+    while (stackSize > 0) {
+      x = stack[--stackSize];
+      int a = ancestor[x];
+      if (semi[label[a]] < semi[label[x]]) {
+        label[x] = label[a];
+      }
+      ancestor[x] = ancestor[a];
+    }
+    return label[v];
+  }
+
+  /**
+   * Computes {@link #dominatorPreorder} and {@link #dominatorPostorder} with an iterative depth
+   * first traversal of the dominator tree.
+   */
+  private void computeDominatorOrders() {
+    int blockCount = getBlockCount();
+    int[] firstChildren = new int[blockCount];
+    int[] nextSiblings = new int[blockCount];
+    for (int block = 0; block < blockCount; ++block) {
+      firstChildren[block] = -1;
+      dominatorPreorder[block] = -1;
+      dominatorPostorder[block] = -1;
+    }
+    for (int block = blockCount - 1; block >= 0; --block) {
+      int dominator = dominators[block];
+      if (dominator != -1) {
+        nextSiblings[block] = firstChildren[dominator];
+        firstChildren[dominator] = block;
+      }
+    }
+    if (blockCount == 0) {
+      return;
+    }
+    int[] stack = new int[blockCount];
+    int[] nextChildren = new int[blockCount];
+    int stackSize = 0;
+    int preorderIndex = 0;
+    int postorderIndex = 0;
+    dominatorPreorder[0] = preorderIndex++;
+    nextChildren[0] = firstChildren[0];
+    stack[stackSize++] = 0;
+    while (stackSize > 0) {
+      int block = stack[stackSize - 1];
+      int child = nextChildren[block];
+      if (child == -1) {
+        --stackSize;
+        dominatorPostorder[block] = postorderIndex++;
+      } else {
+        nextChildren[block] = nextSiblings[child];
+        dominatorPreorder[child] = preorderIndex++;
+        nextChildren[child] = firstChildren[child];
+        stack[stackSize++] = child;
+      }
+    }
+  }
+
+  /**
+   * Computes {@link #loopHeaders}, {@link #loopParents} and {@link #blockLoops}. The loop headers
+   * are visited in reverse depth first order, so that inner loops are found before the loops which
+   * contain them. The body of each loop is then found by walking backwards from the sources of its
+   * back edges, skipping over the inner loops found so far, which become children of this loop.
+   */
+  private void computeLoops() {
+    int blockCount = getBlockCount();
+    int edgeCount = 0;
+    for (int block = 0; block < blockCount; ++block) {
+      blockLoops[block] = -1;
+      edgeCount += predecessors[block].length;
+    }
+    int[] headers = new int[blockCount];
+    int[] parents = new int[blockCount];
+    // A union-find structure giving the outermost loop found so far containing each loop.
+    int[] roots = new int[blockCount];
+    // Each predecessor list is pushed at most twice: once for the back edges of a loop header, and
+    // once when its block, or the loop it is the header of, is added to an enclosing loop.
+    int[] worklist = new int[2 * edgeCount];
+    int loopCount = 0;
+    for (int v = vertices.length - 1; v >= 0; --v) {
+      int header = vertices[v];
+      int loop = -1;
+      int worklistSize = 0;
+      int[] headerPredecessors = predecessors[header];
+      for (int i = 0; i < headerPredecessors.length; ++i) {
+        int predecessor = headerPredecessors[i];
+        if (dominates(header, predecessor)) {
+          if (loop == -1) {
+            loop = loopCount++;
+            headers[loop] = header;
+            parents[loop] = -1;
+            roots[loop] = loop;
+            blockLoops[header] = loop;
+          }
+          worklist[worklistSize++] = predecessor;
+        }
+      }
+      while (worklistSize > 0) {
+        int block = worklist[--worklistSize];
+        int[] blockPredecessors;
+        if (blockLoops[block] == -1) {
+          blockLoops[block] = loop;
+          blockPredecessors = predecessors[block];
+        } else {
+          int root = findRoot(roots, blockLoops[block]);
+          if (root == loop) {
+            continue;
+          }
+          parents[root] = loop;
+          roots[root] = loop;
+          blockPredecessors = predecessors[headers[root]];
+        }
+        for (int i = 0; i < blockPredecessors.length; ++i) {
+          if (preorder[blockPredecessors[i]] != -1) {
+            worklist[worklistSize++] = blockPredecessors[i];
+          }
+        }
+      }
+    }
+    // Renumbers the loops so that outer loops come before inner loops.
+    loopHeaders = new int[loopCount];
+    loopParents = new int[loopCount];
+    for (int loop = 0; loop < loopCount; ++loop) {
+      loopHeaders[loopCount - 1 - loop] = headers[loop];
+      loopParents[loopCount - 1 - loop] = parents[loop] == -1 ? -1 : loopCount - 1 - parents[loop];
+    }
+    for (int block = 0; block < blockCount; ++block) {
+      if (blockLoops[block] != -1) {
+        blockLoops[block] = loopCount - 1 - blockLoops[block];
+      }
+    }
+  }
+
+  private static int findRoot(final int[] roots, final int loop) {
+    int root = loop;
+    while (roots[root] != root) {
+      root = roots[root];
+    }
+    int l = loop;
+    while (roots[l] != root) {
+      int next = roots[l];
+      roots[l] = root;
+      l = next;
+    }
+    return root;
+  }
+}
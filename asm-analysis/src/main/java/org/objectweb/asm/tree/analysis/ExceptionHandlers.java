@@ -0,0 +1,120 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+/**
+ * The exception handlers of the instructions of a method. The instructions are partitioned into
+ * ranges of consecutive instructions which are covered by the same try catch blocks, and a single
+ * list of handlers is stored for each range, instead of one list per instruction.
+ */
+final class ExceptionHandlers {
+
+  /**
+   * The index of the first instruction of each range, in increasing order. The last range, which
+   * contains the instructions after the last try catch block, is not covered by any try catch
+   * block.
+   */
+  private final int[] rangeStarts;
+
+  /**
+   * The try catch blocks covering each range of {@link #rangeStarts}, in the order of the method's
+   * try catch blocks, or <tt>null</tt> for ranges which are not covered by any try catch block.
+   */
+  private final List<TryCatchBlockNode>[] rangeHandlers;
+
+  /**
+   * Constructs a new {@link ExceptionHandlers}.
+   *
+   * @param insns the instructions of a method.
+   * @param tryCatchBlocks the try catch blocks of this method.
+   */
+  @SuppressWarnings("unchecked")
+  ExceptionHandlers(final InsnList insns, final List<TryCatchBlockNode> tryCatchBlocks) {
+    int n = tryCatchBlocks.size();
+    int[] starts = new int[n];
+    int[] ends = new int[n];
+    int[] boundaries = new int[2 * n];
+    for (int i = 0; i < n; ++i) {
+      TryCatchBlockNode tcb = tryCatchBlocks.get(i);
+      starts[i] = insns.indexOf(tcb.start);
+      ends[i] = insns.indexOf(tcb.end);
+      boundaries[2 * i] = starts[i];
+      boundaries[2 * i + 1] = ends[i];
+    }
+    Arrays.sort(boundaries);
+    int rangeCount = 0;
+    for (int i = 0; i < boundaries.length; ++i) {
+      if (i == 0 || boundaries[i] != boundaries[i - 1]) {
+        boundaries[rangeCount++] = boundaries[i];
+      }
+    }
+    rangeStarts = new int[rangeCount];
+    System.arraycopy(boundaries, 0, rangeStarts, 0, rangeCount);
+    rangeHandlers = (List<TryCatchBlockNode>[]) new List<?>[rangeCount];
+    for (int i = 0; i < n; ++i) {
+      int end = Arrays.binarySearch(rangeStarts, ends[i]);
+      for (int range = Arrays.binarySearch(rangeStarts, starts[i]); range < end; ++range) {
+        List<TryCatchBlockNode> handlers = rangeHandlers[range];
+        if (handlers == null) {
+          handlers = new ArrayList<TryCatchBlockNode>();
+          rangeHandlers[range] = handlers;
+        }
+        handlers.add(tryCatchBlocks.get(i));
+      }
+    }
+  }
+
+  /**
+   * Returns the exception handlers of the given instruction.
+   *
+   * @param insn the index of an instruction.
+   * @return the try catch blocks covering this instruction, in the order of the method's try catch
+   *     blocks, or <tt>null</tt> if there is none. The returned list is shared by several
+   *     instructions, and must not be modified.
+   */
+  List<TryCatchBlockNode> get(final int insn) {
+    int low = 0;
+    int high = rangeStarts.length - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (rangeStarts[middle] <= insn) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return high < 0 ? null : rangeHandlers[high];
+  }
+}
@@ -0,0 +1,209 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+
+/**
+ * An immutable set of instructions of an {@link InsnList}, represented with a bit set indexed by
+ * instruction index.
+ */
+final class InsnBitSet extends AbstractSet<AbstractInsnNode> {
+
+  /** The instructions which can be contained in this set. */
+  private final InsnList insns;
+
+  /** The bits of this set. Bit i is set if the instruction of index i belongs to this set. */
+  private final long[] words;
+
+  /** The hash code of this set, or 0 if it has not been computed yet. */
+  private int hashCode;
+
+  /**
+   * Constructs an empty set.
+   *
+   * @param insns the instructions which can be contained in this set.
+   */
+  InsnBitSet(final InsnList insns) {
+    this(insns, new long[(insns.size() + 63) >>> 6]);
+  }
+
+  private InsnBitSet(final InsnList insns, final long[] words) {
+    this.insns = insns;
+    this.words = words;
+  }
+
+  /**
+   * Returns a set containing the elements of this set and the given instruction.
+   *
+   * @param index the index of an instruction of {@link #insns}.
+   * @return a set containing the elements of this set and the given instruction.
+   */
+  InsnBitSet add(final int index) {
+    long[] newWords = words.clone();
+    newWords[index >>> 6] |= 1L << index;
+    return new InsnBitSet(insns, newWords);
+  }
+
+  /**
+   * Returns the union of this set and of the given set.
+   *
+   * @param set a set of instructions of the same {@link InsnList} as this set.
+   * @return the union of this set and of the given set. This is this set if it contains all the
+   *     elements of the given set.
+   */
+  InsnBitSet union(final InsnBitSet set) {
+    if (containsAll(set)) {
+      return this;
+    }
+    long[] newWords = new long[words.length];
+    for (int i = 0; i < words.length; ++i) {
+      newWords[i] = words[i] | set.words[i];
+    }
+    return new InsnBitSet(insns, newWords);
+  }
+
+  /**
+   * Returns whether this set and the given set contain instructions of the same {@link InsnList}.
+   *
+   * @param set a set of instructions.
+   * @return whether this set and the given set contain instructions of the same {@link InsnList}.
+   */
+  boolean hasSameInsns(final InsnBitSet set) {
+    return insns == set.insns;
+  }
+
+  // -------------------------------------------------------------------------
+  // Implementation of inherited abstract methods
+  // -------------------------------------------------------------------------
+
+  @Override
+  public Iterator<AbstractInsnNode> iterator() {
+    return new Iterator<AbstractInsnNode>() {
+
+      private int next = nextSetBit(0);
+
+      public boolean hasNext() {
+        return next >= 0;
+      }
+
+      public AbstractInsnNode next() {
+        if (next < 0) {
+          throw new NoSuchElementException();
+        }
+        AbstractInsnNode insn = insns.get(next);
+        next = nextSetBit(next + 1);
+        return insn;
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (int i = 0; i < words.length; ++i) {
+      size += Long.bitCount(words[i]);
+    }
+    return size;
+  }
+
+  // -------------------------------------------------------------------------
+  // Optimized overrides of inherited methods
+  // -------------------------------------------------------------------------
+
+  @Override
+  public boolean contains(final Object o) {
+    if (!(o instanceof AbstractInsnNode)) {
+      return false;
+    }
+    AbstractInsnNode insn = (AbstractInsnNode) o;
+    int index = insns.indexOf(insn);
+    return index >= 0
+        && index < insns.size()
+        && insns.get(index) == insn
+        && (words[index >>> 6] & (1L << index)) != 0;
+  }
+
+  @Override
+  public boolean containsAll(final Collection<?> c) {
+    if (c instanceof InsnBitSet && hasSameInsns((InsnBitSet) c)) {
+      long[] otherWords = ((InsnBitSet) c).words;
+      for (int i = 0; i < words.length; ++i) {
+        if ((otherWords[i] & ~words[i]) != 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return super.containsAll(c);
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (o instanceof InsnBitSet && hasSameInsns((InsnBitSet) o)) {
+      return Arrays.equals(words, ((InsnBitSet) o).words);
+    }
+    return super.equals(o);
+  }
+
+  @Override
+  public int hashCode() {
+    if (hashCode == 0) {
+      hashCode = super.hashCode();
+    }
+    return hashCode;
+  }
+
+  private int nextSetBit(final int fromIndex) {
+    int i = fromIndex >>> 6;
+    if (i >= words.length) {
+      return -1;
+    }
+    long word = words[i] & (-1L << fromIndex);
+    while (true) {
+      if (word != 0) {
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+      }
+      if (++i == words.length) {
+        return -1;
+      }
+      word = words[i];
+    }
+  }
+}
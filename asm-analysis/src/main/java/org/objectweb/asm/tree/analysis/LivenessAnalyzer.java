@@ -0,0 +1,105 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+/**
+ * A {@link BackwardAnalyzer} computing the live local variables of a method. A local variable is
+ * live at some point if its current value can be read by a subsequent instruction, before being
+ * overwritten. Bit i of each set corresponds to the local variable i (a long or double value uses
+ * two local variables). A RET instruction is considered to continue with the instructions following
+ * the JSR instructions which call its subroutine, so that the local variables stored in a
+ * subroutine and used after it returns are live at the end of these stores.
+ */
+public class LivenessAnalyzer extends BackwardAnalyzer implements Opcodes {
+
+  /**
+   * Returns whether a local variable is live at the beginning of the given instruction.
+   *
+   * @param insn the index of an instruction of the last recently analyzed method.
+   * @param local the index of a local variable.
+   * @return whether this local variable is live just before the execution of this instruction.
+   */
+  public boolean isLiveIn(final int insn, final int local) {
+    return contains(getIn(insn), local);
+  }
+
+  /**
+   * Returns whether a local variable is live at the end of the given instruction. For instance, a
+   * store instruction is useless if the local variable it stores is not live at its end.
+   *
+   * @param insn the index of an instruction of the last recently analyzed method.
+   * @param local the index of a local variable.
+   * @return whether this local variable is live just after the execution of this instruction.
+   */
+  public boolean isLiveOut(final int insn, final int local) {
+    return contains(getOut(insn), local);
+  }
+
+  @Override
+  protected int getBitCount(final MethodNode m) {
+    return m.maxLocals;
+  }
+
+  @Override
+  protected void transfer(final AbstractInsnNode insnNode, final long[] gen, final long[] kill) {
+    switch (insnNode.getOpcode()) {
+      case ILOAD:
+      case FLOAD:
+      case ALOAD:
+      case RET:
+        add(gen, ((VarInsnNode) insnNode).var);
+        break;
+      case LLOAD:
+      case DLOAD:
+        add(gen, ((VarInsnNode) insnNode).var);
+        add(gen, ((VarInsnNode) insnNode).var + 1);
+        break;
+      case ISTORE:
+      case FSTORE:
+      case ASTORE:
+        add(kill, ((VarInsnNode) insnNode).var);
+        break;
+      case LSTORE:
+      case DSTORE:
+        add(kill, ((VarInsnNode) insnNode).var);
+        add(kill, ((VarInsnNode) insnNode).var + 1);
+        break;
+      case IINC:
+        add(gen, ((IincInsnNode) insnNode).var);
+        break;
+      default:
+        break;
+    }
+  }
+}
@@ -0,0 +1,219 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * A driver to analyze all the methods of one or more classes in parallel. Each task analyzes one
+ * or more methods with a new {@link Analyzer} created with {@link #newAnalyzer}. The analysis
+ * errors are collected and returned in class and method order, whatever the order in which the
+ * methods are actually analyzed. A {@link ParallelAnalyzer} can be used for several analyses,
+ * concurrently or not.
+ *
+ * <p>The <tt>analyze</tt> methods block the calling thread until all their tasks are completed.
+ * They should therefore not be called from a task running in the executor used by this analyzer,
+ * such as a {@link java.util.concurrent.ForkJoinPool} task: the blocked worker can not run the
+ * analysis tasks, which can starve the executor, or even deadlock it if it has a bounded number of
+ * threads.
+ *
+ * @param <V> type of the Value used for the analysis.
+ */
+public abstract class ParallelAnalyzer<V extends Value> {
+
+  /** The executor used to analyze the methods. */
+  private final Executor executor;
+
+  /**
+   * Constructs a new {@link ParallelAnalyzer}.
+   *
+   * @param executor the executor to be used to analyze the methods.
+   */
+  public ParallelAnalyzer(final Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Analyzes all the methods of the given class. Each method is analyzed in a separate task.
+   *
+   * @param classNode the class to be analyzed.
+   * @return the errors found in the methods of the given class, in method order. Each error
+   *     message is prefixed with the name of the class, and with the name and descriptor of the
+   *     corresponding method.
+   * @throws InterruptedException if the current thread is interrupted while waiting for the
+   *     analysis to complete.
+   */
+  public List<AnalyzerException> analyze(final ClassNode classNode) throws InterruptedException {
+    List<FutureTask<List<AnalyzerException>>> tasks =
+        new ArrayList<FutureTask<List<AnalyzerException>>>();
+    for (int i = 0; i < classNode.methods.size(); ++i) {
+      tasks.add(newTask(classNode, i, i + 1));
+    }
+    return getErrors(tasks);
+  }
+
+  /**
+   * Analyzes all the methods of the given classes. The methods of each class are analyzed in a
+   * separate task.
+   *
+   * @param classNodes the classes to be analyzed.
+   * @return the errors found in the methods of the given classes, in class and method order. Each
+   *     error message is prefixed with the name of the corresponding class, and with the name and
+   *     descriptor of the corresponding method.
+   * @throws InterruptedException if the current thread is interrupted while waiting for the
+   *     analysis to complete.
+   */
+  public List<AnalyzerException> analyze(final List<ClassNode> classNodes)
+      throws InterruptedException {
+    List<FutureTask<List<AnalyzerException>>> tasks =
+        new ArrayList<FutureTask<List<AnalyzerException>>>();
+    for (int i = 0; i < classNodes.size(); ++i) {
+      ClassNode classNode = classNodes.get(i);
+      tasks.add(newTask(classNode, 0, classNode.methods.size()));
+    }
+    return getErrors(tasks);
+  }
+
+  /**
+   * Constructs a new analyzer to analyze the methods of the given class. This method is called once
+   * per analyzed method by {@link #analyze(ClassNode)}, and once per analyzed class by {@link
+   * #analyze(List)}. It is called concurrently by the threads used to analyze the methods, and must
+   * therefore be thread safe.
+   *
+   * @param classNode the class whose methods must be analyzed.
+   * @return a new analyzer to analyze the methods of the given class.
+   */
+  protected abstract Analyzer<V> newAnalyzer(ClassNode classNode);
+
+  /**
+   * Called after a method has been successfully analyzed. The default implementation of this method
+   * does nothing. This method is called concurrently by the threads used to analyze the methods,
+   * and must therefore be thread safe.
+   *
+   * @param classNode the class to which the method belongs.
+   * @param methodNode the method which has been analyzed.
+   * @param frames the frames computed by the analyzer for this method (see {@link
+   *     Analyzer#analyze}).
+   */
+  protected void methodAnalyzed(
+      final ClassNode classNode, final MethodNode methodNode, final Frame<V>[] frames) {}
+
+  // -------------------------------------------------------------------------
+
+  /**
+   * Returns a new task to analyze some methods of the given class.
+   *
+   * @param classNode a class.
+   * @param firstMethod the index of the first method to be analyzed.
+   * @param endMethod the index of the last method to be analyzed, exclusive.
+   * @return a new task, returning the errors found in the analyzed methods.
+   */
+  private FutureTask<List<AnalyzerException>> newTask(
+      final ClassNode classNode, final int firstMethod, final int endMethod) {
+    return new FutureTask<List<AnalyzerException>>(
+        new Callable<List<AnalyzerException>>() {
+          public List<AnalyzerException> call() {
+            return analyze(newAnalyzer(classNode), classNode, firstMethod, endMethod);
+          }
+        });
+  }
+
+  private List<AnalyzerException> analyze(
+      final Analyzer<V> analyzer,
+      final ClassNode classNode,
+      final int firstMethod,
+      final int endMethod) {
+    List<AnalyzerException> errors = null;
+    for (int i = firstMethod; i < endMethod; ++i) {
+      MethodNode methodNode = classNode.methods.get(i);
+      Frame<V>[] frames;
+      try {
+        frames = analyzer.analyze(classNode.name, methodNode);
+      } catch (AnalyzerException e) {
+        if (errors == null) {
+          errors = new ArrayList<AnalyzerException>();
+        }
+        errors.add(
+            new AnalyzerException(
+                e.node,
+                classNode.name + '.' + methodNode.name + methodNode.desc + ": " + e.getMessage(),
+                e));
+        continue;
+      }
+      methodAnalyzed(classNode, methodNode, frames);
+    }
+    if (errors == null) {
+      return Collections.emptyList();
+    }
+    return errors;
+  }
+
+  /**
+   * Executes the given tasks and waits for their completion.
+   *
+   * @param tasks some tasks returned by {@link #newTask}.
+   * @return the errors returned by the given tasks, in task order.
+   * @throws InterruptedException if the current thread is interrupted while waiting for the tasks
+   *     to complete.
+   */
+  private List<AnalyzerException> getErrors(
+      final List<FutureTask<List<AnalyzerException>>> tasks) throws InterruptedException {
+    List<AnalyzerException> errors = new ArrayList<AnalyzerException>();
+    try {
+      for (int i = 0; i < tasks.size(); ++i) {
+        executor.execute(tasks.get(i));
+      }
+      for (int i = 0; i < tasks.size(); ++i) {
+        errors.addAll(tasks.get(i).get());
+      }
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    } finally {
+      for (int i = 0; i < tasks.size(); ++i) {
+        tasks.get(i).cancel(false);
+      }
+    }
+    return errors;
+  }
+}
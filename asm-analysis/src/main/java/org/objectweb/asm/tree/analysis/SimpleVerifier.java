@@ -56,6 +56,9 @@ public class SimpleVerifier extends BasicVerifier {
   /** The loader to use for referenced classes. */
   private ClassLoader loader = getClass().getClassLoader();
 
+  /** The type hierarchy to use for referenced classes, or <tt>null</tt> to use {@link #loader}. */
+  private TypeHierarchy typeHierarchy;
+
   /** Constructs a new {@link SimpleVerifier}. */
   public SimpleVerifier() {
     this(null, null, false);
@@ -114,6 +117,18 @@ public class SimpleVerifier extends BasicVerifier {
     this.loader = loader;
   }
 
+  /**
+   * Set the {@link TypeHierarchy} which will be used to get the super class, the interfaces and
+   * the kind of referenced classes, instead of loading them with a <code>ClassLoader</code>. This
+   * is useful to verify classes without loading them, for instance at build time.
+   *
+   * @param typeHierarchy a {@link TypeHierarchy} to use, or <tt>null</tt> to use the
+   *     <code>ClassLoader</code> instead.
+   */
+  public void setTypeHierarchy(final TypeHierarchy typeHierarchy) {
+    this.typeHierarchy = typeHierarchy;
+  }
+
   @Override
   public BasicValue newValue(final Type type) {
     if (type == null) {
@@ -251,6 +266,9 @@ public class SimpleVerifier extends BasicVerifier {
     if (currentClass != null && t.equals(currentClass)) {
       return isInterface;
     }
+    if (typeHierarchy != null) {
+      return typeHierarchy.isInterface(t);
+    }
     return getClass(t).isInterface();
   }
 
@@ -258,6 +276,9 @@ public class SimpleVerifier extends BasicVerifier {
     if (currentClass != null && t.equals(currentClass)) {
       return currentSuperClass;
     }
+    if (typeHierarchy != null) {
+      return typeHierarchy.getSuperClass(t);
+    }
     Class<?> c = getClass(t).getSuperclass();
     return c == null ? null : Type.getType(c);
   }
@@ -290,6 +311,9 @@ public class SimpleVerifier extends BasicVerifier {
       }
       return false;
     }
+    if (typeHierarchy != null) {
+      return typeHierarchy.isInterface(t) || typeHierarchy.isAssignableFrom(t, u);
+    }
     Class<?> tc = getClass(t);
     if (tc.isInterface()) {
       tc = Object.class;
@@ -0,0 +1,267 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * A type hierarchy computed from class files, without loading any class. The super class,
+ * interfaces and access flags of each class are parsed from the header of its class file with a
+ * {@link ClassReader}. Class files are searched in a list of directories and jar files, and then in
+ * the resources of the system class loader (which contain the JDK classes). The class headers and
+ * the results of {@link #isAssignableFrom} are cached. This class is thread safe, and can be shared
+ * between several {@link SimpleVerifier}s used in parallel.
+ */
+public class TypeHierarchy implements Closeable {
+
+  /** The directories and jar files where class files are searched. */
+  private final ArrayList<Object> classPath;
+
+  /** The header of the classes that have been found, indexed by internal name. */
+  private final ConcurrentHashMap<String, ClassHeader> classHeaders;
+
+  /** The results of {@link #isAssignableFrom}, indexed by first and second argument. */
+  private final ConcurrentHashMap<Type, ConcurrentHashMap<Type, Boolean>> assignableTypes;
+
+  /**
+   * Constructs a new {@link TypeHierarchy}.
+   *
+   * @param classPath the directories and jar files where class files must be searched, in order,
+   *     before the resources of the system class loader.
+   * @throws IOException if a jar file can't be opened.
+   */
+  public TypeHierarchy(final File... classPath) throws IOException {
+    this.classPath = new ArrayList<Object>(classPath.length);
+    this.classHeaders = new ConcurrentHashMap<String, ClassHeader>();
+    this.assignableTypes = new ConcurrentHashMap<Type, ConcurrentHashMap<Type, Boolean>>();
+    try {
+      for (File file : classPath) {
+        this.classPath.add(file.isDirectory() ? file : new ZipFile(file));
+      }
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns whether the given type is an interface.
+   *
+   * @param type an object or array type.
+   * @return whether the given type is an interface.
+   */
+  public boolean isInterface(final Type type) {
+    if (type.getSort() == Type.ARRAY) {
+      return false;
+    }
+    return (getClassHeader(type.getInternalName()).access & Opcodes.ACC_INTERFACE) != 0;
+  }
+
+  /**
+   * Returns the super class of the given type, like {@link Class#getSuperclass}.
+   *
+   * @param type an object or array type.
+   * @return the super class of the given type, or <tt>null</tt> if it is an interface or the
+   *     Object class.
+   */
+  public Type getSuperClass(final Type type) {
+    if (type.getSort() == Type.ARRAY) {
+      return Type.getObjectType("java/lang/Object");
+    }
+    ClassHeader classHeader = getClassHeader(type.getInternalName());
+    if ((classHeader.access & Opcodes.ACC_INTERFACE) != 0 || classHeader.superName == null) {
+      return null;
+    }
+    return Type.getObjectType(classHeader.superName);
+  }
+
+  /**
+   * Returns whether a value of the second type can be assigned to a variable of the first type,
+   * like {@link Class#isAssignableFrom}.
+   *
+   * @param type1 an object or array type.
+   * @param type2 an object or array type.
+   * @return whether 'type1' is the same as, or is a super class or super interface of 'type2'.
+   */
+  public boolean isAssignableFrom(final Type type1, final Type type2) {
+    if (type1.equals(type2)) {
+      return true;
+    }
+    ConcurrentHashMap<Type, Boolean> assignableFromType1 = assignableTypes.get(type1);
+    if (assignableFromType1 == null) {
+      assignableFromType1 = new ConcurrentHashMap<Type, Boolean>();
+      ConcurrentHashMap<Type, Boolean> previous =
+          assignableTypes.putIfAbsent(type1, assignableFromType1);
+      if (previous != null) {
+        assignableFromType1 = previous;
+      }
+    }
+    Boolean result = assignableFromType1.get(type2);
+    if (result == null) {
+      result = Boolean.valueOf(computeIsAssignableFrom(type1, type2));
+      assignableFromType1.put(type2, result);
+    }
+    return result.booleanValue();
+  }
+
+  private boolean computeIsAssignableFrom(final Type type1, final Type type2) {
+    if (type1.getSort() == Type.ARRAY) {
+      if (type2.getSort() != Type.ARRAY) {
+        return false;
+      }
+      Type elementType1 = Type.getType(type1.getDescriptor().substring(1));
+      Type elementType2 = Type.getType(type2.getDescriptor().substring(1));
+      if (elementType1.getSort() < Type.ARRAY || elementType2.getSort() < Type.ARRAY) {
+        return elementType1.equals(elementType2);
+      }
+      return isAssignableFrom(elementType1, elementType2);
+    }
+    String name1 = type1.getInternalName();
+    if (name1.equals("java/lang/Object")) {
+      return true;
+    }
+    if (type2.getSort() == Type.ARRAY) {
+      return name1.equals("java/lang/Cloneable") || name1.equals("java/io/Serializable");
+    }
+    String name2 = type2.getInternalName();
+    if (name2.equals("java/lang/Object")) {
+      return false;
+    }
+    ClassHeader classHeader2 = getClassHeader(name2);
+    if (classHeader2.superName != null
+        && isAssignableFrom(type1, Type.getObjectType(classHeader2.superName))) {
+      return true;
+    }
+    for (String interfaceName : classHeader2.interfaces) {
+      if (isAssignableFrom(type1, Type.getObjectType(interfaceName))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the header of the given class.
+   *
+   * @param internalName the internal name of a class.
+   * @return the header of the given class.
+   * @throws TypeNotPresentException if the class file of this class can't be found or read.
+   */
+  private ClassHeader getClassHeader(final String internalName) {
+    ClassHeader classHeader = classHeaders.get(internalName);
+    if (classHeader == null) {
+      ClassReader classReader;
+      try {
+        InputStream inputStream = getClassFile(internalName);
+        if (inputStream == null) {
+          throw new TypeNotPresentException(internalName.replace('/', '.'), null);
+        }
+        try {
+          classReader = new ClassReader(inputStream);
+        } finally {
+          inputStream.close();
+        }
+      } catch (IOException e) {
+        throw new TypeNotPresentException(internalName.replace('/', '.'), e);
+      }
+      classHeader =
+          new ClassHeader(
+              classReader.getAccess(), classReader.getSuperName(), classReader.getInterfaces());
+      classHeaders.putIfAbsent(internalName, classHeader);
+    }
+    return classHeader;
+  }
+
+  /**
+   * Returns the content of the class file of the given class. This method can be overridden to
+   * search class files in other locations.
+   *
+   * @param internalName the internal name of a class.
+   * @return the content of the class file of the given class, or <tt>null</tt> if it is not found.
+   * @throws IOException if the class file can't be opened.
+   */
+  protected InputStream getClassFile(final String internalName) throws IOException {
+    String fileName = internalName + ".class";
+    for (Object entry : classPath) {
+      if (entry instanceof File) {
+        File file = new File((File) entry, fileName);
+        if (file.isFile()) {
+          return new FileInputStream(file);
+        }
+      } else {
+        ZipFile zipFile = (ZipFile) entry;
+        ZipEntry zipEntry = zipFile.getEntry(fileName);
+        if (zipEntry != null) {
+          return zipFile.getInputStream(zipEntry);
+        }
+      }
+    }
+    return ClassLoader.getSystemResourceAsStream(fileName);
+  }
+
+  /**
+   * Closes the jar files of the class path of this type hierarchy.
+   *
+   * @throws IOException if a jar file can't be closed.
+   */
+  public void close() throws IOException {
+    for (Object entry : classPath) {
+      if (entry instanceof ZipFile) {
+        ((ZipFile) entry).close();
+      }
+    }
+  }
+
+  /** The access flags, super class and interfaces of a class. */
+  private static final class ClassHeader {
+
+    final int access;
+
+    final String superName;
+
+    final String[] interfaces;
+
+    ClassHeader(final int access, final String superName, final String[] interfaces) {
+      this.access = access;
+      this.superName = superName;
+      this.interfaces = interfaces;
+    }
+  }
+}
@@ -0,0 +1,120 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/** AnalyzerListener tests. */
+public class AnalyzerListenerTest extends AsmTest implements Opcodes {
+
+  /** Tests that the listener is notified once per method, with consistent statistics. */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testMethodAnalyzed(PrecompiledClass classParameter, Api apiParameter)
+      throws AnalyzerException {
+    ClassNode classNode = new ClassNode();
+    new ClassReader(classParameter.getBytes()).accept(classNode, 0);
+    List<MethodNode> analyzedMethods = new ArrayList<MethodNode>();
+    Analyzer<SourceValue> analyzer = new Analyzer<SourceValue>(new SourceInterpreter());
+    analyzer.setListener(
+        (owner, method, iterations, executions, merges) -> {
+          assertEquals(classNode.name, owner);
+          int reachableInsns = 0;
+          for (Frame<SourceValue> frame : analyzer.getFrames()) {
+            reachableInsns += frame == null ? 0 : 1;
+          }
+          assertTrue(iterations >= reachableInsns);
+          assertTrue(executions <= iterations);
+          analyzedMethods.add(method);
+        });
+
+    for (MethodNode methodNode : classNode.methods) {
+      analyzer.analyze(classNode.name, methodNode);
+    }
+
+    assertEquals(classNode.methods, analyzedMethods);
+  }
+
+  /**
+   * Tests that the instructions following a conditional branch are analyzed once, the join point
+   * being analyzed after both branches.
+   */
+  @Test
+  public void testReversePostorder() throws AnalyzerException {
+    MethodNode methodNode = new MethodNode(ACC_STATIC, "m", "(I)I", null, null);
+    Label elseLabel = new Label();
+    Label endLabel = new Label();
+    Label loopLabel = new Label();
+    methodNode.visitCode();
+    methodNode.visitLabel(loopLabel);
+    methodNode.visitVarInsn(ILOAD, 0);
+    methodNode.visitJumpInsn(IFEQ, elseLabel);
+    methodNode.visitInsn(ICONST_1);
+    methodNode.visitJumpInsn(GOTO, endLabel);
+    methodNode.visitLabel(elseLabel);
+    methodNode.visitInsn(ICONST_2);
+    methodNode.visitLabel(endLabel);
+    methodNode.visitVarInsn(ISTORE, 0);
+    methodNode.visitVarInsn(ILOAD, 0);
+    methodNode.visitJumpInsn(IFNE, loopLabel);
+    methodNode.visitVarInsn(ILOAD, 0);
+    methodNode.visitInsn(IRETURN);
+    methodNode.visitMaxs(1, 1);
+    methodNode.visitEnd();
+    int[] statistics = new int[3];
+    Analyzer<BasicValue> analyzer = new Analyzer<BasicValue>(new BasicInterpreter());
+    analyzer.setListener(
+        (owner, method, iterations, executions, merges) -> {
+          assertSame(methodNode, method);
+          statistics[0] = iterations;
+          statistics[1] = executions;
+          statistics[2] = merges;
+        });
+
+    analyzer.analyze("C", methodNode);
+
+    assertEquals(methodNode.instructions.size(), statistics[0]);
+    assertEquals(methodNode.instructions.size() - 3, statistics[1]);
+    assertEquals(2, statistics[2]);
+  }
+}
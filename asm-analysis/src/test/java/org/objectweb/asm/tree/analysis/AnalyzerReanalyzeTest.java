@@ -0,0 +1,224 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+/** Analyzer.reanalyze tests. */
+public class AnalyzerReanalyzeTest extends AsmTest implements Opcodes {
+
+  /**
+   * Tests that the frames computed by reanalyze, after inserting, removing or replacing some
+   * instructions, are the same as those computed by analyze.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testReanalyze(PrecompiledClass classParameter, Api apiParameter)
+      throws AnalyzerException {
+    ClassNode classNode = new ClassNode();
+    new ClassReader(classParameter.getBytes()).accept(classNode, 0);
+    for (MethodNode methodNode : classNode.methods) {
+      int size = methodNode.instructions.size();
+      for (int i = 0; i < size; i += 1 + size / 8) {
+        final int index = i;
+        if (methodNode.instructions.get(index).getOpcode() < 0) {
+          // Removing or replacing a label, line number or frame node could create invalid code.
+          continue;
+        }
+        // Inserts instructions which do not change the frames.
+        MethodNode inserted = methodNode.copy();
+        assertSameResult(
+            classNode.name,
+            inserted,
+            () -> {
+              InsnList insnList = new InsnList();
+              insnList.add(new InsnNode(NOP));
+              insnList.add(new InsnNode(NOP));
+              inserted.instructions.insert(inserted.instructions.get(index), insnList);
+            });
+
+        // Removes an instruction.
+        MethodNode removed = methodNode.copy();
+        assertSameResult(
+            classNode.name,
+            removed,
+            () -> removed.instructions.remove(removed.instructions.get(index)));
+
+        // Replaces an instruction with a POP.
+        MethodNode replaced = methodNode.copy();
+        assertSameResult(
+            classNode.name,
+            replaced,
+            () -> replaced.instructions.set(replaced.instructions.get(index), new InsnNode(POP)));
+      }
+    }
+  }
+
+  /** Tests that only the instructions reachable from the changed ones are executed again. */
+  @Test
+  public void testReanalyzeOnlyAffectedInstructions() throws AnalyzerException {
+    MethodNode methodNode = new MethodNode(ACC_STATIC, "m", "(I)I", null, null);
+    Label label = new Label();
+    methodNode.visitCode();
+    for (int i = 0; i < 10; ++i) {
+      methodNode.visitIincInsn(0, 1);
+    }
+    methodNode.visitVarInsn(ILOAD, 0);
+    methodNode.visitJumpInsn(IFEQ, label);
+    methodNode.visitVarInsn(ILOAD, 0);
+    methodNode.visitInsn(IRETURN);
+    methodNode.visitLabel(label);
+    methodNode.visitInsn(ICONST_0);
+    methodNode.visitInsn(IRETURN);
+    methodNode.visitMaxs(1, 2);
+    methodNode.visitEnd();
+
+    int[] executions = new int[1];
+    Analyzer<BasicValue> analyzer = new Analyzer<BasicValue>(new BasicInterpreter());
+    analyzer.setListener(
+        (owner, method, iterations, executionCount, merges) -> executions[0] = executionCount);
+    AbstractInsnNode[] previousInsns = methodNode.instructions.toArray();
+    Frame<BasicValue>[] previousFrames = analyzer.analyze("C", methodNode);
+    assertEquals(16, executions[0]);
+
+    VarInsnNode iload = (VarInsnNode) methodNode.instructions.get(12);
+    iload.var = 1;
+    methodNode.instructions.insert(iload, new InsnNode(NOP));
+    List<AbstractInsnNode> modifiedInsns = Collections.<AbstractInsnNode>singletonList(iload);
+    Frame<BasicValue>[] frames =
+        analyzer.reanalyze("C", methodNode, previousInsns, previousFrames, modifiedInsns);
+
+    assertEquals(4, executions[0]);
+    assertSame(previousFrames[15], frames[16]);
+    assertSame(previousFrames[5], frames[5]);
+    assertEquals(BasicValue.UNINITIALIZED_VALUE, frames[13].getStack(0));
+  }
+
+  /**
+   * Tests that the previous successors of an instruction modified in place are analyzed again, even
+   * if they are no longer its successors.
+   */
+  @Test
+  public void testReanalyzeAfterRemovingAnEdge() throws AnalyzerException {
+    MethodNode methodNode = new MethodNode(ACC_STATIC, "m", "(I)I", null, null);
+    Label label = new Label();
+    methodNode.visitCode();
+    methodNode.visitVarInsn(ILOAD, 0);
+    methodNode.visitJumpInsn(IFEQ, label);
+    methodNode.visitInsn(ICONST_1);
+    methodNode.visitInsn(IRETURN);
+    methodNode.visitLabel(label);
+    methodNode.visitInsn(ICONST_0);
+    methodNode.visitInsn(IRETURN);
+    methodNode.visitMaxs(1, 1);
+    methodNode.visitEnd();
+
+    Analyzer<BasicValue> analyzer = new Analyzer<BasicValue>(new BasicVerifier());
+    AbstractInsnNode[] previousInsns = methodNode.instructions.toArray();
+    Frame<BasicValue>[] previousFrames = analyzer.analyze("C", methodNode);
+
+    JumpInsnNode jump = (JumpInsnNode) methodNode.instructions.get(1);
+    methodNode.instructions.set(methodNode.instructions.get(0), new InsnNode(NOP));
+    jump.setOpcode(GOTO);
+    List<AbstractInsnNode> modifiedInsns = Collections.<AbstractInsnNode>singletonList(jump);
+    Frame<BasicValue>[] frames =
+        analyzer.reanalyze("C", methodNode, previousInsns, previousFrames, modifiedInsns);
+
+    Frame<BasicValue>[] expectedFrames =
+        new Analyzer<BasicValue>(new BasicVerifier()).analyze("C", methodNode);
+    assertNull(expectedFrames[2]);
+    assertEquals(expectedFrames.length, frames.length);
+    for (int i = 0; i < frames.length; ++i) {
+      assertEquals(String.valueOf(expectedFrames[i]), String.valueOf(frames[i]));
+    }
+  }
+
+  private interface Edit {
+    void apply();
+  }
+
+  private static void assertSameResult(
+      final String owner, final MethodNode methodNode, final Edit edit)
+      throws AnalyzerException {
+    Analyzer<BasicValue> analyzer = new Analyzer<BasicValue>(new BasicVerifier());
+    AbstractInsnNode[] previousInsns = methodNode.instructions.toArray();
+    Frame<BasicValue>[] previousFrames;
+    try {
+      previousFrames = analyzer.analyze(owner, methodNode);
+    } catch (AnalyzerException e) {
+      return;
+    }
+    edit.apply();
+
+    Frame<BasicValue>[] expectedFrames = null;
+    try {
+      expectedFrames = new Analyzer<BasicValue>(new BasicVerifier()).analyze(owner, methodNode);
+    } catch (AnalyzerException e) {
+      expectedFrames = null;
+    }
+    Frame<BasicValue>[] frames = null;
+    try {
+      frames =
+          analyzer.reanalyze(
+              owner,
+              methodNode,
+              previousInsns,
+              previousFrames,
+              Collections.<AbstractInsnNode>emptyList());
+    } catch (AnalyzerException e) {
+      frames = null;
+    }
+    assertEquals(expectedFrames == null, frames == null);
+    if (frames != null) {
+      assertEquals(expectedFrames.length, frames.length);
+      for (int i = 0; i < frames.length; ++i) {
+        assertEquals(String.valueOf(expectedFrames[i]), String.valueOf(frames[i]));
+      }
+    }
+  }
+}
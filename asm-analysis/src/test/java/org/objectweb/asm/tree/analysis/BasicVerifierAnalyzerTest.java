@@ -0,0 +1,170 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/** BasicVerifierAnalyzer tests. */
+public class BasicVerifierAnalyzerTest extends AsmTest implements Opcodes {
+
+  /**
+   * Tests that the frames computed by a BasicVerifierAnalyzer are the same as those computed by an
+   * Analyzer with a BasicVerifier.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testAnalyze(PrecompiledClass classParameter, Api apiParameter) {
+    ClassNode classNode = new ClassNode();
+    new ClassReader(classParameter.getBytes()).accept(classNode, 0);
+    for (MethodNode methodNode : classNode.methods) {
+      assertSameResult(classNode.name, methodNode);
+    }
+  }
+
+  /**
+   * Tests that the errors found by a BasicVerifierAnalyzer are the same as those found by an
+   * Analyzer with a BasicVerifier, on invalid methods obtained by removing an instruction or by
+   * replacing it with another one.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testAnalyzeInvalidCode(PrecompiledClass classParameter, Api apiParameter) {
+    ClassNode classNode = new ClassNode();
+    new ClassReader(classParameter.getBytes()).accept(classNode, 0);
+    int[] replacements = {POP, POP2, DUP, DUP_X2, DUP2_X1, SWAP, LADD, I2D, ARETURN, ATHROW};
+    for (MethodNode methodNode : classNode.methods) {
+      int size = methodNode.instructions.size();
+      for (int i = 0; i < size; i += 1 + size / 16) {
+        MethodNode removed = methodNode.copy();
+        removed.instructions.remove(removed.instructions.get(i));
+        assertSameResult(classNode.name, removed);
+
+        MethodNode replaced = methodNode.copy();
+        AbstractInsnNode insn = replaced.instructions.get(i);
+        if (insn.getOpcode() >= 0) {
+          InsnNode replacement = new InsnNode(replacements[i % replacements.length]);
+          replaced.instructions.set(insn, replacement);
+          assertSameResult(classNode.name, replaced);
+        }
+      }
+    }
+  }
+
+  /** Tests the messages of some errors. */
+  @Test
+  public void testErrorMessages() {
+    assertEquals(
+        "Error at instruction 1: Incompatible return type: expected null, but found I",
+        getErrorMessage("()V", 1, ICONST_0, IRETURN));
+    assertEquals(
+        "Error at instruction 2: Second argument: expected J, but found I",
+        getErrorMessage("()V", 2, LCONST_0, ICONST_0, LADD));
+    assertEquals(
+        "Error at instruction 0: Insufficient maximum stack size.",
+        getErrorMessage("()V", 0, ACONST_NULL));
+    assertEquals(
+        "Error at instruction 1: Illegal use of POP", getErrorMessage("()V", 2, DCONST_0, POP));
+  }
+
+  /** Tests that the frames contain the constant BasicValue instances. */
+  @Test
+  public void testFrameValues() throws AnalyzerException {
+    MethodNode methodNode = new MethodNode(ACC_STATIC, "m", "(JLjava/lang/Object;)J", null, null);
+    methodNode.visitCode();
+    methodNode.visitVarInsn(LLOAD, 0);
+    methodNode.visitInsn(LRETURN);
+    methodNode.visitMaxs(2, 3);
+    methodNode.visitEnd();
+
+    Frame<BasicValue>[] frames = new BasicVerifierAnalyzer().analyze("C", methodNode);
+
+    assertSame(BasicValue.LONG_VALUE, frames[0].getLocal(0));
+    assertSame(BasicValue.UNINITIALIZED_VALUE, frames[0].getLocal(1));
+    assertSame(BasicValue.REFERENCE_VALUE, frames[0].getLocal(2));
+    assertSame(BasicValue.LONG_VALUE, frames[1].getStack(0));
+    assertEquals(2, frames[1].getMaxStackSize());
+  }
+
+  private static String getErrorMessage(
+      final String desc, final int maxStack, final int... opcodes) {
+    MethodNode methodNode = new MethodNode(ACC_STATIC, "m", desc, null, null);
+    methodNode.visitCode();
+    for (int opcode : opcodes) {
+      methodNode.visitInsn(opcode);
+    }
+    methodNode.visitInsn(RETURN);
+    methodNode.visitMaxs(maxStack, 0);
+    methodNode.visitEnd();
+    assertSameResult("C", methodNode);
+    return assertThrows(
+            AnalyzerException.class, () -> new BasicVerifierAnalyzer().analyze("C", methodNode))
+        .getMessage();
+  }
+
+  private static void assertSameResult(final String owner, final MethodNode methodNode) {
+    Frame<BasicValue>[] expectedFrames = null;
+    String expectedError = null;
+    try {
+      expectedFrames = new Analyzer<BasicValue>(new BasicVerifier()).analyze(owner, methodNode);
+    } catch (AnalyzerException e) {
+      expectedError = e.getMessage();
+    }
+    Frame<BasicValue>[] frames = null;
+    String error = null;
+    try {
+      frames = new BasicVerifierAnalyzer().analyze(owner, methodNode);
+    } catch (AnalyzerException e) {
+      error = e.getMessage();
+    }
+    assertEquals(expectedError, error);
+    if (expectedFrames != null) {
+      assertEquals(expectedFrames.length, frames.length);
+      for (int i = 0; i < frames.length; ++i) {
+        if (expectedFrames[i] == null) {
+          assertNull(frames[i]);
+        } else {
+          assertEquals(expectedFrames[i].toString(), frames[i].toString());
+        }
+      }
+    }
+  }
+}
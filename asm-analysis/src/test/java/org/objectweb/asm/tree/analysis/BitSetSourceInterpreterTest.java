@@ -0,0 +1,127 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/** BitSetSourceInterpreter tests. */
+public class BitSetSourceInterpreterTest extends AsmTest implements Opcodes {
+
+  /**
+   * Tests that the frames computed with a BitSetSourceInterpreter are equal to those computed with
+   * a SourceInterpreter.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testAnalyze(PrecompiledClass classParameter, Api apiParameter)
+      throws AnalyzerException {
+    ClassNode classNode = new ClassNode();
+    new ClassReader(classParameter.getBytes()).accept(classNode, 0);
+    for (MethodNode methodNode : classNode.methods) {
+      Frame<SourceValue>[] expectedFrames =
+          new Analyzer<SourceValue>(new SourceInterpreter()).analyze(classNode.name, methodNode);
+      Frame<SourceValue>[] frames =
+          new Analyzer<SourceValue>(new BitSetSourceInterpreter(methodNode.instructions))
+              .analyze(classNode.name, methodNode);
+      for (int i = 0; i < frames.length; ++i) {
+        if (expectedFrames[i] == null) {
+          assertNull(frames[i]);
+          continue;
+        }
+        for (int j = 0; j < frames[i].getLocals(); ++j) {
+          assertEquals(expectedFrames[i].getLocal(j), frames[i].getLocal(j));
+        }
+        for (int j = 0; j < frames[i].getStackSize(); ++j) {
+          assertEquals(expectedFrames[i].getStack(j), frames[i].getStack(j));
+        }
+      }
+    }
+  }
+
+  /** Tests that equal merged values are shared. */
+  @Test
+  public void testSharedMergedValues() throws AnalyzerException {
+    MethodNode methodNode = new MethodNode(ACC_STATIC, "m", "(I)V", null, null);
+    Label label = new Label();
+    Label join1 = new Label();
+    Label join2 = new Label();
+    methodNode.visitCode();
+    methodNode.visitVarInsn(ILOAD, 0);
+    methodNode.visitJumpInsn(IFEQ, label);
+    methodNode.visitInsn(ICONST_0);
+    methodNode.visitVarInsn(ISTORE, 1);
+    methodNode.visitVarInsn(ILOAD, 0);
+    methodNode.visitJumpInsn(IFNE, join2);
+    methodNode.visitJumpInsn(GOTO, join1);
+    methodNode.visitLabel(label);
+    methodNode.visitInsn(ICONST_1);
+    methodNode.visitVarInsn(ISTORE, 1);
+    methodNode.visitVarInsn(ILOAD, 0);
+    methodNode.visitJumpInsn(IFNE, join2);
+    methodNode.visitLabel(join1);
+    methodNode.visitInsn(RETURN);
+    methodNode.visitLabel(join2);
+    methodNode.visitInsn(RETURN);
+    methodNode.visitMaxs(1, 2);
+    methodNode.visitEnd();
+
+    Frame<SourceValue>[] frames =
+        new Analyzer<SourceValue>(new BitSetSourceInterpreter(methodNode.instructions))
+            .analyze("C", methodNode);
+
+    SourceValue value1 = frames[12].getLocal(1);
+    SourceValue value2 = frames[14].getLocal(1);
+    assertSame(value1, value2);
+    assertEquals(
+        new HashSet<AbstractInsnNode>(
+            Arrays.asList(methodNode.instructions.get(3), methodNode.instructions.get(9))),
+        value1.insns);
+    assertTrue(value1.insns.contains(methodNode.instructions.get(9)));
+    assertFalse(value1.insns.contains(methodNode.instructions.get(8)));
+    assertFalse(value1.insns.contains(new InsnNode(NOP)));
+  }
+}
@@ -0,0 +1,140 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/** BlockAnalyzer tests. */
+public class BlockAnalyzerTest extends AsmTest implements Opcodes {
+
+  /**
+   * Tests that the frames computed by a BlockAnalyzer are the same as those computed by an
+   * Analyzer.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testAnalyze(PrecompiledClass classParameter, Api apiParameter)
+      throws AnalyzerException {
+    ClassNode classNode = new ClassNode();
+    new ClassReader(classParameter.getBytes()).accept(classNode, 0);
+    for (MethodNode methodNode : classNode.methods) {
+      assertSameFrames(new BasicVerifier(), classNode.name, methodNode);
+      assertSameFrames(new SourceInterpreter(), classNode.name, methodNode);
+    }
+  }
+
+  /** Tests that only the frames of the basic blocks which can be reached are computed. */
+  @Test
+  public void testDeadCode() throws AnalyzerException {
+    MethodNode methodNode = new MethodNode(ACC_STATIC, "m", "(I)I", null, null);
+    Label label = new Label();
+    methodNode.visitCode();
+    methodNode.visitVarInsn(ILOAD, 0);
+    methodNode.visitJumpInsn(IFEQ, label);
+    methodNode.visitInsn(ICONST_1);
+    methodNode.visitInsn(IRETURN);
+    methodNode.visitInsn(NOP);
+    methodNode.visitInsn(NOP);
+    methodNode.visitLabel(label);
+    methodNode.visitVarInsn(ILOAD, 0);
+    methodNode.visitInsn(IRETURN);
+    methodNode.visitMaxs(1, 1);
+    methodNode.visitEnd();
+
+    BlockAnalyzer<BasicValue> analyzer = new BlockAnalyzer<BasicValue>(new BasicInterpreter());
+    analyzer.analyze("C", methodNode);
+
+    assertEquals(4, analyzer.getBlockCount());
+    assertEquals(1, analyzer.getFrame(3).getStackSize());
+    assertNull(analyzer.getFrame(5));
+    assertEquals(0, analyzer.getFrame(6).getStackSize());
+    assertEquals(BasicValue.INT_VALUE, analyzer.getFrame(8).getStack(0));
+  }
+
+  /** Tests that the analysis errors are reported as with an Analyzer. */
+  @Test
+  public void testAnalyzeWithError() {
+    MethodNode methodNode = new MethodNode(ACC_STATIC, "m", "()V", null, null);
+    methodNode.visitCode();
+    methodNode.visitInsn(NOP);
+    methodNode.visitInsn(POP);
+    methodNode.visitInsn(RETURN);
+    methodNode.visitMaxs(1, 0);
+    methodNode.visitEnd();
+
+    AnalyzerException exception =
+        assertThrows(
+            AnalyzerException.class,
+            () -> new BlockAnalyzer<BasicValue>(new BasicVerifier()).analyze("C", methodNode));
+    assertTrue(exception.getMessage().startsWith("Error at instruction 1: "));
+    assertEquals(methodNode.instructions.get(1), exception.node);
+  }
+
+  private static <V extends Value> void assertSameFrames(
+      final Interpreter<V> interpreter, final String owner, final MethodNode methodNode)
+      throws AnalyzerException {
+    Frame<V>[] expectedFrames = new Analyzer<V>(interpreter).analyze(owner, methodNode);
+    BlockAnalyzer<V> analyzer = new BlockAnalyzer<V>(interpreter);
+    analyzer.analyze(owner, methodNode);
+    Frame<V>[] frames = analyzer.getFrames();
+    assertEquals(expectedFrames.length, frames.length);
+    for (int i = 0; i < frames.length; ++i) {
+      assertSameFrame(expectedFrames[i], frames[i]);
+      assertSameFrame(expectedFrames[i], analyzer.getFrame(i));
+    }
+  }
+
+  private static <V extends Value> void assertSameFrame(
+      final Frame<V> expectedFrame, final Frame<V> frame) {
+    if (expectedFrame == null) {
+      assertNull(frame);
+      return;
+    }
+    assertEquals(expectedFrame.getLocals(), frame.getLocals());
+    assertEquals(expectedFrame.getStackSize(), frame.getStackSize());
+    for (int i = 0; i < frame.getLocals(); ++i) {
+      assertEquals(expectedFrame.getLocal(i), frame.getLocal(i));
+    }
+    for (int i = 0; i < frame.getStackSize(); ++i) {
+      assertEquals(expectedFrame.getStack(i), frame.getStack(i));
+    }
+  }
+}
@@ -0,0 +1,264 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/** ControlFlowGraph tests. */
+public class ControlFlowGraphTest extends AsmTest implements Opcodes {
+
+  /**
+   * Tests that the control flow graph contains the control flow edges found by an Analyzer, and
+   * that its dominators and loops are consistent with their definition.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testControlFlowGraph(PrecompiledClass classParameter, Api apiParameter)
+      throws AnalyzerException {
+    ClassNode classNode = new ClassNode();
+    new ClassReader(classParameter.getBytes()).accept(classNode, 0);
+    for (MethodNode methodNode : classNode.methods) {
+      ControlFlowGraph graph = new ControlFlowGraph(methodNode);
+      assertBlocks(methodNode, graph);
+      assertEdges(classNode.name, methodNode, graph);
+      if (graph.getBlockCount() <= 256) {
+        assertDominators(graph);
+      }
+      assertLoops(graph);
+    }
+  }
+
+  /** Tests the basic blocks, dominators and loops of a method with two nested loops. */
+  @Test
+  public void testNestedLoops() {
+    MethodNode methodNode = new MethodNode(ACC_STATIC, "m", "()V", null, null);
+    Label outerLoop = new Label();
+    Label innerLoop = new Label();
+    Label innerLoopEnd = new Label();
+    Label outerLoopEnd = new Label();
+    methodNode.visitCode();
+    methodNode.visitInsn(ICONST_0);
+    methodNode.visitVarInsn(ISTORE, 0);
+    methodNode.visitLabel(outerLoop);
+    methodNode.visitVarInsn(ILOAD, 0);
+    methodNode.visitJumpInsn(IFEQ, outerLoopEnd);
+    methodNode.visitInsn(ICONST_0);
+    methodNode.visitVarInsn(ISTORE, 1);
+    methodNode.visitLabel(innerLoop);
+    methodNode.visitVarInsn(ILOAD, 1);
+    methodNode.visitJumpInsn(IFEQ, innerLoopEnd);
+    methodNode.visitIincInsn(1, 1);
+    methodNode.visitJumpInsn(GOTO, innerLoop);
+    methodNode.visitLabel(innerLoopEnd);
+    methodNode.visitIincInsn(0, 1);
+    methodNode.visitJumpInsn(GOTO, outerLoop);
+    methodNode.visitLabel(outerLoopEnd);
+    methodNode.visitInsn(RETURN);
+    methodNode.visitInsn(NOP);
+    methodNode.visitInsn(RETURN);
+    methodNode.visitMaxs(1, 2);
+    methodNode.visitEnd();
+
+    ControlFlowGraph graph = new ControlFlowGraph(methodNode);
+
+    assertEquals(8, graph.getBlockCount());
+    int[] blockStarts = new int[graph.getBlockCount()];
+    for (int block = 0; block < blockStarts.length; ++block) {
+      blockStarts[block] = graph.getBlockStart(block);
+    }
+    assertArrayEquals(new int[] {0, 2, 5, 7, 10, 12, 15, 17}, blockStarts);
+    assertArrayEquals(new int[] {2, 6}, graph.getSuccessors(1));
+    assertArrayEquals(new int[] {0, 5}, graph.getPredecessors(1));
+    assertArrayEquals(new int[] {2, 4}, graph.getPredecessors(3));
+    assertEquals(1, graph.getImmediateDominator(6));
+    assertEquals(3, graph.getImmediateDominator(5));
+    assertEquals(-1, graph.getImmediateDominator(0));
+    assertTrue(graph.dominates(2, 4));
+    assertFalse(graph.dominates(4, 5));
+    assertFalse(graph.isReachable(7));
+    assertEquals(-1, graph.getImmediateDominator(7));
+    assertFalse(graph.dominates(0, 7));
+
+    assertEquals(2, graph.getLoopCount());
+    assertEquals(1, graph.getLoopHeader(0));
+    assertEquals(-1, graph.getParentLoop(0));
+    assertEquals(3, graph.getLoopHeader(1));
+    assertEquals(0, graph.getParentLoop(1));
+    int[] blockLoops = new int[graph.getBlockCount()];
+    for (int block = 0; block < blockLoops.length; ++block) {
+      blockLoops[block] = graph.getLoop(block);
+    }
+    assertArrayEquals(new int[] {-1, 0, 0, 1, 1, 0, -1, -1}, blockLoops);
+    assertEquals(2, graph.getLoopDepth(4));
+    assertTrue(graph.isInLoop(0, 4));
+    assertFalse(graph.isInLoop(1, 5));
+  }
+
+  /** Tests that a method without code has an empty control flow graph. */
+  @Test
+  public void testAbstractMethod() {
+    MethodNode methodNode = new MethodNode(ACC_ABSTRACT, "m", "()V", null, null);
+
+    ControlFlowGraph graph = new ControlFlowGraph(methodNode);
+
+    assertEquals(0, graph.getBlockCount());
+    assertEquals(0, graph.getLoopCount());
+  }
+
+  private static void assertBlocks(final MethodNode methodNode, final ControlFlowGraph graph) {
+    int n = methodNode.instructions.size();
+    int insn = 0;
+    for (int block = 0; block < graph.getBlockCount(); ++block) {
+      assertEquals(insn, graph.getBlockStart(block));
+      assertTrue(graph.getBlockEnd(block) > insn);
+      for (; insn < graph.getBlockEnd(block); ++insn) {
+        assertEquals(block, graph.getBlock(insn));
+      }
+    }
+    assertEquals(n, insn);
+  }
+
+  private static void assertEdges(
+      final String owner, final MethodNode methodNode, final ControlFlowGraph graph)
+      throws AnalyzerException {
+    new Analyzer<BasicValue>(new BasicInterpreter()) {
+      @Override
+      protected void newControlFlowEdge(final int insn, final int successor) {
+        if (methodNode.instructions.get(insn).getOpcode() == RET) {
+          return;
+        }
+        int block = graph.getBlock(insn);
+        int successorBlock = graph.getBlock(successor);
+        if (successor != insn + 1 || successorBlock != block) {
+          assertEquals(graph.getBlockEnd(block) - 1, insn);
+          assertEdge(block, successorBlock, successor);
+        }
+      }
+
+      @Override
+      protected boolean newControlFlowExceptionEdge(final int insn, final int successor) {
+        assertEdge(graph.getBlock(insn), graph.getBlock(successor), successor);
+        return true;
+      }
+
+      private void assertEdge(final int block, final int successorBlock, final int successor) {
+        assertEquals(graph.getBlockStart(successorBlock), successor);
+        assertTrue(Arrays.binarySearch(graph.getSuccessors(block), successorBlock) >= 0);
+        assertTrue(Arrays.binarySearch(graph.getPredecessors(successorBlock), block) >= 0);
+      }
+    }.analyze(owner, methodNode);
+  }
+
+  /** Compares the dominators with those computed by a naive iterative dataflow algorithm. */
+  private static void assertDominators(final ControlFlowGraph graph) {
+    int blockCount = graph.getBlockCount();
+    boolean[][] dominators = new boolean[blockCount][blockCount];
+    for (int block = 0; block < blockCount; ++block) {
+      Arrays.fill(dominators[block], block != 0);
+      dominators[block][block] = true;
+    }
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int block = 1; block < blockCount; ++block) {
+        if (!graph.isReachable(block)) {
+          continue;
+        }
+        for (int dominator = 0; dominator < blockCount; ++dominator) {
+          if (dominator == block || !dominators[block][dominator]) {
+            continue;
+          }
+          for (int predecessor : graph.getPredecessors(block)) {
+            if (graph.isReachable(predecessor) && !dominators[predecessor][dominator]) {
+              dominators[block][dominator] = false;
+              changed = true;
+              break;
+            }
+          }
+        }
+      }
+    }
+    for (int block = 0; block < blockCount; ++block) {
+      int immediateDominator = graph.getImmediateDominator(block);
+      for (int dominator = 0; dominator < blockCount; ++dominator) {
+        boolean expected = graph.isReachable(block) && dominators[block][dominator];
+        assertEquals(expected, graph.dominates(dominator, block));
+      }
+      if (immediateDominator != -1) {
+        assertTrue(graph.dominates(immediateDominator, block));
+        for (int dominator = 0; dominator < blockCount; ++dominator) {
+          if (dominator != block && graph.dominates(dominator, block)) {
+            assertTrue(graph.dominates(dominator, immediateDominator));
+          }
+        }
+      } else {
+        assertTrue(block == 0 || !graph.isReachable(block));
+      }
+    }
+  }
+
+  private static void assertLoops(final ControlFlowGraph graph) {
+    for (int loop = 0; loop < graph.getLoopCount(); ++loop) {
+      int header = graph.getLoopHeader(loop);
+      assertEquals(loop, graph.getLoop(header));
+      int parent = graph.getParentLoop(loop);
+      if (parent != -1) {
+        assertTrue(parent < loop);
+        assertTrue(graph.isInLoop(parent, header));
+        assertTrue(graph.dominates(graph.getLoopHeader(parent), header));
+      }
+    }
+    for (int block = 0; block < graph.getBlockCount(); ++block) {
+      int loop = graph.getLoop(block);
+      if (loop != -1) {
+        assertTrue(graph.dominates(graph.getLoopHeader(loop), block));
+      }
+      for (int successor : graph.getSuccessors(block)) {
+        if (graph.dominates(successor, block)) {
+          assertTrue(graph.isInLoop(graph.getLoop(successor), block));
+          assertEquals(successor, graph.getLoopHeader(graph.getLoop(successor)));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,106 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+/** ExceptionHandlers tests. */
+public class ExceptionHandlersTest extends AsmTest {
+
+  /** Tests the handlers of instructions covered by overlapping try catch blocks. */
+  @Test
+  public void testOverlappingTryCatchBlocks() {
+    InsnList insns = new InsnList();
+    LabelNode[] labels = new LabelNode[6];
+    for (int i = 0; i < labels.length; ++i) {
+      labels[i] = new LabelNode();
+      insns.add(labels[i]);
+      insns.add(new InsnNode(Opcodes.NOP));
+    }
+    TryCatchBlockNode tcb1 = new TryCatchBlockNode(labels[1], labels[4], labels[5], null);
+    TryCatchBlockNode tcb2 = new TryCatchBlockNode(labels[0], labels[2], labels[5], "E");
+    TryCatchBlockNode tcb3 = new TryCatchBlockNode(labels[2], labels[4], labels[5], "F");
+
+    ExceptionHandlers handlers = new ExceptionHandlers(insns, Arrays.asList(tcb1, tcb2, tcb3));
+
+    assertEquals(Arrays.asList(tcb2), handlers.get(0));
+    assertEquals(Arrays.asList(tcb2), handlers.get(1));
+    assertEquals(Arrays.asList(tcb1, tcb2), handlers.get(2));
+    assertEquals(Arrays.asList(tcb1, tcb3), handlers.get(4));
+    assertSame(handlers.get(4), handlers.get(7));
+    assertNull(handlers.get(8));
+    assertNull(handlers.get(11));
+  }
+
+  /**
+   * Tests that the handlers of each instruction of the precompiled classes are the try catch blocks
+   * covering this instruction, in order.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testGet(PrecompiledClass classParameter, Api apiParameter) {
+    ClassNode classNode = new ClassNode();
+    new ClassReader(classParameter.getBytes()).accept(classNode, 0);
+    for (MethodNode methodNode : classNode.methods) {
+      InsnList insns = methodNode.instructions;
+      ExceptionHandlers handlers = new ExceptionHandlers(insns, methodNode.tryCatchBlocks);
+      for (int i = 0; i < insns.size(); ++i) {
+        List<TryCatchBlockNode> expectedHandlers = new ArrayList<TryCatchBlockNode>();
+        for (TryCatchBlockNode tcb : methodNode.tryCatchBlocks) {
+          if (insns.indexOf(tcb.start) <= i && i < insns.indexOf(tcb.end)) {
+            expectedHandlers.add(tcb);
+          }
+        }
+        if (expectedHandlers.isEmpty()) {
+          assertNull(handlers.get(i));
+        } else {
+          assertEquals(expectedHandlers, handlers.get(i));
+        }
+      }
+    }
+  }
+}
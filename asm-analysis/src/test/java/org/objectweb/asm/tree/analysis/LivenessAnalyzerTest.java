@@ -0,0 +1,203 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/** LivenessAnalyzer tests. */
+public class LivenessAnalyzerTest extends AsmTest implements Opcodes {
+
+  /**
+   * Tests that the live variables of the reachable instructions are the same as those computed
+   * with a naive iterative algorithm, on the control flow edges found by an Analyzer.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testAnalyze(PrecompiledClass classParameter, Api apiParameter)
+      throws AnalyzerException {
+    ClassNode classNode = new ClassNode();
+    new ClassReader(classParameter.getBytes()).accept(classNode, 0);
+    for (MethodNode methodNode : classNode.methods) {
+      assertSameLiveVariables(classNode.name, methodNode);
+    }
+  }
+
+  /** Tests that dead stores and live variables are found, including in exception handlers. */
+  @Test
+  public void testLiveVariables() {
+    MethodNode methodNode = new MethodNode(ACC_STATIC, "m", "(J)I", null, null);
+    Label start = new Label();
+    Label end = new Label();
+    Label handler = new Label();
+    methodNode.visitCode();
+    methodNode.visitTryCatchBlock(start, end, handler, null);
+    methodNode.visitInsn(ICONST_0);
+    methodNode.visitVarInsn(ISTORE, 2);
+    methodNode.visitInsn(ICONST_1);
+    methodNode.visitVarInsn(ISTORE, 2);
+    methodNode.visitInsn(ICONST_2);
+    methodNode.visitVarInsn(ISTORE, 3);
+    methodNode.visitLabel(start);
+    methodNode.visitVarInsn(LLOAD, 0);
+    methodNode.visitInsn(L2I);
+    methodNode.visitVarInsn(ILOAD, 2);
+    methodNode.visitInsn(IDIV);
+    methodNode.visitInsn(IRETURN);
+    methodNode.visitLabel(end);
+    methodNode.visitLabel(handler);
+    methodNode.visitInsn(POP);
+    methodNode.visitVarInsn(ILOAD, 3);
+    methodNode.visitInsn(IRETURN);
+    methodNode.visitMaxs(2, 4);
+    methodNode.visitEnd();
+
+    LivenessAnalyzer analyzer = new LivenessAnalyzer();
+    analyzer.analyze(methodNode);
+
+    assertFalse(analyzer.isLiveOut(1, 2));
+    assertTrue(analyzer.isLiveOut(3, 2));
+    assertTrue(analyzer.isLiveOut(5, 3));
+    assertTrue(analyzer.isLiveIn(0, 0));
+    assertTrue(analyzer.isLiveIn(0, 1));
+    assertFalse(analyzer.isLiveIn(0, 2));
+    assertTrue(analyzer.isLiveIn(10, 3));
+    assertFalse(analyzer.isLiveOut(10, 2));
+    assertFalse(analyzer.isLiveIn(14, 2));
+    assertTrue(analyzer.isLiveIn(14, 3));
+  }
+
+  /** Tests that the variables stored in a subroutine and used after it returns are live. */
+  @Test
+  public void testLiveVariablesInSubroutines() {
+    MethodNode methodNode = new MethodNode(ACC_STATIC, "m", "()I", null, null);
+    Label subroutine = new Label();
+    methodNode.visitCode();
+    methodNode.visitJumpInsn(JSR, subroutine);
+    methodNode.visitVarInsn(ILOAD, 0);
+    methodNode.visitInsn(IRETURN);
+    methodNode.visitLabel(subroutine);
+    methodNode.visitVarInsn(ASTORE, 1);
+    methodNode.visitInsn(ICONST_0);
+    methodNode.visitVarInsn(ISTORE, 0);
+    methodNode.visitInsn(ICONST_1);
+    methodNode.visitVarInsn(ISTORE, 2);
+    methodNode.visitVarInsn(RET, 1);
+    methodNode.visitMaxs(1, 3);
+    methodNode.visitEnd();
+
+    LivenessAnalyzer analyzer = new LivenessAnalyzer();
+    analyzer.analyze(methodNode);
+
+    assertTrue(analyzer.isLiveOut(4, 1));
+    assertTrue(analyzer.isLiveOut(6, 0));
+    assertTrue(analyzer.isLiveIn(9, 0));
+    assertFalse(analyzer.isLiveOut(8, 2));
+    assertFalse(analyzer.isLiveIn(0, 0));
+  }
+
+  private static void assertSameLiveVariables(final String owner, final MethodNode methodNode)
+      throws AnalyzerException {
+    int n = methodNode.instructions.size();
+    List<List<Integer>> successors = new ArrayList<List<Integer>>();
+    List<List<Integer>> handlers = new ArrayList<List<Integer>>();
+    for (int i = 0; i < n; ++i) {
+      successors.add(new ArrayList<Integer>());
+      handlers.add(new ArrayList<Integer>());
+    }
+    Frame<BasicValue>[] frames =
+        new Analyzer<BasicValue>(new BasicInterpreter()) {
+          @Override
+          protected void newControlFlowEdge(final int insn, final int successor) {
+            successors.get(insn).add(successor);
+          }
+
+          @Override
+          protected boolean newControlFlowExceptionEdge(final int insn, final int successor) {
+            handlers.get(insn).add(successor);
+            return true;
+          }
+        }.analyze(owner, methodNode);
+
+    LivenessAnalyzer analyzer = new LivenessAnalyzer();
+    int setSize = (methodNode.maxLocals + 63) >>> 6;
+    long[][] gens = new long[n][setSize];
+    long[][] kills = new long[n][setSize];
+    long[][] expectedIns = new long[n][setSize];
+    for (int i = 0; i < n; ++i) {
+      analyzer.transfer(methodNode.instructions.get(i), gens[i], kills[i]);
+    }
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int insn = n - 1; insn >= 0; --insn) {
+        for (int i = 0; i < setSize; ++i) {
+          long out = 0;
+          for (int successor : successors.get(insn)) {
+            out |= expectedIns[successor][i];
+          }
+          long in = gens[insn][i] | (out & ~kills[insn][i]);
+          for (int handler : handlers.get(insn)) {
+            in |= expectedIns[handler][i];
+          }
+          if (in != expectedIns[insn][i]) {
+            expectedIns[insn][i] = in;
+            changed = true;
+          }
+        }
+      }
+    }
+
+    analyzer.analyze(methodNode);
+    long[][] ins = analyzer.getIns();
+    for (int insn = 0; insn < n; ++insn) {
+      if (frames[insn] != null) {
+        assertArrayEquals(expectedIns[insn], ins[insn]);
+        assertArrayEquals(expectedIns[insn], analyzer.getIn(insn));
+        if (successors.get(insn).size() == 1) {
+          int successor = successors.get(insn).get(0);
+          assertArrayEquals(expectedIns[successor], analyzer.getOut(insn));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,165 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/** ParallelAnalyzer tests. */
+public class ParallelAnalyzerTest extends AsmTest implements Opcodes {
+
+  private ExecutorService executor;
+
+  @BeforeEach
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Tests that all the methods of the precompiled classes are analyzed, with the same results as
+   * with a sequential analysis.
+   */
+  @Test
+  public void testAnalyzeClasses() throws InterruptedException, AnalyzerException {
+    List<ClassNode> classNodes = new ArrayList<ClassNode>();
+    int methodCount = 0;
+    for (PrecompiledClass precompiledClass : PrecompiledClass.values()) {
+      ClassNode classNode = new ClassNode();
+      new ClassReader(precompiledClass.getBytes()).accept(classNode, 0);
+      classNodes.add(classNode);
+      methodCount += classNode.methods.size();
+    }
+    AtomicInteger analyzedMethodCount = new AtomicInteger();
+    ParallelAnalyzer<BasicValue> parallelAnalyzer =
+        new ParallelAnalyzer<BasicValue>(executor) {
+          @Override
+          protected Analyzer<BasicValue> newAnalyzer(final ClassNode classNode) {
+            return new Analyzer<BasicValue>(new BasicVerifier());
+          }
+
+          @Override
+          protected void methodAnalyzed(
+              final ClassNode classNode,
+              final MethodNode methodNode,
+              final Frame<BasicValue>[] frames) {
+            assertEquals(
+                (methodNode.access & (ACC_ABSTRACT | ACC_NATIVE)) != 0
+                    ? 0
+                    : methodNode.instructions.size(),
+                frames.length);
+            analyzedMethodCount.incrementAndGet();
+          }
+        };
+
+    List<AnalyzerException> errors = parallelAnalyzer.analyze(classNodes);
+
+    assertTrue(errors.isEmpty());
+    assertEquals(methodCount, analyzedMethodCount.get());
+  }
+
+  /** Tests that the errors are returned in method order, with the method names. */
+  @Test
+  public void testAnalyzeClassWithErrors() throws InterruptedException {
+    ClassNode classNode = new ClassNode();
+    classNode.visit(V1_5, ACC_PUBLIC, "C", null, "java/lang/Object", null);
+    for (int i = 0; i < 100; ++i) {
+      MethodNode methodNode =
+          (MethodNode) classNode.visitMethod(ACC_STATIC, "m" + i, "()V", null, null);
+      methodNode.visitCode();
+      if (i % 3 == 0) {
+        methodNode.visitInsn(POP);
+      }
+      methodNode.visitInsn(RETURN);
+      methodNode.visitMaxs(1, 0);
+      methodNode.visitEnd();
+    }
+    classNode.visitEnd();
+    List<ClassNode> analyzedClasses = new ArrayList<ClassNode>();
+    ParallelAnalyzer<BasicValue> parallelAnalyzer =
+        new ParallelAnalyzer<BasicValue>(executor) {
+          @Override
+          protected Analyzer<BasicValue> newAnalyzer(final ClassNode classNode) {
+            synchronized (analyzedClasses) {
+              analyzedClasses.add(classNode);
+            }
+            return new Analyzer<BasicValue>(new BasicVerifier());
+          }
+        };
+
+    List<AnalyzerException> errors = parallelAnalyzer.analyze(classNode);
+
+    assertEquals(34, errors.size());
+    for (int i = 0; i < errors.size(); ++i) {
+      assertTrue(errors.get(i).getMessage().startsWith("C.m" + 3 * i + "()V: "));
+      assertTrue(errors.get(i).node instanceof InsnNode);
+    }
+    assertEquals(100, analyzedClasses.size());
+  }
+
+  /** Tests that the runtime exceptions thrown during the analysis are propagated. */
+  @Test
+  public void testAnalyzeWithRuntimeException() {
+    ClassNode classNode = new ClassNode();
+    classNode.visit(V1_5, ACC_PUBLIC, "C", null, "java/lang/Object", null);
+    classNode.visitMethod(ACC_ABSTRACT, "m", "()V", null, null);
+    RuntimeException exception = new RuntimeException();
+    ParallelAnalyzer<BasicValue> parallelAnalyzer =
+        new ParallelAnalyzer<BasicValue>(executor) {
+          @Override
+          protected Analyzer<BasicValue> newAnalyzer(final ClassNode classNode) {
+            throw exception;
+          }
+        };
+
+    assertSame(
+        exception, assertThrows(RuntimeException.class, () -> parallelAnalyzer.analyze(classNode)));
+  }
+}
@@ -27,8 +27,11 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package org.objectweb.asm.tree.analysis;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.io.IOException;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -481,4 +484,29 @@ public class SimpleVerifierTest extends AsmTest implements Opcodes {
       analyzer.analyze(classNode.name, methodNode);
     }
   }
+
+  /**
+   * Tests that a SimpleVerifier using a TypeHierarchy computes the same frames as a SimpleVerifier
+   * using a ClassLoader.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testAnalyzeWithTypeHierarchy(PrecompiledClass classParameter, Api apiParameter)
+      throws AnalyzerException, IOException {
+    ClassNode classNode = new ClassNode();
+    new ClassReader(classParameter.getBytes()).accept(classNode, 0);
+    TypeHierarchy typeHierarchy = TypeHierarchyTest.newReflectionTypeHierarchy();
+    for (MethodNode methodNode : classNode.methods) {
+      Frame<BasicValue>[] expectedFrames =
+          new Analyzer<BasicValue>(new SimpleVerifier()).analyze(classNode.name, methodNode);
+      SimpleVerifier verifier = new SimpleVerifier();
+      verifier.setTypeHierarchy(typeHierarchy);
+      Frame<BasicValue>[] frames =
+          new Analyzer<BasicValue>(verifier).analyze(classNode.name, methodNode);
+      for (int i = 0; i < frames.length; ++i) {
+        assertEquals(String.valueOf(expectedFrames[i]), String.valueOf(frames[i]));
+      }
+    }
+    typeHierarchy.close();
+  }
 }
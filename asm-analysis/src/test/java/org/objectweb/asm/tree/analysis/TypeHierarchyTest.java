@@ -0,0 +1,200 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/** TypeHierarchy tests. */
+public class TypeHierarchyTest implements Opcodes {
+
+  private static final Class<?>[] CLASSES = {
+    Object.class,
+    String.class,
+    CharSequence.class,
+    Comparable.class,
+    Serializable.class,
+    Cloneable.class,
+    Number.class,
+    Integer.class,
+    Collection.class,
+    List.class,
+    RandomAccess.class,
+    AbstractList.class,
+    ArrayList.class,
+    int[].class,
+    long[].class,
+    int[][].class,
+    Object[].class,
+    Object[][].class,
+    String[].class,
+    Integer[][].class,
+    Number[][].class,
+    Serializable[].class,
+    Cloneable[][].class,
+    List[].class
+  };
+
+  /** Tests that the results of a TypeHierarchy are the same as those of the Class methods. */
+  @Test
+  public void testSameAsClass() throws IOException {
+    TypeHierarchy typeHierarchy = newReflectionTypeHierarchy();
+    for (Class<?> class1 : CLASSES) {
+      Type type1 = getType(class1);
+      assertEquals(class1.isInterface(), typeHierarchy.isInterface(type1));
+      Class<?> superClass = class1.getSuperclass();
+      assertEquals(
+          superClass == null ? null : Type.getType(superClass), typeHierarchy.getSuperClass(type1));
+      for (Class<?> class2 : CLASSES) {
+        Type type2 = getType(class2);
+        assertEquals(
+            class1.isAssignableFrom(class2),
+            typeHierarchy.isAssignableFrom(type1, type2));
+      }
+    }
+    typeHierarchy.close();
+  }
+
+  /** Tests that class files are searched in the class path, in order. */
+  @Test
+  public void testClassPath() throws IOException {
+    File directory = Files.createTempDirectory("TypeHierarchyTest").toFile();
+    File jar = new File(directory, "test.jar");
+    try {
+      writeClass(new File(directory, "p/A.class"), "p/A", "p/B", ACC_PUBLIC);
+      ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(jar));
+      zipOutputStream.putNextEntry(new ZipEntry("p/B.class"));
+      zipOutputStream.write(generateClass("p/B", "java/lang/Object", ACC_PUBLIC, "p/I"));
+      zipOutputStream.putNextEntry(new ZipEntry("p/I.class"));
+      zipOutputStream.write(
+          generateClass("p/I", "java/lang/Object", ACC_PUBLIC | ACC_INTERFACE | ACC_ABSTRACT));
+      zipOutputStream.putNextEntry(new ZipEntry("p/A.class"));
+      zipOutputStream.write(generateClass("p/A", "java/lang/Object", ACC_PUBLIC));
+      zipOutputStream.close();
+
+      TypeHierarchy typeHierarchy = new TypeHierarchy(directory, jar);
+      Type a = Type.getObjectType("p/A");
+      Type b = Type.getObjectType("p/B");
+      Type i = Type.getObjectType("p/I");
+      assertEquals(b, typeHierarchy.getSuperClass(a));
+      assertNull(typeHierarchy.getSuperClass(i));
+      assertTrue(typeHierarchy.isInterface(i));
+      assertFalse(typeHierarchy.isInterface(a));
+      assertTrue(typeHierarchy.isAssignableFrom(i, a));
+      assertTrue(typeHierarchy.isAssignableFrom(Type.getType("[Lp/I;"), Type.getType("[Lp/A;")));
+      assertFalse(typeHierarchy.isAssignableFrom(a, i));
+      assertThrows(
+          TypeNotPresentException.class,
+          () -> typeHierarchy.isAssignableFrom(a, Type.getObjectType("p/C")));
+      typeHierarchy.close();
+    } finally {
+      new File(directory, "p/A.class").delete();
+      new File(directory, "p").delete();
+      jar.delete();
+      directory.delete();
+    }
+  }
+
+  private static Type getType(final Class<?> c) {
+    return c.isArray() ? Type.getType(c.getName().replace('.', '/')) : Type.getType(c);
+  }
+
+  /**
+   * Returns a TypeHierarchy whose class files are generated from the classes of the system class
+   * loader, so that the tests do not depend on the class file version of the JDK classes.
+   */
+  static TypeHierarchy newReflectionTypeHierarchy() throws IOException {
+    return new TypeHierarchy() {
+      @Override
+      protected InputStream getClassFile(final String internalName) {
+        Class<?> c;
+        try {
+          c =
+              Class.forName(
+                  internalName.replace('/', '.'), false, ClassLoader.getSystemClassLoader());
+        } catch (ClassNotFoundException e) {
+          return null;
+        }
+        Class<?>[] interfaces = c.getInterfaces();
+        String[] interfaceNames = new String[interfaces.length];
+        for (int i = 0; i < interfaces.length; ++i) {
+          interfaceNames[i] = Type.getInternalName(interfaces[i]);
+        }
+        String superName;
+        if (c.isInterface()) {
+          superName = "java/lang/Object";
+        } else {
+          superName = c.getSuperclass() == null ? null : Type.getInternalName(c.getSuperclass());
+        }
+        int access = c.isInterface() ? ACC_INTERFACE | ACC_ABSTRACT : 0;
+        return new ByteArrayInputStream(
+            generateClass(internalName, superName, access, interfaceNames));
+      }
+    };
+  }
+
+  private static void writeClass(
+      final File file, final String name, final String superName, final int access)
+      throws IOException {
+    file.getParentFile().mkdirs();
+    FileOutputStream outputStream = new FileOutputStream(file);
+    outputStream.write(generateClass(name, superName, access));
+    outputStream.close();
+  }
+
+  private static byte[] generateClass(
+      final String name, final String superName, final int access, final String... interfaces) {
+    ClassWriter classWriter = new ClassWriter(0);
+    classWriter.visit(V1_5, access, name, null, superName, interfaces);
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+}
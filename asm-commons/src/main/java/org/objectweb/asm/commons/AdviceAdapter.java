@@ -27,9 +27,7 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package org.objectweb.asm.commons;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import org.objectweb.asm.Handle;
@@ -57,10 +55,6 @@ import org.objectweb.asm.Type;
  */
 public abstract class AdviceAdapter extends GeneratorAdapter implements Opcodes {
 
-  private static final Object THIS = new Object();
-
-  private static final Object OTHER = new Object();
-
   protected int methodAccess;
 
   protected String methodDesc;
@@ -69,9 +63,25 @@ public abstract class AdviceAdapter extends GeneratorAdapter implements Opcodes
 
   private boolean superInitialized;
 
-  private List<Object> stackFrame;
+  /** A value of {@link #stackFrame} representing the uninitialized this. */
+  private static final boolean THIS = true;
+
+  /** A value of {@link #stackFrame} representing any other value. */
+  private static final boolean OTHER = false;
+
+  /**
+   * The operand stack of a constructor, before the super or this constructor call. Each element is
+   * {@link #THIS} or {@link #OTHER}. Only the first {@link #stackFrameSize} elements are used.
+   */
+  private boolean[] stackFrame;
+
+  private int stackFrameSize;
 
-  private Map<Label, List<Object>> branches;
+  /**
+   * The operand stack at each forward branch target of a constructor, before the super or this
+   * constructor call. Created lazily, since most constructors have no branch before this call.
+   */
+  private Map<Label, boolean[]> branches;
 
   /**
    * Creates a new {@link AdviceAdapter}.
@@ -99,8 +109,8 @@ public abstract class AdviceAdapter extends GeneratorAdapter implements Opcodes
   public void visitCode() {
     mv.visitCode();
     if (constructor) {
-      stackFrame = new ArrayList<Object>();
-      branches = new HashMap<Label, List<Object>>();
+      stackFrame = new boolean[16];
+      stackFrameSize = 0;
     } else {
       superInitialized = true;
       onMethodEnter();
@@ -111,10 +121,12 @@ public abstract class AdviceAdapter extends GeneratorAdapter implements Opcodes
   public void visitLabel(final Label label) {
     mv.visitLabel(label);
     if (constructor && branches != null) {
-      List<Object> frame = branches.get(label);
+      boolean[] frame = branches.remove(label);
       if (frame != null) {
-        stackFrame = frame;
-        branches.remove(label);
+        stackFrameSize = 0;
+        for (int i = 0; i < frame.length; ++i) {
+          pushValue(frame[i]);
+        }
       }
     }
   }
@@ -257,32 +269,33 @@ public abstract class AdviceAdapter extends GeneratorAdapter implements Opcodes
           pushValue(peekValue());
           break;
         case DUP_X1:
-          s = stackFrame.size();
-          stackFrame.add(s - 2, stackFrame.get(s - 1));
+          s = stackFrameSize;
+          insertValue(s - 2, stackFrame[s - 1]);
           break;
         case DUP_X2:
-          s = stackFrame.size();
-          stackFrame.add(s - 3, stackFrame.get(s - 1));
+          s = stackFrameSize;
+          insertValue(s - 3, stackFrame[s - 1]);
           break;
         case DUP2:
-          s = stackFrame.size();
-          stackFrame.add(s - 2, stackFrame.get(s - 1));
-          stackFrame.add(s - 2, stackFrame.get(s - 1));
+          s = stackFrameSize;
+          insertValue(s - 2, stackFrame[s - 1]);
+          insertValue(s - 2, stackFrame[s - 1]);
           break;
         case DUP2_X1:
-          s = stackFrame.size();
-          stackFrame.add(s - 3, stackFrame.get(s - 1));
-          stackFrame.add(s - 3, stackFrame.get(s - 1));
+          s = stackFrameSize;
+          insertValue(s - 3, stackFrame[s - 1]);
+          insertValue(s - 3, stackFrame[s - 1]);
           break;
         case DUP2_X2:
-          s = stackFrame.size();
-          stackFrame.add(s - 4, stackFrame.get(s - 1));
-          stackFrame.add(s - 4, stackFrame.get(s - 1));
+          s = stackFrameSize;
+          insertValue(s - 4, stackFrame[s - 1]);
+          insertValue(s - 4, stackFrame[s - 1]);
           break;
         case SWAP:
-          s = stackFrame.size();
-          stackFrame.add(s - 2, stackFrame.get(s - 1));
-          stackFrame.remove(s);
+          s = stackFrameSize;
+          boolean value = stackFrame[s - 1];
+          stackFrame[s - 1] = stackFrame[s - 2];
+          stackFrame[s - 2] = value;
           break;
       }
     } else {
@@ -436,13 +449,8 @@ public abstract class AdviceAdapter extends GeneratorAdapter implements Opcodes
       int opcode, final String owner, final String name, final String desc, final boolean itf) {
     mv.visitMethodInsn(opcode, owner, name, desc, itf);
     if (constructor) {
-      Type[] types = Type.getArgumentTypes(desc);
-      for (int i = 0; i < types.length; i++) {
-        popValue();
-        if (types[i].getSize() == 2) {
-          popValue();
-        }
-      }
+      int sizes = Type.getArgumentsAndReturnSizes(desc);
+      popValues((sizes >> 2) - 1);
       switch (opcode) {
           // case INVOKESTATIC:
           // break;
@@ -451,7 +459,7 @@ public abstract class AdviceAdapter extends GeneratorAdapter implements Opcodes
           popValue(); // objectref
           break;
         case INVOKESPECIAL:
-          Object type = popValue(); // objectref
+          boolean type = popValue(); // objectref
           if (type == THIS && !superInitialized) {
             onMethodEnter();
             superInitialized = true;
@@ -461,14 +469,7 @@ public abstract class AdviceAdapter extends GeneratorAdapter implements Opcodes
           }
           break;
       }
-
-      Type returnType = Type.getReturnType(desc);
-      if (returnType != Type.VOID_TYPE) {
-        pushValue(OTHER);
-        if (returnType.getSize() == 2) {
-          pushValue(OTHER);
-        }
-      }
+      pushValues(sizes & 0x03);
     }
   }
 
@@ -476,21 +477,9 @@ public abstract class AdviceAdapter extends GeneratorAdapter implements Opcodes
   public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
     mv.visitInvokeDynamicInsn(name, desc, bsm, bsmArgs);
     if (constructor) {
-      Type[] types = Type.getArgumentTypes(desc);
-      for (int i = 0; i < types.length; i++) {
-        popValue();
-        if (types[i].getSize() == 2) {
-          popValue();
-        }
-      }
-
-      Type returnType = Type.getReturnType(desc);
-      if (returnType != Type.VOID_TYPE) {
-        pushValue(OTHER);
-        if (returnType.getSize() == 2) {
-          pushValue(OTHER);
-        }
-      }
+      int sizes = Type.getArgumentsAndReturnSizes(desc);
+      popValues((sizes >> 2) - 1);
+      pushValues(sizes & 0x03);
     }
   }
 
@@ -550,37 +539,14 @@ public abstract class AdviceAdapter extends GeneratorAdapter implements Opcodes
   @Override
   public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
     super.visitTryCatchBlock(start, end, handler, type);
-    if (constructor && !branches.containsKey(handler)) {
-      List<Object> stackFrame = new ArrayList<Object>();
-      stackFrame.add(OTHER);
-      branches.put(handler, stackFrame);
-    }
-  }
-
-  private void addBranches(final Label dflt, final Label[] labels) {
-    addBranch(dflt);
-    for (int i = 0; i < labels.length; i++) {
-      addBranch(labels[i]);
-    }
-  }
-
-  private void addBranch(final Label label) {
-    if (branches.containsKey(label)) {
-      return;
+    if (constructor) {
+      if (branches == null) {
+        branches = new HashMap<Label, boolean[]>();
+      }
+      if (!branches.containsKey(handler)) {
+        branches.put(handler, new boolean[] {OTHER});
+      }
     }
-    branches.put(label, new ArrayList<Object>(stackFrame));
-  }
-
-  private Object popValue() {
-    return stackFrame.remove(stackFrame.size() - 1);
-  }
-
-  private Object peekValue() {
-    return stackFrame.get(stackFrame.size() - 1);
-  }
-
-  private void pushValue(final Object o) {
-    stackFrame.add(o);
   }
 
   /**
@@ -628,4 +594,61 @@ public abstract class AdviceAdapter extends GeneratorAdapter implements Opcodes
   protected void onMethodExit(int opcode) {}
 
   // TODO onException, onMethodCall
+
+  // -----------------------------------------------------------------------------------------------
+  // Utility methods to simulate the operand stack of a constructor
+  // -----------------------------------------------------------------------------------------------
+
+  private void addBranches(final Label dflt, final Label[] labels) {
+    addBranch(dflt);
+    for (int i = 0; i < labels.length; i++) {
+      addBranch(labels[i]);
+    }
+  }
+
+  private void addBranch(final Label label) {
+    if (branches == null) {
+      branches = new HashMap<Label, boolean[]>();
+    } else if (branches.containsKey(label)) {
+      return;
+    }
+    boolean[] frame = new boolean[stackFrameSize];
+    System.arraycopy(stackFrame, 0, frame, 0, stackFrameSize);
+    branches.put(label, frame);
+  }
+
+  private boolean popValue() {
+    return stackFrame[--stackFrameSize];
+  }
+
+  private void popValues(final int n) {
+    for (int i = 0; i < n; ++i) {
+      popValue();
+    }
+  }
+
+  private boolean peekValue() {
+    return stackFrame[stackFrameSize - 1];
+  }
+
+  private void pushValue(final boolean value) {
+    if (stackFrameSize == stackFrame.length) {
+      boolean[] newStackFrame = new boolean[2 * stackFrameSize];
+      System.arraycopy(stackFrame, 0, newStackFrame, 0, stackFrameSize);
+      stackFrame = newStackFrame;
+    }
+    stackFrame[stackFrameSize++] = value;
+  }
+
+  private void pushValues(final int n) {
+    for (int i = 0; i < n; ++i) {
+      pushValue(OTHER);
+    }
+  }
+
+  private void insertValue(final int index, final boolean value) {
+    pushValue(value);
+    System.arraycopy(stackFrame, index, stackFrame, index + 1, stackFrameSize - 1 - index);
+    stackFrame[index] = value;
+  }
 }
@@ -0,0 +1,288 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.objectweb.asm.signature.SignatureVisitor;
+
+/**
+ * A {@link Remapper} which delegates to another one, and memoizes the results of {@link #map},
+ * {@link #mapType}, {@link #mapDesc}, {@link #mapMethodDesc} and {@link #mapSignature}. The other
+ * methods are simply forwarded to the delegate remapper, which must return the same result each
+ * time it is called with the same arguments. A {@link CachingRemapper} is thread safe if its
+ * delegate is, and can therefore be shared between several {@link ClassRemapper} instances used in
+ * parallel. Each cache holds at most a given number of entries, and is cleared when it is full.
+ */
+public class CachingRemapper extends Remapper {
+
+  /** The default maximum number of entries of each cache. */
+  public static final int DEFAULT_MAX_SIZE = 8192;
+
+  /** The value used in the caches for the <tt>null</tt> results of the delegate remapper. */
+  private static final String NULL = new String();
+
+  /** The remapper to which this remapper delegates. */
+  private final Remapper remapper;
+
+  /** The maximum number of entries of each cache. */
+  private final int maxSize;
+
+  /** The cached results of {@link #map}. */
+  private final Cache typeNames;
+
+  /** The cached results of {@link #mapType}. */
+  private final Cache types;
+
+  /** The cached results of {@link #mapDesc}. */
+  private final Cache descs;
+
+  /** The cached results of {@link #mapMethodDesc}. */
+  private final Cache methodDescs;
+
+  /** The cached results of {@link #mapSignature} for class and method signatures. */
+  private final Cache signatures;
+
+  /** The cached results of {@link #mapSignature} for type signatures. */
+  private final Cache typeSignatures;
+
+  /** The number of calls whose result was found in a cache. */
+  private final AtomicLong hitCount;
+
+  /** The number of calls whose result was not found in a cache. */
+  private final AtomicLong missCount;
+
+  /**
+   * Constructs a new {@link CachingRemapper} with caches of {@link #DEFAULT_MAX_SIZE} entries.
+   *
+   * @param remapper the remapper to which the new remapper must delegate.
+   */
+  public CachingRemapper(final Remapper remapper) {
+    this(remapper, DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * Constructs a new {@link CachingRemapper}.
+   *
+   * @param remapper the remapper to which the new remapper must delegate.
+   * @param maxSize the maximum number of entries of each cache.
+   */
+  public CachingRemapper(final Remapper remapper, final int maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Invalid cache size: " + maxSize);
+    }
+    this.remapper = remapper;
+    this.maxSize = maxSize;
+    this.typeNames = new Cache();
+    this.types = new Cache();
+    this.descs = new Cache();
+    this.methodDescs = new Cache();
+    this.signatures = new Cache();
+    this.typeSignatures = new Cache();
+    this.hitCount = new AtomicLong();
+    this.missCount = new AtomicLong();
+  }
+
+  /**
+   * Returns the number of calls whose result was found in a cache.
+   *
+   * @return the number of calls whose result was found in a cache.
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * Returns the number of calls whose result was not found in a cache, and was computed with the
+   * delegate remapper.
+   *
+   * @return the number of calls whose result was not found in a cache.
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /** Clears the caches and the hit and miss counters of this remapper. */
+  public void clear() {
+    typeNames.clear();
+    types.clear();
+    descs.clear();
+    methodDescs.clear();
+    signatures.clear();
+    typeSignatures.clear();
+    hitCount.set(0);
+    missCount.set(0);
+  }
+
+  @Override
+  public String map(final String typeName) {
+    if (typeName == null) {
+      return remapper.map(null);
+    }
+    String result = typeNames.get(typeName);
+    if (result == null) {
+      result = typeNames.put(typeName, remapper.map(typeName));
+    }
+    return result == NULL ? null : result;
+  }
+
+  @Override
+  public String mapType(final String type) {
+    if (type == null) {
+      return null;
+    }
+    String result = types.get(type);
+    if (result == null) {
+      result = types.put(type, remapper.mapType(type));
+    }
+    return result == NULL ? null : result;
+  }
+
+  @Override
+  public String mapDesc(final String desc) {
+    String result = descs.get(desc);
+    if (result == null) {
+      result = descs.put(desc, remapper.mapDesc(desc));
+    }
+    return result == NULL ? null : result;
+  }
+
+  @Override
+  public String mapMethodDesc(final String desc) {
+    String result = methodDescs.get(desc);
+    if (result == null) {
+      result = methodDescs.put(desc, remapper.mapMethodDesc(desc));
+    }
+    return result == NULL ? null : result;
+  }
+
+  @Override
+  public String mapSignature(final String signature, final boolean typeSignature) {
+    if (signature == null) {
+      return null;
+    }
+    Cache cache = typeSignature ? typeSignatures : signatures;
+    String result = cache.get(signature);
+    if (result == null) {
+      result = cache.put(signature, remapper.mapSignature(signature, typeSignature));
+    }
+    return result == NULL ? null : result;
+  }
+
+  @Override
+  public String[] mapTypes(final String[] types) {
+    return remapper.mapTypes(types);
+  }
+
+  @Override
+  public Object mapValue(final Object value) {
+    return remapper.mapValue(value);
+  }
+
+  @Override
+  protected SignatureVisitor createSignatureRemapper(final SignatureVisitor v) {
+    return remapper.createSignatureRemapper(v);
+  }
+
+  @Override
+  public String mapMethodName(final String owner, final String name, final String desc) {
+    return remapper.mapMethodName(owner, name, desc);
+  }
+
+  @Override
+  public String mapInvokeDynamicMethodName(final String name, final String desc) {
+    return remapper.mapInvokeDynamicMethodName(name, desc);
+  }
+
+  @Override
+  public String mapFieldName(final String owner, final String name, final String desc) {
+    return remapper.mapFieldName(owner, name, desc);
+  }
+
+  @Override
+  public String mapPackageName(final String name) {
+    return remapper.mapPackageName(name);
+  }
+
+  @Override
+  public String mapModuleName(final String name) {
+    return remapper.mapModuleName(name);
+  }
+
+  /** A bounded and thread safe cache, which is cleared when it is full. */
+  private final class Cache {
+
+    private final ConcurrentHashMap<String, String> entries =
+        new ConcurrentHashMap<String, String>();
+
+    /** The approximate number of entries of this cache. */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Returns the cached value associated with the given key, and updates the hit counters.
+     *
+     * @param key a key.
+     * @return the associated value, {@link #NULL} for a cached <tt>null</tt> value, or
+     *     <tt>null</tt> if there is no cached value.
+     */
+    String get(final String key) {
+      String value = entries.get(key);
+      if (value == null) {
+        missCount.incrementAndGet();
+      } else {
+        hitCount.incrementAndGet();
+      }
+      return value;
+    }
+
+    /**
+     * Adds an entry in this cache.
+     *
+     * @param key a key.
+     * @param value the value associated with this key, possibly <tt>null</tt>.
+     * @return the value to store in the cache for the given value ({@link #NULL} for
+     *     <tt>null</tt>).
+     */
+    String put(final String key, final String value) {
+      String cachedValue = value == null ? NULL : value;
+      if (size.incrementAndGet() > maxSize) {
+        entries.clear();
+        size.set(1);
+      }
+      entries.put(key, cachedValue);
+      return cachedValue;
+    }
+
+    void clear() {
+      entries.clear();
+      size.set(0);
+    }
+  }
+}
@@ -28,10 +28,12 @@
 
 package org.objectweb.asm.commons;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
@@ -42,21 +44,75 @@ import org.objectweb.asm.TypePath;
 /**
  * A {@link ClassVisitor} for type remapping.
  *
+ * <p>If the {@link ClassReader} of the visited class is given at construction time, and if its
+ * constant pool contains no name changed by the remapper, the fields, methods and annotations whose
+ * declaration is not changed are not remapped. In particular, if the next visitor is a {@link
+ * org.objectweb.asm.ClassWriter} constructed with this {@link ClassReader}, the code of these
+ * methods is copied as is. This optimization assumes that the remapper maps all the internal names
+ * of a descriptor or signature with {@link Remapper#mapType}, as the default implementation does.
+ *
  * @author Eugene Kuleshov
  */
 public class ClassRemapper extends ClassVisitor {
 
+  private static final int CONSTANT_CLASS_TAG = 7;
+  private static final int CONSTANT_FIELDREF_TAG = 9;
+  private static final int CONSTANT_METHODREF_TAG = 10;
+  private static final int CONSTANT_INTERFACE_METHODREF_TAG = 11;
+  private static final int CONSTANT_UTF8_TAG = 1;
+  private static final int CONSTANT_INVOKE_DYNAMIC_TAG = 18;
+
   protected final Remapper remapper;
 
   protected String className;
 
+  /** The parser of the visited class, or <tt>null</tt> if it is unknown. */
+  private final ClassReader classReader;
+
+  /**
+   * Whether the constant pool of {@link #classReader} contains no name changed by {@link
+   * #remapper}.
+   */
+  private boolean isIdentity;
+
   public ClassRemapper(final ClassVisitor cv, final Remapper remapper) {
     this(Opcodes.ASM6, cv, remapper);
   }
 
+  /**
+   * Constructs a new {@link ClassRemapper} which does not remap the fields, methods and annotations
+   * of classes not changed by the remapping.
+   *
+   * @param cv the class visitor to which this remapper must delegate method calls.
+   * @param remapper the remapper to use.
+   * @param classReader the parser of the class visited by this remapper.
+   */
+  public ClassRemapper(
+      final ClassVisitor cv, final Remapper remapper, final ClassReader classReader) {
+    this(Opcodes.ASM6, cv, remapper, classReader);
+  }
+
   protected ClassRemapper(final int api, final ClassVisitor cv, final Remapper remapper) {
+    this(api, cv, remapper, null);
+  }
+
+  /**
+   * Constructs a new {@link ClassRemapper}.
+   *
+   * @param api the ASM API version implemented by this visitor. Must be one of {@link
+   *     Opcodes#ASM4}, {@link Opcodes#ASM5} or {@link Opcodes#ASM6}.
+   * @param cv the class visitor to which this remapper must delegate method calls.
+   * @param remapper the remapper to use.
+   * @param classReader the parser of the class visited by this remapper, or <tt>null</tt>.
+   */
+  protected ClassRemapper(
+      final int api,
+      final ClassVisitor cv,
+      final Remapper remapper,
+      final ClassReader classReader) {
     super(api, cv);
     this.remapper = remapper;
+    this.classReader = classReader;
   }
 
   @Override
@@ -68,6 +124,7 @@ public class ClassRemapper extends ClassVisitor {
       String superName,
       String[] interfaces) {
     this.className = name;
+    this.isIdentity = classReader != null && isIdentity(classReader);
     super.visit(
         version,
         access,
@@ -86,7 +143,7 @@ public class ClassRemapper extends ClassVisitor {
   @Override
   public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
     AnnotationVisitor av = super.visitAnnotation(remapper.mapDesc(desc), visible);
-    return av == null ? null : createAnnotationRemapper(av);
+    return av == null || isIdentity ? av : createAnnotationRemapper(av);
   }
 
   @Override
@@ -94,7 +151,7 @@ public class ClassRemapper extends ClassVisitor {
       int typeRef, TypePath typePath, String desc, boolean visible) {
     AnnotationVisitor av =
         super.visitTypeAnnotation(typeRef, typePath, remapper.mapDesc(desc), visible);
-    return av == null ? null : createAnnotationRemapper(av);
+    return av == null || isIdentity ? av : createAnnotationRemapper(av);
   }
 
   @Override
@@ -112,28 +169,38 @@ public class ClassRemapper extends ClassVisitor {
   @Override
   public FieldVisitor visitField(
       int access, String name, String desc, String signature, Object value) {
+    String newName = remapper.mapFieldName(className, name, desc);
+    String newDesc = remapper.mapDesc(desc);
+    String newSignature = remapper.mapSignature(signature, true);
     FieldVisitor fv =
-        super.visitField(
-            access,
-            remapper.mapFieldName(className, name, desc),
-            remapper.mapDesc(desc),
-            remapper.mapSignature(signature, true),
-            remapper.mapValue(value));
-    return fv == null ? null : createFieldRemapper(fv);
+        super.visitField(access, newName, newDesc, newSignature, remapper.mapValue(value));
+    if (fv == null) {
+      return null;
+    }
+    if (isIdentity && isSame(name, newName, desc, newDesc, signature, newSignature)) {
+      return fv;
+    }
+    return createFieldRemapper(fv);
   }
 
   @Override
   public MethodVisitor visitMethod(
       int access, String name, String desc, String signature, String[] exceptions) {
+    String newName = remapper.mapMethodName(className, name, desc);
     String newDesc = remapper.mapMethodDesc(desc);
-    MethodVisitor mv =
-        super.visitMethod(
-            access,
-            remapper.mapMethodName(className, name, desc),
-            newDesc,
-            remapper.mapSignature(signature, false),
-            exceptions == null ? null : remapper.mapTypes(exceptions));
-    return mv == null ? null : createMethodRemapper(mv);
+    String newSignature = remapper.mapSignature(signature, false);
+    String[] newExceptions = exceptions == null ? null : remapper.mapTypes(exceptions);
+    MethodVisitor mv = super.visitMethod(access, newName, newDesc, newSignature, newExceptions);
+    if (mv == null) {
+      return null;
+    }
+    // If nothing is changed, return mv itself, so that a ClassWriter can copy the method as is.
+    if (isIdentity
+        && isSame(name, newName, desc, newDesc, signature, newSignature)
+        && Arrays.equals(exceptions, newExceptions)) {
+      return mv;
+    }
+    return createMethodRemapper(mv);
   }
 
   @Override
@@ -154,6 +221,138 @@ public class ClassRemapper extends ClassVisitor {
         desc == null ? null : remapper.mapMethodDesc(desc));
   }
 
+  /**
+   * Returns whether the constant pool of the given class contains no name changed by the remapper.
+   * This method checks the class names, the field and method references, the invokedynamic
+   * references, and the internal names which appear in the UTF8 entries (such as descriptors and
+   * signatures), but not the class level declarations, which are always remapped, nor the field
+   * and method declarations, which are checked separately.
+   *
+   * @param classReader the parser of the visited class.
+   * @return whether the constant pool of the given class contains no name changed by the remapper.
+   */
+  private boolean isIdentity(final ClassReader classReader) {
+    char[] charBuffer = new char[classReader.getMaxStringLength()];
+    int itemCount = classReader.getItemCount();
+    for (int i = 1; i < itemCount; ++i) {
+      int cpInfoOffset = classReader.getItem(i);
+      if (cpInfoOffset == 0) {
+        // The second slot of a long or double entry.
+        continue;
+      }
+      switch (classReader.readByte(cpInfoOffset - 1)) {
+        case CONSTANT_UTF8_TAG:
+          if (!isIdentity(classReader, cpInfoOffset, charBuffer)) {
+            return false;
+          }
+          break;
+        case CONSTANT_CLASS_TAG:
+          String type = classReader.readUTF8(cpInfoOffset, charBuffer);
+          if (!type.equals(remapper.mapType(type))) {
+            return false;
+          }
+          break;
+        case CONSTANT_FIELDREF_TAG:
+        case CONSTANT_METHODREF_TAG:
+        case CONSTANT_INTERFACE_METHODREF_TAG:
+        case CONSTANT_INVOKE_DYNAMIC_TAG:
+          int nameAndTypeCpInfoOffset =
+              classReader.getItem(classReader.readUnsignedShort(cpInfoOffset + 2));
+          String name = classReader.readUTF8(nameAndTypeCpInfoOffset, charBuffer);
+          String desc = classReader.readUTF8(nameAndTypeCpInfoOffset + 2, charBuffer);
+          String newName;
+          switch (classReader.readByte(cpInfoOffset - 1)) {
+            case CONSTANT_FIELDREF_TAG:
+              newName =
+                  remapper.mapFieldName(
+                      classReader.readClass(cpInfoOffset, charBuffer), name, desc);
+              break;
+            case CONSTANT_INVOKE_DYNAMIC_TAG:
+              newName = remapper.mapInvokeDynamicMethodName(name, desc);
+              break;
+            default:
+              newName =
+                  remapper.mapMethodName(
+                      classReader.readClass(cpInfoOffset, charBuffer), name, desc);
+              break;
+          }
+          if (!name.equals(newName)) {
+            return false;
+          }
+          break;
+        default:
+          break;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether the internal names which may appear in a CONSTANT_Utf8 entry are unchanged by
+   * the remapper. The internal names are searched conservatively, as the substrings between a 'L'
+   * character and the following ';' or '&lt;' character.
+   *
+   * @param classReader the parser of the visited class.
+   * @param cpInfoOffset the start offset of the CONSTANT_Utf8 entry's cp_info structure, plus one.
+   * @param charBuffer a buffer large enough to contain any string of the constant pool.
+   * @return whether the internal names which may appear in the given entry are unchanged.
+   */
+  private boolean isIdentity(
+      final ClassReader classReader, final int cpInfoOffset, final char[] charBuffer) {
+    byte[] b = classReader.b;
+    int currentOffset = cpInfoOffset + 2;
+    int endOffset = currentOffset + classReader.readUnsignedShort(cpInfoOffset);
+    // Decode the modified UTF-8 string, see ClassReader#readUTF.
+    int length = 0;
+    while (currentOffset < endOffset) {
+      int currentByte = b[currentOffset++];
+      if ((currentByte & 0x80) == 0) {
+        charBuffer[length++] = (char) (currentByte & 0x7F);
+      } else if ((currentByte & 0xE0) == 0xC0) {
+        charBuffer[length++] =
+            (char) (((currentByte & 0x1F) << 6) + (b[currentOffset++] & 0x3F));
+      } else {
+        charBuffer[length++] =
+            (char)
+                (((currentByte & 0xF) << 12)
+                    + ((b[currentOffset++] & 0x3F) << 6)
+                    + (b[currentOffset++] & 0x3F));
+      }
+    }
+    for (int i = 0; i < length; ++i) {
+      char c = charBuffer[i];
+      if (c == '>' && i + 1 < length && charBuffer[i + 1] == '.') {
+        // Inner class types of parameterized outer classes are not checked.
+        return false;
+      }
+      if (c == 'L') {
+        int end = i + 1;
+        while (end < length && charBuffer[end] != ';' && charBuffer[end] != '<') {
+          ++end;
+        }
+        if (end < length && end > i + 1 && charBuffer[i + 1] != '[') {
+          String type = new String(charBuffer, i + 1, end - i - 1);
+          if (!type.equals(remapper.mapType(type))) {
+            return false;
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  private static boolean isSame(
+      final String name,
+      final String newName,
+      final String desc,
+      final String newDesc,
+      final String signature,
+      final String newSignature) {
+    return name.equals(newName)
+        && desc.equals(newDesc)
+        && (signature == null ? newSignature == null : signature.equals(newSignature));
+  }
+
   protected FieldVisitor createFieldRemapper(FieldVisitor fv) {
     return new FieldRemapper(api, fv, remapper);
   }
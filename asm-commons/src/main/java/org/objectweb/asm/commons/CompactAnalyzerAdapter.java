@@ -0,0 +1,1318 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * A {@link MethodVisitor} that keeps track of stack map frame changes between {@link
+ * #visitFrame(int, int, Object[], int, Object[]) visitFrame} calls, like an {@link
+ * AnalyzerAdapter}, but with a more compact representation of the frames. Each type is represented
+ * by an int: the primitive types are represented by {@link Opcodes#TOP}, {@link Opcodes#INTEGER},
+ * {@link Opcodes#FLOAT}, {@link Opcodes#LONG}, {@link Opcodes#DOUBLE}, {@link Opcodes#NULL} or
+ * {@link Opcodes#UNINITIALIZED_THIS} (long and double are represented by two elements, the second
+ * one being TOP), and the reference and uninitialized types are represented by indices in tables of
+ * internal names and of labels (see {@link #isReferenceType}, {@link #getReferenceType}, {@link
+ * #isUninitializedType} and {@link #getUninitializedType}). The local variables and the operand
+ * stack are stored in int arrays, which are updated in place by each instruction.
+ *
+ * <p>This adapter must be used with the {@link org.objectweb.asm.ClassReader#EXPAND_FRAMES}
+ * option. The next visitor in the chain can get the state of the stack map frame <i>before</i> each
+ * instruction with {@link #getLocal} and {@link #getStack} in its visit<i>X</i> methods (this
+ * requires a reference to the {@link CompactAnalyzerAdapter} that is before it in the chain). As
+ * with {@link AnalyzerAdapter}, the stack map frame may be unknown for some instructions (see
+ * {@link #hasFrame}).
+ */
+public class CompactAnalyzerAdapter extends MethodVisitor {
+
+  private static final int TOP = Opcodes.TOP.intValue();
+  private static final int INTEGER = Opcodes.INTEGER.intValue();
+  private static final int FLOAT = Opcodes.FLOAT.intValue();
+  private static final int LONG = Opcodes.LONG.intValue();
+  private static final int DOUBLE = Opcodes.DOUBLE.intValue();
+  private static final int NULL = Opcodes.NULL.intValue();
+  private static final int UNINITIALIZED_THIS = Opcodes.UNINITIALIZED_THIS.intValue();
+
+  /** The {@link Opcodes} constants corresponding to the primitive types, indexed by type. */
+  private static final Object[] PRIMITIVE_TYPES = new Object[UNINITIALIZED_THIS + 1];
+
+  static {
+    PRIMITIVE_TYPES[TOP] = Opcodes.TOP;
+    PRIMITIVE_TYPES[INTEGER] = Opcodes.INTEGER;
+    PRIMITIVE_TYPES[FLOAT] = Opcodes.FLOAT;
+    PRIMITIVE_TYPES[LONG] = Opcodes.LONG;
+    PRIMITIVE_TYPES[DOUBLE] = Opcodes.DOUBLE;
+    PRIMITIVE_TYPES[NULL] = Opcodes.NULL;
+    PRIMITIVE_TYPES[UNINITIALIZED_THIS] = Opcodes.UNINITIALIZED_THIS;
+  }
+
+  /** The kind of the types which represent reference types. */
+  private static final int REFERENCE_KIND = 1 << 28;
+
+  /** The kind of the types which represent uninitialized types. */
+  private static final int UNINITIALIZED_KIND = 2 << 28;
+
+  /** The mask to get the kind of a type. */
+  private static final int KIND_MASK = 0xF << 28;
+
+  /** The mask to get the index of a reference or uninitialized type in its table. */
+  private static final int INDEX_MASK = ~KIND_MASK;
+
+  /** The type of the values of a local variable or stack element whose type is unknown. */
+  private static final int NO_TYPE = -1;
+
+  /** The local variable types of the current frame. Only the first {@link #localsSize} are used. */
+  private int[] locals;
+
+  /** The number of local variables in the current frame, or -1 if this frame is unknown. */
+  private int localsSize;
+
+  /** The operand stack types of the current frame. Only the first {@link #stackSize} are used. */
+  private int[] stack;
+
+  /** The number of operand stack elements in the current frame. */
+  private int stackSize;
+
+  /** The internal names or array descriptors of the reference types, indexed by type index. */
+  private String[] referenceTypes;
+
+  /** The type of the elements of each reference type, or 0 if not computed yet. */
+  private int[] elementTypes;
+
+  /** The number of reference types. */
+  private int referenceTypeCount;
+
+  /** A hash table of the indices (plus one) of the reference types in {@link #referenceTypes}. */
+  private int[] referenceTypeTable;
+
+  /**
+   * The field and method descriptors whose type (or return type) is a reference type, or
+   * <tt>null</tt>. Only the first {@link #descriptorCount} elements are used.
+   */
+  private String[] descriptors;
+
+  /** The reference type corresponding to each descriptor in {@link #descriptors}. */
+  private int[] descriptorTypes;
+
+  /** The number of descriptors in {@link #descriptors}. */
+  private int descriptorCount;
+
+  /** A hash table of the indices (plus one) of the descriptors in {@link #descriptors}. */
+  private int[] descriptorTable;
+
+  /**
+   * The labels of the uninitialized types, indexed by uninitialized type index, or <tt>null</tt>.
+   */
+  private Label[] uninitializedLabels;
+
+  /**
+   * The reference type created by the NEW instruction corresponding to each uninitialized type, or
+   * {@link Opcodes#TOP} if this instruction has not been visited yet.
+   */
+  private int[] uninitializedTypes;
+
+  /** The number of uninitialized types. */
+  private int uninitializedTypeCount;
+
+  /** A hash table of the indices (plus one) of the labels in {@link #uninitializedLabels}. */
+  private int[] uninitializedTypeTable;
+
+  /**
+   * The types of the last visited frame, in the format used by {@link #visitFrame} (local variable
+   * types first, followed by the operand stack types), or <tt>null</tt>.
+   */
+  private Object[] frameTypes;
+
+  /** The types corresponding to the {@link #frameTypes} elements. */
+  private int[] frameTypeValues;
+
+  /** The labels that designate the next instruction to be visited. */
+  private Label[] labels;
+
+  /** The number of labels that designate the next instruction to be visited. */
+  private int labelCount;
+
+  /** The maximum stack size of this method. */
+  private int maxStack;
+
+  /** The maximum number of local variables of this method. */
+  private int maxLocals;
+
+  /** The type of the owner's class. */
+  private final int owner;
+
+  /**
+   * Creates a new {@link CompactAnalyzerAdapter}. <i>Subclasses must not use this constructor</i>.
+   * Instead, they must use the {@link #CompactAnalyzerAdapter(int, String, int, String, String,
+   * MethodVisitor)} version.
+   *
+   * @param owner the owner's class name.
+   * @param access the method's access flags (see {@link Opcodes}).
+   * @param name the method's name.
+   * @param desc the method's descriptor (see {@link Type Type}).
+   * @param mv the method visitor to which this adapter delegates calls. May be <tt>null</tt>.
+   * @throws IllegalStateException If a subclass calls this constructor.
+   */
+  public CompactAnalyzerAdapter(
+      final String owner,
+      final int access,
+      final String name,
+      final String desc,
+      final MethodVisitor mv) {
+    this(Opcodes.ASM6, owner, access, name, desc, mv);
+    if (getClass() != CompactAnalyzerAdapter.class) {
+      throw new IllegalStateException();
+    }
+  }
+
+  /**
+   * Creates a new {@link CompactAnalyzerAdapter}.
+   *
+   * @param api the ASM API version implemented by this visitor. Must be one of {@link
+   *     Opcodes#ASM4}, {@link Opcodes#ASM5} or {@link Opcodes#ASM6}.
+   * @param owner the owner's class name.
+   * @param access the method's access flags (see {@link Opcodes}).
+   * @param name the method's name.
+   * @param desc the method's descriptor (see {@link Type Type}).
+   * @param mv the method visitor to which this adapter delegates calls. May be <tt>null</tt>.
+   */
+  protected CompactAnalyzerAdapter(
+      final int api,
+      final String owner,
+      final int access,
+      final String name,
+      final String desc,
+      final MethodVisitor mv) {
+    super(api, mv);
+    locals = new int[16];
+    stack = new int[16];
+    referenceTypes = new String[8];
+    elementTypes = new int[8];
+    referenceTypeTable = new int[16];
+    labels = new Label[4];
+    this.owner = addReferenceType(owner);
+
+    if ((access & Opcodes.ACC_STATIC) == 0) {
+      addLocal("<init>".equals(name) ? UNINITIALIZED_THIS : this.owner);
+    }
+    Type[] types = Type.getArgumentTypes(desc);
+    for (int i = 0; i < types.length; ++i) {
+      Type type = types[i];
+      switch (type.getSort()) {
+        case Type.BOOLEAN:
+        case Type.CHAR:
+        case Type.BYTE:
+        case Type.SHORT:
+        case Type.INT:
+          addLocal(INTEGER);
+          break;
+        case Type.FLOAT:
+          addLocal(FLOAT);
+          break;
+        case Type.LONG:
+          addLocal(LONG);
+          addLocal(TOP);
+          break;
+        case Type.DOUBLE:
+          addLocal(DOUBLE);
+          addLocal(TOP);
+          break;
+        case Type.ARRAY:
+          addLocal(addReferenceType(type.getDescriptor()));
+          break;
+          // case Type.OBJECT:
+        default:
+          addLocal(addReferenceType(type.getInternalName()));
+      }
+    }
+    maxLocals = localsSize;
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Accessors
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns whether the stack map frame before the current instruction is known. It is unknown for
+   * unreachable instructions, and may be unknown for some instructions of pre Java 6 classes.
+   *
+   * @return whether the stack map frame before the current instruction is known.
+   */
+  public boolean hasFrame() {
+    return localsSize >= 0;
+  }
+
+  /**
+   * Returns the number of local variables in the current frame.
+   *
+   * @return the number of local variables in the current frame (long and double values count as
+   *     two local variables), or 0 if this frame is unknown.
+   */
+  public int getLocalCount() {
+    return localsSize >= 0 ? localsSize : 0;
+  }
+
+  /**
+   * Returns the type of a local variable in the current frame.
+   *
+   * @param local a local variable index, strictly less than {@link #getLocalCount}.
+   * @return the type of this local variable.
+   */
+  public int getLocal(final int local) {
+    return locals[local];
+  }
+
+  /**
+   * Returns the number of operand stack elements in the current frame.
+   *
+   * @return the number of operand stack elements in the current frame (long and double values count
+   *     as two elements), or 0 if this frame is unknown.
+   */
+  public int getStackSize() {
+    return localsSize >= 0 ? stackSize : 0;
+  }
+
+  /**
+   * Returns the type of an operand stack element in the current frame.
+   *
+   * @param index the index of an operand stack element (0 for the bottom of the stack), strictly
+   *     less than {@link #getStackSize}.
+   * @return the type of this operand stack element.
+   */
+  public int getStack(final int index) {
+    return stack[index];
+  }
+
+  /**
+   * Returns whether a type represents a reference type.
+   *
+   * @param type a type returned by {@link #getLocal} or {@link #getStack}.
+   * @return whether this type represents a reference type.
+   */
+  public static boolean isReferenceType(final int type) {
+    return (type & KIND_MASK) == REFERENCE_KIND;
+  }
+
+  /**
+   * Returns whether a type represents an uninitialized type.
+   *
+   * @param type a type returned by {@link #getLocal} or {@link #getStack}.
+   * @return whether this type represents an uninitialized type.
+   */
+  public static boolean isUninitializedType(final int type) {
+    return (type & KIND_MASK) == UNINITIALIZED_KIND;
+  }
+
+  /**
+   * Returns the internal name or array descriptor of a reference type.
+   *
+   * @param type a reference type (see {@link #isReferenceType}).
+   * @return the internal name (or the descriptor, for array types) of this type.
+   */
+  public String getReferenceType(final int type) {
+    return referenceTypes[type & INDEX_MASK];
+  }
+
+  /**
+   * Returns the label of an uninitialized type.
+   *
+   * @param type an uninitialized type (see {@link #isUninitializedType}).
+   * @return the label which designates the NEW instruction that created this uninitialized value.
+   */
+  public Label getUninitializedType(final int type) {
+    return uninitializedLabels[type & INDEX_MASK];
+  }
+
+  /**
+   * Returns the internal name of the type which will be obtained once an uninitialized type is
+   * initialized.
+   *
+   * @param type an uninitialized type (see {@link #isUninitializedType}).
+   * @return the operand of the NEW instruction that created this uninitialized value, or
+   *     <tt>null</tt> if this instruction has not been visited yet.
+   */
+  public String getInitializedType(final int type) {
+    int initializedType = uninitializedTypes[type & INDEX_MASK];
+    return initializedType == TOP ? null : getReferenceType(initializedType);
+  }
+
+  /**
+   * Returns the local variable types of the current frame, in the format used by {@link
+   * AnalyzerAdapter#locals}. This method allocates a new list at each call.
+   *
+   * @return the local variable types of the current frame, or <tt>null</tt> if it is unknown.
+   */
+  public List<Object> getLocals() {
+    return localsSize >= 0 ? toList(locals, localsSize) : null;
+  }
+
+  /**
+   * Returns the operand stack types of the current frame, in the format used by {@link
+   * AnalyzerAdapter#stack}. This method allocates a new list at each call.
+   *
+   * @return the operand stack types of the current frame, or <tt>null</tt> if it is unknown.
+   */
+  public List<Object> getStack() {
+    return localsSize >= 0 ? toList(stack, stackSize) : null;
+  }
+
+  private List<Object> toList(final int[] types, final int size) {
+    List<Object> result = new ArrayList<Object>(size);
+    for (int i = 0; i < size; ++i) {
+      int type = types[i];
+      if (isReferenceType(type)) {
+        result.add(getReferenceType(type));
+      } else if (isUninitializedType(type)) {
+        result.add(getUninitializedType(type));
+      } else {
+        result.add(PRIMITIVE_TYPES[type]);
+      }
+    }
+    return result;
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Implementation of the MethodVisitor abstract class
+  // -----------------------------------------------------------------------------------------------
+
+  @Override
+  public void visitFrame(
+      final int type,
+      final int nLocal,
+      final Object[] local,
+      final int nStack,
+      final Object[] stack) {
+    if (type != Opcodes.F_NEW) { // uncompressed frame
+      throw new IllegalStateException(
+          "ClassReader.accept() should be called with EXPAND_FRAMES flag");
+    }
+
+    if (mv != null) {
+      mv.visitFrame(type, nLocal, local, nStack, stack);
+    }
+
+    if (frameTypes == null || frameTypes.length < nLocal + nStack) {
+      frameTypes = new Object[Math.max(16, 2 * (nLocal + nStack))];
+      frameTypeValues = new int[frameTypes.length];
+    }
+    localsSize = 0;
+    stackSize = 0;
+    for (int i = 0; i < nLocal; ++i) {
+      int frameType = getFrameType(i, local[i]);
+      addLocal(frameType);
+      if (frameType == LONG || frameType == DOUBLE) {
+        addLocal(TOP);
+      }
+    }
+    for (int i = 0; i < nStack; ++i) {
+      int frameType = getFrameType(nLocal + i, stack[i]);
+      push(frameType);
+      if (frameType == LONG || frameType == DOUBLE) {
+        push(TOP);
+      }
+    }
+  }
+
+  @Override
+  public void visitInsn(final int opcode) {
+    if (mv != null) {
+      mv.visitInsn(opcode);
+    }
+    execute(opcode, 0, null);
+    if ((opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN) || opcode == Opcodes.ATHROW) {
+      localsSize = -1;
+    }
+  }
+
+  @Override
+  public void visitIntInsn(final int opcode, final int operand) {
+    if (mv != null) {
+      mv.visitIntInsn(opcode, operand);
+    }
+    execute(opcode, operand, null);
+  }
+
+  @Override
+  public void visitVarInsn(final int opcode, final int var) {
+    if (mv != null) {
+      mv.visitVarInsn(opcode, var);
+    }
+    execute(opcode, var, null);
+  }
+
+  @Override
+  public void visitTypeInsn(final int opcode, final String type) {
+    if (opcode == Opcodes.NEW) {
+      if (labelCount == 0) {
+        Label label = new Label();
+        labels[labelCount++] = label;
+        if (mv != null) {
+          mv.visitLabel(label);
+        }
+      }
+      int referenceType = addReferenceType(type);
+      for (int i = 0; i < labelCount; ++i) {
+        int uninitializedType = addUninitializedType(labels[i]);
+        uninitializedTypes[uninitializedType & INDEX_MASK] = referenceType;
+      }
+    }
+    if (mv != null) {
+      mv.visitTypeInsn(opcode, type);
+    }
+    execute(opcode, 0, type);
+  }
+
+  @Override
+  public void visitFieldInsn(
+      final int opcode, final String owner, final String name, final String desc) {
+    if (mv != null) {
+      mv.visitFieldInsn(opcode, owner, name, desc);
+    }
+    execute(opcode, 0, desc);
+  }
+
+  @Deprecated
+  @Override
+  public void visitMethodInsn(
+      final int opcode, final String owner, final String name, final String desc) {
+    if (api >= Opcodes.ASM5) {
+      super.visitMethodInsn(opcode, owner, name, desc);
+      return;
+    }
+    doVisitMethodInsn(opcode, owner, name, desc, opcode == Opcodes.INVOKEINTERFACE);
+  }
+
+  @Override
+  public void visitMethodInsn(
+      final int opcode,
+      final String owner,
+      final String name,
+      final String desc,
+      final boolean itf) {
+    if (api < Opcodes.ASM5) {
+      super.visitMethodInsn(opcode, owner, name, desc, itf);
+      return;
+    }
+    doVisitMethodInsn(opcode, owner, name, desc, itf);
+  }
+
+  private void doVisitMethodInsn(
+      int opcode, final String owner, final String name, final String desc, final boolean itf) {
+    if (mv != null) {
+      mv.visitMethodInsn(opcode, owner, name, desc, itf);
+    }
+    labelCount = 0;
+    if (localsSize < 0) {
+      return;
+    }
+    pop((Type.getArgumentsAndReturnSizes(desc) >> 2) - 1);
+    if (opcode != Opcodes.INVOKESTATIC) {
+      int t = pop();
+      if (opcode == Opcodes.INVOKESPECIAL && name.charAt(0) == '<') {
+        int u;
+        if (t == UNINITIALIZED_THIS) {
+          u = this.owner;
+        } else if (isUninitializedType(t)) {
+          u = uninitializedTypes[t & INDEX_MASK];
+        } else {
+          u = t;
+        }
+        for (int i = 0; i < localsSize; ++i) {
+          if (locals[i] == t) {
+            locals[i] = u;
+          }
+        }
+        for (int i = 0; i < stackSize; ++i) {
+          if (stack[i] == t) {
+            stack[i] = u;
+          }
+        }
+      }
+    }
+    pushDesc(desc);
+  }
+
+  @Override
+  public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+    if (mv != null) {
+      mv.visitInvokeDynamicInsn(name, desc, bsm, bsmArgs);
+    }
+    labelCount = 0;
+    if (localsSize < 0) {
+      return;
+    }
+    pop((Type.getArgumentsAndReturnSizes(desc) >> 2) - 1);
+    pushDesc(desc);
+  }
+
+  @Override
+  public void visitJumpInsn(final int opcode, final Label label) {
+    if (mv != null) {
+      mv.visitJumpInsn(opcode, label);
+    }
+    execute(opcode, 0, null);
+    if (opcode == Opcodes.GOTO) {
+      localsSize = -1;
+    }
+  }
+
+  @Override
+  public void visitLabel(final Label label) {
+    if (mv != null) {
+      mv.visitLabel(label);
+    }
+    if (labelCount == labels.length) {
+      Label[] newLabels = new Label[2 * labelCount];
+      System.arraycopy(labels, 0, newLabels, 0, labelCount);
+      labels = newLabels;
+    }
+    labels[labelCount++] = label;
+  }
+
+  @Override
+  public void visitLdcInsn(final Object cst) {
+    if (mv != null) {
+      mv.visitLdcInsn(cst);
+    }
+    labelCount = 0;
+    if (localsSize < 0) {
+      return;
+    }
+    if (cst instanceof Integer) {
+      push(INTEGER);
+    } else if (cst instanceof Long) {
+      push(LONG);
+      push(TOP);
+    } else if (cst instanceof Float) {
+      push(FLOAT);
+    } else if (cst instanceof Double) {
+      push(DOUBLE);
+      push(TOP);
+    } else if (cst instanceof String) {
+      push(addReferenceType("java/lang/String"));
+    } else if (cst instanceof Type) {
+      int sort = ((Type) cst).getSort();
+      if (sort == Type.OBJECT || sort == Type.ARRAY) {
+        push(addReferenceType("java/lang/Class"));
+      } else if (sort == Type.METHOD) {
+        push(addReferenceType("java/lang/invoke/MethodType"));
+      } else {
+        throw new IllegalArgumentException();
+      }
+    } else if (cst instanceof Handle) {
+      push(addReferenceType("java/lang/invoke/MethodHandle"));
+    } else {
+      throw new IllegalArgumentException();
+    }
+  }
+
+  @Override
+  public void visitIincInsn(final int var, final int increment) {
+    if (mv != null) {
+      mv.visitIincInsn(var, increment);
+    }
+    execute(Opcodes.IINC, var, null);
+  }
+
+  @Override
+  public void visitTableSwitchInsn(
+      final int min, final int max, final Label dflt, final Label... labels) {
+    if (mv != null) {
+      mv.visitTableSwitchInsn(min, max, dflt, labels);
+    }
+    execute(Opcodes.TABLESWITCH, 0, null);
+    localsSize = -1;
+  }
+
+  @Override
+  public void visitLookupSwitchInsn(final Label dflt, final int[] keys, final Label[] labels) {
+    if (mv != null) {
+      mv.visitLookupSwitchInsn(dflt, keys, labels);
+    }
+    execute(Opcodes.LOOKUPSWITCH, 0, null);
+    localsSize = -1;
+  }
+
+  @Override
+  public void visitMultiANewArrayInsn(final String desc, final int dims) {
+    if (mv != null) {
+      mv.visitMultiANewArrayInsn(desc, dims);
+    }
+    execute(Opcodes.MULTIANEWARRAY, dims, desc);
+  }
+
+  @Override
+  public void visitMaxs(final int maxStack, final int maxLocals) {
+    if (mv != null) {
+      this.maxStack = Math.max(this.maxStack, maxStack);
+      this.maxLocals = Math.max(this.maxLocals, maxLocals);
+      mv.visitMaxs(this.maxStack, this.maxLocals);
+    }
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Utility methods
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns the reference type corresponding to the given internal name or array descriptor, and
+   * adds it to the table of reference types if necessary.
+   */
+  private int addReferenceType(final String internalName) {
+    int index = find(referenceTypeTable, referenceTypes, internalName);
+    if (index >= 0) {
+      return REFERENCE_KIND | index;
+    }
+    if (referenceTypeCount == referenceTypes.length) {
+      String[] newReferenceTypes = new String[2 * referenceTypeCount];
+      System.arraycopy(referenceTypes, 0, newReferenceTypes, 0, referenceTypeCount);
+      referenceTypes = newReferenceTypes;
+      int[] newElementTypes = new int[2 * referenceTypeCount];
+      System.arraycopy(elementTypes, 0, newElementTypes, 0, referenceTypeCount);
+      elementTypes = newElementTypes;
+    }
+    int type = REFERENCE_KIND | referenceTypeCount;
+    referenceTypes[referenceTypeCount++] = internalName;
+    referenceTypeTable = insert(referenceTypeTable, referenceTypes, referenceTypeCount);
+    return type;
+  }
+
+  /**
+   * Returns the uninitialized type corresponding to the given label, and adds it to the table of
+   * uninitialized types if necessary.
+   */
+  private int addUninitializedType(final Label label) {
+    if (uninitializedLabels == null) {
+      uninitializedLabels = new Label[4];
+      uninitializedTypes = new int[4];
+      uninitializedTypeTable = new int[8];
+    } else {
+      int index = find(uninitializedTypeTable, uninitializedLabels, label);
+      if (index >= 0) {
+        return UNINITIALIZED_KIND | index;
+      }
+    }
+    if (uninitializedTypeCount == uninitializedLabels.length) {
+      Label[] newUninitializedLabels = new Label[2 * uninitializedTypeCount];
+      System.arraycopy(uninitializedLabels, 0, newUninitializedLabels, 0, uninitializedTypeCount);
+      uninitializedLabels = newUninitializedLabels;
+      int[] newUninitializedTypes = new int[2 * uninitializedTypeCount];
+      System.arraycopy(uninitializedTypes, 0, newUninitializedTypes, 0, uninitializedTypeCount);
+      uninitializedTypes = newUninitializedTypes;
+    }
+    int type = UNINITIALIZED_KIND | uninitializedTypeCount;
+    uninitializedLabels[uninitializedTypeCount] = label;
+    uninitializedTypes[uninitializedTypeCount++] = TOP;
+    uninitializedTypeTable =
+        insert(uninitializedTypeTable, uninitializedLabels, uninitializedTypeCount);
+    return type;
+  }
+
+  /**
+   * Returns the type corresponding to a type in the format used by {@link #visitFrame}.
+   *
+   * @param index the index of this type in the visited frame (local variable types first, followed
+   *     by the operand stack types).
+   * @param type a local variable or operand stack type, in the format used by {@link #visitFrame}.
+   * @return the corresponding type.
+   */
+  private int getFrameType(final int index, final Object type) {
+    // ClassReader reuses the same objects from one expanded frame to the next, so most types are
+    // found with a simple identity check against the previous frame.
+    if (frameTypes[index] == type) {
+      return frameTypeValues[index];
+    }
+    int frameType;
+    if (type instanceof Integer) {
+      frameType = ((Integer) type).intValue();
+    } else if (type instanceof String) {
+      frameType = addReferenceType((String) type);
+    } else {
+      frameType = addUninitializedType((Label) type);
+    }
+    frameTypes[index] = type;
+    frameTypeValues[index] = frameType;
+    return frameType;
+  }
+
+  /**
+   * Returns the type of the elements of an array type.
+   *
+   * @param arrayType a reference type representing an array type.
+   * @return the type of its elements, or {@link #NO_TYPE} if they are of type void.
+   */
+  private int getElementType(final int arrayType) {
+    int index = arrayType & INDEX_MASK;
+    int elementType = elementTypes[index];
+    if (elementType == 0) {
+      elementType = getDescriptorType(referenceTypes[index].substring(1));
+      elementTypes[index] = elementType;
+    }
+    return elementType;
+  }
+
+  /**
+   * Returns the type of the value returned by a field or method descriptor.
+   *
+   * @param desc a field or method descriptor.
+   * @return the type of the field, or of the value returned by the method (LONG or DOUBLE for long
+   *     and double values), or {@link #NO_TYPE} for void methods.
+   */
+  private int getDescriptorType(final String desc) {
+    int index = desc.charAt(0) == '(' ? desc.indexOf(')') + 1 : 0;
+    switch (desc.charAt(index)) {
+      case 'V':
+        return NO_TYPE;
+      case 'Z':
+      case 'C':
+      case 'B':
+      case 'S':
+      case 'I':
+        return INTEGER;
+      case 'F':
+        return FLOAT;
+      case 'J':
+        return LONG;
+      case 'D':
+        return DOUBLE;
+      default:
+        break;
+    }
+    if (descriptors == null) {
+      descriptors = new String[8];
+      descriptorTypes = new int[8];
+      descriptorTable = new int[16];
+    } else {
+      int descriptorIndex = find(descriptorTable, descriptors, desc);
+      if (descriptorIndex >= 0) {
+        return descriptorTypes[descriptorIndex];
+      }
+    }
+    int type;
+    if (desc.charAt(index) == '[') {
+      type = addReferenceType(index == 0 ? desc : desc.substring(index));
+    } else {
+      type = addReferenceType(desc.substring(index + 1, desc.length() - 1));
+    }
+    if (descriptorCount == descriptors.length) {
+      String[] newDescriptors = new String[2 * descriptorCount];
+      System.arraycopy(descriptors, 0, newDescriptors, 0, descriptorCount);
+      descriptors = newDescriptors;
+      int[] newDescriptorTypes = new int[2 * descriptorCount];
+      System.arraycopy(descriptorTypes, 0, newDescriptorTypes, 0, descriptorCount);
+      descriptorTypes = newDescriptorTypes;
+    }
+    descriptors[descriptorCount] = desc;
+    descriptorTypes[descriptorCount++] = type;
+    descriptorTable = insert(descriptorTable, descriptors, descriptorCount);
+    return type;
+  }
+
+  /**
+   * Returns the index of a key in an array of keys, using an open addressing hash table.
+   *
+   * @param table a hash table whose non zero elements are the indices plus one of the keys, at a
+   *     position derived from their hash code, or at one of the following positions (modulo the
+   *     table length, which must be a power of two) in case of collisions.
+   * @param keys an array of distinct keys.
+   * @param key the key to look for.
+   * @return the index of key in keys, or -1 if it is not found.
+   */
+  private static int find(final int[] table, final Object[] keys, final Object key) {
+    int mask = table.length - 1;
+    int i = key.hashCode() & mask;
+    int entry;
+    while ((entry = table[i]) != 0) {
+      if (keys[entry - 1].equals(key)) {
+        return entry - 1;
+      }
+      i = (i + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * Adds the last key of an array of keys to an open addressing hash table.
+   *
+   * @param table a hash table (see {@link #find}), containing the indices of the first keyCount - 1
+   *     keys.
+   * @param keys an array of distinct keys.
+   * @param keyCount the number of keys in keys.
+   * @return the given table, or a new, larger one if its load factor would exceed 1/2.
+   */
+  private static int[] insert(final int[] table, final Object[] keys, final int keyCount) {
+    int[] newTable = table;
+    int mask = table.length - 1;
+    int start = keyCount - 1;
+    if (2 * keyCount > table.length) {
+      newTable = new int[2 * table.length];
+      mask = newTable.length - 1;
+      start = 0;
+    }
+    for (int index = start; index < keyCount; ++index) {
+      int i = keys[index].hashCode() & mask;
+      while (newTable[i] != 0) {
+        i = (i + 1) & mask;
+      }
+      newTable[i] = index + 1;
+    }
+    return newTable;
+  }
+
+  private void addLocal(final int type) {
+    if (localsSize == locals.length) {
+      int[] newLocals = new int[2 * localsSize];
+      System.arraycopy(locals, 0, newLocals, 0, localsSize);
+      locals = newLocals;
+    }
+    locals[localsSize++] = type;
+  }
+
+  private int get(final int local) {
+    maxLocals = Math.max(maxLocals, local + 1);
+    return local < localsSize ? locals[local] : TOP;
+  }
+
+  private void set(final int local, final int type) {
+    maxLocals = Math.max(maxLocals, local + 1);
+    while (local >= localsSize) {
+      addLocal(TOP);
+    }
+    locals[local] = type;
+  }
+
+  private void push(final int type) {
+    if (stackSize == stack.length) {
+      int[] newStack = new int[2 * stackSize];
+      System.arraycopy(stack, 0, newStack, 0, stackSize);
+      stack = newStack;
+    }
+    stack[stackSize++] = type;
+    maxStack = Math.max(maxStack, stackSize);
+  }
+
+  private void pushType(final int type) {
+    if (type == NO_TYPE) {
+      return;
+    }
+    push(type);
+    if (type == LONG || type == DOUBLE) {
+      push(TOP);
+    }
+  }
+
+  private void pushDesc(final String desc) {
+    pushType(getDescriptorType(desc));
+  }
+
+  private int pop() {
+    return stack[--stackSize];
+  }
+
+  private void pop(final int n) {
+    stackSize -= n;
+  }
+
+  private void pop(final String desc) {
+    char c = desc.charAt(0);
+    if (c == 'J' || c == 'D') {
+      pop(2);
+    } else {
+      pop(1);
+    }
+  }
+
+  private void execute(final int opcode, final int iarg, final String sarg) {
+    if (localsSize < 0) {
+      labelCount = 0;
+      return;
+    }
+    int t1, t2, t3, t4;
+    switch (opcode) {
+      case Opcodes.NOP:
+      case Opcodes.INEG:
+      case Opcodes.LNEG:
+      case Opcodes.FNEG:
+      case Opcodes.DNEG:
+      case Opcodes.I2B:
+      case Opcodes.I2C:
+      case Opcodes.I2S:
+      case Opcodes.GOTO:
+      case Opcodes.RETURN:
+        break;
+      case Opcodes.ACONST_NULL:
+        push(NULL);
+        break;
+      case Opcodes.ICONST_M1:
+      case Opcodes.ICONST_0:
+      case Opcodes.ICONST_1:
+      case Opcodes.ICONST_2:
+      case Opcodes.ICONST_3:
+      case Opcodes.ICONST_4:
+      case Opcodes.ICONST_5:
+      case Opcodes.BIPUSH:
+      case Opcodes.SIPUSH:
+        push(INTEGER);
+        break;
+      case Opcodes.LCONST_0:
+      case Opcodes.LCONST_1:
+        pushType(LONG);
+        break;
+      case Opcodes.FCONST_0:
+      case Opcodes.FCONST_1:
+      case Opcodes.FCONST_2:
+        push(FLOAT);
+        break;
+      case Opcodes.DCONST_0:
+      case Opcodes.DCONST_1:
+        pushType(DOUBLE);
+        break;
+      case Opcodes.ILOAD:
+      case Opcodes.FLOAD:
+      case Opcodes.ALOAD:
+        push(get(iarg));
+        break;
+      case Opcodes.LLOAD:
+      case Opcodes.DLOAD:
+        push(get(iarg));
+        push(TOP);
+        break;
+      case Opcodes.IALOAD:
+      case Opcodes.BALOAD:
+      case Opcodes.CALOAD:
+      case Opcodes.SALOAD:
+        pop(2);
+        push(INTEGER);
+        break;
+      case Opcodes.LALOAD:
+      case Opcodes.D2L:
+        pop(2);
+        pushType(LONG);
+        break;
+      case Opcodes.FALOAD:
+        pop(2);
+        push(FLOAT);
+        break;
+      case Opcodes.DALOAD:
+      case Opcodes.L2D:
+        pop(2);
+        pushType(DOUBLE);
+        break;
+      case Opcodes.AALOAD:
+        pop(1);
+        t1 = pop();
+        if (isReferenceType(t1)) {
+          pushType(getElementType(t1));
+        } else if (t1 == NULL) {
+          push(t1);
+        } else {
+          push(addReferenceType("java/lang/Object"));
+        }
+        break;
+      case Opcodes.ISTORE:
+      case Opcodes.FSTORE:
+      case Opcodes.ASTORE:
+        t1 = pop();
+        set(iarg, t1);
+        if (iarg > 0) {
+          t2 = get(iarg - 1);
+          if (t2 == LONG || t2 == DOUBLE) {
+            set(iarg - 1, TOP);
+          }
+        }
+        break;
+      case Opcodes.LSTORE:
+      case Opcodes.DSTORE:
+        pop(1);
+        t1 = pop();
+        set(iarg, t1);
+        set(iarg + 1, TOP);
+        if (iarg > 0) {
+          t2 = get(iarg - 1);
+          if (t2 == LONG || t2 == DOUBLE) {
+            set(iarg - 1, TOP);
+          }
+        }
+        break;
+      case Opcodes.IASTORE:
+      case Opcodes.BASTORE:
+      case Opcodes.CASTORE:
+      case Opcodes.SASTORE:
+      case Opcodes.FASTORE:
+      case Opcodes.AASTORE:
+        pop(3);
+        break;
+      case Opcodes.LASTORE:
+      case Opcodes.DASTORE:
+        pop(4);
+        break;
+      case Opcodes.POP:
+      case Opcodes.IFEQ:
+      case Opcodes.IFNE:
+      case Opcodes.IFLT:
+      case Opcodes.IFGE:
+      case Opcodes.IFGT:
+      case Opcodes.IFLE:
+      case Opcodes.IRETURN:
+      case Opcodes.FRETURN:
+      case Opcodes.ARETURN:
+      case Opcodes.TABLESWITCH:
+      case Opcodes.LOOKUPSWITCH:
+      case Opcodes.ATHROW:
+      case Opcodes.MONITORENTER:
+      case Opcodes.MONITOREXIT:
+      case Opcodes.IFNULL:
+      case Opcodes.IFNONNULL:
+        pop(1);
+        break;
+      case Opcodes.POP2:
+      case Opcodes.IF_ICMPEQ:
+      case Opcodes.IF_ICMPNE:
+      case Opcodes.IF_ICMPLT:
+      case Opcodes.IF_ICMPGE:
+      case Opcodes.IF_ICMPGT:
+      case Opcodes.IF_ICMPLE:
+      case Opcodes.IF_ACMPEQ:
+      case Opcodes.IF_ACMPNE:
+      case Opcodes.LRETURN:
+      case Opcodes.DRETURN:
+        pop(2);
+        break;
+      case Opcodes.DUP:
+        t1 = pop();
+        push(t1);
+        push(t1);
+        break;
+      case Opcodes.DUP_X1:
+        t1 = pop();
+        t2 = pop();
+        push(t1);
+        push(t2);
+        push(t1);
+        break;
+      case Opcodes.DUP_X2:
+        t1 = pop();
+        t2 = pop();
+        t3 = pop();
+        push(t1);
+        push(t3);
+        push(t2);
+        push(t1);
+        break;
+      case Opcodes.DUP2:
+        t1 = pop();
+        t2 = pop();
+        push(t2);
+        push(t1);
+        push(t2);
+        push(t1);
+        break;
+      case Opcodes.DUP2_X1:
+        t1 = pop();
+        t2 = pop();
+        t3 = pop();
+        push(t2);
+        push(t1);
+        push(t3);
+        push(t2);
+        push(t1);
+        break;
+      case Opcodes.DUP2_X2:
+        t1 = pop();
+        t2 = pop();
+        t3 = pop();
+        t4 = pop();
+        push(t2);
+        push(t1);
+        push(t4);
+        push(t3);
+        push(t2);
+        push(t1);
+        break;
+      case Opcodes.SWAP:
+        t1 = pop();
+        t2 = pop();
+        push(t1);
+        push(t2);
+        break;
+      case Opcodes.IADD:
+      case Opcodes.ISUB:
+      case Opcodes.IMUL:
+      case Opcodes.IDIV:
+      case Opcodes.IREM:
+      case Opcodes.IAND:
+      case Opcodes.IOR:
+      case Opcodes.IXOR:
+      case Opcodes.ISHL:
+      case Opcodes.ISHR:
+      case Opcodes.IUSHR:
+      case Opcodes.L2I:
+      case Opcodes.D2I:
+      case Opcodes.FCMPL:
+      case Opcodes.FCMPG:
+        pop(2);
+        push(INTEGER);
+        break;
+      case Opcodes.LADD:
+      case Opcodes.LSUB:
+      case Opcodes.LMUL:
+      case Opcodes.LDIV:
+      case Opcodes.LREM:
+      case Opcodes.LAND:
+      case Opcodes.LOR:
+      case Opcodes.LXOR:
+        pop(4);
+        pushType(LONG);
+        break;
+      case Opcodes.FADD:
+      case Opcodes.FSUB:
+      case Opcodes.FMUL:
+      case Opcodes.FDIV:
+      case Opcodes.FREM:
+      case Opcodes.L2F:
+      case Opcodes.D2F:
+        pop(2);
+        push(FLOAT);
+        break;
+      case Opcodes.DADD:
+      case Opcodes.DSUB:
+      case Opcodes.DMUL:
+      case Opcodes.DDIV:
+      case Opcodes.DREM:
+        pop(4);
+        pushType(DOUBLE);
+        break;
+      case Opcodes.LSHL:
+      case Opcodes.LSHR:
+      case Opcodes.LUSHR:
+        pop(3);
+        pushType(LONG);
+        break;
+      case Opcodes.IINC:
+        set(iarg, INTEGER);
+        break;
+      case Opcodes.I2L:
+      case Opcodes.F2L:
+        pop(1);
+        pushType(LONG);
+        break;
+      case Opcodes.I2F:
+        pop(1);
+        push(FLOAT);
+        break;
+      case Opcodes.I2D:
+      case Opcodes.F2D:
+        pop(1);
+        pushType(DOUBLE);
+        break;
+      case Opcodes.F2I:
+      case Opcodes.ARRAYLENGTH:
+      case Opcodes.INSTANCEOF:
+        pop(1);
+        push(INTEGER);
+        break;
+      case Opcodes.LCMP:
+      case Opcodes.DCMPL:
+      case Opcodes.DCMPG:
+        pop(4);
+        push(INTEGER);
+        break;
+      case Opcodes.JSR:
+      case Opcodes.RET:
+        throw new RuntimeException("JSR/RET are not supported");
+      case Opcodes.GETSTATIC:
+        pushDesc(sarg);
+        break;
+      case Opcodes.PUTSTATIC:
+        pop(sarg);
+        break;
+      case Opcodes.GETFIELD:
+        pop(1);
+        pushDesc(sarg);
+        break;
+      case Opcodes.PUTFIELD:
+        pop(sarg);
+        pop();
+        break;
+      case Opcodes.NEW:
+        push(addUninitializedType(labels[0]));
+        break;
+      case Opcodes.NEWARRAY:
+        pop();
+        switch (iarg) {
+          case Opcodes.T_BOOLEAN:
+            pushDesc("[Z");
+            break;
+          case Opcodes.T_CHAR:
+            pushDesc("[C");
+            break;
+          case Opcodes.T_BYTE:
+            pushDesc("[B");
+            break;
+          case Opcodes.T_SHORT:
+            pushDesc("[S");
+            break;
+          case Opcodes.T_INT:
+            pushDesc("[I");
+            break;
+          case Opcodes.T_FLOAT:
+            pushDesc("[F");
+            break;
+          case Opcodes.T_DOUBLE:
+            pushDesc("[D");
+            break;
+            // case Opcodes.T_LONG:
+          default:
+            pushDesc("[J");
+            break;
+        }
+        break;
+      case Opcodes.ANEWARRAY:
+        pop();
+        pushDesc("[" + Type.getObjectType(sarg));
+        break;
+      case Opcodes.CHECKCAST:
+        pop();
+        push(addReferenceType(sarg));
+        break;
+        // case Opcodes.MULTIANEWARRAY:
+      default:
+        pop(iarg);
+        pushDesc(sarg);
+        break;
+    }
+    labelCount = 0;
+  }
+}
@@ -0,0 +1,589 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.TypeReference;
+
+/**
+ * Remaps classes by rewriting their constant pool in place. When a remapping only renames types
+ * (e.g. to relocate packages), only the CONSTANT_Utf8 entries containing class names, descriptors
+ * and signatures change. In this case this class rewrites these entries and copies the rest of the
+ * class file as is, which is much faster than a {@link ClassReader} - {@link ClassRemapper} -
+ * {@link ClassWriter} chain. Otherwise, i.e. if a field or method name is remapped, if a
+ * CONSTANT_Utf8 entry is used both in a remapped and in a non remapped context (for instance as a
+ * class name and as a string constant), if a string is too long to be encoded in the remapped
+ * constant pool, or if the class is a module descriptor, the class is remapped with a {@link
+ * ClassRemapper}.
+ *
+ * <p>Unknown attributes are copied as is, and must not contain references to remapped constant
+ * pool entries.
+ */
+public class ConstantPoolRemapper {
+
+  private static final int CONSTANT_CLASS_TAG = 7;
+  private static final int CONSTANT_FIELDREF_TAG = 9;
+  private static final int CONSTANT_METHODREF_TAG = 10;
+  private static final int CONSTANT_INTERFACE_METHODREF_TAG = 11;
+  private static final int CONSTANT_STRING_TAG = 8;
+  private static final int CONSTANT_UTF8_TAG = 1;
+  private static final int CONSTANT_METHOD_TYPE_TAG = 16;
+  private static final int CONSTANT_INVOKE_DYNAMIC_TAG = 18;
+  private static final int CONSTANT_MODULE_TAG = 19;
+  private static final int CONSTANT_PACKAGE_TAG = 20;
+
+  /** The remapper used to remap the classes. */
+  private final Remapper remapper;
+
+  /**
+   * Constructs a new {@link ConstantPoolRemapper}.
+   *
+   * @param remapper the remapper used to remap the classes.
+   */
+  public ConstantPoolRemapper(final Remapper remapper) {
+    this.remapper = remapper;
+  }
+
+  /**
+   * Remaps the given class.
+   *
+   * @param classFile the class to be remapped, in the JVMS ClassFile format.
+   * @return the remapped class. This is <tt>classFile</tt> itself if the class is not changed by
+   *     the remapping.
+   */
+  public byte[] remap(final byte[] classFile) {
+    ClassReader classReader = new ClassReader(classFile);
+    String[] newUtf8Values = new Scanner(classReader).scan();
+    if (newUtf8Values != null) {
+      byte[] newClassFile = rewriteConstantPool(classReader, newUtf8Values);
+      if (newClassFile != null) {
+        return newClassFile;
+      }
+    }
+    return remapWithClassRemapper(classReader);
+  }
+
+  /**
+   * Remaps the given class with a {@link ClassRemapper}. This method is used for the classes which
+   * can't be remapped in place.
+   *
+   * @param classReader the class to be remapped.
+   * @return the remapped class.
+   */
+  protected byte[] remapWithClassRemapper(final ClassReader classReader) {
+    ClassWriter classWriter = new ClassWriter(0);
+    classReader.accept(new ClassRemapper(classWriter, remapper), 0);
+    return classWriter.toByteArray();
+  }
+
+  /**
+   * Replaces some CONSTANT_Utf8 entries of a class.
+   *
+   * @param classReader the class to be rewritten.
+   * @param newUtf8Values the new value of each CONSTANT_Utf8 entry, indexed by constant pool entry
+   *     index. A <tt>null</tt> value means that the corresponding entry is unchanged.
+   * @return the rewritten class, <tt>classReader.b</tt> if no entry is changed, or <tt>null</tt> if
+   *     a new value is too long to be encoded.
+   */
+  private static byte[] rewriteConstantPool(
+      final ClassReader classReader, final String[] newUtf8Values) {
+    byte[] classFile = classReader.b;
+    int newClassFileLength = classFile.length;
+    boolean changed = false;
+    for (int i = 1; i < newUtf8Values.length; ++i) {
+      if (newUtf8Values[i] != null) {
+        changed = true;
+        int newLength = getUtf8Length(newUtf8Values[i]);
+        if (newLength > 65535) {
+          return null;
+        }
+        newClassFileLength += newLength - classReader.readUnsignedShort(classReader.getItem(i));
+      }
+    }
+    if (!changed) {
+      return classFile;
+    }
+    byte[] newClassFile = new byte[newClassFileLength];
+    int copyStartOffset = 0;
+    int newOffset = 0;
+    for (int i = 1; i < newUtf8Values.length; ++i) {
+      String newValue = newUtf8Values[i];
+      if (newValue == null) {
+        continue;
+      }
+      // Copy the bytes since the end of the previous rewritten entry, up to the length field of
+      // this one (the tag is unchanged), then write the new length and bytes of this entry.
+      int cpInfoOffset = classReader.getItem(i);
+      int copyLength = cpInfoOffset - copyStartOffset;
+      System.arraycopy(classFile, copyStartOffset, newClassFile, newOffset, copyLength);
+      newOffset = putUtf8(newValue, newClassFile, newOffset + copyLength);
+      copyStartOffset = cpInfoOffset + 2 + classReader.readUnsignedShort(cpInfoOffset);
+    }
+    System.arraycopy(
+        classFile, copyStartOffset, newClassFile, newOffset, classFile.length - copyStartOffset);
+    return newClassFile;
+  }
+
+  /**
+   * Returns the length in bytes of the modified UTF-8 encoding of a string.
+   *
+   * @param value a string.
+   * @return the length in bytes of the modified UTF-8 encoding of value.
+   */
+  private static int getUtf8Length(final String value) {
+    int byteLength = 0;
+    int charLength = value.length();
+    for (int i = 0; i < charLength; ++i) {
+      char charValue = value.charAt(i);
+      if (charValue >= '\001' && charValue <= '\177') {
+        byteLength++;
+      } else if (charValue <= '\u07FF') {
+        byteLength += 2;
+      } else {
+        byteLength += 3;
+      }
+    }
+    return byteLength;
+  }
+
+  /**
+   * Writes the length and the modified UTF-8 encoding of a string, as in a CONSTANT_Utf8 entry.
+   *
+   * @param value a string whose encoded length is less than 65536.
+   * @param data where the length and the encoded string must be written.
+   * @param offset where the first byte must be written in data.
+   * @return the offset of the byte after the last written one.
+   */
+  private static int putUtf8(final String value, final byte[] data, final int offset) {
+    int byteLength = getUtf8Length(value);
+    int currentOffset = offset;
+    data[currentOffset++] = (byte) (byteLength >>> 8);
+    data[currentOffset++] = (byte) byteLength;
+    int charLength = value.length();
+    for (int i = 0; i < charLength; ++i) {
+      char charValue = value.charAt(i);
+      if (charValue >= '\001' && charValue <= '\177') {
+        data[currentOffset++] = (byte) charValue;
+      } else if (charValue <= '\u07FF') {
+        data[currentOffset++] = (byte) (0xC0 | charValue >> 6 & 0x1F);
+        data[currentOffset++] = (byte) (0x80 | charValue & 0x3F);
+      } else {
+        data[currentOffset++] = (byte) (0xE0 | charValue >> 12 & 0xF);
+        data[currentOffset++] = (byte) (0x80 | charValue >> 6 & 0x3F);
+        data[currentOffset++] = (byte) (0x80 | charValue & 0x3F);
+      }
+    }
+    return currentOffset;
+  }
+
+  /**
+   * Computes the new value of the CONSTANT_Utf8 entries of a class, by finding all the references
+   * to these entries and remapping them according to their type.
+   */
+  private final class Scanner {
+
+    /** The class to be scanned. */
+    private final ClassReader classReader;
+
+    /** The buffer used to read strings. */
+    private final char[] charBuffer;
+
+    /** The value of each referenced CONSTANT_Utf8 entry. */
+    private final String[] oldUtf8Values;
+
+    /** The new value of each CONSTANT_Utf8 entry, or <tt>null</tt> if not referenced yet. */
+    private final String[] newUtf8Values;
+
+    /** The name of the scanned class. */
+    private String className;
+
+    /** Whether the class can't be remapped by rewriting its CONSTANT_Utf8 entries. */
+    private boolean failed;
+
+    Scanner(final ClassReader classReader) {
+      this.classReader = classReader;
+      this.charBuffer = new char[classReader.getMaxStringLength()];
+      this.oldUtf8Values = new String[classReader.getItemCount()];
+      this.newUtf8Values = new String[classReader.getItemCount()];
+    }
+
+    /**
+     * Scans the class.
+     *
+     * @return the new value of each CONSTANT_Utf8 entry, indexed by constant pool entry index (or
+     *     <tt>null</tt> for the unchanged or non CONSTANT_Utf8 entries), or <tt>null</tt> if the
+     *     class can't be remapped in place.
+     */
+    String[] scan() {
+      className = classReader.getClassName();
+      scanConstantPool();
+      int currentOffset = classReader.header;
+      int interfacesCount = classReader.readUnsignedShort(currentOffset + 6);
+      currentOffset += 8 + 2 * interfacesCount;
+      int fieldsCount = classReader.readUnsignedShort(currentOffset);
+      currentOffset += 2;
+      while (fieldsCount-- > 0 && !failed) {
+        String name = classReader.readUTF8(currentOffset + 2, charBuffer);
+        String desc = classReader.readUTF8(currentOffset + 4, charBuffer);
+        checkName(name, remapper.mapFieldName(className, name, desc));
+        currentOffset = scanMember(currentOffset, true);
+      }
+      int methodsCount = classReader.readUnsignedShort(currentOffset);
+      currentOffset += 2;
+      while (methodsCount-- > 0 && !failed) {
+        String name = classReader.readUTF8(currentOffset + 2, charBuffer);
+        String desc = classReader.readUTF8(currentOffset + 4, charBuffer);
+        checkName(name, remapper.mapMethodName(className, name, desc));
+        currentOffset = scanMember(currentOffset, false);
+      }
+      if (!failed) {
+        scanAttributes(currentOffset, false);
+      }
+      if (failed) {
+        return null;
+      }
+      for (int i = 1; i < newUtf8Values.length; ++i) {
+        if (newUtf8Values[i] != null && newUtf8Values[i].equals(oldUtf8Values[i])) {
+          newUtf8Values[i] = null;
+        }
+      }
+      return newUtf8Values;
+    }
+
+    /** Scans the constant pool entries which reference CONSTANT_Utf8 entries. */
+    private void scanConstantPool() {
+      int itemCount = classReader.getItemCount();
+      for (int i = 1; i < itemCount && !failed; ++i) {
+        int cpInfoOffset = classReader.getItem(i);
+        if (cpInfoOffset == 0) {
+          // The second slot of a long or double entry.
+          continue;
+        }
+        switch (classReader.readByte(cpInfoOffset - 1)) {
+          case CONSTANT_CLASS_TAG:
+            set(cpInfoOffset, remapper.mapType(classReader.readUTF8(cpInfoOffset, charBuffer)));
+            break;
+          case CONSTANT_STRING_TAG:
+            keep(cpInfoOffset);
+            break;
+          case CONSTANT_METHOD_TYPE_TAG:
+            mapDescriptor(cpInfoOffset);
+            break;
+          case CONSTANT_FIELDREF_TAG:
+          case CONSTANT_METHODREF_TAG:
+          case CONSTANT_INTERFACE_METHODREF_TAG:
+          case CONSTANT_INVOKE_DYNAMIC_TAG:
+            int tag = classReader.readByte(cpInfoOffset - 1);
+            int nameAndTypeCpInfoOffset =
+                classReader.getItem(classReader.readUnsignedShort(cpInfoOffset + 2));
+            String name = classReader.readUTF8(nameAndTypeCpInfoOffset, charBuffer);
+            String desc = classReader.readUTF8(nameAndTypeCpInfoOffset + 2, charBuffer);
+            if (tag == CONSTANT_INVOKE_DYNAMIC_TAG) {
+              checkName(name, remapper.mapInvokeDynamicMethodName(name, desc));
+            } else {
+              String owner = classReader.readClass(cpInfoOffset, charBuffer);
+              checkName(
+                  name,
+                  tag == CONSTANT_FIELDREF_TAG
+                      ? remapper.mapFieldName(owner, name, desc)
+                      : remapper.mapMethodName(owner, name, desc));
+            }
+            keep(nameAndTypeCpInfoOffset);
+            mapDescriptor(nameAndTypeCpInfoOffset + 2);
+            break;
+          case CONSTANT_MODULE_TAG:
+          case CONSTANT_PACKAGE_TAG:
+            failed = true;
+            break;
+          default:
+            break;
+        }
+      }
+    }
+
+    /**
+     * Scans a field_info or method_info structure.
+     *
+     * @param memberInfoOffset the start offset of the structure.
+     * @param isField whether the structure is a field_info structure.
+     * @return the end offset of the structure.
+     */
+    private int scanMember(final int memberInfoOffset, final boolean isField) {
+      keep(memberInfoOffset + 2);
+      mapDescriptor(memberInfoOffset + 4);
+      return scanAttributes(memberInfoOffset + 6, isField);
+    }
+
+    /**
+     * Scans the attributes of a class, field, method or Code attribute.
+     *
+     * @param attributesOffset the start offset of the attributes_count field.
+     * @param isField whether the attributes are those of a field.
+     * @return the end offset of the attributes.
+     */
+    private int scanAttributes(final int attributesOffset, final boolean isField) {
+      int attributesCount = classReader.readUnsignedShort(attributesOffset);
+      int currentOffset = attributesOffset + 2;
+      while (attributesCount-- > 0) {
+        String attributeName = classReader.readUTF8(currentOffset, charBuffer);
+        int attributeLength = classReader.readInt(currentOffset + 2);
+        keep(currentOffset);
+        int offset = currentOffset + 6;
+        currentOffset = offset + attributeLength;
+        if ("Signature".equals(attributeName)) {
+          mapSignature(offset, isField);
+        } else if ("SourceFile".equals(attributeName)) {
+          keep(offset);
+        } else if ("EnclosingMethod".equals(attributeName)) {
+          int methodIndex = classReader.readUnsignedShort(offset + 2);
+          if (methodIndex != 0) {
+            int nameAndTypeCpInfoOffset = classReader.getItem(methodIndex);
+            String owner = classReader.readClass(offset, charBuffer);
+            String name = classReader.readUTF8(nameAndTypeCpInfoOffset, charBuffer);
+            String desc = classReader.readUTF8(nameAndTypeCpInfoOffset + 2, charBuffer);
+            checkName(name, remapper.mapMethodName(owner, name, desc));
+            keep(nameAndTypeCpInfoOffset);
+            mapDescriptor(nameAndTypeCpInfoOffset + 2);
+          }
+        } else if ("InnerClasses".equals(attributeName)) {
+          int numberOfClasses = classReader.readUnsignedShort(offset);
+          for (int i = 0; i < numberOfClasses; ++i) {
+            keep(offset + 2 + i * 8 + 4);
+          }
+        } else if ("Code".equals(attributeName)) {
+          int codeLength = classReader.readInt(offset + 4);
+          int exceptionTableOffset = offset + 8 + codeLength;
+          int exceptionTableLength = classReader.readUnsignedShort(exceptionTableOffset);
+          scanAttributes(exceptionTableOffset + 2 + exceptionTableLength * 8, false);
+        } else if ("LocalVariableTable".equals(attributeName)
+            || "LocalVariableTypeTable".equals(attributeName)) {
+          boolean isTypeTable = attributeName.length() == "LocalVariableTypeTable".length();
+          int localVariableTableLength = classReader.readUnsignedShort(offset);
+          for (int i = 0; i < localVariableTableLength; ++i) {
+            int localVariableOffset = offset + 2 + i * 10;
+            keep(localVariableOffset + 4);
+            if (isTypeTable) {
+              mapSignature(localVariableOffset + 6, true);
+            } else {
+              mapDescriptor(localVariableOffset + 6);
+            }
+          }
+        } else if ("MethodParameters".equals(attributeName)) {
+          int parametersCount = classReader.readByte(offset);
+          for (int i = 0; i < parametersCount; ++i) {
+            keep(offset + 1 + i * 4);
+          }
+        } else if ("RuntimeVisibleAnnotations".equals(attributeName)
+            || "RuntimeInvisibleAnnotations".equals(attributeName)) {
+          int annotationsCount = classReader.readUnsignedShort(offset);
+          int annotationOffset = offset + 2;
+          while (annotationsCount-- > 0) {
+            annotationOffset = scanAnnotation(annotationOffset);
+          }
+        } else if ("RuntimeVisibleParameterAnnotations".equals(attributeName)
+            || "RuntimeInvisibleParameterAnnotations".equals(attributeName)) {
+          int parametersCount = classReader.readByte(offset);
+          int annotationOffset = offset + 1;
+          while (parametersCount-- > 0) {
+            int annotationsCount = classReader.readUnsignedShort(annotationOffset);
+            annotationOffset += 2;
+            while (annotationsCount-- > 0) {
+              annotationOffset = scanAnnotation(annotationOffset);
+            }
+          }
+        } else if ("RuntimeVisibleTypeAnnotations".equals(attributeName)
+            || "RuntimeInvisibleTypeAnnotations".equals(attributeName)) {
+          int annotationsCount = classReader.readUnsignedShort(offset);
+          int annotationOffset = offset + 2;
+          while (annotationsCount-- > 0) {
+            annotationOffset = scanAnnotation(skipTypeAnnotationTarget(annotationOffset));
+          }
+        } else if ("AnnotationDefault".equals(attributeName)) {
+          scanElementValue(offset);
+        } else if ("Module".equals(attributeName)
+            || "ModulePackages".equals(attributeName)
+            || "ModuleMainClass".equals(attributeName)) {
+          failed = true;
+        }
+      }
+      return currentOffset;
+    }
+
+    /**
+     * Scans an annotation structure.
+     *
+     * @param annotationOffset the start offset of the structure.
+     * @return the end offset of the structure.
+     */
+    private int scanAnnotation(final int annotationOffset) {
+      mapDescriptor(annotationOffset);
+      int numElementValuePairs = classReader.readUnsignedShort(annotationOffset + 2);
+      int currentOffset = annotationOffset + 4;
+      while (numElementValuePairs-- > 0) {
+        keep(currentOffset);
+        currentOffset = scanElementValue(currentOffset + 2);
+      }
+      return currentOffset;
+    }
+
+    /**
+     * Scans an element_value structure.
+     *
+     * @param elementValueOffset the start offset of the structure.
+     * @return the end offset of the structure.
+     */
+    private int scanElementValue(final int elementValueOffset) {
+      switch (classReader.readByte(elementValueOffset)) {
+        case 'e':
+          mapDescriptor(elementValueOffset + 1);
+          keep(elementValueOffset + 3);
+          return elementValueOffset + 5;
+        case 'c':
+          mapDescriptor(elementValueOffset + 1);
+          return elementValueOffset + 3;
+        case 's':
+          keep(elementValueOffset + 1);
+          return elementValueOffset + 3;
+        case '@':
+          return scanAnnotation(elementValueOffset + 1);
+        case '[':
+          int numValues = classReader.readUnsignedShort(elementValueOffset + 1);
+          int currentOffset = elementValueOffset + 3;
+          while (numValues-- > 0) {
+            currentOffset = scanElementValue(currentOffset);
+          }
+          return currentOffset;
+        default:
+          return elementValueOffset + 3;
+      }
+    }
+
+    /**
+     * Skips the target_type, target_info and target_path fields of a type_annotation structure.
+     *
+     * @param typeAnnotationOffset the start offset of a type_annotation structure.
+     * @return the start offset of the rest of the type_annotation structure.
+     */
+    private int skipTypeAnnotationTarget(final int typeAnnotationOffset) {
+      int currentOffset = typeAnnotationOffset;
+      switch (classReader.readByte(typeAnnotationOffset)) {
+        case TypeReference.CLASS_TYPE_PARAMETER:
+        case TypeReference.METHOD_TYPE_PARAMETER:
+        case TypeReference.METHOD_FORMAL_PARAMETER:
+          currentOffset += 2;
+          break;
+        case TypeReference.FIELD:
+        case TypeReference.METHOD_RETURN:
+        case TypeReference.METHOD_RECEIVER:
+          currentOffset += 1;
+          break;
+        case TypeReference.LOCAL_VARIABLE:
+        case TypeReference.RESOURCE_VARIABLE:
+          currentOffset += 3 + 6 * classReader.readUnsignedShort(currentOffset + 1);
+          break;
+        case TypeReference.CAST:
+        case TypeReference.CONSTRUCTOR_INVOCATION_TYPE_ARGUMENT:
+        case TypeReference.METHOD_INVOCATION_TYPE_ARGUMENT:
+        case TypeReference.CONSTRUCTOR_REFERENCE_TYPE_ARGUMENT:
+        case TypeReference.METHOD_REFERENCE_TYPE_ARGUMENT:
+          currentOffset += 4;
+          break;
+        default:
+          currentOffset += 3;
+          break;
+      }
+      int pathLength = classReader.readByte(currentOffset);
+      return currentOffset + 1 + 2 * pathLength;
+    }
+
+    /**
+     * Fails if a field or method name is changed by the remapping.
+     *
+     * @param name a field or method name.
+     * @param newName the remapped name.
+     */
+    private void checkName(final String name, final String newName) {
+      if (!name.equals(newName)) {
+        failed = true;
+      }
+    }
+
+    /**
+     * Records that a CONSTANT_Utf8 entry must not be changed.
+     *
+     * @param offset the offset of a CONSTANT_Utf8 entry index, which may be 0.
+     */
+    private void keep(final int offset) {
+      set(offset, classReader.readUTF8(offset, charBuffer));
+    }
+
+    /**
+     * Records that a CONSTANT_Utf8 entry is a field or method descriptor.
+     *
+     * @param offset the offset of a CONSTANT_Utf8 entry index.
+     */
+    private void mapDescriptor(final int offset) {
+      String desc = classReader.readUTF8(offset, charBuffer);
+      set(offset, desc.charAt(0) == '(' ? remapper.mapMethodDesc(desc) : remapper.mapDesc(desc));
+    }
+
+    /**
+     * Records that a CONSTANT_Utf8 entry is a signature.
+     *
+     * @param offset the offset of a CONSTANT_Utf8 entry index.
+     * @param typeSignature whether the signature is a field type signature.
+     */
+    private void mapSignature(final int offset, final boolean typeSignature) {
+      set(
+          offset,
+          remapper.mapSignature(classReader.readUTF8(offset, charBuffer), typeSignature));
+    }
+
+    /**
+     * Sets the new value of a CONSTANT_Utf8 entry, or fails if a different new value has already
+     * been set.
+     *
+     * @param offset the offset of a CONSTANT_Utf8 entry index, which may be 0.
+     * @param newValue the new value of this entry.
+     */
+    private void set(final int offset, final String newValue) {
+      int constantPoolEntryIndex = classReader.readUnsignedShort(offset);
+      if (constantPoolEntryIndex == 0) {
+        return;
+      }
+      String currentNewValue = newUtf8Values[constantPoolEntryIndex];
+      if (currentNewValue == null) {
+        oldUtf8Values[constantPoolEntryIndex] = classReader.readUTF8(offset, charBuffer);
+        newUtf8Values[constantPoolEntryIndex] = newValue;
+      } else if (!currentNewValue.equals(newValue)) {
+        failed = true;
+      }
+    }
+  }
+}
@@ -0,0 +1,158 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A {@link SimpleRemapper} which indexes its field and method mappings by owner and by name. The
+ * mapping keys have the same format as in a {@link SimpleRemapper}, but the field and method names
+ * are looked up without building a key string for each field and method reference, i.e. without
+ * allocating any object. The mappings of the fields and methods are indexed when this remapper is
+ * constructed, and must not be changed afterwards. Likewise, the field and method names are not
+ * looked up with {@link #map}, which should not be overridden to change them.
+ */
+public class IndexedRemapper extends SimpleRemapper {
+
+  /** The new names of the fields, indexed by owner and by old name. */
+  private final HashMap<String, HashMap<String, String>> fieldNames;
+
+  /**
+   * The new names of the methods, indexed by owner and by old name. Each value is an array of
+   * [descriptor, new name] pairs, one for each mapped method with this owner and name. The owner of
+   * the methods of invokedynamic instructions is the empty string.
+   */
+  private final HashMap<String, HashMap<String, String[]>> methodNames;
+
+  /**
+   * Constructs a new {@link IndexedRemapper} with the given mapping.
+   *
+   * @param mapping a map specifying a remapping as follows:
+   *     <ul>
+   *       <li>for method names, the key is the owner, name and descriptor of a method (in the form
+   *           &lt;owner&gt;.&lt;name&gt;&lt;descriptor&gt;), and the value is the new method name.
+   *       <li>for invokedynamic method names, the key is the name and descriptor of a method (in
+   *           the form .&lt;name&gt;&lt;descriptor&gt;), and the value is the new method name.
+   *       <li>for field names, the key is the owner and name of a field (in the form
+   *           &lt;owner&gt;.&lt;name&gt;), and the value is the new field name.
+   *       <li>for internal names, the key is the old internal name, and the value is the new
+   *           internal name.
+   *     </ul>
+   */
+  public IndexedRemapper(final Map<String, String> mapping) {
+    super(mapping);
+    fieldNames = new HashMap<String, HashMap<String, String>>();
+    methodNames = new HashMap<String, HashMap<String, String[]>>();
+    Iterator<Map.Entry<String, String>> entries = mapping.entrySet().iterator();
+    while (entries.hasNext()) {
+      Map.Entry<String, String> entry = entries.next();
+      String key = entry.getKey();
+      int dotIndex = key.indexOf('.');
+      if (dotIndex == -1) {
+        continue;
+      }
+      String owner = key.substring(0, dotIndex);
+      int descIndex = key.indexOf('(', dotIndex);
+      if (descIndex == -1) {
+        HashMap<String, String> ownerFieldNames = fieldNames.get(owner);
+        if (ownerFieldNames == null) {
+          ownerFieldNames = new HashMap<String, String>();
+          fieldNames.put(owner, ownerFieldNames);
+        }
+        ownerFieldNames.put(key.substring(dotIndex + 1), entry.getValue());
+      } else {
+        HashMap<String, String[]> ownerMethodNames = methodNames.get(owner);
+        if (ownerMethodNames == null) {
+          ownerMethodNames = new HashMap<String, String[]>();
+          methodNames.put(owner, ownerMethodNames);
+        }
+        String name = key.substring(dotIndex + 1, descIndex);
+        String[] descAndNewNames = ownerMethodNames.get(name);
+        int length = descAndNewNames == null ? 0 : descAndNewNames.length;
+        String[] newDescAndNewNames = new String[length + 2];
+        if (length > 0) {
+          System.arraycopy(descAndNewNames, 0, newDescAndNewNames, 0, length);
+        }
+        newDescAndNewNames[length] = key.substring(descIndex);
+        newDescAndNewNames[length + 1] = entry.getValue();
+        ownerMethodNames.put(name, newDescAndNewNames);
+      }
+    }
+  }
+
+  /**
+   * Constructs a new {@link IndexedRemapper} with the given mapping.
+   *
+   * @param oldName the key corresponding to a method, field or internal name (see {@link
+   *     #IndexedRemapper(Map)} for the format of these keys).
+   * @param newName the new method, field or internal name.
+   */
+  public IndexedRemapper(final String oldName, final String newName) {
+    this(Collections.singletonMap(oldName, newName));
+  }
+
+  @Override
+  public String mapMethodName(final String owner, final String name, final String desc) {
+    return mapMethodName(methodNames.get(owner), name, desc);
+  }
+
+  @Override
+  public String mapInvokeDynamicMethodName(final String name, final String desc) {
+    return mapMethodName(methodNames.get(""), name, desc);
+  }
+
+  @Override
+  public String mapFieldName(final String owner, final String name, final String desc) {
+    HashMap<String, String> ownerFieldNames = fieldNames.get(owner);
+    if (ownerFieldNames != null) {
+      String newName = ownerFieldNames.get(name);
+      if (newName != null) {
+        return newName;
+      }
+    }
+    return name;
+  }
+
+  private static String mapMethodName(
+      final HashMap<String, String[]> ownerMethodNames, final String name, final String desc) {
+    if (ownerMethodNames != null) {
+      String[] descAndNewNames = ownerMethodNames.get(name);
+      if (descAndNewNames != null) {
+        for (int i = 0; i < descAndNewNames.length; i += 2) {
+          if (descAndNewNames[i].equals(desc) && descAndNewNames[i + 1] != null) {
+            return descAndNewNames[i + 1];
+          }
+        }
+      }
+    }
+    return name;
+  }
+}
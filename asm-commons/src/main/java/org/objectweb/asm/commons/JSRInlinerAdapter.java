@@ -29,6 +29,7 @@ package org.objectweb.asm.commons;
 
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -56,7 +57,16 @@ import org.objectweb.asm.tree.TryCatchBlockNode;
  * A {@link org.objectweb.asm.MethodVisitor} that removes JSR instructions and inlines the
  * referenced subroutines.
  *
- * <p><b>Explanation of how it works</b> TODO
+ * <p><b>Explanation of how it works</b> The instructions reachable from the method entry point
+ * without following any JSR, and those reachable from each JSR target without following any JSR,
+ * are first computed with an iterative depth first search. Each of these "subroutines" is stored as
+ * a sorted array of instruction indexes. Then the main subroutine is instantiated, and each JSR
+ * found in an instantiation creates a new instantiation of the target subroutine, which is emitted
+ * later, at the end of the method. An instantiation only stores the indexes of the instructions it
+ * emits, and one label per gap between these instructions. The original labels are mapped to these
+ * labels with a binary search. The time and memory needed to inline a method are thus proportional
+ * to the size of the inlined code (up to a logarithmic factor), instead of being proportional to
+ * the size of the original code times the number of instantiations.
  *
  * @author Niko Matsakis
  */
@@ -64,14 +74,19 @@ public class JSRInlinerAdapter extends MethodNode implements Opcodes {
 
   private static final boolean LOGGING = false;
 
-  /** For each label that is jumped to by a JSR, we create a BitSet instance. */
-  private final Map<LabelNode, BitSet> subroutineHeads = new HashMap<LabelNode, BitSet>();
+  /**
+   * For each label that is jumped to by a JSR, the sorted indexes of the instructions of the
+   * corresponding subroutine. The values are <tt>null</tt> until {@link #markSubroutines} is
+   * called.
+   */
+  private final Map<LabelNode, int[]> subroutineHeads = new HashMap<LabelNode, int[]>();
 
   /**
    * This subroutine instance denotes the line of execution that is not contained within any
-   * subroutine; i.e., the "subroutine" that is executing when a method first begins.
+   * subroutine; i.e., the "subroutine" that is executing when a method first begins. Contains the
+   * sorted indexes of the instructions of this subroutine.
    */
-  private final BitSet mainSubroutine = new BitSet();
+  private int[] mainSubroutine;
 
   /**
    * This BitSet contains the index of every instruction that belongs to more than one subroutine.
@@ -79,6 +94,14 @@ public class JSRInlinerAdapter extends MethodNode implements Opcodes {
    */
   final BitSet dualCitizens = new BitSet();
 
+  /**
+   * The number of labels before each instruction of the original code. The element at index i is
+   * the number of labels whose index is strictly less than i (the array has one more element than
+   * the number of instructions). Shared by all the instantiations, to find which of their labels
+   * must be emitted.
+   */
+  private int[] labelCounts;
+
   /**
    * Creates a new JSRInliner. <i>Subclasses must not use this constructor</i>. Instead, they must
    * use the {@link #JSRInlinerAdapter(int, MethodVisitor, int, String, String, String, String[])}
@@ -141,7 +164,7 @@ public class JSRInlinerAdapter extends MethodNode implements Opcodes {
     super.visitJumpInsn(opcode, lbl);
     LabelNode ln = ((JumpInsnNode) instructions.getLast()).label;
     if (opcode == JSR && !subroutineHeads.containsKey(ln)) {
-      subroutineHeads.put(ln, new BitSet());
+      subroutineHeads.put(ln, null);
     }
   }
 
@@ -154,11 +177,11 @@ public class JSRInlinerAdapter extends MethodNode implements Opcodes {
     if (!subroutineHeads.isEmpty()) {
       markSubroutines();
       if (LOGGING) {
-        log(mainSubroutine.toString());
-        Iterator<BitSet> it = subroutineHeads.values().iterator();
+        log(Arrays.toString(mainSubroutine));
+        Iterator<int[]> it = subroutineHeads.values().iterator();
         while (it.hasNext()) {
-          BitSet sub = it.next();
-          log(sub.toString());
+          int[] sub = it.next();
+          log(Arrays.toString(sub));
         }
       }
       emitCode();
@@ -175,22 +198,30 @@ public class JSRInlinerAdapter extends MethodNode implements Opcodes {
    * method of.
    */
   private void markSubroutines() {
+    // The start, end and handler indexes of each try/catch block, computed once for all the
+    // subroutines.
+    int[] tryCatchIndexes = new int[3 * tryCatchBlocks.size()];
+    for (int i = 0; i < tryCatchBlocks.size(); ++i) {
+      TryCatchBlockNode trycatch = tryCatchBlocks.get(i);
+      tryCatchIndexes[3 * i] = instructions.indexOf(trycatch.start);
+      tryCatchIndexes[3 * i + 1] = instructions.indexOf(trycatch.end);
+      tryCatchIndexes[3 * i + 2] = instructions.indexOf(trycatch.handler);
+    }
     BitSet anyvisited = new BitSet();
+    Subroutine sub = new Subroutine(instructions.size());
 
     // First walk the main subroutine and find all those instructions which
     // can be reached without invoking any JSR at all
-    markSubroutineWalk(mainSubroutine, 0, anyvisited);
+    mainSubroutine = markSubroutineWalk(sub, 0, tryCatchIndexes, anyvisited);
 
     // Go through the head of each subroutine and find any nodes reachable
     // to that subroutine without following any JSR links.
-    for (Iterator<Map.Entry<LabelNode, BitSet>> it = subroutineHeads.entrySet().iterator();
+    for (Iterator<Map.Entry<LabelNode, int[]>> it = subroutineHeads.entrySet().iterator();
         it.hasNext();
         ) {
-      Map.Entry<LabelNode, BitSet> entry = it.next();
-      LabelNode lab = entry.getKey();
-      BitSet sub = entry.getValue();
-      int index = instructions.indexOf(lab);
-      markSubroutineWalk(sub, index, anyvisited);
+      Map.Entry<LabelNode, int[]> entry = it.next();
+      int index = instructions.indexOf(entry.getKey());
+      entry.setValue(markSubroutineWalk(sub, index, tryCatchIndexes, anyvisited));
     }
   }
 
@@ -201,14 +232,21 @@ public class JSRInlinerAdapter extends MethodNode implements Opcodes {
    * codes which are reachable through an exception that may be thrown during the execution of the
    * subroutine. Invoked from <code>markSubroutines()</code>.
    *
-   * @param sub the subroutine whose instructions must be computed.
+   * @param sub an empty subroutine, used to compute the instructions of the subroutine. It is
+   *     emptied before this method returns, so that it can be reused for the next subroutine.
    * @param index an instruction of this subroutine.
+   * @param tryCatchIndexes the start, end and handler indexes of each try/catch block.
    * @param anyvisited indexes of the already visited instructions, i.e. marked as part of this
    *     subroutine or any previously computed subroutine.
+   * @return the sorted indexes of the instructions of the subroutine.
    */
-  private void markSubroutineWalk(final BitSet sub, final int index, final BitSet anyvisited) {
+  private int[] markSubroutineWalk(
+      final Subroutine sub,
+      final int index,
+      final int[] tryCatchIndexes,
+      final BitSet anyvisited) {
     if (LOGGING) {
-      log("markSubroutineWalk: sub=" + sub + " index=" + index);
+      log("markSubroutineWalk: index=" + index);
     }
 
     // First find those instructions reachable via normal execution
@@ -218,23 +256,16 @@ public class JSRInlinerAdapter extends MethodNode implements Opcodes {
     boolean loop = true;
     while (loop) {
       loop = false;
-      for (Iterator<TryCatchBlockNode> it = tryCatchBlocks.iterator(); it.hasNext(); ) {
-        TryCatchBlockNode trycatch = it.next();
-
-        if (LOGGING) {
-          // TODO use of default toString().
-          log("Scanning try/catch " + trycatch);
-        }
-
+      for (int i = 0; i < tryCatchIndexes.length; i += 3) {
         // If the handler has already been processed, skip it.
-        int handlerindex = instructions.indexOf(trycatch.handler);
-        if (sub.get(handlerindex)) {
+        int handlerindex = tryCatchIndexes[i + 2];
+        if (sub.insns.get(handlerindex)) {
           continue;
         }
 
-        int startindex = instructions.indexOf(trycatch.start);
-        int endindex = instructions.indexOf(trycatch.end);
-        int nextbit = sub.nextSetBit(startindex);
+        int startindex = tryCatchIndexes[i];
+        int endindex = tryCatchIndexes[i + 1];
+        int nextbit = sub.insns.nextSetBit(startindex);
         if (nextbit != -1 && nextbit < endindex) {
           if (LOGGING) {
             log(
@@ -252,98 +283,91 @@ public class JSRInlinerAdapter extends MethodNode implements Opcodes {
         }
       }
     }
+    return sub.toArray();
   }
 
   /**
    * Performs a simple DFS of the instructions, assigning each to the subroutine <code>sub</code>.
-   * Starts from <code>index</code>. Invoked only by <code>markSubroutineWalk()</code>.
+   * Starts from <code>index</code>. Invoked only by <code>markSubroutineWalk()</code>. The branch
+   * targets which remain to be visited are stored in an explicit stack, so that this method does
+   * not overflow the Java stack on large methods.
    *
    * @param sub the subroutine whose instructions must be computed.
    * @param index an instruction of this subroutine.
    * @param anyvisited indexes of the already visited instructions, i.e. marked as part of this
    *     subroutine or any previously computed subroutine.
    */
-  private void markSubroutineWalkDFS(final BitSet sub, int index, final BitSet anyvisited) {
-    while (true) {
-      AbstractInsnNode node = instructions.get(index);
+  private void markSubroutineWalkDFS(final Subroutine sub, int index, final BitSet anyvisited) {
+    sub.push(index);
+    while (sub.stackSize > 0) {
+      index = sub.stack[--sub.stackSize];
+      while (true) {
+        AbstractInsnNode node = instructions.get(index);
+
+        // don't visit a node twice
+        if (sub.insns.get(index)) {
+          break;
+        }
+        sub.add(index);
 
-      // don't visit a node twice
-      if (sub.get(index)) {
-        return;
-      }
-      sub.set(index);
+        // check for those nodes already visited by another subroutine
+        if (anyvisited.get(index)) {
+          dualCitizens.set(index);
+          if (LOGGING) {
+            log("Instruction #" + index + " is dual citizen.");
+          }
+        }
+        anyvisited.set(index);
 
-      // check for those nodes already visited by another subroutine
-      if (anyvisited.get(index)) {
-        dualCitizens.set(index);
-        if (LOGGING) {
-          log("Instruction #" + index + " is dual citizen.");
+        if (node.getType() == AbstractInsnNode.JUMP_INSN && node.getOpcode() != JSR) {
+          // we do not follow recursively called subroutines here; but any
+          // other sort of branch we do follow
+          JumpInsnNode jnode = (JumpInsnNode) node;
+          sub.push(instructions.indexOf(jnode.label));
         }
-      }
-      anyvisited.set(index);
-
-      if (node.getType() == AbstractInsnNode.JUMP_INSN && node.getOpcode() != JSR) {
-        // we do not follow recursively called subroutines here; but any
-        // other sort of branch we do follow
-        JumpInsnNode jnode = (JumpInsnNode) node;
-        int destidx = instructions.indexOf(jnode.label);
-        markSubroutineWalkDFS(sub, destidx, anyvisited);
-      }
-      if (node.getType() == AbstractInsnNode.TABLESWITCH_INSN) {
-        TableSwitchInsnNode tsnode = (TableSwitchInsnNode) node;
-        int destidx = instructions.indexOf(tsnode.dflt);
-        markSubroutineWalkDFS(sub, destidx, anyvisited);
-        for (int i = tsnode.labels.size() - 1; i >= 0; --i) {
-          LabelNode l = tsnode.labels.get(i);
-          destidx = instructions.indexOf(l);
-          markSubroutineWalkDFS(sub, destidx, anyvisited);
+        if (node.getType() == AbstractInsnNode.TABLESWITCH_INSN) {
+          TableSwitchInsnNode tsnode = (TableSwitchInsnNode) node;
+          sub.push(instructions.indexOf(tsnode.dflt));
+          for (int i = tsnode.labels.size() - 1; i >= 0; --i) {
+            sub.push(instructions.indexOf(tsnode.labels.get(i)));
+          }
         }
-      }
-      if (node.getType() == AbstractInsnNode.LOOKUPSWITCH_INSN) {
-        LookupSwitchInsnNode lsnode = (LookupSwitchInsnNode) node;
-        int destidx = instructions.indexOf(lsnode.dflt);
-        markSubroutineWalkDFS(sub, destidx, anyvisited);
-        for (int i = lsnode.labels.size() - 1; i >= 0; --i) {
-          LabelNode l = lsnode.labels.get(i);
-          destidx = instructions.indexOf(l);
-          markSubroutineWalkDFS(sub, destidx, anyvisited);
+        if (node.getType() == AbstractInsnNode.LOOKUPSWITCH_INSN) {
+          LookupSwitchInsnNode lsnode = (LookupSwitchInsnNode) node;
+          sub.push(instructions.indexOf(lsnode.dflt));
+          for (int i = lsnode.labels.size() - 1; i >= 0; --i) {
+            sub.push(instructions.indexOf(lsnode.labels.get(i)));
+          }
         }
-      }
 
-      // check to see if this opcode falls through to the next instruction
-      // or not; if not, return.
-      switch (instructions.get(index).getOpcode()) {
-        case GOTO:
-        case RET:
-        case TABLESWITCH:
-        case LOOKUPSWITCH:
-        case IRETURN:
-        case LRETURN:
-        case FRETURN:
-        case DRETURN:
-        case ARETURN:
-        case RETURN:
-        case ATHROW:
+        // check to see if this opcode falls through to the next instruction
+        // or not; if not, continue with the next branch target.
+        int opcode = node.getOpcode();
+        if (opcode == GOTO
+            || opcode == RET
+            || opcode == TABLESWITCH
+            || opcode == LOOKUPSWITCH
+            || (opcode >= IRETURN && opcode <= RETURN)
+            || opcode == ATHROW) {
           /*
            * note: this either returns from this subroutine, or a parent
            * subroutine which invoked it
            */
-          return;
-      }
+          break;
+        }
 
-      // Use tail recursion here in the form of an outer while loop to
-      // avoid our stack growing needlessly:
-      index++;
-
-      // We implicitly assumed above that execution can always fall
-      // through to the next instruction after a JSR. But a subroutine may
-      // never return, in which case the code after the JSR is unreachable
-      // and can be anything. In particular, it can seem to fall off the
-      // end of the method, so we must handle this case here (we could
-      // instead detect whether execution can return or not from a JSR,
-      // but this is more complicated).
-      if (index >= instructions.size()) {
-        return;
+        index++;
+
+        // We implicitly assumed above that execution can always fall
+        // through to the next instruction after a JSR. But a subroutine may
+        // never return, in which case the code after the JSR is unreachable
+        // and can be anything. In particular, it can seem to fall off the
+        // end of the method, so we must handle this case here (we could
+        // instead detect whether execution can return or not from a JSR,
+        // but this is more complicated).
+        if (index >= instructions.size()) {
+          break;
+        }
       }
     }
   }
@@ -353,6 +377,12 @@ public class JSRInlinerAdapter extends MethodNode implements Opcodes {
    * fully elaborated.
    */
   private void emitCode() {
+    labelCounts = new int[instructions.size() + 1];
+    for (int i = 0, c = instructions.size(); i < c; i++) {
+      int isLabel = instructions.get(i).getType() == AbstractInsnNode.LABEL ? 1 : 0;
+      labelCounts[i + 1] = labelCounts[i] + isLabel;
+    }
+
     LinkedList<Instantiation> worklist = new LinkedList<Instantiation>();
     // Create an instantiation of the "root" subroutine, which is just the
     // main routine
@@ -370,6 +400,7 @@ public class JSRInlinerAdapter extends MethodNode implements Opcodes {
     instructions = newInstructions;
     tryCatchBlocks = newTryCatchBlocks;
     localVariables = newLocalVariables;
+    labelCounts = null;
   }
 
   /**
@@ -391,47 +422,33 @@ public class JSRInlinerAdapter extends MethodNode implements Opcodes {
       final InsnList newInstructions,
       final List<TryCatchBlockNode> newTryCatchBlocks,
       final List<LocalVariableNode> newLocalVariables) {
-    LabelNode duplbl = null;
-
     if (LOGGING) {
       log("--------------------------------------------------------");
-      log("Emitting instantiation of subroutine " + instant.subroutine);
+      log("Emitting instantiation of subroutine " + Arrays.toString(instant.subroutine));
     }
 
     // Emit the relevant instructions for this instantiation, translating
-    // labels and jump targets as we go:
-    for (int i = 0, c = instructions.size(); i < c; i++) {
-      AbstractInsnNode insn = instructions.get(i);
-      Instantiation owner = instant.findOwner(i);
-
-      // Always remap labels:
-      if (insn.getType() == AbstractInsnNode.LABEL) {
-        // Translate labels into their renamed equivalents.
-        // Avoid adding the same label more than once. Note
-        // that because we own this instruction the gotoTable
-        // and the rangeTable will always agree.
-        LabelNode ilbl = (LabelNode) insn;
-        LabelNode remap = instant.rangeLabel(ilbl);
-        if (LOGGING) {
-          // TODO use of default toString().
-          log("Translating lbl #" + i + ':' + ilbl + " to " + remap);
-        }
-        if (remap != duplbl) {
-          newInstructions.add(remap);
-          duplbl = remap;
-        }
-        continue;
+    // labels and jump targets as we go. We don't emit the instructions that
+    // were already emitted by a subroutine higher on the stack. Note that it
+    // is still possible for a given instruction to be emitted twice because it
+    // may belong to two subroutines that do not invoke each other.
+    int[] ownedInsns = instant.ownedInsns;
+    int gapStart = 0;
+    for (int gap = 0; gap <= ownedInsns.length; gap++) {
+      // All the original labels in a gap between two emitted instructions are
+      // translated to the same label, emitted once (if the gap contains at
+      // least one label).
+      int gapEnd = gap < ownedInsns.length ? ownedInsns[gap] : instructions.size();
+      if (labelCounts[gapEnd] > labelCounts[gapStart]) {
+        newInstructions.add(instant.getRangeLabel(gap));
       }
-
-      // We don't want to emit instructions that were already
-      // emitted by a subroutine higher on the stack. Note that
-      // it is still possible for a given instruction to be
-      // emitted twice because it may belong to two subroutines
-      // that do not invoke each other.
-      if (owner != instant) {
-        continue;
+      if (gap == ownedInsns.length) {
+        break;
       }
+      gapStart = gapEnd + 1;
 
+      int i = ownedInsns[gap];
+      AbstractInsnNode insn = instructions.get(i);
       if (LOGGING) {
         log("Emitting inst #" + i);
       }
@@ -447,7 +464,7 @@ public class JSRInlinerAdapter extends MethodNode implements Opcodes {
         // safe if the input is verifiable).
         LabelNode retlabel = null;
         for (Instantiation p = instant; p != null; p = p.previous) {
-          if (p.subroutine.get(i)) {
+          if (p.contains(i)) {
             retlabel = p.returnLabel;
           }
         }
@@ -460,12 +477,12 @@ public class JSRInlinerAdapter extends MethodNode implements Opcodes {
         newInstructions.add(new JumpInsnNode(GOTO, retlabel));
       } else if (insn.getOpcode() == JSR) {
         LabelNode lbl = ((JumpInsnNode) insn).label;
-        BitSet sub = subroutineHeads.get(lbl);
+        int[] sub = subroutineHeads.get(lbl);
         Instantiation newinst = new Instantiation(instant, sub);
         LabelNode startlbl = newinst.gotoLabel(lbl);
 
         if (LOGGING) {
-          log(" Creating instantiation of subr " + sub);
+          log(" Creating instantiation of subr " + Arrays.toString(sub));
         }
 
         // Rather than JSRing, we will jump to the inline version and
@@ -548,6 +565,70 @@ public class JSRInlinerAdapter extends MethodNode implements Opcodes {
     System.err.println(str);
   }
 
+  /**
+   * The state used to compute the instructions of a subroutine. A single instance is reused for
+   * all the subroutines of a method.
+   */
+  private static class Subroutine {
+
+    /** The indexes of the instructions of the subroutine being computed. */
+    final BitSet insns;
+
+    /** The elements of {@link #insns}, in the order in which they have been added. */
+    int[] insnsList;
+
+    /** The number of elements of {@link #insnsList}. */
+    int insnsCount;
+
+    /** The instructions remaining to visit, in the depth first search of the subroutine. */
+    int[] stack;
+
+    /** The number of elements of {@link #stack}. */
+    int stackSize;
+
+    Subroutine(final int maxSize) {
+      insns = new BitSet(maxSize);
+      insnsList = new int[16];
+      stack = new int[16];
+    }
+
+    void add(final int index) {
+      insns.set(index);
+      if (insnsCount == insnsList.length) {
+        int[] newInsnsList = new int[2 * insnsCount];
+        System.arraycopy(insnsList, 0, newInsnsList, 0, insnsCount);
+        insnsList = newInsnsList;
+      }
+      insnsList[insnsCount++] = index;
+    }
+
+    void push(final int index) {
+      if (stackSize == stack.length) {
+        int[] newStack = new int[2 * stackSize];
+        System.arraycopy(stack, 0, newStack, 0, stackSize);
+        stack = newStack;
+      }
+      stack[stackSize++] = index;
+    }
+
+    /**
+     * Returns the sorted indexes of the instructions of the subroutine, and resets this object so
+     * that it can be used for the next subroutine.
+     *
+     * @return the sorted indexes of the instructions of the subroutine.
+     */
+    int[] toArray() {
+      int[] result = new int[insnsCount];
+      System.arraycopy(insnsList, 0, result, 0, insnsCount);
+      Arrays.sort(result);
+      for (int i = 0; i < insnsCount; ++i) {
+        insns.clear(insnsList[i]);
+      }
+      insnsCount = 0;
+      return result;
+    }
+  }
+
   /**
    * A class that represents an instantiation of a subroutine. Each instantiation has an associate
    * "stack" --- which is a listing of those instantiations that were active when this particular
@@ -560,31 +641,46 @@ public class JSRInlinerAdapter extends MethodNode implements Opcodes {
     /** Previous instantiations; the stack must be statically predictable to be inlinable. */
     final Instantiation previous;
 
-    /** The subroutine this is an instantiation of. */
-    public final BitSet subroutine;
+    /**
+     * The subroutine this is an instantiation of, i.e. the sorted indexes of its instructions. This
+     * array is shared by all the instantiations of this subroutine.
+     */
+    public final int[] subroutine;
 
     /**
-     * This table maps Labels from the original source to Labels pointing at code specific to this
-     * instantiation, for use in remapping try/catch blocks,as well as gotos.
+     * The sorted indexes of the instructions emitted by this instantiation. These are the
+     * instructions of {@link #subroutine}, except the labels and the instructions owned by a
+     * previous instantiation.
+     *
+     * @see #findOwner(int)
+     */
+    final int[] ownedInsns;
+
+    /**
+     * The labels of this instantiation, created lazily. Each label of the original code maps to
+     * the label of the "gap" before the next instruction emitted by this instantiation, for use in
+     * remapping try/catch blocks, as well as gotos: the element at index i is the label designating
+     * the instruction at <code>ownedInsns[i]</code> (the last element designates the end of this
+     * instantiation). Note that we collapse labels which point at the same instruction into one:
+     * this is fairly common as we are often ignoring large chunks of instructions, so what were
+     * previously distinct labels become duplicates.
      *
      * <p>Note that in the presence of dual citizens instructions, that is, instructions which
      * belong to more than one subroutine due to the merging of control flow without a RET
      * instruction, we will map the target label of a GOTO to the label used by the instantiation
      * lowest on the stack. This avoids code duplication during inlining in most cases.
-     *
-     * @see #findOwner(int)
      */
-    public final Map<LabelNode, LabelNode> rangeTable = new HashMap<LabelNode, LabelNode>();
+    private final LabelNode[] rangeLabels;
 
     /** All returns for this instantiation will be mapped to this label */
     public final LabelNode returnLabel;
 
-    Instantiation(final Instantiation prev, final BitSet sub) {
+    Instantiation(final Instantiation prev, final int[] sub) {
       previous = prev;
       subroutine = sub;
       for (Instantiation p = prev; p != null; p = p.previous) {
         if (p.subroutine == sub) {
-          throw new RuntimeException("Recursive invocation of " + sub);
+          throw new RuntimeException("Recursive invocation of " + Arrays.toString(sub));
         }
       }
 
@@ -596,36 +692,34 @@ public class JSRInlinerAdapter extends MethodNode implements Opcodes {
         returnLabel = null;
       }
 
-      // Each instantiation will remap the labels from the code above to
-      // refer to its particular copy of its own instructions. Note that
-      // we collapse labels which point at the same instruction into one:
-      // this is fairly common as we are often ignoring large chunks of
-      // instructions, so what were previously distinct labels become
-      // duplicates.
-      LabelNode duplbl = null;
-      for (int i = 0, c = instructions.size(); i < c; i++) {
-        AbstractInsnNode insn = instructions.get(i);
-
-        if (insn.getType() == AbstractInsnNode.LABEL) {
-          LabelNode ilbl = (LabelNode) insn;
-
-          if (duplbl == null) {
-            // if we already have a label pointing at this spot,
-            // don't recreate it.
-            duplbl = new LabelNode();
-          }
-
-          // Add an entry in the rangeTable for every label
-          // in the original code which points at the next
-          // instruction of our own to be emitted.
-          rangeTable.put(ilbl, duplbl);
-        } else if (findOwner(i) == this) {
-          // We will emit this instruction, so clear the 'duplbl' flag
-          // since the next Label will refer to a distinct
-          // instruction.
-          duplbl = null;
+      // Compute the instructions we will emit: those of our subroutine which
+      // are not labels, and which are not emitted by a previous instantiation.
+      int[] owned = new int[sub.length];
+      int ownedCount = 0;
+      for (int j = 0; j < sub.length; ++j) {
+        int i = sub[j];
+        if (instructions.get(i).getType() != AbstractInsnNode.LABEL
+            && (!dualCitizens.get(i) || findOwner(i) == this)) {
+          owned[ownedCount++] = i;
         }
       }
+      if (ownedCount < owned.length) {
+        ownedInsns = new int[ownedCount];
+        System.arraycopy(owned, 0, ownedInsns, 0, ownedCount);
+      } else {
+        ownedInsns = owned;
+      }
+      rangeLabels = new LabelNode[ownedCount + 1];
+    }
+
+    /**
+     * Returns whether the subroutine of this instantiation contains the given instruction.
+     *
+     * @param i the index of an instruction in the original code.
+     * @return whether the subroutine of this instantiation contains the given instruction.
+     */
+    boolean contains(final int i) {
+      return Arrays.binarySearch(subroutine, i) >= 0;
     }
 
     /**
@@ -647,7 +741,7 @@ public class JSRInlinerAdapter extends MethodNode implements Opcodes {
      * @return the "owner" of a particular instruction relative to this instantiation.
      */
     public Instantiation findOwner(final int i) {
-      if (!subroutine.get(i)) {
+      if (!contains(i)) {
         return null;
       }
       if (!dualCitizens.get(i)) {
@@ -655,7 +749,7 @@ public class JSRInlinerAdapter extends MethodNode implements Opcodes {
       }
       Instantiation own = this;
       for (Instantiation p = previous; p != null; p = p.previous) {
-        if (p.subroutine.get(i)) {
+        if (p.contains(i)) {
           own = p;
         }
       }
@@ -663,9 +757,24 @@ public class JSRInlinerAdapter extends MethodNode implements Opcodes {
     }
 
     /**
-     * Looks up the label <code>l</code> in the <code>gotoTable</code>, thus translating it from a
-     * Label in the original code, to a Label in the inlined code that is appropriate for use by an
-     * instruction that branched to the original label.
+     * Returns the label of the given gap between the instructions emitted by this instantiation.
+     *
+     * @param gap an index in {@link #rangeLabels}.
+     * @return the label of the given gap, created if necessary.
+     */
+    LabelNode getRangeLabel(final int gap) {
+      LabelNode label = rangeLabels[gap];
+      if (label == null) {
+        label = new LabelNode();
+        rangeLabels[gap] = label;
+      }
+      return label;
+    }
+
+    /**
+     * Translates the label <code>l</code>, from a Label in the original code, to a Label in the
+     * inlined code that is appropriate for use by an instruction that branched to the original
+     * label.
      *
      * @param l The label we will be translating
      * @return a label for use by a branch instruction in the inlined code
@@ -675,20 +784,21 @@ public class JSRInlinerAdapter extends MethodNode implements Opcodes {
       // owner should never be null, because owner is only null
       // if an instruction cannot be reached from this subroutine
       Instantiation owner = findOwner(instructions.indexOf(l));
-      return owner.rangeTable.get(l);
+      return owner.rangeLabel(l);
     }
 
     /**
-     * Looks up the label <code>l</code> in the <code>rangeTable</code>, thus translating it from a
-     * Label in the original code, to a Label in the inlined code that is appropriate for use by an
-     * try/catch or variable use annotation.
+     * Translates the label <code>l</code>, from a Label in the original code, to a Label in the
+     * inlined code that is appropriate for use by an try/catch or variable use annotation.
      *
      * @param l The label we will be translating
      * @return a label for use by a try/catch or variable annotation in the original code
-     * @see #rangeTable
+     * @see #rangeLabels
      */
     public LabelNode rangeLabel(final LabelNode l) {
-      return rangeTable.get(l);
+      // Labels are never emitted as such, so the search always fails and
+      // returns the index of the gap containing l.
+      return getRangeLabel(-Arrays.binarySearch(ownedInsns, instructions.indexOf(l)) - 1);
     }
 
     // AbstractMap implementation
@@ -0,0 +1,538 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Remaps the classes of a jar file, taking the class hierarchy into account. The remapping is
+ * specified with a map, in the format used by {@link SimpleRemapper}. The mapping of a field or
+ * method of a class also applies to the fields and methods with the same name (and descriptor)
+ * which are inherited from this class, or which override this method, in the classes of the jar.
+ * For instance, if a class B extends a class A, the mapping "A.m()V" -&gt; "n" renames the method
+ * m()V of B, if it exists, and the references to B.m()V, to n.
+ *
+ * <p>The jar is processed in two passes, each using several threads: the first pass builds an
+ * index of the class hierarchy, and the second pass remaps each class. Only a bounded number of
+ * classes are kept in memory at the same time. The entries which are not classes, and the classes
+ * which are not changed by the remapping, are copied without being decompressed and compressed
+ * again. ZIP64 jar files are not supported.
+ */
+public class JarRemapper {
+
+  private static final String CLASS_EXTENSION = ".class";
+
+  /** The mapping of this remapper, in the format used by {@link SimpleRemapper}. */
+  private final Map<String, String> mapping;
+
+  /** The number of threads used to process the jar files. */
+  private final int threadCount;
+
+  /**
+   * Constructs a new {@link JarRemapper} using as many threads as available processors.
+   *
+   * @param mapping a mapping in the format used by {@link SimpleRemapper#SimpleRemapper(Map)}. It
+   *     must not be modified while this remapper is used.
+   */
+  public JarRemapper(final Map<String, String> mapping) {
+    this(mapping, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructs a new {@link JarRemapper}.
+   *
+   * @param mapping a mapping in the format used by {@link SimpleRemapper#SimpleRemapper(Map)}. It
+   *     must not be modified while this remapper is used.
+   * @param threadCount the number of threads used to process the jar files.
+   */
+  public JarRemapper(final Map<String, String> mapping, final int threadCount) {
+    if (threadCount <= 0) {
+      throw new IllegalArgumentException("Invalid thread count: " + threadCount);
+    }
+    this.mapping = mapping;
+    this.threadCount = threadCount;
+  }
+
+  /**
+   * Remaps the classes of a jar file.
+   *
+   * @param input the jar file to be remapped.
+   * @param output the file where the remapped jar must be written.
+   * @throws IOException if a file can't be read or written, or if two entries are remapped to the
+   *     same name. In this case the output file is deleted.
+   */
+  public void remap(final File input, final File output) throws IOException {
+    RawZipFile zipFile = new RawZipFile(input);
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    try {
+      Remapper remapper =
+          new CachingRemapper(new HierarchyRemapper(mapping, readHierarchy(zipFile, executor)));
+      RawZipWriter zipWriter = new RawZipWriter(output);
+      boolean success = false;
+      try {
+        // Remaps the entries in order, with at most 'maxPendingTasks' entries in memory.
+        int maxPendingTasks = 4 * threadCount;
+        LinkedList<Future<RemappedEntry>> pendingTasks = new LinkedList<Future<RemappedEntry>>();
+        for (RawZipFile.Entry entry : zipFile.getEntries()) {
+          if (pendingTasks.size() == maxPendingTasks) {
+            write(zipWriter, pendingTasks.removeFirst());
+          }
+          pendingTasks.add(executor.submit(new RemapTask(zipFile, entry, remapper)));
+        }
+        while (!pendingTasks.isEmpty()) {
+          write(zipWriter, pendingTasks.removeFirst());
+        }
+        zipWriter.finish();
+        success = true;
+      } finally {
+        if (!success) {
+          // Do not leave a well formed but incomplete jar file.
+          try {
+            zipWriter.close();
+          } catch (IOException e) {
+            // Ignored, the exception which caused the failure is more relevant.
+          }
+          output.delete();
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+      zipFile.close();
+    }
+  }
+
+  /** Reads the super class, interfaces and private members of each class of the given zip file. */
+  private static Map<String, ClassInfo> readHierarchy(
+      final RawZipFile zipFile, final ExecutorService executor) throws IOException {
+    final ConcurrentHashMap<String, ClassInfo> classes = new ConcurrentHashMap<String, ClassInfo>();
+    List<Future<Object>> tasks = new ArrayList<Future<Object>>();
+    for (final RawZipFile.Entry entry : zipFile.getEntries()) {
+      if (isClass(entry)) {
+        tasks.add(
+            executor.submit(
+                new Callable<Object>() {
+                  public Object call() throws IOException {
+                    ClassInfo classInfo = new ClassInfo();
+                    new ClassReader(zipFile.readData(entry))
+                        .accept(
+                            classInfo,
+                            ClassReader.SKIP_CODE
+                                | ClassReader.SKIP_DEBUG
+                                | ClassReader.SKIP_FRAMES);
+                    classes.putIfAbsent(classInfo.name, classInfo);
+                    return null;
+                  }
+                }));
+      }
+    }
+    for (Future<Object> task : tasks) {
+      getResult(task);
+    }
+    return classes;
+  }
+
+  private static boolean isClass(final RawZipFile.Entry entry) {
+    return entry.name.endsWith(CLASS_EXTENSION) && entry.size > 0;
+  }
+
+  private static void write(final RawZipWriter zipWriter, final Future<RemappedEntry> task)
+      throws IOException {
+    RemappedEntry remappedEntry = getResult(task);
+    zipWriter.write(remappedEntry.entry, remappedEntry.rawData);
+  }
+
+  private static <T> T getResult(final Future<T> task) throws IOException {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      IOException exception = new IOException("Interrupted");
+      exception.initCause(e);
+      throw exception;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      IOException exception = new IOException(String.valueOf(cause));
+      exception.initCause(cause);
+      throw exception;
+    }
+  }
+
+  /** A remapped jar entry, with its raw data. */
+  private static final class RemappedEntry {
+
+    final RawZipFile.Entry entry;
+
+    final byte[] rawData;
+
+    RemappedEntry(final RawZipFile.Entry entry, final byte[] rawData) {
+      this.entry = entry;
+      this.rawData = rawData;
+    }
+  }
+
+  /** A task remapping an entry of a jar file. */
+  private final class RemapTask implements Callable<RemappedEntry> {
+
+    private final RawZipFile zipFile;
+
+    private final RawZipFile.Entry entry;
+
+    private final Remapper remapper;
+
+    RemapTask(final RawZipFile zipFile, final RawZipFile.Entry entry, final Remapper remapper) {
+      this.zipFile = zipFile;
+      this.entry = entry;
+      this.remapper = remapper;
+    }
+
+    public RemappedEntry call() throws IOException {
+      if (!isClass(entry)) {
+        return new RemappedEntry(entry, zipFile.readRawData(entry));
+      }
+      ClassReader classReader = new ClassReader(zipFile.readData(entry));
+      ClassWriter classWriter = new ClassWriter(classReader, 0);
+      ChangeTrackingRemapper classRemapper = new ChangeTrackingRemapper(remapper);
+      classReader.accept(new ClassRemapper(classWriter, classRemapper, classReader), 0);
+      if (!classRemapper.changed) {
+        return new RemappedEntry(entry, zipFile.readRawData(entry));
+      }
+      byte[] newClassFile = classWriter.toByteArray();
+
+      String className = classReader.getClassName();
+      String newClassName = remapper.mapType(className);
+
+      RawZipFile.Entry newEntry = new RawZipFile.Entry();
+      newEntry.name = entry.name;
+      if (!newClassName.equals(className) && entry.name.endsWith(className + CLASS_EXTENSION)) {
+        // Keeps the prefix of the entry name, if any (e.g. for multi-release jars).
+        int prefixLength = entry.name.length() - className.length() - CLASS_EXTENSION.length();
+        newEntry.name = entry.name.substring(0, prefixLength) + newClassName + CLASS_EXTENSION;
+      }
+      newEntry.nameBytes = newEntry.name.getBytes("UTF-8");
+      newEntry.versionMadeBy = entry.versionMadeBy;
+      // Bit 11 indicates that the entry name is encoded with UTF-8.
+      newEntry.flags = (entry.flags & ~6) | 0x800;
+      newEntry.method = RawZipFile.DEFLATED;
+      newEntry.dosTime = entry.dosTime;
+      CRC32 crc = new CRC32();
+      crc.update(newClassFile);
+      newEntry.crc = (int) crc.getValue();
+      newEntry.size = newClassFile.length;
+      newEntry.externalAttributes = entry.externalAttributes;
+      return new RemappedEntry(newEntry, deflate(newClassFile));
+    }
+
+    private byte[] deflate(final byte[] data) {
+      Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+      try {
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 2 + 64);
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+          output.write(buffer, 0, deflater.deflate(buffer));
+        }
+        return output.toByteArray();
+      } finally {
+        deflater.end();
+      }
+    }
+  }
+
+  /**
+   * A {@link Remapper} which delegates to another one, and records whether it changed any name,
+   * descriptor or signature.
+   */
+  private static final class ChangeTrackingRemapper extends Remapper {
+
+    private final Remapper remapper;
+
+    /** Whether a value returned by this remapper is different from its argument. */
+    boolean changed;
+
+    ChangeTrackingRemapper(final Remapper remapper) {
+      this.remapper = remapper;
+    }
+
+    private <T> T track(final T oldValue, final T newValue) {
+      if (newValue == null ? oldValue != null : !newValue.equals(oldValue)) {
+        changed = true;
+      }
+      return newValue;
+    }
+
+    @Override
+    public String mapDesc(final String desc) {
+      return track(desc, remapper.mapDesc(desc));
+    }
+
+    @Override
+    public String mapType(final String type) {
+      return track(type, remapper.mapType(type));
+    }
+
+    @Override
+    public String[] mapTypes(final String[] types) {
+      String[] newTypes = remapper.mapTypes(types);
+      if (!Arrays.equals(types, newTypes)) {
+        changed = true;
+      }
+      return newTypes;
+    }
+
+    @Override
+    public String mapMethodDesc(final String desc) {
+      return track(desc, remapper.mapMethodDesc(desc));
+    }
+
+    @Override
+    public Object mapValue(final Object value) {
+      return track(value, remapper.mapValue(value));
+    }
+
+    @Override
+    public String mapSignature(final String signature, final boolean typeSignature) {
+      return track(signature, remapper.mapSignature(signature, typeSignature));
+    }
+
+    @Override
+    public String mapMethodName(final String owner, final String name, final String desc) {
+      return track(name, remapper.mapMethodName(owner, name, desc));
+    }
+
+    @Override
+    public String mapInvokeDynamicMethodName(final String name, final String desc) {
+      return track(name, remapper.mapInvokeDynamicMethodName(name, desc));
+    }
+
+    @Override
+    public String mapFieldName(final String owner, final String name, final String desc) {
+      return track(name, remapper.mapFieldName(owner, name, desc));
+    }
+
+    @Override
+    public String mapPackageName(final String name) {
+      return track(name, remapper.mapPackageName(name));
+    }
+
+    @Override
+    public String mapModuleName(final String name) {
+      return track(name, remapper.mapModuleName(name));
+    }
+
+    @Override
+    public String map(final String typeName) {
+      String newTypeName = remapper.map(typeName);
+      if (newTypeName != null && !newTypeName.equals(typeName)) {
+        changed = true;
+      }
+      return newTypeName;
+    }
+  }
+
+  /** The super class, interfaces and private members of a class. */
+  private static final class ClassInfo extends ClassVisitor {
+
+    String name;
+
+    String superName;
+
+    String[] interfaces;
+
+    /**
+     * The private fields and methods of the class. Fields are identified by their name, and methods
+     * by their name and descriptor.
+     */
+    final HashSet<String> privateMembers = new HashSet<String>();
+
+    ClassInfo() {
+      super(Opcodes.ASM6);
+    }
+
+    @Override
+    public void visit(
+        final int version,
+        final int access,
+        final String name,
+        final String signature,
+        final String superName,
+        final String[] interfaces) {
+      this.name = name;
+      this.superName = superName;
+      this.interfaces = interfaces;
+    }
+
+    @Override
+    public FieldVisitor visitField(
+        final int access,
+        final String name,
+        final String desc,
+        final String signature,
+        final Object value) {
+      if ((access & Opcodes.ACC_PRIVATE) != 0) {
+        privateMembers.add(name);
+      }
+      return null;
+    }
+
+    @Override
+    public MethodVisitor visitMethod(
+        final int access,
+        final String name,
+        final String desc,
+        final String signature,
+        final String[] exceptions) {
+      if ((access & Opcodes.ACC_PRIVATE) != 0) {
+        privateMembers.add(name + desc);
+      }
+      return null;
+    }
+  }
+
+  /**
+   * A {@link SimpleRemapper} which looks up the mapping of a field or method in the super classes
+   * and interfaces of its owner, if there is no mapping for the owner itself.
+   */
+  private static final class HierarchyRemapper extends SimpleRemapper {
+
+    /** The maximum number of elements of {@link #memberNames}. */
+    private static final int MAX_MEMBER_NAMES = 65536;
+
+    private final Map<String, ClassInfo> classes;
+
+    /**
+     * The new names of some fields and methods looked up so far, indexed by mapping key. This cache
+     * is cleared when it reaches {@link #MAX_MEMBER_NAMES} elements.
+     */
+    private final ConcurrentHashMap<String, String> memberNames;
+
+    HierarchyRemapper(final Map<String, String> mapping, final Map<String, ClassInfo> classes) {
+      super(mapping);
+      this.classes = classes;
+      this.memberNames = new ConcurrentHashMap<String, String>();
+    }
+
+    @Override
+    public String mapMethodName(final String owner, final String name, final String desc) {
+      return mapMemberName(owner, name, name + desc);
+    }
+
+    @Override
+    public String mapFieldName(final String owner, final String name, final String desc) {
+      return mapMemberName(owner, name, name);
+    }
+
+    private String mapMemberName(final String owner, final String name, final String member) {
+      String key = owner + '.' + member;
+      String newName = memberNames.get(key);
+      if (newName == null) {
+        newName = lookupMemberName(owner, name, member, key);
+        if (memberNames.size() >= MAX_MEMBER_NAMES) {
+          memberNames.clear();
+        }
+        memberNames.put(key, newName);
+      }
+      return newName;
+    }
+
+    private String lookupMemberName(
+        final String owner, final String name, final String member, final String key) {
+      String newName = map(key);
+      if (newName != null) {
+        return newName;
+      }
+      ClassInfo classInfo = classes.get(owner);
+      if (name.charAt(0) == '<'
+          || classInfo == null
+          || classInfo.privateMembers.contains(member)) {
+        return name;
+      }
+      // Breadth first search in the super classes and interfaces, super classes first.
+      HashSet<String> visited = new HashSet<String>();
+      ArrayList<String> queue = new ArrayList<String>();
+      addSuperTypes(classInfo, queue);
+      for (int i = 0; i < queue.size(); ++i) {
+        String type = queue.get(i);
+        if (visited.add(type)) {
+          ClassInfo typeInfo = classes.get(type);
+          if (typeInfo == null || !typeInfo.privateMembers.contains(member)) {
+            newName = map(type + '.' + member);
+            if (newName != null) {
+              return newName;
+            }
+          }
+          if (typeInfo != null) {
+            addSuperTypes(typeInfo, queue);
+          }
+        }
+      }
+      return name;
+    }
+
+    private static void addSuperTypes(final ClassInfo classInfo, final List<String> types) {
+      if (classInfo.superName != null) {
+        types.add(classInfo.superName);
+      }
+      if (classInfo.interfaces != null) {
+        types.addAll(Arrays.asList(classInfo.interfaces));
+      }
+    }
+  }
+}
@@ -0,0 +1,380 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.LocalVariableAnnotationNode;
+import org.objectweb.asm.tree.LocalVariableNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+import org.objectweb.asm.tree.analysis.BackwardAnalyzer;
+import org.objectweb.asm.tree.analysis.ControlFlowGraph;
+import org.objectweb.asm.tree.analysis.LivenessAnalyzer;
+
+/**
+ * A {@link MethodVisitor} that renumbers the local variables of a method (except the formal
+ * parameters) so that variables whose live ranges do not overlap share the same slot. This reduces
+ * the max_locals value of the method, and the size of its stack map frames. This adapter is
+ * typically used after a {@link LocalVariablesSorter}, which allocates a new slot for each local
+ * variable added to a method. It buffers the whole method and only sends it to the next visitor in
+ * {@link #visitEnd}.
+ *
+ * <p>Each slot above the formal parameters must always be used with the same size, which is the
+ * case after a {@link LocalVariablesSorter}; otherwise, or if the method contains JSR
+ * instructions, the method is left unchanged. The stack map frames must be uncompressed (see
+ * {@link org.objectweb.asm.ClassReader#EXPAND_FRAMES}). The local variables which are not live at
+ * a frame are replaced with {@link Opcodes#TOP} in this frame. Note that the debug information of
+ * a variable may cover code where its slot is used by another variable.
+ */
+public class LocalVariablesCompactor extends MethodNode {
+
+  /** The method visitor to which the compacted method is sent, or <tt>null</tt>. */
+  private final MethodVisitor next;
+
+  /** Index of the first local variable, after formal parameters. */
+  private final int firstLocal;
+
+  /**
+   * Creates a new {@link LocalVariablesCompactor}. <i>Subclasses must not use this
+   * constructor</i>. Instead, they must use the {@link #LocalVariablesCompactor(int, MethodVisitor,
+   * int, String, String, String, String[])} version.
+   *
+   * @param mv the method visitor to which the compacted method must be sent. May be
+   *     <tt>null</tt>.
+   * @param access the method's access flags (see {@link Opcodes}).
+   * @param name the method's name.
+   * @param desc the method's descriptor (see {@link Type}).
+   * @param signature the method's signature. May be <tt>null</tt>.
+   * @param exceptions the internal names of the method's exception classes (see {@link
+   *     Type#getInternalName() getInternalName}). May be <tt>null</tt>.
+   * @throws IllegalStateException If a subclass calls this constructor.
+   */
+  public LocalVariablesCompactor(
+      final MethodVisitor mv,
+      final int access,
+      final String name,
+      final String desc,
+      final String signature,
+      final String[] exceptions) {
+    this(Opcodes.ASM6, mv, access, name, desc, signature, exceptions);
+    if (getClass() != LocalVariablesCompactor.class) {
+      throw new IllegalStateException();
+    }
+  }
+
+  /**
+   * Creates a new {@link LocalVariablesCompactor}.
+   *
+   * @param api the ASM API version implemented by this visitor. Must be one of {@link
+   *     Opcodes#ASM4}, {@link Opcodes#ASM5} or {@link Opcodes#ASM6}.
+   * @param mv the method visitor to which the compacted method must be sent. May be
+   *     <tt>null</tt>.
+   * @param access the method's access flags (see {@link Opcodes}).
+   * @param name the method's name.
+   * @param desc the method's descriptor (see {@link Type}).
+   * @param signature the method's signature. May be <tt>null</tt>.
+   * @param exceptions the internal names of the method's exception classes (see {@link
+   *     Type#getInternalName() getInternalName}). May be <tt>null</tt>.
+   */
+  protected LocalVariablesCompactor(
+      final int api,
+      final MethodVisitor mv,
+      final int access,
+      final String name,
+      final String desc,
+      final String signature,
+      final String[] exceptions) {
+    super(api, access, name, desc, signature, exceptions);
+    this.next = mv;
+    int argumentsSize = Type.getArgumentsAndReturnSizes(desc) >> 2;
+    this.firstLocal = (access & Opcodes.ACC_STATIC) == 0 ? argumentsSize : argumentsSize - 1;
+  }
+
+  @Override
+  public void visitFrame(
+      final int type,
+      final int nLocal,
+      final Object[] local,
+      final int nStack,
+      final Object[] stack) {
+    if (type != Opcodes.F_NEW) {
+      throw new IllegalStateException(
+          "ClassReader.accept() should be called with EXPAND_FRAMES flag");
+    }
+    super.visitFrame(type, nLocal, local, nStack, stack);
+  }
+
+  /** Compacts the local variables of the method, and sends it to the next visitor, if any. */
+  @Override
+  public void visitEnd() {
+    super.visitEnd();
+    if (instructions.size() > 0 && maxLocals > firstLocal) {
+      compactLocalVariables();
+    }
+    if (next != null) {
+      accept(next);
+    }
+  }
+
+  /** Renumbers the local variables of the method, if possible. */
+  private void compactLocalVariables() {
+    // Find the size of the variable stored in each slot, and check that it is always the same.
+    int[] sizes = new int[maxLocals + 1];
+    for (AbstractInsnNode insn = instructions.getFirst(); insn != null; insn = insn.getNext()) {
+      int var;
+      int size = 1;
+      switch (insn.getOpcode()) {
+        case Opcodes.LLOAD:
+        case Opcodes.DLOAD:
+        case Opcodes.LSTORE:
+        case Opcodes.DSTORE:
+          size = 2;
+          var = ((VarInsnNode) insn).var;
+          break;
+        case Opcodes.ILOAD:
+        case Opcodes.FLOAD:
+        case Opcodes.ALOAD:
+        case Opcodes.ISTORE:
+        case Opcodes.FSTORE:
+        case Opcodes.ASTORE:
+          var = ((VarInsnNode) insn).var;
+          break;
+        case Opcodes.IINC:
+          var = ((IincInsnNode) insn).var;
+          break;
+        case Opcodes.JSR:
+        case Opcodes.RET:
+          return;
+        default:
+          continue;
+      }
+      if (var >= firstLocal) {
+        if (var + size > maxLocals || (sizes[var] != 0 && sizes[var] != size)) {
+          return;
+        }
+        sizes[var] = size;
+      }
+    }
+    int[] vars = new int[maxLocals];
+    int varCount = 0;
+    int[] varIndices = new int[maxLocals];
+    for (int var = firstLocal; var < maxLocals; ++var) {
+      varIndices[var] = -1;
+      if (sizes[var] != 0) {
+        if (sizes[var] == 2 && sizes[var + 1] != 0) {
+          return;
+        }
+        varIndices[var] = varCount;
+        vars[varCount++] = var;
+      }
+    }
+
+    // Compute the interference graph: two variables interfere if one is live when the other is
+    // stored. This is sufficient since a variable can't be read before it has been stored.
+    LivenessAnalyzer livenessAnalyzer = new LivenessAnalyzer();
+    livenessAnalyzer.analyze(this);
+    long[][] ins = livenessAnalyzer.getIns();
+    ControlFlowGraph graph = livenessAnalyzer.getControlFlowGraph();
+    long[][] interferences = new long[varCount][(varCount + 63) >>> 6];
+    int insnIndex = 0;
+    for (AbstractInsnNode insn = instructions.getFirst(); insn != null; insn = insn.getNext()) {
+      int storedVar = getStoredVar(insn);
+      if (storedVar >= firstLocal) {
+        int storedVarIndex = varIndices[storedVar];
+        int block = graph.getBlock(insnIndex);
+        long[] out =
+            insnIndex + 1 < graph.getBlockEnd(block)
+                ? ins[insnIndex + 1]
+                : livenessAnalyzer.getOut(insnIndex);
+        for (int i = 0; i < varCount; ++i) {
+          if (i != storedVarIndex && BackwardAnalyzer.contains(out, vars[i])) {
+            interferences[storedVarIndex][i >>> 6] |= 1L << (i & 63);
+            interferences[i][storedVarIndex >>> 6] |= 1L << (storedVarIndex & 63);
+          }
+        }
+      }
+      ++insnIndex;
+    }
+
+    // Assign a new slot to each variable, in order, with a greedy algorithm.
+    int[] newVars = new int[varCount];
+    int newMaxLocals = firstLocal;
+    for (int i = 0; i < varCount; ++i) {
+      int size = sizes[vars[i]];
+      int newVar = firstLocal;
+      boolean conflict = true;
+      while (conflict) {
+        conflict = false;
+        for (int j = 0; j < i; ++j) {
+          if ((interferences[i][j >>> 6] & (1L << (j & 63))) != 0
+              && newVar < newVars[j] + sizes[vars[j]]
+              && newVars[j] < newVar + size) {
+            newVar = newVars[j] + sizes[vars[j]];
+            conflict = true;
+          }
+        }
+      }
+      newVars[i] = newVar;
+      newMaxLocals = Math.max(newMaxLocals, newVar + size);
+    }
+
+    // Rewrite the method.
+    int[] mapping = new int[maxLocals];
+    for (int var = 0; var < maxLocals; ++var) {
+      mapping[var] = var < firstLocal ? var : varIndices[var] == -1 ? -1 : newVars[varIndices[var]];
+    }
+    insnIndex = 0;
+    for (AbstractInsnNode insn = instructions.getFirst(); insn != null; insn = insn.getNext()) {
+      if (insn instanceof VarInsnNode) {
+        VarInsnNode varInsn = (VarInsnNode) insn;
+        varInsn.var = mapping[varInsn.var];
+      } else if (insn instanceof IincInsnNode) {
+        IincInsnNode iincInsn = (IincInsnNode) insn;
+        iincInsn.var = mapping[iincInsn.var];
+      } else if (insn instanceof FrameNode) {
+        remapFrame((FrameNode) insn, ins[insnIndex], mapping, newMaxLocals);
+      }
+      ++insnIndex;
+    }
+    if (localVariables != null) {
+      Iterator<LocalVariableNode> it = localVariables.iterator();
+      while (it.hasNext()) {
+        LocalVariableNode localVariable = it.next();
+        int newIndex = localVariable.index < maxLocals ? mapping[localVariable.index] : -1;
+        if (newIndex == -1) {
+          it.remove();
+        } else {
+          localVariable.index = newIndex;
+        }
+      }
+    }
+    remapLocalVariableAnnotations(visibleLocalVariableAnnotations, mapping);
+    remapLocalVariableAnnotations(invisibleLocalVariableAnnotations, mapping);
+    maxLocals = newMaxLocals;
+  }
+
+  /**
+   * Returns the local variable stored by the given instruction.
+   *
+   * @param insn an instruction.
+   * @return the local variable stored by insn, or -1 if it does not store a local variable.
+   */
+  private static int getStoredVar(final AbstractInsnNode insn) {
+    switch (insn.getOpcode()) {
+      case Opcodes.ISTORE:
+      case Opcodes.LSTORE:
+      case Opcodes.FSTORE:
+      case Opcodes.DSTORE:
+      case Opcodes.ASTORE:
+        return ((VarInsnNode) insn).var;
+      case Opcodes.IINC:
+        return ((IincInsnNode) insn).var;
+      default:
+        return -1;
+    }
+  }
+
+  /**
+   * Renumbers the local variables of a frame. The local variables which are not live at this frame
+   * are removed.
+   *
+   * @param frame an uncompressed frame.
+   * @param liveVars the local variables which are live at this frame.
+   * @param mapping the new slot of each local variable, or -1 for unused slots.
+   * @param newMaxLocals the new maximum number of local variables.
+   */
+  private void remapFrame(
+      final FrameNode frame, final long[] liveVars, final int[] mapping, final int newMaxLocals) {
+    // Compute the type of each slot (wide types use two slots, the second one being null).
+    Object[] oldTypes = new Object[Math.max(maxLocals, firstLocal)];
+    int var = 0;
+    for (int i = 0; i < frame.local.size() && var < oldTypes.length; ++i) {
+      Object type = frame.local.get(i);
+      oldTypes[var++] = type;
+      if (type == Opcodes.LONG || type == Opcodes.DOUBLE) {
+        ++var;
+      }
+    }
+    Object[] newTypes = new Object[newMaxLocals];
+    for (var = 0; var < oldTypes.length; ++var) {
+      Object type = oldTypes[var];
+      if (type == null || var >= mapping.length || mapping[var] == -1) {
+        continue;
+      }
+      if (var < firstLocal || BackwardAnalyzer.contains(liveVars, var)) {
+        newTypes[mapping[var]] = type;
+      }
+    }
+    List<Object> newLocal = new ArrayList<Object>();
+    int lastNonTop = 0;
+    for (var = 0; var < newMaxLocals; ++var) {
+      Object type = newTypes[var];
+      newLocal.add(type == null ? Opcodes.TOP : type);
+      if (type != null && type != Opcodes.TOP) {
+        lastNonTop = newLocal.size();
+      }
+      if (type == Opcodes.LONG || type == Opcodes.DOUBLE) {
+        ++var;
+      }
+    }
+    while (newLocal.size() > lastNonTop) {
+      newLocal.remove(newLocal.size() - 1);
+    }
+    frame.local = newLocal;
+  }
+
+  /**
+   * Renumbers the local variables of some local variable type annotations.
+   *
+   * @param annotations some local variable type annotations. May be <tt>null</tt>.
+   * @param mapping the new slot of each local variable, or -1 for unused slots.
+   */
+  private static void remapLocalVariableAnnotations(
+      final List<LocalVariableAnnotationNode> annotations, final int[] mapping) {
+    if (annotations == null) {
+      return;
+    }
+    for (LocalVariableAnnotationNode annotation : annotations) {
+      for (int i = 0; i < annotation.index.size(); ++i) {
+        int index = annotation.index.get(i);
+        if (index < mapping.length && mapping[index] != -1) {
+          annotation.index.set(i, mapping[index]);
+        }
+      }
+    }
+  }
+}
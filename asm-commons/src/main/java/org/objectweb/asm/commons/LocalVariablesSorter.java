@@ -41,6 +41,9 @@ import org.objectweb.asm.TypePath;
  * indeed add new locals when needed by calling {@link #newLocal} on this adapter (this requires a
  * reference back to this {@link LocalVariablesSorter}).
  *
+ * <p>Each new local variable uses its own slot. In order to reuse the slots of the local variables
+ * whose live ranges do not overlap, the next visitor can be a {@link LocalVariablesCompactor}.
+ *
  * @author Chris Nokleberg
  * @author Eugene Kuleshov
  * @author Eric Bruneton
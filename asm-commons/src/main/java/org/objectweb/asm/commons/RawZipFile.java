@@ -0,0 +1,295 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A read only zip file, giving access to the raw (possibly compressed) data of its entries, so
+ * that they can be copied to another zip file without being decompressed and compressed again.
+ * ZIP64 archives, encrypted entries and multi-disk archives are not supported. The methods of this
+ * class can be called concurrently from several threads.
+ */
+final class RawZipFile implements Closeable {
+
+  /** The signature of a local file header. */
+  static final int LOCAL_HEADER = 0x04034b50;
+
+  /** The signature of a central directory file header. */
+  static final int CENTRAL_HEADER = 0x02014b50;
+
+  /** The signature of the end of central directory record. */
+  static final int END_HEADER = 0x06054b50;
+
+  /** The size of the end of central directory record, without the archive comment. */
+  static final int END_HEADER_SIZE = 22;
+
+  /** The compression method of uncompressed entries. */
+  static final int STORED = 0;
+
+  /** The compression method of entries compressed with the deflate algorithm. */
+  static final int DEFLATED = 8;
+
+  /** An entry of a zip file. */
+  static final class Entry {
+
+    /** The name of this entry, decoded with UTF-8. */
+    String name;
+
+    /** The name of this entry, as stored in the zip file. */
+    byte[] nameBytes;
+
+    /** The "version made by" field of this entry. */
+    int versionMadeBy;
+
+    /** The general purpose bit flags of this entry. */
+    int flags;
+
+    /** The compression method of this entry. */
+    int method;
+
+    /** The last modification time and date of this entry, in MS-DOS format. */
+    int dosTime;
+
+    /** The CRC-32 of the uncompressed data of this entry. */
+    int crc;
+
+    /** The size of the (possibly compressed) data of this entry. */
+    long compressedSize;
+
+    /** The size of the uncompressed data of this entry. */
+    long size;
+
+    /** The external file attributes of this entry. */
+    int externalAttributes;
+
+    /** The offset of the local file header of this entry. */
+    long localHeaderOffset;
+
+    /** The extra field of this entry in the central directory, or <tt>null</tt>. */
+    byte[] extra;
+
+    /**
+     * The extra field of this entry in its local file header, or <tt>null</tt>. Only set by {@link
+     * RawZipFile#readRawData}.
+     */
+    byte[] localExtra;
+
+    /** The comment of this entry, as stored in the zip file, or <tt>null</tt>. */
+    byte[] comment;
+  }
+
+  private final RandomAccessFile file;
+
+  private final List<Entry> entries;
+
+  /**
+   * Opens a zip file and reads its central directory.
+   *
+   * @param file a zip file.
+   * @throws IOException if the file can't be read, or if it is not a supported zip file.
+   */
+  RawZipFile(final File file) throws IOException {
+    this.file = new RandomAccessFile(file, "r");
+    try {
+      this.entries = readCentralDirectory();
+    } catch (IOException e) {
+      this.file.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the entries of this zip file.
+   *
+   * @return the entries of this zip file, in the order of its central directory.
+   */
+  List<Entry> getEntries() {
+    return entries;
+  }
+
+  /**
+   * Returns the raw data of the given entry. Also sets the {@link Entry#localExtra} field of the
+   * entry.
+   *
+   * @param entry an entry of this zip file.
+   * @return the data of this entry, as stored in the zip file (i.e. possibly compressed).
+   * @throws IOException if the data can't be read.
+   */
+  synchronized byte[] readRawData(final Entry entry) throws IOException {
+    byte[] header = new byte[30];
+    file.seek(entry.localHeaderOffset);
+    file.readFully(header);
+    if (getInt(header, 0) != LOCAL_HEADER) {
+      throw new IOException("Invalid local file header: " + entry.name);
+    }
+    file.seek(entry.localHeaderOffset + 30 + getShort(header, 26));
+    entry.localExtra = readBytes(getShort(header, 28));
+    byte[] data = new byte[(int) entry.compressedSize];
+    file.readFully(data);
+    return data;
+  }
+
+  /**
+   * Returns the uncompressed data of the given entry.
+   *
+   * @param entry an entry of this zip file.
+   * @return the uncompressed data of this entry.
+   * @throws IOException if the data can't be read or decompressed.
+   */
+  byte[] readData(final Entry entry) throws IOException {
+    byte[] rawData = readRawData(entry);
+    if (entry.method == STORED) {
+      return rawData;
+    }
+    if (entry.method != DEFLATED) {
+      throw new IOException("Unsupported compression method " + entry.method + ": " + entry.name);
+    }
+    byte[] data = new byte[(int) entry.size];
+    Inflater inflater = new Inflater(true);
+    try {
+      inflater.setInput(rawData);
+      int size = 0;
+      boolean hasDummyInput = false;
+      while (size < data.length) {
+        int inflated = inflater.inflate(data, size, data.length - size);
+        size += inflated;
+        if (inflated == 0) {
+          if (!inflater.needsInput() || hasDummyInput) {
+            break;
+          }
+          // A "dummy" byte may be needed at the end of the input in 'nowrap' mode.
+          inflater.setInput(new byte[1]);
+          hasDummyInput = true;
+        }
+      }
+      if (size != data.length) {
+        throw new IOException("Invalid compressed data: " + entry.name);
+      }
+    } catch (DataFormatException e) {
+      IOException exception = new IOException("Invalid compressed data: " + entry.name);
+      exception.initCause(e);
+      throw exception;
+    } finally {
+      inflater.end();
+    }
+    return data;
+  }
+
+  public void close() throws IOException {
+    file.close();
+  }
+
+  private List<Entry> readCentralDirectory() throws IOException {
+    long length = file.length();
+    int tailSize = (int) Math.min(length, END_HEADER_SIZE + 0xFFFF);
+    byte[] tail = new byte[tailSize];
+    file.seek(length - tailSize);
+    file.readFully(tail);
+    int end = tailSize - END_HEADER_SIZE;
+    while (end >= 0 && getInt(tail, end) != END_HEADER) {
+      --end;
+    }
+    if (end < 0) {
+      throw new IOException("Invalid zip file: end of central directory not found");
+    }
+    int entryCount = getShort(tail, end + 10);
+    long directorySize = getInt(tail, end + 12) & 0xFFFFFFFFL;
+    long directoryOffset = getInt(tail, end + 16) & 0xFFFFFFFFL;
+    if (entryCount == 0xFFFF || directoryOffset == 0xFFFFFFFFL || getShort(tail, end + 4) != 0) {
+      throw new IOException("ZIP64 and multi-disk zip files are not supported");
+    }
+    byte[] directory = new byte[(int) directorySize];
+    file.seek(directoryOffset);
+    file.readFully(directory);
+    List<Entry> result = new ArrayList<Entry>(entryCount);
+    int offset = 0;
+    for (int i = 0; i < entryCount; ++i) {
+      if (getInt(directory, offset) != CENTRAL_HEADER) {
+        throw new IOException("Invalid central directory file header");
+      }
+      Entry entry = new Entry();
+      entry.versionMadeBy = getShort(directory, offset + 4);
+      entry.flags = getShort(directory, offset + 8);
+      entry.method = getShort(directory, offset + 10);
+      entry.dosTime = getInt(directory, offset + 12);
+      entry.crc = getInt(directory, offset + 16);
+      entry.compressedSize = getInt(directory, offset + 20) & 0xFFFFFFFFL;
+      entry.size = getInt(directory, offset + 24) & 0xFFFFFFFFL;
+      int nameLength = getShort(directory, offset + 28);
+      int extraLength = getShort(directory, offset + 30);
+      int commentLength = getShort(directory, offset + 32);
+      entry.externalAttributes = getInt(directory, offset + 38);
+      entry.localHeaderOffset = getInt(directory, offset + 42) & 0xFFFFFFFFL;
+      entry.nameBytes = new byte[nameLength];
+      System.arraycopy(directory, offset + 46, entry.nameBytes, 0, nameLength);
+      entry.name = new String(entry.nameBytes, "UTF-8");
+      entry.extra = copyBytes(directory, offset + 46 + nameLength, extraLength);
+      entry.comment = copyBytes(directory, offset + 46 + nameLength + extraLength, commentLength);
+      if ((entry.flags & 1) != 0) {
+        throw new IOException("Encrypted zip entries are not supported: " + entry.name);
+      }
+      result.add(entry);
+      offset += 46 + nameLength + extraLength + commentLength;
+    }
+    return result;
+  }
+
+  private byte[] readBytes(final int length) throws IOException {
+    if (length == 0) {
+      return null;
+    }
+    byte[] result = new byte[length];
+    file.readFully(result);
+    return result;
+  }
+
+  private static byte[] copyBytes(final byte[] b, final int index, final int length) {
+    if (length == 0) {
+      return null;
+    }
+    byte[] result = new byte[length];
+    System.arraycopy(b, index, result, 0, length);
+    return result;
+  }
+
+  static int getShort(final byte[] b, final int index) {
+    return (b[index] & 0xFF) | ((b[index + 1] & 0xFF) << 8);
+  }
+
+  static int getInt(final byte[] b, final int index) {
+    return getShort(b, index) | (getShort(b, index + 2) << 16);
+  }
+}
@@ -0,0 +1,194 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+
+/**
+ * A zip file writer, whose entries are written with their raw (possibly compressed) data. This
+ * makes it possible to copy entries from a {@link RawZipFile} without decompressing and
+ * compressing them again. ZIP64 archives are not supported.
+ */
+final class RawZipWriter implements Closeable {
+
+  /** The "version needed to extract" field of the entries (2.0, for the deflate method). */
+  private static final int VERSION = 20;
+
+  private final OutputStream output;
+
+  /** The central directory file headers of the entries written so far. */
+  private final ByteArrayOutputStream centralDirectory;
+
+  /** The names of the entries written so far. */
+  private final HashSet<String> names;
+
+  /** The number of bytes written so far to {@link #output}. */
+  private long offset;
+
+  /** Whether {@link #output} has been closed. */
+  private boolean closed;
+
+  /**
+   * Constructs a new {@link RawZipWriter}.
+   *
+   * @param file the zip file to be written.
+   * @throws IOException if the file can't be created.
+   */
+  RawZipWriter(final File file) throws IOException {
+    this.output = new BufferedOutputStream(new FileOutputStream(file), 65536);
+    this.centralDirectory = new ByteArrayOutputStream();
+    this.names = new HashSet<String>();
+  }
+
+  /**
+   * Writes an entry.
+   *
+   * @param entry the entry to be written. Its {@link RawZipFile.Entry#localHeaderOffset} field is
+   *     ignored. Its extra fields and comment, if any, are written unchanged.
+   * @param rawData the data of the entry, compressed with the method of the entry.
+   * @throws IOException if the entry can't be written, if its name is already used by another
+   *     entry, or if it would require the ZIP64 format.
+   */
+  void write(final RawZipFile.Entry entry, final byte[] rawData) throws IOException {
+    if (!names.add(entry.name)) {
+      throw new IOException("Duplicate zip entry: " + entry.name);
+    }
+    int localHeaderSize = 30 + entry.nameBytes.length + length(entry.localExtra);
+    if (names.size() >= 0xFFFF
+        || offset + localHeaderSize + rawData.length > 0xFFFFFFFFL
+        || entry.size > 0xFFFFFFFFL) {
+      throw new IOException("ZIP64 zip files are not supported");
+    }
+    // Sizes and CRC are always in the headers, never in a data descriptor.
+    int flags = entry.flags & ~8;
+
+    writeInt(output, RawZipFile.LOCAL_HEADER);
+    writeShort(output, VERSION);
+    writeShort(output, flags);
+    writeShort(output, entry.method);
+    writeInt(output, entry.dosTime);
+    writeInt(output, entry.crc);
+    writeInt(output, rawData.length);
+    writeInt(output, (int) entry.size);
+    writeShort(output, entry.nameBytes.length);
+    writeShort(output, length(entry.localExtra));
+    output.write(entry.nameBytes);
+    writeBytes(output, entry.localExtra);
+    output.write(rawData);
+
+    writeInt(centralDirectory, RawZipFile.CENTRAL_HEADER);
+    writeShort(centralDirectory, entry.versionMadeBy);
+    writeShort(centralDirectory, VERSION);
+    writeShort(centralDirectory, flags);
+    writeShort(centralDirectory, entry.method);
+    writeInt(centralDirectory, entry.dosTime);
+    writeInt(centralDirectory, entry.crc);
+    writeInt(centralDirectory, rawData.length);
+    writeInt(centralDirectory, (int) entry.size);
+    writeShort(centralDirectory, entry.nameBytes.length);
+    writeShort(centralDirectory, length(entry.extra));
+    writeShort(centralDirectory, length(entry.comment));
+    writeShort(centralDirectory, 0);
+    writeShort(centralDirectory, 0);
+    writeInt(centralDirectory, entry.externalAttributes);
+    writeInt(centralDirectory, (int) offset);
+    centralDirectory.write(entry.nameBytes);
+    writeBytes(centralDirectory, entry.extra);
+    writeBytes(centralDirectory, entry.comment);
+
+    offset += localHeaderSize + rawData.length;
+  }
+
+  /**
+   * Writes the central directory and closes the zip file.
+   *
+   * @throws IOException if the central directory can't be written.
+   */
+  void finish() throws IOException {
+    try {
+      if (offset + centralDirectory.size() > 0xFFFFFFFFL) {
+        throw new IOException("ZIP64 zip files are not supported");
+      }
+      centralDirectory.writeTo(output);
+      writeInt(output, RawZipFile.END_HEADER);
+      writeShort(output, 0);
+      writeShort(output, 0);
+      writeShort(output, names.size());
+      writeShort(output, names.size());
+      writeInt(output, centralDirectory.size());
+      writeInt(output, (int) offset);
+      writeShort(output, 0);
+    } finally {
+      close();
+    }
+  }
+
+  /**
+   * Closes the zip file. If {@link #finish} has not been called, the central directory is not
+   * written, and the resulting file is not a valid zip file. This method has no effect if the zip
+   * file is already closed.
+   *
+   * @throws IOException if the zip file can't be closed.
+   */
+  public void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      output.close();
+    }
+  }
+
+  private static int length(final byte[] b) {
+    return b == null ? 0 : b.length;
+  }
+
+  private static void writeBytes(final OutputStream outputStream, final byte[] b)
+      throws IOException {
+    if (b != null) {
+      outputStream.write(b);
+    }
+  }
+
+  private static void writeShort(final OutputStream outputStream, final int value)
+      throws IOException {
+    outputStream.write(value);
+    outputStream.write(value >>> 8);
+  }
+
+  private static void writeInt(final OutputStream outputStream, final int value)
+      throws IOException {
+    writeShort(outputStream, value);
+    writeShort(outputStream, value >>> 16);
+  }
+}
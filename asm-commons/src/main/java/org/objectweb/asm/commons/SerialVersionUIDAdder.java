@@ -27,10 +27,8 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package org.objectweb.asm.commons;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutput;
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.UTFDataFormatException;
 import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -110,6 +108,22 @@ import org.objectweb.asm.Opcodes;
  */
 public class SerialVersionUIDAdder extends ClassVisitor {
 
+  /**
+   * A SHA-1 message digest which is cloned to compute the SHA-1 digests, which is faster than
+   * getting a new one with {@link MessageDigest#getInstance(String)}. May be <tt>null</tt>, if this
+   * message digest is not available or can't be cloned.
+   */
+  private static final MessageDigest SHA_PROTOTYPE = createSHAPrototype();
+
+  /**
+   * The bytes used to compute the serialVersionUID (see {@link #computeSVUID}). Only the first
+   * {@link #svuidInputLength} bytes are used.
+   */
+  private byte[] svuidInput;
+
+  /** The number of bytes used in {@link #svuidInput}. */
+  private int svuidInputLength;
+
   /** Flag that indicates if we need to compute SVUID. */
   private boolean computeSVUID;
 
@@ -337,125 +351,117 @@ public class SerialVersionUIDAdder extends ClassVisitor {
   }
 
   /**
-   * Computes and returns the value of SVUID.
+   * Computes and returns the value of SVUID. The bytes from which it is computed are directly
+   * written in a byte array, which is then digested with a SHA-1 message digest.
    *
    * @return Returns the serial version UID
    * @throws IOException if an I/O error occurs
    */
   protected long computeSVUID() throws IOException {
-    ByteArrayOutputStream bos;
-    DataOutputStream dos = null;
-    long svuid = 0;
-
-    try {
-      bos = new ByteArrayOutputStream();
-      dos = new DataOutputStream(bos);
-
-      /*
-       * 1. The class name written using UTF encoding.
-       */
-      dos.writeUTF(name.replace('/', '.'));
-
-      /*
-       * 2. The class modifiers written as a 32-bit integer.
-       */
-      int access = this.access;
-      if ((access & Opcodes.ACC_INTERFACE) != 0) {
-        access =
-            (svuidMethods.size() > 0)
-                ? (access | Opcodes.ACC_ABSTRACT)
-                : (access & ~Opcodes.ACC_ABSTRACT);
-      }
-      dos.writeInt(
-          access
-              & (Opcodes.ACC_PUBLIC
-                  | Opcodes.ACC_FINAL
-                  | Opcodes.ACC_INTERFACE
-                  | Opcodes.ACC_ABSTRACT));
-
-      /*
-       * 3. The name of each interface sorted by name written using UTF
-       * encoding.
-       */
-      Arrays.sort(interfaces);
-      for (int i = 0; i < interfaces.length; i++) {
-        dos.writeUTF(interfaces[i].replace('/', '.'));
-      }
-
-      /*
-       * 4. For each field of the class sorted by field name (except
-       * private static and private transient fields):
-       *
-       * 1. The name of the field in UTF encoding. 2. The modifiers of the
-       * field written as a 32-bit integer. 3. The descriptor of the field
-       * in UTF encoding
-       *
-       * Note that field signatures are not dot separated. Method and
-       * constructor signatures are dot separated. Go figure...
-       */
-      writeItems(svuidFields, dos, false);
-
-      /*
-       * 5. If a class initializer exists, write out the following: 1. The
-       * name of the method, <clinit>, in UTF encoding. 2. The modifier of
-       * the method, java.lang.reflect.Modifier.STATIC, written as a
-       * 32-bit integer. 3. The descriptor of the method, ()V, in UTF
-       * encoding.
-       */
-      if (hasStaticInitializer) {
-        dos.writeUTF("<clinit>");
-        dos.writeInt(Opcodes.ACC_STATIC);
-        dos.writeUTF("()V");
-      } // if..
-
-      /*
-       * 6. For each non-private constructor sorted by method name and
-       * signature: 1. The name of the method, <init>, in UTF encoding. 2.
-       * The modifiers of the method written as a 32-bit integer. 3. The
-       * descriptor of the method in UTF encoding.
-       */
-      writeItems(svuidConstructors, dos, true);
-
-      /*
-       * 7. For each non-private method sorted by method name and
-       * signature: 1. The name of the method in UTF encoding. 2. The
-       * modifiers of the method written as a 32-bit integer. 3. The
-       * descriptor of the method in UTF encoding.
-       */
-      writeItems(svuidMethods, dos, true);
-
-      dos.flush();
-
-      /*
-       * 8. The SHA-1 algorithm is executed on the stream of bytes
-       * produced by DataOutputStream and produces five 32-bit values
-       * sha[0..4].
-       */
-      byte[] hashBytes = computeSHAdigest(bos.toByteArray());
-
-      /*
-       * 9. The hash value is assembled from the first and second 32-bit
-       * values of the SHA-1 message digest. If the result of the message
-       * digest, the five 32-bit words H0 H1 H2 H3 H4, is in an array of
-       * five int values named sha, the hash value would be computed as
-       * follows:
-       *
-       * long hash = ((sha[0] >>> 24) & 0xFF) | ((sha[0] >>> 16) & 0xFF)
-       * << 8 | ((sha[0] >>> 8) & 0xFF) << 16 | ((sha[0] >>> 0) & 0xFF) <<
-       * 24 | ((sha[1] >>> 24) & 0xFF) << 32 | ((sha[1] >>> 16) & 0xFF) <<
-       * 40 | ((sha[1] >>> 8) & 0xFF) << 48 | ((sha[1] >>> 0) & 0xFF) <<
-       * 56;
-       */
-      for (int i = Math.min(hashBytes.length, 8) - 1; i >= 0; i--) {
-        svuid = (svuid << 8) | (hashBytes[i] & 0xFF);
-      }
-    } finally {
-      // close the stream (if open)
-      if (dos != null) {
-        dos.close();
-      }
+    if (svuidInput == null) {
+      svuidInput = new byte[256];
+    }
+    svuidInputLength = 0;
+
+    /*
+     * 1. The class name written using UTF encoding.
+     */
+    writeUTF(name, true);
+
+    /*
+     * 2. The class modifiers written as a 32-bit integer.
+     */
+    int access = this.access;
+    if ((access & Opcodes.ACC_INTERFACE) != 0) {
+      access =
+          (svuidMethods.size() > 0)
+              ? (access | Opcodes.ACC_ABSTRACT)
+              : (access & ~Opcodes.ACC_ABSTRACT);
+    }
+    writeInt(
+        access
+            & (Opcodes.ACC_PUBLIC
+                | Opcodes.ACC_FINAL
+                | Opcodes.ACC_INTERFACE
+                | Opcodes.ACC_ABSTRACT));
+
+    /*
+     * 3. The name of each interface sorted by name written using UTF
+     * encoding.
+     */
+    Arrays.sort(interfaces);
+    for (int i = 0; i < interfaces.length; i++) {
+      writeUTF(interfaces[i], true);
     }
 
+    /*
+     * 4. For each field of the class sorted by field name (except
+     * private static and private transient fields):
+     *
+     * 1. The name of the field in UTF encoding. 2. The modifiers of the
+     * field written as a 32-bit integer. 3. The descriptor of the field
+     * in UTF encoding
+     *
+     * Note that field signatures are not dot separated. Method and
+     * constructor signatures are dot separated. Go figure...
+     */
+    writeItems(svuidFields, false);
+
+    /*
+     * 5. If a class initializer exists, write out the following: 1. The
+     * name of the method, <clinit>, in UTF encoding. 2. The modifier of
+     * the method, java.lang.reflect.Modifier.STATIC, written as a
+     * 32-bit integer. 3. The descriptor of the method, ()V, in UTF
+     * encoding.
+     */
+    if (hasStaticInitializer) {
+      writeUTF("<clinit>", false);
+      writeInt(Opcodes.ACC_STATIC);
+      writeUTF("()V", false);
+    } // if..
+
+    /*
+     * 6. For each non-private constructor sorted by method name and
+     * signature: 1. The name of the method, <init>, in UTF encoding. 2.
+     * The modifiers of the method written as a 32-bit integer. 3. The
+     * descriptor of the method in UTF encoding.
+     */
+    writeItems(svuidConstructors, true);
+
+    /*
+     * 7. For each non-private method sorted by method name and
+     * signature: 1. The name of the method in UTF encoding. 2. The
+     * modifiers of the method written as a 32-bit integer. 3. The
+     * descriptor of the method in UTF encoding.
+     */
+    writeItems(svuidMethods, true);
+
+    /*
+     * 8. The SHA-1 algorithm is executed, with computeSHAdigest, on the
+     * bytes written to svuidInput in the DataOutput format by the
+     * previous steps, and produces five 32-bit values sha[0..4].
+     */
+    byte[] value = new byte[svuidInputLength];
+    System.arraycopy(svuidInput, 0, value, 0, svuidInputLength);
+    byte[] hashBytes = computeSHAdigest(value);
+
+    /*
+     * 9. The hash value is assembled from the first and second 32-bit
+     * values of the SHA-1 message digest. If the result of the message
+     * digest, the five 32-bit words H0 H1 H2 H3 H4, is in an array of
+     * five int values named sha, the hash value would be computed as
+     * follows:
+     *
+     * long hash = ((sha[0] >>> 24) & 0xFF) | ((sha[0] >>> 16) & 0xFF)
+     * << 8 | ((sha[0] >>> 8) & 0xFF) << 16 | ((sha[0] >>> 0) & 0xFF) <<
+     * 24 | ((sha[1] >>> 24) & 0xFF) << 32 | ((sha[1] >>> 16) & 0xFF) <<
+     * 40 | ((sha[1] >>> 8) & 0xFF) << 48 | ((sha[1] >>> 0) & 0xFF) <<
+     * 56;
+     */
+    long svuid = 0;
+    for (int i = Math.min(hashBytes.length, 8) - 1; i >= 0; i--) {
+      svuid = (svuid << 8) | (hashBytes[i] & 0xFF);
+    }
     return svuid;
   }
 
@@ -466,31 +472,128 @@ public class SerialVersionUIDAdder extends ClassVisitor {
    * @return the SHA-1 message digest of the given value.
    */
   protected byte[] computeSHAdigest(final byte[] value) {
+    return createSHA().digest(value);
+  }
+
+  /**
+   * Returns a new SHA-1 message digest.
+   *
+   * @return a new SHA-1 message digest.
+   */
+  private static MessageDigest createSHA() {
+    if (SHA_PROTOTYPE != null) {
+      try {
+        return (MessageDigest) SHA_PROTOTYPE.clone();
+      } catch (CloneNotSupportedException e) {
+        // Fall back to MessageDigest.getInstance below.
+      }
+    }
     try {
-      return MessageDigest.getInstance("SHA").digest(value);
+      return MessageDigest.getInstance("SHA");
     } catch (Exception e) {
       throw new UnsupportedOperationException(e.toString());
     }
   }
 
   /**
-   * Sorts the items in the collection and writes it to the data output stream
+   * Returns the SHA-1 message digest to be cloned in {@link #createSHA}.
+   *
+   * @return a SHA-1 message digest, or <tt>null</tt> if it is not available or can't be cloned.
+   */
+  private static MessageDigest createSHAPrototype() {
+    try {
+      MessageDigest sha = MessageDigest.getInstance("SHA");
+      sha.clone();
+      return sha;
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  /**
+   * Sorts the items in the collection and writes them to {@link #svuidInput}.
    *
    * @param itemCollection collection of items
-   * @param dos a <code>DataOutputStream</code> value
-   * @param dotted a <code>boolean</code> value
+   * @param dotted whether to replace the '/' characters of the descriptors with '.'.
    * @exception IOException if an error occurs
    */
-  private static void writeItems(
-      final Collection<Item> itemCollection, final DataOutput dos, final boolean dotted)
+  private void writeItems(final Collection<Item> itemCollection, final boolean dotted)
       throws IOException {
     int size = itemCollection.size();
     Item[] items = itemCollection.toArray(new Item[size]);
     Arrays.sort(items);
     for (int i = 0; i < size; i++) {
-      dos.writeUTF(items[i].name);
-      dos.writeInt(items[i].access);
-      dos.writeUTF(dotted ? items[i].desc.replace('/', '.') : items[i].desc);
+      writeUTF(items[i].name, false);
+      writeInt(items[i].access);
+      writeUTF(items[i].desc, dotted);
+    }
+  }
+
+  /**
+   * Writes an int to {@link #svuidInput}, like {@link java.io.DataOutput#writeInt}.
+   *
+   * @param value the value to be written.
+   */
+  private void writeInt(final int value) {
+    enlargeSVUIDInput(4);
+    byte[] data = svuidInput;
+    int length = svuidInputLength;
+    data[length++] = (byte) (value >>> 24);
+    data[length++] = (byte) (value >>> 16);
+    data[length++] = (byte) (value >>> 8);
+    data[length++] = (byte) value;
+    svuidInputLength = length;
+  }
+
+  /**
+   * Writes a string to {@link #svuidInput}, like {@link java.io.DataOutput#writeUTF}.
+   *
+   * @param value the string to be written.
+   * @param dotted whether to replace the '/' characters of this string with '.'.
+   * @throws UTFDataFormatException if the encoded string is longer than 65535 bytes.
+   */
+  private void writeUTF(final String value, final boolean dotted) throws UTFDataFormatException {
+    int charLength = value.length();
+    enlargeSVUIDInput(2 + 3 * charLength);
+    byte[] data = svuidInput;
+    int start = svuidInputLength;
+    int length = start + 2;
+    for (int i = 0; i < charLength; ++i) {
+      char c = value.charAt(i);
+      if (c == '/' && dotted) {
+        c = '.';
+      }
+      if (c >= '\u0001' && c <= '\u007F') {
+        data[length++] = (byte) c;
+      } else if (c <= '\u07FF') {
+        data[length++] = (byte) (0xC0 | c >> 6 & 0x1F);
+        data[length++] = (byte) (0x80 | c & 0x3F);
+      } else {
+        data[length++] = (byte) (0xE0 | c >> 12 & 0xF);
+        data[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+        data[length++] = (byte) (0x80 | c & 0x3F);
+      }
+    }
+    int byteLength = length - start - 2;
+    if (byteLength > 65535) {
+      throw new UTFDataFormatException();
+    }
+    data[start] = (byte) (byteLength >>> 8);
+    data[start + 1] = (byte) byteLength;
+    svuidInputLength = length;
+  }
+
+  /**
+   * Enlarges {@link #svuidInput}, if necessary, so that it can receive the given number of
+   * additional bytes.
+   *
+   * @param size the number of additional bytes to be written.
+   */
+  private void enlargeSVUIDInput(final int size) {
+    if (svuidInputLength + size > svuidInput.length) {
+      byte[] newSVUIDInput = new byte[Math.max(2 * svuidInput.length, svuidInputLength + size)];
+      System.arraycopy(svuidInput, 0, newSVUIDInput, 0, svuidInputLength);
+      svuidInput = newSVUIDInput;
     }
   }
 
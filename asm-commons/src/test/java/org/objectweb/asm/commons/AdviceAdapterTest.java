@@ -27,11 +27,14 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package org.objectweb.asm.commons;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.function.Consumer;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -39,9 +42,14 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
 
 /**
  * AdviceAdapter tests.
@@ -228,6 +236,196 @@ public class AdviceAdapterTest extends AsmTest {
     }
   }
 
+  /** The marker instruction inserted by {@link #assertOnMethodEnterAfterSuper}. */
+  private static final String ENTER = "onMethodEnter";
+
+  /**
+   * Checks that onMethodEnter is called once, just after the INVOKESPECIAL instruction whose owner
+   * is "Super", in the given constructor code.
+   */
+  private static void assertOnMethodEnterAfterSuper(final Consumer<MethodVisitor> code) {
+    MethodNode methodNode = new MethodNode(Opcodes.ACC_PUBLIC, "<init>", "(I)V", null, null);
+    MethodVisitor adviceAdapter =
+        new AdviceAdapter(Opcodes.ASM6, methodNode, Opcodes.ACC_PUBLIC, "<init>", "(I)V") {
+          @Override
+          protected void onMethodEnter() {
+            mv.visitLdcInsn(ENTER);
+          }
+        };
+    adviceAdapter.visitCode();
+    code.accept(adviceAdapter);
+    adviceAdapter.visitInsn(Opcodes.RETURN);
+    adviceAdapter.visitMaxs(0, 0);
+    adviceAdapter.visitEnd();
+
+    int enterCount = 0;
+    for (AbstractInsnNode insn : methodNode.instructions.toArray()) {
+      if (insn instanceof LdcInsnNode && ENTER.equals(((LdcInsnNode) insn).cst)) {
+        AbstractInsnNode previous = insn.getPrevious();
+        assertTrue(previous instanceof MethodInsnNode);
+        assertEquals("Super", ((MethodInsnNode) previous).owner);
+        enterCount++;
+      }
+    }
+    assertEquals(1, enterCount);
+  }
+
+  @Test
+  public void testOnMethodEnterAfterSuper() {
+    assertOnMethodEnterAfterSuper(
+        mv -> {
+          mv.visitVarInsn(Opcodes.ALOAD, 0);
+          mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "Super", "<init>", "()V", false);
+        });
+  }
+
+  @Test
+  public void testOnMethodEnterAfterSuperWithArguments() {
+    assertOnMethodEnterAfterSuper(
+        mv -> {
+          mv.visitVarInsn(Opcodes.ALOAD, 0);
+          mv.visitTypeInsn(Opcodes.NEW, "Other");
+          mv.visitInsn(Opcodes.DUP);
+          mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "Other", "<init>", "()V", false);
+          mv.visitInsn(Opcodes.LCONST_0);
+          mv.visitInsn(Opcodes.DCONST_1);
+          mv.visitMethodInsn(Opcodes.INVOKESTATIC, "Other", "m", "(JD)J", false);
+          mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "Super", "<init>", "(LOther;J)V", false);
+        });
+  }
+
+  @Test
+  public void testOnMethodEnterAfterSuperWithStackManipulations() {
+    assertOnMethodEnterAfterSuper(
+        mv -> {
+          mv.visitInsn(Opcodes.ACONST_NULL);
+          mv.visitVarInsn(Opcodes.ALOAD, 0);
+          mv.visitInsn(Opcodes.SWAP);
+          mv.visitInsn(Opcodes.DUP_X1);
+          mv.visitInsn(Opcodes.POP2);
+          mv.visitInsn(Opcodes.ICONST_0);
+          mv.visitInsn(Opcodes.ICONST_1);
+          mv.visitInsn(Opcodes.DUP2_X1);
+          mv.visitInsn(Opcodes.POP2);
+          mv.visitInsn(Opcodes.POP);
+          mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "Other", "<init>", "(I)V", false);
+          mv.visitVarInsn(Opcodes.ALOAD, 0);
+          mv.visitInsn(Opcodes.ACONST_NULL);
+          mv.visitInsn(Opcodes.LCONST_0);
+          mv.visitInsn(Opcodes.DUP2_X2);
+          mv.visitMethodInsn(
+              Opcodes.INVOKESPECIAL, "Super", "<init>", "(Ljava/lang/Object;J)V", false);
+        });
+  }
+
+  @Test
+  public void testOnMethodEnterAfterSuperWithBranches() {
+    assertOnMethodEnterAfterSuper(
+        mv -> {
+          Label elseLabel = new Label();
+          Label endLabel = new Label();
+          mv.visitVarInsn(Opcodes.ALOAD, 0);
+          mv.visitVarInsn(Opcodes.ILOAD, 1);
+          mv.visitJumpInsn(Opcodes.IFEQ, elseLabel);
+          mv.visitInsn(Opcodes.ACONST_NULL);
+          mv.visitJumpInsn(Opcodes.GOTO, endLabel);
+          mv.visitLabel(elseLabel);
+          mv.visitVarInsn(Opcodes.ALOAD, 0);
+          mv.visitLabel(endLabel);
+          mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "Other", "<init>", "()V", false);
+          mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "Super", "<init>", "()V", false);
+        });
+  }
+
+  @Test
+  public void testOnMethodEnterAfterSuperWithSwitchAndTryCatch() {
+    assertOnMethodEnterAfterSuper(
+        mv -> {
+          Label start = new Label();
+          Label end = new Label();
+          Label handler = new Label();
+          Label caseLabel = new Label();
+          Label defaultLabel = new Label();
+          mv.visitTryCatchBlock(start, end, handler, null);
+          mv.visitLabel(start);
+          mv.visitVarInsn(Opcodes.ILOAD, 1);
+          mv.visitTableSwitchInsn(0, 0, defaultLabel, caseLabel);
+          mv.visitLabel(caseLabel);
+          mv.visitMethodInsn(Opcodes.INVOKESTATIC, "Other", "m", "()V", false);
+          mv.visitLabel(end);
+          mv.visitLabel(handler);
+          mv.visitInsn(Opcodes.POP);
+          mv.visitLabel(defaultLabel);
+          mv.visitVarInsn(Opcodes.ALOAD, 0);
+          mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "Super", "<init>", "()V", false);
+        });
+  }
+
+  /**
+   * Tests that onMethodEnter is called exactly once in each constructor, just after the super or
+   * this constructor call.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testOnMethodEnterInConstructors(PrecompiledClass classParameter, Api apiParameter) {
+    ClassReader classReader = new ClassReader(classParameter.getBytes());
+    ClassVisitor classVisitor =
+        new ClassVisitor(apiParameter.value()) {
+
+          private String owner;
+          private String superName;
+
+          @Override
+          public void visit(
+              final int version,
+              final int access,
+              final String name,
+              final String signature,
+              final String superName,
+              final String[] interfaces) {
+            this.owner = name;
+            this.superName = superName;
+          }
+
+          @Override
+          public MethodVisitor visitMethod(
+              final int access,
+              final String name,
+              final String desc,
+              final String signature,
+              final String[] exceptions) {
+            if (!"<init>".equals(name)) {
+              return null;
+            }
+            MethodVisitor methodVisitor =
+                new MethodNode(api, access, name, desc, signature, exceptions) {
+                  @Override
+                  public void visitEnd() {
+                    int enterCount = 0;
+                    for (AbstractInsnNode insn : instructions.toArray()) {
+                      if (insn instanceof LdcInsnNode && ENTER.equals(((LdcInsnNode) insn).cst)) {
+                        MethodInsnNode previous = (MethodInsnNode) insn.getPrevious();
+                        assertEquals(Opcodes.INVOKESPECIAL, previous.getOpcode());
+                        assertEquals("<init>", previous.name);
+                        assertTrue(
+                            previous.owner.equals(superName) || previous.owner.equals(owner));
+                        enterCount++;
+                      }
+                    }
+                    assertEquals(1, enterCount);
+                  }
+                };
+            return new AdviceAdapter(api, methodVisitor, access, name, desc) {
+              @Override
+              protected void onMethodEnter() {
+                mv.visitLdcInsn(ENTER);
+              }
+            };
+          }
+        };
+    classReader.accept(classVisitor, ClassReader.EXPAND_FRAMES);
+  }
+
   @ParameterizedTest
   @MethodSource(ALL_CLASSES_AND_ALL_APIS)
   public void testEmptyAdviceAdapter(PrecompiledClass classParameter, Api apiParameter)
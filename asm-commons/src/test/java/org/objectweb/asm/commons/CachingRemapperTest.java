@@ -0,0 +1,124 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.test.AsmTest;
+
+/** CachingRemapper tests. */
+public class CachingRemapperTest extends AsmTest {
+
+  /**
+   * Tests that the remapped classes are the same as with the delegate remapper, including when a
+   * CachingRemapper is shared between several threads, and when its caches are very small.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testSameAsDelegate(PrecompiledClass classParameter, Api apiParameter)
+      throws Exception {
+    final ClassReader classReader = new ClassReader(classParameter.getBytes());
+    Map<String, String> mapping = new HashMap<String, String>();
+    mapping.put(classReader.getClassName(), classReader.getClassName() + "_");
+    if (classReader.getSuperName() != null) {
+      mapping.put(classReader.getSuperName(), classReader.getSuperName() + "_");
+    }
+    Remapper simpleRemapper = new SimpleRemapper(mapping);
+    byte[] expectedClass = remap(classReader, simpleRemapper);
+
+    CachingRemapper remapper = new CachingRemapper(simpleRemapper);
+    assertArrayEquals(expectedClass, remap(classReader, remapper));
+    assertArrayEquals(expectedClass, remap(classReader, remapper));
+    assertEquals(remapper.getHitCount() > 0, remapper.getMissCount() > 0);
+    assertArrayEquals(expectedClass, remap(classReader, new CachingRemapper(simpleRemapper, 1)));
+
+    final CachingRemapper sharedRemapper = new CachingRemapper(simpleRemapper, 16);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<byte[]>> futures = new ArrayList<Future<byte[]>>();
+      for (int i = 0; i < 16; ++i) {
+        futures.add(executor.submit(() -> remap(classReader, sharedRemapper)));
+      }
+      for (Future<byte[]> future : futures) {
+        assertArrayEquals(expectedClass, future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /** Tests the hit and miss counters, and the caching of <tt>null</tt> results. */
+  @Test
+  public void testCounters() {
+    CachingRemapper remapper = new CachingRemapper(new SimpleRemapper("A", "B"));
+
+    assertEquals("B", remapper.map("A"));
+    assertNull(remapper.map("C"));
+    assertEquals("B", remapper.map("A"));
+    assertNull(remapper.map("C"));
+    assertEquals("(LB;)LB;", remapper.mapMethodDesc("(LA;)LA;"));
+    assertEquals("(LB;)LB;", remapper.mapMethodDesc("(LA;)LA;"));
+
+    assertEquals(3, remapper.getHitCount());
+    assertEquals(3, remapper.getMissCount());
+    remapper.clear();
+    assertEquals(0, remapper.getHitCount());
+    assertEquals(0, remapper.getMissCount());
+    assertEquals("[LB;", remapper.mapDesc("[LA;"));
+    assertEquals(1, remapper.getMissCount());
+  }
+
+  /** Tests that the cache size must be strictly positive. */
+  @Test
+  public void testInvalidSize() {
+    assertThrows(
+        IllegalArgumentException.class, () -> new CachingRemapper(new SimpleRemapper("A", "B"), 0));
+  }
+
+  private static byte[] remap(final ClassReader classReader, final Remapper remapper) {
+    ClassWriter classWriter = new ClassWriter(0);
+    classReader.accept(new ClassRemapper(classWriter, remapper), 0);
+    return classWriter.toByteArray();
+  }
+}
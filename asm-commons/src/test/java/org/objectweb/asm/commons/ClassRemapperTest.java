@@ -27,6 +27,7 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package org.objectweb.asm.commons;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.objectweb.asm.test.Assertions.assertThat;
@@ -295,4 +296,45 @@ public class ClassRemapperTest extends AsmTest implements Opcodes {
         .succeedsOrThrows(UnsupportedClassVersionError.class)
         .when(classParameter.isMoreRecentThanCurrentJdk());
   }
+
+  /**
+   * Tests that a ClassRemapper with an empty mapping copies the methods of a class as is, when it
+   * is given the ClassReader of this class.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testRemapIdentity(PrecompiledClass classParameter, Api apiParameter) {
+    ClassReader classReader = new ClassReader(classParameter.getBytes());
+    ClassWriter expectedClassWriter = new ClassWriter(classReader, 0);
+    classReader.accept(expectedClassWriter, 0);
+    ClassWriter classWriter = new ClassWriter(classReader, 0);
+    Remapper remapper = new SimpleRemapper(new HashMap<String, String>());
+
+    classReader.accept(new ClassRemapper(classWriter, remapper, classReader), 0);
+
+    assertArrayEquals(expectedClassWriter.toByteArray(), classWriter.toByteArray());
+  }
+
+  /**
+   * Tests that a ClassRemapper produces the same result with or without the ClassReader of the
+   * remapped class, for classes which are partially changed by the remapping.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testRemapWithClassReader(PrecompiledClass classParameter, Api apiParameter) {
+    Map<String, String> mapping = new HashMap<String, String>();
+    mapping.put("java/lang/String", "java/lang/Str");
+    mapping.put("java/util/List", "java/util/Lst");
+    mapping.put("java/lang/Object.hashCode()I", "hash");
+    mapping.put("java/lang/System.out", "output");
+    Remapper remapper = new SimpleRemapper(mapping);
+    ClassReader classReader = new ClassReader(classParameter.getBytes());
+    ClassWriter expectedClassWriter = new ClassWriter(0);
+    classReader.accept(new ClassRemapper(expectedClassWriter, remapper), 0);
+    ClassWriter classWriter = new ClassWriter(0);
+
+    classReader.accept(new ClassRemapper(classWriter, remapper, classReader), 0);
+
+    assertArrayEquals(expectedClassWriter.toByteArray(), classWriter.toByteArray());
+  }
 }
@@ -0,0 +1,238 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+
+/** CompactAnalyzerAdapter tests. */
+public class CompactAnalyzerAdapterTest extends AsmTest {
+
+  @Test
+  public void testFrameTypes() {
+    CompactAnalyzerAdapter analyzer =
+        new CompactAnalyzerAdapter("C", Opcodes.ACC_STATIC, "m", "(J[I)V", null);
+    assertTrue(analyzer.hasFrame());
+    assertEquals(3, analyzer.getLocalCount());
+    assertEquals(Opcodes.LONG.intValue(), analyzer.getLocal(0));
+    assertEquals(Opcodes.TOP.intValue(), analyzer.getLocal(1));
+    assertTrue(CompactAnalyzerAdapter.isReferenceType(analyzer.getLocal(2)));
+    assertEquals("[I", analyzer.getReferenceType(analyzer.getLocal(2)));
+
+    Label label = new Label();
+    analyzer.visitLabel(label);
+    analyzer.visitTypeInsn(Opcodes.NEW, "C");
+    analyzer.visitInsn(Opcodes.DUP);
+    assertEquals(2, analyzer.getStackSize());
+    int type = analyzer.getStack(0);
+    assertTrue(CompactAnalyzerAdapter.isUninitializedType(type));
+    assertFalse(CompactAnalyzerAdapter.isReferenceType(type));
+    assertEquals(label, analyzer.getUninitializedType(type));
+    assertEquals("C", analyzer.getInitializedType(type));
+    assertEquals(Arrays.<Object>asList(label, label), analyzer.getStack());
+
+    analyzer.visitMethodInsn(Opcodes.INVOKESPECIAL, "C", "<init>", "()V", false);
+    assertEquals(Arrays.<Object>asList("C"), analyzer.getStack());
+    assertEquals(Arrays.<Object>asList(Opcodes.LONG, Opcodes.TOP, "[I"), analyzer.getLocals());
+
+    analyzer.visitInsn(Opcodes.ATHROW);
+    assertFalse(analyzer.hasFrame());
+    assertEquals(0, analyzer.getStackSize());
+    assertNull(analyzer.getLocals());
+    assertNull(analyzer.getStack());
+  }
+
+  @Test
+  public void testManyUninitializedTypes() {
+    CompactAnalyzerAdapter analyzer =
+        new CompactAnalyzerAdapter("C", Opcodes.ACC_STATIC, "m", "()V", null);
+    for (int i = 0; i < 100; ++i) {
+      analyzer.visitTypeInsn(Opcodes.NEW, "C" + i);
+    }
+    assertEquals(100, analyzer.getStackSize());
+    for (int i = 0; i < 100; ++i) {
+      assertEquals("C" + i, analyzer.getInitializedType(analyzer.getStack(i)));
+    }
+  }
+
+  /**
+   * Tests that CompactAnalyzerAdapter computes the same frames as AnalyzerAdapter, before each
+   * instruction.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testCompareWithAnalyzerAdapter(PrecompiledClass classParameter, Api apiParameter)
+      throws Throwable {
+    ClassReader classReader = new ClassReader(classParameter.getBytes());
+    ClassVisitor classVisitor =
+        new ClassVisitor(apiParameter.value()) {
+
+          private String owner;
+
+          @Override
+          public void visit(
+              final int version,
+              final int access,
+              final String name,
+              final String signature,
+              final String superName,
+              final String[] interfaces) {
+            owner = name;
+          }
+
+          @Override
+          public MethodVisitor visitMethod(
+              final int access,
+              final String name,
+              final String desc,
+              final String signature,
+              final String[] exceptions) {
+            FrameComparator comparator = new FrameComparator();
+            comparator.analyzerAdapter =
+                new AnalyzerAdapter(api, owner, access, name, desc, comparator);
+            comparator.compactAnalyzerAdapter =
+                new CompactAnalyzerAdapter(
+                    api, owner, access, name, desc, comparator.analyzerAdapter) {};
+            return comparator.compactAnalyzerAdapter;
+          }
+        };
+    Executable test = () -> classReader.accept(classVisitor, ClassReader.EXPAND_FRAMES);
+    // jdk3.AllInstructions contains jsr/ret instructions, which are not supported.
+    if (classParameter == PrecompiledClass.JDK3_ALL_INSTRUCTIONS) {
+      assertThrows(RuntimeException.class, test);
+    } else {
+      test.execute();
+    }
+  }
+
+  /**
+   * Checks that the frames of an AnalyzerAdapter and of a CompactAnalyzerAdapter are the same,
+   * before each instruction.
+   */
+  static class FrameComparator extends MethodVisitor {
+
+    AnalyzerAdapter analyzerAdapter;
+    CompactAnalyzerAdapter compactAnalyzerAdapter;
+
+    FrameComparator() {
+      super(Opcodes.ASM6);
+    }
+
+    private void compareFrames() {
+      assertEquals(analyzerAdapter.locals, compactAnalyzerAdapter.getLocals());
+      assertEquals(analyzerAdapter.stack, compactAnalyzerAdapter.getStack());
+    }
+
+    @Override
+    public void visitInsn(int opcode) {
+      compareFrames();
+    }
+
+    @Override
+    public void visitIntInsn(int opcode, int operand) {
+      compareFrames();
+    }
+
+    @Override
+    public void visitVarInsn(int opcode, int var) {
+      compareFrames();
+    }
+
+    @Override
+    public void visitTypeInsn(int opcode, String type) {
+      compareFrames();
+    }
+
+    @Override
+    public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+      compareFrames();
+    }
+
+    @Override
+    public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+      compareFrames();
+    }
+
+    @Override
+    public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+      compareFrames();
+    }
+
+    @Override
+    public void visitJumpInsn(int opcode, Label label) {
+      compareFrames();
+    }
+
+    @Override
+    public void visitLdcInsn(Object cst) {
+      compareFrames();
+    }
+
+    @Override
+    public void visitIincInsn(int var, int increment) {
+      compareFrames();
+    }
+
+    @Override
+    public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+      compareFrames();
+    }
+
+    @Override
+    public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+      compareFrames();
+    }
+
+    @Override
+    public void visitMultiANewArrayInsn(String desc, int dims) {
+      compareFrames();
+    }
+
+    @Override
+    public void visitMaxs(int maxStack, int maxLocals) {
+      compareFrames();
+    }
+  }
+}
@@ -0,0 +1,182 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+
+/** ConstantPoolRemapper tests. */
+public class ConstantPoolRemapperTest extends AsmTest {
+
+  /** A remapper which moves all the classes, except the JDK ones, to a "shaded" package. */
+  private static final Remapper SHADING_REMAPPER =
+      new Remapper() {
+        @Override
+        public String map(final String typeName) {
+          return typeName.startsWith("java/") ? typeName : "shaded/" + typeName;
+        }
+      };
+
+  /**
+   * Tests that the classes remapped in place are equivalent to those remapped with a
+   * ClassRemapper, and that the JDK 3 to 8 classes are indeed remapped in place.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testRemapInPlace(PrecompiledClass classParameter, Api apiParameter) {
+    ClassReader classReader = new ClassReader(classParameter.getBytes());
+    ClassWriter expectedClassWriter = new ClassWriter(0);
+    classReader.accept(new ClassRemapper(expectedClassWriter, SHADING_REMAPPER), 0);
+    CountingConstantPoolRemapper constantPoolRemapper =
+        new CountingConstantPoolRemapper(SHADING_REMAPPER);
+
+    byte[] classFile = constantPoolRemapper.remap(classParameter.getBytes());
+
+    assertArrayEquals(expectedClassWriter.toByteArray(), rewrite(classFile));
+    assertEquals(
+        classParameter == PrecompiledClass.JDK9_MODULE ? 1 : 0,
+        constantPoolRemapper.fallbackCount);
+  }
+
+  /**
+   * Tests that a class which is not changed by the remapping is returned as is, unless it is a
+   * module descriptor.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testRemapUnchanged(PrecompiledClass classParameter, Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    Remapper remapper = new SimpleRemapper(new HashMap<String, String>());
+    CountingConstantPoolRemapper constantPoolRemapper = new CountingConstantPoolRemapper(remapper);
+
+    byte[] newClassFile = constantPoolRemapper.remap(classFile);
+
+    if (classParameter == PrecompiledClass.JDK9_MODULE) {
+      assertEquals(1, constantPoolRemapper.fallbackCount);
+    } else {
+      assertSame(classFile, newClassFile);
+    }
+  }
+
+  /** Tests that a class is remapped with a ClassRemapper if a method name is remapped. */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testRemapMemberName(PrecompiledClass classParameter, Api apiParameter) {
+    Remapper remapper =
+        new Remapper() {
+          @Override
+          public String mapMethodName(final String owner, final String name, final String desc) {
+            return name.charAt(0) == '<' ? name : name.toUpperCase();
+          }
+        };
+    ClassReader classReader = new ClassReader(classParameter.getBytes());
+    ClassWriter expectedClassWriter = new ClassWriter(0);
+    classReader.accept(new ClassRemapper(expectedClassWriter, remapper), 0);
+    CountingConstantPoolRemapper constantPoolRemapper = new CountingConstantPoolRemapper(remapper);
+
+    byte[] classFile = constantPoolRemapper.remap(classParameter.getBytes());
+
+    byte[] expectedClassFile = expectedClassWriter.toByteArray();
+    assertArrayEquals(expectedClassFile, rewrite(classFile));
+    boolean isChanged = !Arrays.equals(rewrite(classParameter.getBytes()), expectedClassFile);
+    assertEquals(
+        isChanged || classParameter == PrecompiledClass.JDK9_MODULE ? 1 : 0,
+        constantPoolRemapper.fallbackCount);
+  }
+
+  /**
+   * Tests that a class is remapped with a ClassRemapper if a CONSTANT_Utf8 entry is used both as a
+   * class name and as a string constant.
+   */
+  @Test
+  public void testRemapSharedUtf8Entry() {
+    ClassWriter classWriter = new ClassWriter(0);
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "pkg/C", null, "java/lang/Object", null);
+    MethodVisitor methodVisitor =
+        classWriter.visitMethod(Opcodes.ACC_STATIC, "m", "()V", null, null);
+    methodVisitor.visitCode();
+    methodVisitor.visitLdcInsn("pkg/C");
+    methodVisitor.visitLdcInsn(Type.getObjectType("pkg/C"));
+    methodVisitor.visitInsn(Opcodes.POP2);
+    methodVisitor.visitInsn(Opcodes.RETURN);
+    methodVisitor.visitMaxs(2, 0);
+    methodVisitor.visitEnd();
+    classWriter.visitEnd();
+    CountingConstantPoolRemapper constantPoolRemapper =
+        new CountingConstantPoolRemapper(SHADING_REMAPPER);
+
+    byte[] classFile = constantPoolRemapper.remap(classWriter.toByteArray());
+
+    assertEquals(1, constantPoolRemapper.fallbackCount);
+    ClassNode classNode = new ClassNode();
+    new ClassReader(classFile).accept(classNode, 0);
+    assertEquals("shaded/pkg/C", classNode.name);
+    assertEquals("pkg/C", ((LdcInsnNode) classNode.methods.get(0).instructions.get(0)).cst);
+    assertEquals(
+        Type.getObjectType("shaded/pkg/C"),
+        ((LdcInsnNode) classNode.methods.get(0).instructions.get(1)).cst);
+  }
+
+  /** Returns the given class, rewritten with a ClassReader and a ClassWriter. */
+  private static byte[] rewrite(final byte[] classFile) {
+    ClassWriter classWriter = new ClassWriter(0);
+    new ClassReader(classFile).accept(classWriter, 0);
+    return classWriter.toByteArray();
+  }
+
+  private static class CountingConstantPoolRemapper extends ConstantPoolRemapper {
+
+    int fallbackCount;
+
+    CountingConstantPoolRemapper(final Remapper remapper) {
+      super(remapper);
+    }
+
+    @Override
+    protected byte[] remapWithClassRemapper(final ClassReader classReader) {
+      ++fallbackCount;
+      return super.remapWithClassRemapper(classReader);
+    }
+  }
+}
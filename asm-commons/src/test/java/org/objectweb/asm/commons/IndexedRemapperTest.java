@@ -0,0 +1,109 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/** IndexedRemapper tests. */
+public class IndexedRemapperTest extends AsmTest {
+
+  /** Tests that the remapped classes are the same as with a SimpleRemapper. */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testSameAsSimpleRemapper(PrecompiledClass classParameter, Api apiParameter) {
+    ClassReader classReader = new ClassReader(classParameter.getBytes());
+    ClassNode classNode = new ClassNode();
+    classReader.accept(classNode, 0);
+    Map<String, String> mapping = new HashMap<String, String>();
+    mapping.put(classNode.name, classNode.name + "_");
+    for (int i = 0; i < classNode.fields.size(); i += 2) {
+      FieldNode fieldNode = classNode.fields.get(i);
+      mapping.put(classNode.name + '.' + fieldNode.name, fieldNode.name + "_");
+    }
+    for (int i = 0; i < classNode.methods.size(); ++i) {
+      MethodNode methodNode = classNode.methods.get(i);
+      if (i % 2 == 0 && !methodNode.name.startsWith("<")) {
+        String key = classNode.name + '.' + methodNode.name + methodNode.desc;
+        mapping.put(key, "_" + methodNode.name);
+      }
+      for (AbstractInsnNode insnNode : methodNode.instructions.toArray()) {
+        if (insnNode instanceof InvokeDynamicInsnNode) {
+          InvokeDynamicInsnNode indy = (InvokeDynamicInsnNode) insnNode;
+          mapping.put('.' + indy.name + indy.desc, indy.name + "_");
+        }
+      }
+    }
+
+    ClassWriter expectedClassWriter = new ClassWriter(0);
+    classReader.accept(new ClassRemapper(expectedClassWriter, new SimpleRemapper(mapping)), 0);
+    ClassWriter classWriter = new ClassWriter(0);
+    classReader.accept(new ClassRemapper(classWriter, new IndexedRemapper(mapping)), 0);
+
+    assertArrayEquals(expectedClassWriter.toByteArray(), classWriter.toByteArray());
+  }
+
+  /** Tests the mapping of field, method and type names. */
+  @Test
+  public void testMap() {
+    Map<String, String> mapping = new HashMap<String, String>();
+    mapping.put("pkg/A", "pkg/B");
+    mapping.put("pkg/A.f", "g");
+    mapping.put("pkg/A.m()V", "n");
+    mapping.put("pkg/A.m(I)V", "o");
+    mapping.put(".run()Ljava/lang/Runnable;", "call");
+    Remapper remapper = new IndexedRemapper(mapping);
+
+    assertEquals("pkg/B", remapper.map("pkg/A"));
+    assertEquals("g", remapper.mapFieldName("pkg/A", "f", "I"));
+    assertEquals("f", remapper.mapFieldName("pkg/C", "f", "I"));
+    assertEquals("h", remapper.mapFieldName("pkg/A", "h", "I"));
+    assertEquals("n", remapper.mapMethodName("pkg/A", "m", "()V"));
+    assertEquals("o", remapper.mapMethodName("pkg/A", "m", "(I)V"));
+    assertEquals("m", remapper.mapMethodName("pkg/A", "m", "(J)V"));
+    assertEquals("m", remapper.mapMethodName("pkg/C", "m", "()V"));
+    assertEquals("call", remapper.mapInvokeDynamicMethodName("run", "()Ljava/lang/Runnable;"));
+    assertEquals("run", remapper.mapInvokeDynamicMethodName("run", "()V"));
+    assertEquals("n", new IndexedRemapper("pkg/A.m()V", "n").mapMethodName("pkg/A", "m", "()V"));
+  }
+}
@@ -28,6 +28,7 @@
 package org.objectweb.asm.commons;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.objectweb.asm.test.Assertions.assertThat;
 
@@ -1855,6 +1856,65 @@ public class JSRInlinerAdapterTest extends AsmTest {
     assertMethodEquals(exp, jsr);
   }
 
+  /**
+   * Tests a method with many branches, followed by a chain of nested subroutines where each
+   * subroutine invokes the next one:
+   *
+   * <pre>
+   *   ICONST_0
+   *   ISTORE 1
+   *   ILOAD 1; IFNE L0; IINC 1 1; L0: ... (repeated)
+   *   JSR S0
+   *   RETURN
+   * S0: ASTORE 2; IINC 1 1; JSR S1; RET 2
+   * S1: ASTORE 3; IINC 1 1; JSR S2; RET 3
+   * ...
+   * </pre>
+   */
+  @Test
+  public void testManyBranchesAndNestedSubroutines() {
+    final int branchCount = 5000;
+    final int subroutineCount = 100;
+    {
+      setCurrent(jsr);
+      ICONST_0();
+      ISTORE(1);
+      for (int i = 0; i < branchCount; ++i) {
+        Label label = new Label();
+        ILOAD(1);
+        IFNE(label);
+        IINC(1, 1);
+        LABEL(label);
+      }
+      Label[] subroutines = new Label[subroutineCount];
+      for (int i = 0; i < subroutineCount; ++i) {
+        subroutines[i] = new Label();
+      }
+      JSR(subroutines[0]);
+      RETURN();
+      for (int i = 0; i < subroutineCount; ++i) {
+        LABEL(subroutines[i]);
+        ASTORE(2 + i);
+        IINC(1, 1);
+        if (i + 1 < subroutineCount) {
+          JSR(subroutines[i + 1]);
+        }
+        RET(2 + i);
+      }
+      END(1, 2 + subroutineCount);
+    }
+
+    int aconstNullCount = 0;
+    for (int i = 0; i < jsr.instructions.size(); ++i) {
+      int opcode = jsr.instructions.get(i).getOpcode();
+      assertTrue(opcode != Opcodes.JSR && opcode != Opcodes.RET);
+      if (opcode == Opcodes.ACONST_NULL) {
+        ++aconstNullCount;
+      }
+    }
+    assertEquals(subroutineCount, aconstNullCount);
+  }
+
   public void assertMethodEquals(final MethodNode exp, final MethodNode actual) {
     String textexp = getText(exp);
     String textact = getText(actual);
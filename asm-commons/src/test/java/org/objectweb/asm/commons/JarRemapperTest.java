@@ -0,0 +1,328 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/** JarRemapper tests. */
+public class JarRemapperTest extends AsmTest implements Opcodes {
+
+  /** Tests that field and method mappings are propagated in the class hierarchy. */
+  @Test
+  public void testRemapHierarchy() throws IOException {
+    File input = File.createTempFile("JarRemapperTest", ".jar");
+    File output = File.createTempFile("JarRemapperTest", ".jar");
+    try {
+      ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(input));
+      try {
+        addEntry(zipOutputStream, "dir/", new byte[0], ZipEntry.STORED);
+        addEntry(zipOutputStream, "dir/I.class", generateInterface(), ZipEntry.DEFLATED);
+        addEntry(zipOutputStream, "dir/A.class", generateClassA(), ZipEntry.DEFLATED);
+        addEntry(zipOutputStream, "dir/B.class", generateClassB(), ZipEntry.STORED);
+        addEntry(zipOutputStream, "resource.txt", new byte[1000], ZipEntry.DEFLATED);
+      } finally {
+        zipOutputStream.close();
+      }
+      Map<String, String> mapping = new HashMap<String, String>();
+      mapping.put("dir/A", "dir/A2");
+      mapping.put("dir/I.m()V", "n");
+      mapping.put("dir/A.p()V", "q");
+      mapping.put("dir/A.f", "g");
+
+      new JarRemapper(mapping, 2).remap(input, output);
+
+      ZipFile zipFile = new ZipFile(output);
+      try {
+        assertEquals(5, zipFile.size());
+        assertNotNull(zipFile.getEntry("dir/"));
+        assertNull(zipFile.getEntry("dir/A.class"));
+        ClassNode classA = readClass(zipFile, "dir/A2.class");
+        assertEquals("n", classA.methods.get(1).name);
+        assertEquals("q", classA.methods.get(2).name);
+        assertEquals("g", classA.fields.get(0).name);
+        ClassNode classB = readClass(zipFile, "dir/B.class");
+        assertEquals("dir/A2", classB.superName);
+        MethodNode methodB = classB.methods.get(1);
+        assertEquals("n", methodB.name);
+        assertEquals("p", classB.methods.get(2).name);
+        MethodInsnNode invokeSpecial = (MethodInsnNode) methodB.instructions.get(1);
+        assertEquals("dir/A2", invokeSpecial.owner);
+        assertEquals("n", invokeSpecial.name);
+        MethodInsnNode invokeVirtual = (MethodInsnNode) methodB.instructions.get(3);
+        assertEquals("dir/B", invokeVirtual.owner);
+        assertEquals("p", invokeVirtual.name);
+        FieldInsnNode getField = (FieldInsnNode) methodB.instructions.get(5);
+        assertEquals("dir/B", getField.owner);
+        assertEquals("g", getField.name);
+        assertArrayEquals(new byte[1000], readEntry(zipFile, "resource.txt"));
+        ZipFile inputZipFile = new ZipFile(input);
+        try {
+          assertEquals(
+              inputZipFile.getEntry("resource.txt").getCompressedSize(),
+              zipFile.getEntry("resource.txt").getCompressedSize());
+        } finally {
+          inputZipFile.close();
+        }
+      } finally {
+        zipFile.close();
+      }
+    } finally {
+      input.delete();
+      output.delete();
+    }
+  }
+
+  /** Tests that classes which are not changed by the remapping are copied as is. */
+  @Test
+  public void testRemapUnchangedClasses() throws IOException {
+    File input = File.createTempFile("JarRemapperTest", ".jar");
+    File output = File.createTempFile("JarRemapperTest", ".jar");
+    try {
+      ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(input));
+      try {
+        for (PrecompiledClass precompiledClass : PrecompiledClass.values()) {
+          String name = precompiledClass.getInternalName() + ".class";
+          addEntry(zipOutputStream, name, precompiledClass.getBytes(), ZipEntry.DEFLATED);
+        }
+      } finally {
+        zipOutputStream.close();
+      }
+
+      new JarRemapper(Collections.<String, String>emptyMap()).remap(input, output);
+
+      ZipFile inputZipFile = new ZipFile(input);
+      ZipFile zipFile = new ZipFile(output);
+      try {
+        assertEquals(inputZipFile.size(), zipFile.size());
+        for (PrecompiledClass precompiledClass : PrecompiledClass.values()) {
+          String name = precompiledClass.getInternalName() + ".class";
+          assertArrayEquals(precompiledClass.getBytes(), readEntry(zipFile, name));
+        }
+      } finally {
+        zipFile.close();
+        inputZipFile.close();
+      }
+    } finally {
+      input.delete();
+      output.delete();
+    }
+  }
+
+  /** Tests that the extra fields and comments of the copied entries are preserved. */
+  @Test
+  public void testRemapEntryWithExtraFieldAndComment() throws IOException {
+    File input = File.createTempFile("JarRemapperTest", ".jar");
+    File output = File.createTempFile("JarRemapperTest", ".jar");
+    byte[] extra = new byte[] {(byte) 0xFE, (byte) 0xCA, 2, 0, 1, 2};
+    try {
+      ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(input));
+      try {
+        ZipEntry entry = new ZipEntry("dir/file.txt");
+        entry.setExtra(extra);
+        entry.setComment("comment");
+        zipOutputStream.putNextEntry(entry);
+        zipOutputStream.write(new byte[] {1, 2, 3});
+        zipOutputStream.closeEntry();
+      } finally {
+        zipOutputStream.close();
+      }
+
+      new JarRemapper(Collections.<String, String>emptyMap()).remap(input, output);
+
+      ZipFile zipFile = new ZipFile(output);
+      try {
+        ZipEntry entry = zipFile.getEntry("dir/file.txt");
+        assertArrayEquals(extra, entry.getExtra());
+        assertEquals("comment", entry.getComment());
+        assertArrayEquals(new byte[] {1, 2, 3}, readEntry(zipFile, "dir/file.txt"));
+      } finally {
+        zipFile.close();
+      }
+      ZipInputStream zipInputStream = new ZipInputStream(new FileInputStream(output));
+      try {
+        assertArrayEquals(extra, zipInputStream.getNextEntry().getExtra());
+      } finally {
+        zipInputStream.close();
+      }
+    } finally {
+      input.delete();
+      output.delete();
+    }
+  }
+
+  /** Tests that remapping two classes to the same name fails, without producing an output jar. */
+  @Test
+  public void testRemapDuplicateEntries() throws IOException {
+    File input = File.createTempFile("JarRemapperTest", ".jar");
+    File output = File.createTempFile("JarRemapperTest", ".jar");
+    try {
+      ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(input));
+      try {
+        addEntry(zipOutputStream, "dir/I.class", generateInterface(), ZipEntry.DEFLATED);
+        addEntry(zipOutputStream, "dir/A.class", generateClassA(), ZipEntry.DEFLATED);
+      } finally {
+        zipOutputStream.close();
+      }
+      JarRemapper jarRemapper = new JarRemapper(Collections.singletonMap("dir/A", "dir/I"));
+
+      assertThrows(IOException.class, () -> jarRemapper.remap(input, output));
+      assertFalse(output.exists());
+    } finally {
+      input.delete();
+      output.delete();
+    }
+  }
+
+  private static void addEntry(
+      final ZipOutputStream zipOutputStream, final String name, final byte[] data, final int method)
+      throws IOException {
+    ZipEntry entry = new ZipEntry(name);
+    entry.setMethod(method);
+    if (method == ZipEntry.STORED) {
+      CRC32 crc = new CRC32();
+      crc.update(data);
+      entry.setCrc(crc.getValue());
+      entry.setSize(data.length);
+    }
+    zipOutputStream.putNextEntry(entry);
+    zipOutputStream.write(data);
+    zipOutputStream.closeEntry();
+  }
+
+  private static byte[] readEntry(final ZipFile zipFile, final String name) throws IOException {
+    InputStream inputStream = zipFile.getInputStream(zipFile.getEntry(name));
+    try {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int length;
+      while ((length = inputStream.read(buffer)) != -1) {
+        outputStream.write(buffer, 0, length);
+      }
+      return outputStream.toByteArray();
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  private static ClassNode readClass(final ZipFile zipFile, final String name) throws IOException {
+    ClassNode classNode = new ClassNode();
+    new ClassReader(readEntry(zipFile, name)).accept(classNode, 0);
+    return classNode;
+  }
+
+  private static byte[] generateInterface() {
+    ClassWriter classWriter = new ClassWriter(0);
+    classWriter.visit(
+        V1_8, ACC_PUBLIC | ACC_ABSTRACT | ACC_INTERFACE, "dir/I", null, "java/lang/Object", null);
+    classWriter.visitMethod(ACC_PUBLIC | ACC_ABSTRACT, "m", "()V", null, null).visitEnd();
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+
+  private static byte[] generateClassA() {
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    classWriter.visit(V1_8, ACC_PUBLIC, "dir/A", null, "java/lang/Object", new String[] {"dir/I"});
+    classWriter.visitField(ACC_PUBLIC, "f", "I", null, null).visitEnd();
+    generateConstructor(classWriter, "java/lang/Object");
+    generateEmptyMethod(classWriter, ACC_PUBLIC, "m");
+    generateEmptyMethod(classWriter, ACC_PRIVATE, "p");
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+
+  private static byte[] generateClassB() {
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    classWriter.visit(V1_8, ACC_PUBLIC, "dir/B", null, "dir/A", null);
+    generateConstructor(classWriter, "dir/A");
+    MethodVisitor methodVisitor = classWriter.visitMethod(ACC_PUBLIC, "m", "()V", null, null);
+    methodVisitor.visitCode();
+    methodVisitor.visitVarInsn(ALOAD, 0);
+    methodVisitor.visitMethodInsn(INVOKESPECIAL, "dir/A", "m", "()V", false);
+    methodVisitor.visitVarInsn(ALOAD, 0);
+    methodVisitor.visitMethodInsn(INVOKEVIRTUAL, "dir/B", "p", "()V", false);
+    methodVisitor.visitVarInsn(ALOAD, 0);
+    methodVisitor.visitFieldInsn(GETFIELD, "dir/B", "f", "I");
+    methodVisitor.visitInsn(POP);
+    methodVisitor.visitInsn(RETURN);
+    methodVisitor.visitMaxs(0, 0);
+    methodVisitor.visitEnd();
+    generateEmptyMethod(classWriter, 0, "p");
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+
+  private static void generateConstructor(final ClassWriter classWriter, final String superName) {
+    MethodVisitor methodVisitor = classWriter.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+    methodVisitor.visitCode();
+    methodVisitor.visitVarInsn(ALOAD, 0);
+    methodVisitor.visitMethodInsn(INVOKESPECIAL, superName, "<init>", "()V", false);
+    methodVisitor.visitInsn(RETURN);
+    methodVisitor.visitMaxs(0, 0);
+    methodVisitor.visitEnd();
+  }
+
+  private static void generateEmptyMethod(
+      final ClassWriter classWriter, final int access, final String name) {
+    MethodVisitor methodVisitor = classWriter.visitMethod(access, name, "()V", null, null);
+    methodVisitor.visitCode();
+    methodVisitor.visitInsn(RETURN);
+    methodVisitor.visitMaxs(0, 0);
+    methodVisitor.visitEnd();
+  }
+}
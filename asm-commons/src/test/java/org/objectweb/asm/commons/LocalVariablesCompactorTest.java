@@ -0,0 +1,218 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.objectweb.asm.test.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+/** LocalVariablesCompactor tests. */
+public class LocalVariablesCompactorTest extends AsmTest {
+
+  /** Tests that variables with disjoint live ranges share the same slot. */
+  @Test
+  public void testDisjointVariables() {
+    MethodNode methodNode = new MethodNode(Opcodes.ACC_STATIC, "m", "(I)V", null, null);
+    LocalVariablesCompactor compactor =
+        new LocalVariablesCompactor(methodNode, Opcodes.ACC_STATIC, "m", "(I)V", null, null);
+    compactor.visitCode();
+    compactor.visitInsn(Opcodes.LCONST_0);
+    compactor.visitVarInsn(Opcodes.LSTORE, 1);
+    compactor.visitVarInsn(Opcodes.LLOAD, 1);
+    compactor.visitInsn(Opcodes.POP2);
+    compactor.visitInsn(Opcodes.ACONST_NULL);
+    compactor.visitVarInsn(Opcodes.ASTORE, 3);
+    compactor.visitInsn(Opcodes.ICONST_0);
+    compactor.visitVarInsn(Opcodes.ISTORE, 4);
+    compactor.visitVarInsn(Opcodes.ALOAD, 3);
+    compactor.visitVarInsn(Opcodes.ILOAD, 4);
+    compactor.visitInsn(Opcodes.POP2);
+    compactor.visitInsn(Opcodes.RETURN);
+    compactor.visitMaxs(2, 5);
+    compactor.visitEnd();
+
+    assertEquals(3, methodNode.maxLocals);
+    assertEquals(1, ((VarInsnNode) methodNode.instructions.get(1)).var);
+    assertEquals(1, ((VarInsnNode) methodNode.instructions.get(5)).var);
+    assertEquals(2, ((VarInsnNode) methodNode.instructions.get(7)).var);
+  }
+
+  /** Tests that the frames are updated, and that the variables live in a loop are preserved. */
+  @Test
+  public void testLoop() {
+    MethodNode methodNode = new MethodNode(Opcodes.ACC_STATIC, "m", "()V", null, null);
+    LocalVariablesCompactor compactor =
+        new LocalVariablesCompactor(methodNode, Opcodes.ACC_STATIC, "m", "()V", null, null);
+    Label loop = new Label();
+    Label end = new Label();
+    compactor.visitCode();
+    compactor.visitInsn(Opcodes.ACONST_NULL);
+    compactor.visitVarInsn(Opcodes.ASTORE, 0);
+    compactor.visitVarInsn(Opcodes.ALOAD, 0);
+    compactor.visitInsn(Opcodes.POP);
+    compactor.visitInsn(Opcodes.ICONST_0);
+    compactor.visitVarInsn(Opcodes.ISTORE, 1);
+    compactor.visitInsn(Opcodes.ICONST_0);
+    compactor.visitVarInsn(Opcodes.ISTORE, 2);
+    compactor.visitLabel(loop);
+    compactor.visitFrame(
+        Opcodes.F_NEW,
+        3,
+        new Object[] {"java/lang/Object", Opcodes.INTEGER, Opcodes.INTEGER},
+        0,
+        new Object[0]);
+    compactor.visitVarInsn(Opcodes.ILOAD, 2);
+    compactor.visitJumpInsn(Opcodes.IFNE, end);
+    compactor.visitIincInsn(1, 1);
+    compactor.visitVarInsn(Opcodes.ILOAD, 1);
+    compactor.visitVarInsn(Opcodes.ISTORE, 2);
+    compactor.visitJumpInsn(Opcodes.GOTO, loop);
+    compactor.visitLabel(end);
+    compactor.visitFrame(
+        Opcodes.F_NEW,
+        3,
+        new Object[] {"java/lang/Object", Opcodes.INTEGER, Opcodes.INTEGER},
+        0,
+        new Object[0]);
+    compactor.visitInsn(Opcodes.RETURN);
+    compactor.visitMaxs(1, 3);
+    compactor.visitEnd();
+
+    assertEquals(2, methodNode.maxLocals);
+    FrameNode loopFrame = (FrameNode) methodNode.instructions.get(9);
+    assertEquals(Arrays.asList(new Object[] {Opcodes.INTEGER, Opcodes.INTEGER}), loopFrame.local);
+    FrameNode endFrame = (FrameNode) methodNode.instructions.get(17);
+    assertEquals(0, endFrame.local.size());
+  }
+
+  /** Tests that compressed frames are rejected. */
+  @Test
+  public void testCompressedFrame() {
+    LocalVariablesCompactor compactor =
+        new LocalVariablesCompactor(null, Opcodes.ACC_STATIC, "m", "()V", null, null);
+
+    assertThrows(
+        IllegalStateException.class,
+        () -> compactor.visitFrame(Opcodes.F_SAME, 0, null, 0, null));
+  }
+
+  /**
+   * Tests that the classes transformed with a LocalVariablesSorter adding a new local variable in
+   * each method, and then with a LocalVariablesCompactor, are valid and use fewer local variables.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testCompactLocalVariablesAndInstantiate(
+      PrecompiledClass classParameter, Api apiParameter) {
+    ClassReader classReader = new ClassReader(classParameter.getBytes());
+    ClassWriter classWriter = new ClassWriter(0);
+    final Map<String, Integer> sortedMaxLocals = new HashMap<String, Integer>();
+    ClassVisitor classVisitor =
+        new ClassVisitor(apiParameter.value(), classWriter) {
+          @Override
+          public MethodVisitor visitMethod(
+              final int access,
+              final String name,
+              final String desc,
+              final String signature,
+              final String[] exceptions) {
+            MethodVisitor mv = super.visitMethod(access, name, desc, signature, exceptions);
+            MethodVisitor compactor =
+                new LocalVariablesCompactor(api, mv, access, name, desc, signature, exceptions) {
+                  @Override
+                  public void visitMaxs(final int maxStack, final int maxLocals) {
+                    sortedMaxLocals.put(name + desc, maxLocals);
+                    super.visitMaxs(maxStack, maxLocals);
+                  }
+                };
+            return new CounterAdder(api, access, desc, compactor);
+          }
+        };
+
+    classReader.accept(classVisitor, ClassReader.EXPAND_FRAMES);
+
+    byte[] classFile = classWriter.toByteArray();
+    ClassNode classNode = new ClassNode();
+    new ClassReader(classFile).accept(classNode, 0);
+    for (MethodNode methodNode : classNode.methods) {
+      Integer maxLocals = sortedMaxLocals.get(methodNode.name + methodNode.desc);
+      if (maxLocals != null) {
+        assertTrue(methodNode.maxLocals <= maxLocals);
+      }
+    }
+    assertThat(() -> loadAndInstantiate(classParameter.getName(), classFile))
+        .succeedsOrThrows(UnsupportedClassVersionError.class)
+        .when(classParameter.isMoreRecentThanCurrentJdk());
+  }
+
+  /**
+   * A LocalVariablesSorter which adds a local variable used at the beginning of each method, to
+   * count its invocations.
+   */
+  private static class CounterAdder extends LocalVariablesSorter {
+
+    CounterAdder(final int api, final int access, final String desc, final MethodVisitor mv) {
+      super(api, access, desc, mv);
+    }
+
+    @Override
+    public void visitCode() {
+      super.visitCode();
+      int counter = newLocal(Type.INT_TYPE);
+      mv.visitInsn(Opcodes.ICONST_0);
+      mv.visitVarInsn(Opcodes.ISTORE, counter);
+      mv.visitIincInsn(counter, 1);
+    }
+
+    @Override
+    public void visitMaxs(final int maxStack, final int maxLocals) {
+      super.visitMaxs(Math.max(maxStack, 1), maxLocals);
+    }
+  }
+}
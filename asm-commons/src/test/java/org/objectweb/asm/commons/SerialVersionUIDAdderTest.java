@@ -30,6 +30,7 @@ package org.objectweb.asm.commons;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.io.IOException;
+import java.io.ObjectStreamClass;
 import java.io.Serializable;
 
 import org.junit.jupiter.api.Test;
@@ -84,6 +85,33 @@ public class SerialVersionUIDAdderTest extends AsmTest {
     assertEquals(8675733916152748550L, UID);
   }
 
+  @Test
+  public void testNonAsciiNames() throws Throwable {
+    long UID = computeSerialVersionUID(SerialVersionNonAsciiClass.class.getName());
+    assertEquals(
+        ObjectStreamClass.lookup(SerialVersionNonAsciiClass.class).getSerialVersionUID(), UID);
+  }
+
+  @Test
+  public void testOverriddenSHAdigest() throws Throwable {
+    final long[] svuid = new long[1];
+    ClassVisitor cv =
+        new SerialVersionUIDAdder(Opcodes.ASM5, null) {
+          @Override
+          protected byte[] computeSHAdigest(final byte[] value) {
+            return new byte[] {1, 2, 0, 0, 0, 0, 0, 0, 0, 0};
+          }
+
+          @Override
+          protected long computeSVUID() throws IOException {
+            svuid[0] = super.computeSVUID();
+            return svuid[0];
+          }
+        };
+    new ClassReader(SerialVersionClass.class.getName()).accept(cv, 0);
+    assertEquals(0x0201L, svuid[0]);
+  }
+
   @Test
   public void testEnum() throws Throwable {
     long UID = computeSerialVersionUID(SerialVersionEnum.class.getName());
@@ -115,6 +143,13 @@ class SerialVersionClass implements Serializable {
   }
 }
 
+class SerialVersionNonAsciiClass implements Serializable {
+
+  protected int caf\u00e9;
+
+  public void \u0101\u4e2d(final String[] caf\u00e9) {}
+}
+
 interface SerialVersionInterface extends Serializable {
 
   void aMethod(Object[] args);
@@ -30,10 +30,16 @@ package org.objectweb.asm.tree;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.ModuleVisitor;
@@ -354,6 +360,157 @@ public class ClassNode extends ClassVisitor {
    * @param cv a class visitor.
    */
   public void accept(final ClassVisitor cv) {
+    accept(cv, null, null);
+  }
+
+  /**
+   * Returns the content of this class, as a byte array, with the methods written on the given
+   * executor. The frames and maximum stack sizes of each method are computed in parallel, each in a
+   * separate {@link ClassWriter} returned by {@link #newClassWriter}. The results are then
+   * assembled in a single class, in the original method order, with the same constant pool order
+   * as {@link #accept} into a <tt>newClassWriter(flags)</tt>. The result is therefore identical to
+   * the one of this sequential path. Classes which do not use {@link ClassWriter#COMPUTE_FRAMES},
+   * or which contain non standard method attributes or type annotations on instructions, try catch
+   * blocks or local variables, are written sequentially in the calling thread.
+   *
+   * <p>Each method is written with {@link ClassWriter#COMPUTE_FRAMES}, read back, and visited
+   * again with its constant pool entries preloaded in the final class, which amounts to about
+   * three times the work of a sequential write. Writing the methods in parallel is therefore only
+   * worth it for classes with many large methods.
+   *
+   * @param flags the options of the {@link ClassWriter} returned by {@link #newClassWriter}.
+   * @param executor the executor used to write the methods of this class.
+   * @return the bytecode of this class.
+   */
+  public byte[] toByteArray(final int flags, final Executor executor) {
+    if ((flags & ClassWriter.COMPUTE_FRAMES) == 0 || !canWriteMethodsInParallel()) {
+      ClassWriter cw = newClassWriter(flags);
+      accept(cw);
+      return cw.toByteArray();
+    }
+    final String[] interfaces = new String[this.interfaces.size()];
+    this.interfaces.toArray(interfaces);
+    List<FutureTask<MethodNode>> writtenMethods =
+        new ArrayList<FutureTask<MethodNode>>(methods.size());
+    for (int i = 0; i < methods.size(); ++i) {
+      final MethodNode method = methods.get(i);
+      if (method.instructions.size() == 0) {
+        writtenMethods.add(null);
+        continue;
+      }
+      FutureTask<MethodNode> task =
+          new FutureTask<MethodNode>(
+              new Callable<MethodNode>() {
+                public MethodNode call() {
+                  return writeMethod(method, flags, interfaces);
+                }
+              });
+      writtenMethods.add(task);
+    }
+    try {
+      for (int i = 0; i < writtenMethods.size(); ++i) {
+        FutureTask<MethodNode> task = writtenMethods.get(i);
+        if (task != null) {
+          executor.execute(task);
+        }
+      }
+      ClassWriter cw = new ClassWriter(0);
+      accept(cw, cw, writtenMethods);
+      return cw.toByteArray();
+    } finally {
+      for (int i = 0; i < writtenMethods.size(); ++i) {
+        FutureTask<MethodNode> task = writtenMethods.get(i);
+        if (task != null) {
+          task.cancel(false);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns a new {@link ClassWriter} to write this class with {@link #toByteArray(int, Executor)}.
+   * This method must be thread safe. The default implementation returns <tt>new
+   * ClassWriter(flags)</tt>. It can be overridden to return a {@link ClassWriter} subclass with a
+   * custom {@link ClassWriter#getCommonSuperClass} method.
+   *
+   * @param flags the options of the class writer.
+   * @return a new {@link ClassWriter}.
+   */
+  protected ClassWriter newClassWriter(final int flags) {
+    return new ClassWriter(flags);
+  }
+
+  /**
+   * Returns whether the methods of this class can be written in parallel, i.e. whether their
+   * constant pool entries are all created by their instructions, try catch blocks and local
+   * variables, and by the frames computed from them.
+   *
+   * @return whether the methods of this class can be written in parallel.
+   */
+  private boolean canWriteMethodsInParallel() {
+    for (int i = 0; i < methods.size(); ++i) {
+      MethodNode method = methods.get(i);
+      if (method.attrs != null && method.attrs.size() > 0) {
+        return false;
+      }
+      if (method.visibleLocalVariableAnnotations != null
+          || method.invisibleLocalVariableAnnotations != null) {
+        return false;
+      }
+      if (method.tryCatchBlocks != null) {
+        for (int j = 0; j < method.tryCatchBlocks.size(); ++j) {
+          TryCatchBlockNode tryCatchBlock = method.tryCatchBlocks.get(j);
+          if (tryCatchBlock.visibleTypeAnnotations != null
+              || tryCatchBlock.invisibleTypeAnnotations != null) {
+            return false;
+          }
+        }
+      }
+      AbstractInsnNode insn = method.instructions.getFirst();
+      while (insn != null) {
+        if (insn.visibleTypeAnnotations != null || insn.invisibleTypeAnnotations != null) {
+          return false;
+        }
+        insn = insn.getNext();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes the given method in a new class with the same header as this class, and reads it back.
+   *
+   * @param method a method of this class, with code.
+   * @param flags the options of the class writer to use.
+   * @param interfaces the interfaces of this class.
+   * @return the given method, with its frames and maximum stack size and number of local variables
+   *     computed as specified by flags.
+   */
+  private MethodNode writeMethod(
+      final MethodNode method, final int flags, final String[] interfaces) {
+    ClassWriter cw = newClassWriter(flags);
+    cw.visit(version, access, name, signature, superName, interfaces);
+    method.accept(cw);
+    cw.visitEnd();
+    ClassNode classNode = new ClassNode(Opcodes.ASM6);
+    new ClassReader(cw.toByteArray()).accept(classNode, 0);
+    return classNode.methods.get(0);
+  }
+
+  /**
+   * Makes the given class visitor visit this class.
+   *
+   * @param cv a class visitor.
+   * @param cw the class writer into which the written methods are visited, via <tt>cv</tt>, or
+   *     <tt>null</tt> if <tt>writtenMethods</tt> is <tt>null</tt>.
+   * @param writtenMethods the methods to visit instead of those of this class, or <tt>null</tt> to
+   *     visit the methods of this class. Each element is either <tt>null</tt>, for methods without
+   *     code, or a task returning the result of {@link #writeMethod} for the corresponding method.
+   */
+  private void accept(
+      final ClassVisitor cv,
+      final ClassWriter cw,
+      final List<FutureTask<MethodNode>> writtenMethods) {
     // visits header
     String[] interfaces = new String[this.interfaces.size()];
     this.interfaces.toArray(interfaces);
@@ -406,9 +563,123 @@ public class ClassNode extends ClassVisitor {
     }
     // visits methods
     for (i = 0; i < methods.size(); ++i) {
-      methods.get(i).accept(cv);
+      FutureTask<MethodNode> task = writtenMethods == null ? null : writtenMethods.get(i);
+      if (task == null) {
+        methods.get(i).accept(cv);
+      } else {
+        MethodNode writtenMethod = getWrittenMethod(task);
+        String[] exceptions = new String[writtenMethod.exceptions.size()];
+        writtenMethod.exceptions.toArray(exceptions);
+        MethodVisitor mv =
+            cv.visitMethod(
+                writtenMethod.access,
+                writtenMethod.name,
+                writtenMethod.desc,
+                writtenMethod.signature,
+                exceptions);
+        if (mv != null) {
+          writtenMethod.accept(new SymbolPreloader(cw, mv, methods.get(i)));
+        }
+      }
     }
     // visits end
     cv.visitEnd();
   }
+
+  /**
+   * Waits for the given task to complete and returns its result.
+   *
+   * @param task a task returning the result of {@link #writeMethod}.
+   * @return the result of the given task.
+   */
+  private static MethodNode getWrittenMethod(final FutureTask<MethodNode> task) {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  /**
+   * A {@link MethodVisitor} which adds the constant pool entries of a method's try catch blocks,
+   * instructions and local variables to a {@link ClassWriter}, in this order, at the start of the
+   * method's code. A written method visits its precomputed frames in the middle of its
+   * instructions, while a {@link ClassWriter} computing frames visits them at the end. This class
+   * restores the constant pool order of the latter case.
+   */
+  private static final class SymbolPreloader extends MethodVisitor {
+
+    /** The class writer to which the constant pool entries must be added. */
+    private final ClassWriter cw;
+
+    /** The method, before it was written, whose constant pool entries must be added. */
+    private final MethodNode method;
+
+    SymbolPreloader(final ClassWriter cw, final MethodVisitor mv, final MethodNode method) {
+      super(Opcodes.ASM6, mv);
+      this.cw = cw;
+      this.method = method;
+    }
+
+    @Override
+    public void visitCode() {
+      super.visitCode();
+      int n = method.tryCatchBlocks == null ? 0 : method.tryCatchBlocks.size();
+      for (int i = 0; i < n; ++i) {
+        TryCatchBlockNode tryCatchBlock = method.tryCatchBlocks.get(i);
+        if (tryCatchBlock.type != null) {
+          cw.newClass(tryCatchBlock.type);
+        }
+      }
+      AbstractInsnNode insn = method.instructions.getFirst();
+      while (insn != null) {
+        switch (insn.getType()) {
+          case AbstractInsnNode.FIELD_INSN:
+            FieldInsnNode fieldInsn = (FieldInsnNode) insn;
+            cw.newField(fieldInsn.owner, fieldInsn.name, fieldInsn.desc);
+            break;
+          case AbstractInsnNode.METHOD_INSN:
+            MethodInsnNode methodInsn = (MethodInsnNode) insn;
+            cw.newMethod(methodInsn.owner, methodInsn.name, methodInsn.desc, methodInsn.itf);
+            break;
+          case AbstractInsnNode.TYPE_INSN:
+            cw.newClass(((TypeInsnNode) insn).desc);
+            break;
+          case AbstractInsnNode.MULTIANEWARRAY_INSN:
+            cw.newClass(((MultiANewArrayInsnNode) insn).desc);
+            break;
+          case AbstractInsnNode.LDC_INSN:
+            cw.newConst(((LdcInsnNode) insn).cst);
+            break;
+          case AbstractInsnNode.INVOKE_DYNAMIC_INSN:
+            InvokeDynamicInsnNode indyInsn = (InvokeDynamicInsnNode) insn;
+            cw.newInvokeDynamic(indyInsn.name, indyInsn.desc, indyInsn.bsm, indyInsn.bsmArgs);
+            break;
+          default:
+            break;
+        }
+        insn = insn.getNext();
+      }
+      n = method.localVariables == null ? 0 : method.localVariables.size();
+      for (int i = 0; i < n; ++i) {
+        LocalVariableNode localVariable = method.localVariables.get(i);
+        if (localVariable.signature != null) {
+          cw.newUTF8(localVariable.name);
+          cw.newUTF8(localVariable.signature);
+        }
+        cw.newUTF8(localVariable.name);
+        cw.newUTF8(localVariable.desc);
+      }
+    }
+  }
 }
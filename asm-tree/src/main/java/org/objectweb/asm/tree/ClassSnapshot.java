@@ -0,0 +1,269 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * A set of classes stored in the compact binary form produced by a {@link ClassSnapshotWriter}.
+ * The content of a snapshot is decoded lazily: the strings are decoded the first time they are
+ * used, and the content of a class is decoded only when it is visited or requested as a {@link
+ * ClassNode}. A snapshot can therefore be memory mapped from a file (see {@link #read(File)}) and
+ * used as a cache which is much faster to load than parsing the original class files.
+ *
+ * <p>The methods of this class can be called concurrently from several threads.
+ */
+public class ClassSnapshot {
+
+  /** The magic number of the snapshot files ('ASMS'). */
+  static final int MAGIC = 0x41534D53;
+
+  /** The version of the snapshot format. */
+  static final int FORMAT_VERSION = 1;
+
+  /** The size in bytes of the header of the snapshot files. */
+  static final int HEADER_SIZE = 14;
+
+  /** The content of this snapshot. */
+  private final ByteBuffer buffer;
+
+  /** The offset of the string table in {@link #buffer}. */
+  private final int stringsOffset;
+
+  /** The strings of this snapshot, decoded lazily. */
+  private final String[] strings;
+
+  /** The index of each class of this snapshot in the class index, by class name. */
+  private final HashMap<String, Integer> classIndices;
+
+  /** The classes of this snapshot which have already been materialized as a {@link ClassNode}. */
+  private final ConcurrentHashMap<String, ClassNode> classNodes;
+
+  /**
+   * Constructs a new {@link ClassSnapshot}.
+   *
+   * @param snapshot the content of a snapshot, as returned by {@link
+   *     ClassSnapshotWriter#toByteArray()}.
+   * @throws IllegalArgumentException if the given content is not a supported snapshot.
+   */
+  public ClassSnapshot(final byte[] snapshot) {
+    this(ByteBuffer.wrap(snapshot));
+  }
+
+  /**
+   * Constructs a new {@link ClassSnapshot}.
+   *
+   * @param snapshot the content of a snapshot, between the position and the limit of this buffer.
+   *     This buffer must not be modified after this constructor is called.
+   * @throws IllegalArgumentException if the given content is not a supported snapshot.
+   */
+  public ClassSnapshot(final ByteBuffer snapshot) {
+    this.buffer = snapshot.slice();
+    if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+      throw new IllegalArgumentException("Not a class snapshot");
+    }
+    int formatVersion = buffer.getShort(4) & 0xFFFF;
+    if (formatVersion != FORMAT_VERSION) {
+      throw new IllegalArgumentException("Unsupported snapshot version " + formatVersion);
+    }
+    int stringCount = buffer.getInt(6);
+    int classCount = buffer.getInt(10);
+    this.stringsOffset = HEADER_SIZE + 12 * classCount;
+    this.strings = new String[stringCount];
+    this.classIndices = new HashMap<String, Integer>(2 * classCount);
+    for (int i = 0; i < classCount; ++i) {
+      classIndices.put(getString(buffer.getInt(HEADER_SIZE + 12 * i)), i);
+    }
+    this.classNodes = new ConcurrentHashMap<String, ClassNode>();
+  }
+
+  /**
+   * Reads a snapshot from a file. The file is memory mapped, and must not be modified while the
+   * returned snapshot is in use.
+   *
+   * @param file a file containing a snapshot, as written by {@link ClassSnapshotWriter#write}.
+   * @return the snapshot contained in the given file.
+   * @throws IOException if a problem occurs while reading the file.
+   * @throws IllegalArgumentException if the file does not contain a supported snapshot.
+   */
+  public static ClassSnapshot read(final File file) throws IOException {
+    FileInputStream inputStream = new FileInputStream(file);
+    try {
+      FileChannel channel = inputStream.getChannel();
+      return new ClassSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  /**
+   * Returns the number of classes in this snapshot.
+   *
+   * @return the number of classes in this snapshot.
+   */
+  public int getClassCount() {
+    return classIndices.size();
+  }
+
+  /**
+   * Returns the internal names of the classes of this snapshot.
+   *
+   * @return the internal names of the classes of this snapshot, in the order in which they were
+   *     added to the snapshot.
+   */
+  public List<String> getClassNames() {
+    int classCount = classIndices.size();
+    List<String> classNames = new ArrayList<String>(classCount);
+    for (int i = 0; i < classCount; ++i) {
+      classNames.add(getString(buffer.getInt(HEADER_SIZE + 12 * i)));
+    }
+    return classNames;
+  }
+
+  /**
+   * Returns whether this snapshot contains the given class.
+   *
+   * @param className the internal name of a class.
+   * @return whether this snapshot contains the given class.
+   */
+  public boolean contains(final String className) {
+    return classIndices.containsKey(className);
+  }
+
+  /**
+   * Makes the given visitor visit the given class of this snapshot. The content of the class is
+   * decoded each time this method is called.
+   *
+   * @param className the internal name of a class of this snapshot.
+   * @param classVisitor the visitor that must visit this class.
+   * @throws IllegalArgumentException if this snapshot does not contain the given class.
+   */
+  public void accept(final String className, final ClassVisitor classVisitor) {
+    Integer classIndex = classIndices.get(className);
+    if (classIndex == null) {
+      throw new IllegalArgumentException("Unknown class " + className);
+    }
+    int entryOffset = HEADER_SIZE + 12 * classIndex.intValue();
+    byte[] classContent = new byte[buffer.getInt(entryOffset + 8)];
+    ByteBuffer classBuffer = buffer.duplicate();
+    classBuffer.position(buffer.getInt(entryOffset + 4));
+    classBuffer.get(classContent);
+    new EventReader(classContent, 0) {
+      @Override
+      String getString(final int index) {
+        return ClassSnapshot.this.getString(index);
+      }
+    }.acceptClass(classVisitor);
+  }
+
+  /**
+   * Returns the given class of this snapshot, as a {@link ClassNode}. The class is decoded the
+   * first time this method is called, and the same instance is returned by the subsequent calls.
+   * Callers must therefore not modify the returned class node. Use {@link #accept} to get a new,
+   * independent copy of a class.
+   *
+   * @param className the internal name of a class of this snapshot.
+   * @return the given class of this snapshot.
+   * @throws IllegalArgumentException if this snapshot does not contain the given class.
+   */
+  public ClassNode getClassNode(final String className) {
+    ClassNode classNode = classNodes.get(className);
+    if (classNode == null) {
+      classNode = new ClassNode(Opcodes.ASM6);
+      accept(className, classNode);
+      ClassNode previousClassNode = classNodes.putIfAbsent(className, classNode);
+      if (previousClassNode != null) {
+        classNode = previousClassNode;
+      }
+    }
+    return classNode;
+  }
+
+  /**
+   * Returns the string whose index is given, decoding it if necessary.
+   *
+   * @param index the index of a string of this snapshot.
+   * @return the string whose index is given.
+   */
+  private String getString(final int index) {
+    String value = strings[index];
+    if (value == null) {
+      value = readModifiedUtf8(buffer.getInt(stringsOffset + 4 * index));
+      strings[index] = value;
+    }
+    return value;
+  }
+
+  /**
+   * Decodes a string encoded by {@link ClassSnapshotWriter}.
+   *
+   * @param offset the offset of the encoded string in {@link #buffer}.
+   * @return the decoded string.
+   */
+  private String readModifiedUtf8(final int offset) {
+    int currentOffset = offset;
+    int byteLength = 0;
+    int shift = 0;
+    int currentByte;
+    do {
+      currentByte = buffer.get(currentOffset++);
+      byteLength |= (currentByte & 0x7F) << shift;
+      shift += 7;
+    } while (currentByte < 0);
+    int endOffset = currentOffset + byteLength;
+    char[] charBuffer = new char[byteLength];
+    int charLength = 0;
+    while (currentOffset < endOffset) {
+      int currentByte1 = buffer.get(currentOffset++);
+      if ((currentByte1 & 0x80) == 0) {
+        charBuffer[charLength++] = (char) (currentByte1 & 0x7F);
+      } else if ((currentByte1 & 0xE0) == 0xC0) {
+        charBuffer[charLength++] =
+            (char) (((currentByte1 & 0x1F) << 6) + (buffer.get(currentOffset++) & 0x3F));
+      } else {
+        charBuffer[charLength++] =
+            (char)
+                (((currentByte1 & 0xF) << 12)
+                    + ((buffer.get(currentOffset++) & 0x3F) << 6)
+                    + (buffer.get(currentOffset++) & 0x3F));
+      }
+    }
+    return new String(charBuffer, 0, charLength);
+  }
+}
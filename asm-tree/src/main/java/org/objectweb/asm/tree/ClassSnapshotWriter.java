@@ -0,0 +1,199 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+
+/**
+ * A writer of {@link ClassSnapshot} files. A snapshot contains the content of several {@link
+ * ClassNode}, in a compact binary form where the strings are shared between all the classes. The
+ * format of a snapshot is the following (all the integers are big endian):
+ *
+ * <ul>
+ *   <li>a header with a u4 magic number ('ASMS'), a u2 format version, the u4 number of strings
+ *       and the u4 number of classes,
+ *   <li>the class index, with for each class the u4 index of its name in the string table, and the
+ *       u4 offset and length of its encoded content,
+ *   <li>the string table, made of the u4 offset of each string, followed by the strings
+ *       themselves, each encoded as a variable length integer byte count followed by the modified
+ *       UTF-8 form of the string,
+ *   <li>the encoded content of each class, i.e. the visitor events produced by {@link
+ *       ClassNode#accept(org.objectweb.asm.ClassVisitor)}.
+ * </ul>
+ *
+ * Only the unknown attributes (see {@link org.objectweb.asm.Attribute#isUnknown()}) are supported.
+ */
+public class ClassSnapshotWriter {
+
+  /** The strings referenced by the classes of this snapshot. */
+  private final StringTable strings;
+
+  /** The encoded content of the classes of this snapshot. */
+  private final EventWriter classes;
+
+  /** The names of the classes of this snapshot. */
+  private final HashSet<String> classNames;
+
+  /**
+   * The class index of this snapshot. Contains, for each class, the index of its name in {@link
+   * #strings}, and the offset and length of its content in {@link #classes}.
+   */
+  private int[] classIndex;
+
+  /** The number of classes of this snapshot. */
+  private int classCount;
+
+  /** Constructs a new, empty {@link ClassSnapshotWriter}. */
+  public ClassSnapshotWriter() {
+    this.strings = new StringTable();
+    this.classes = new EventWriter(strings);
+    this.classNames = new HashSet<String>();
+    this.classIndex = new int[3 * 16];
+  }
+
+  /**
+   * Adds a class to this snapshot.
+   *
+   * @param classNode a class node.
+   * @throws IllegalArgumentException if a class with the same name has already been added, or if
+   *     the class contains attributes which are not unknown attributes.
+   */
+  public void add(final ClassNode classNode) {
+    if (!classNames.add(classNode.name)) {
+      throw new IllegalArgumentException("Duplicate class " + classNode.name);
+    }
+    int offset = classes.length;
+    int stringCount = strings.size();
+    try {
+      classNode.accept(classes.classWriter());
+    } catch (RuntimeException e) {
+      classes.length = offset;
+      strings.truncate(stringCount);
+      classNames.remove(classNode.name);
+      throw e;
+    }
+    if (3 * classCount + 3 > classIndex.length) {
+      int[] newClassIndex = new int[2 * classIndex.length];
+      System.arraycopy(classIndex, 0, newClassIndex, 0, classIndex.length);
+      classIndex = newClassIndex;
+    }
+    classIndex[3 * classCount] = strings.add(classNode.name);
+    classIndex[3 * classCount + 1] = offset;
+    classIndex[3 * classCount + 2] = classes.length - offset;
+    classCount++;
+  }
+
+  /**
+   * Returns the content of this snapshot.
+   *
+   * @return the content of this snapshot, in the format described in {@link ClassSnapshotWriter}.
+   */
+  public byte[] toByteArray() {
+    // Encode the strings first, to compute the offset of the class contents.
+    int stringCount = strings.size();
+    int stringsOffset = ClassSnapshot.HEADER_SIZE + 12 * classCount + 4 * stringCount;
+    int[] stringOffsets = new int[stringCount];
+    EventWriter stringData = new EventWriter(null);
+    for (int i = 0; i < stringCount; ++i) {
+      stringOffsets[i] = stringsOffset + stringData.length;
+      putModifiedUtf8(stringData, strings.get(i));
+    }
+    int classesOffset = stringsOffset + stringData.length;
+
+    EventWriter output = new EventWriter(null);
+    output.putInt(ClassSnapshot.MAGIC);
+    output.putByte(ClassSnapshot.FORMAT_VERSION >>> 8);
+    output.putByte(ClassSnapshot.FORMAT_VERSION);
+    output.putInt(stringCount);
+    output.putInt(classCount);
+    for (int i = 0; i < classCount; ++i) {
+      output.putInt(classIndex[3 * i]);
+      output.putInt(classesOffset + classIndex[3 * i + 1]);
+      output.putInt(classIndex[3 * i + 2]);
+    }
+    for (int i = 0; i < stringCount; ++i) {
+      output.putInt(stringOffsets[i]);
+    }
+    output.putByteArray(stringData.data, 0, stringData.length);
+    output.putByteArray(classes.data, 0, classes.length);
+    if (output.length == output.data.length) {
+      return output.data;
+    }
+    byte[] result = new byte[output.length];
+    System.arraycopy(output.data, 0, result, 0, output.length);
+    return result;
+  }
+
+  /**
+   * Writes the content of this snapshot to the given stream.
+   *
+   * @param outputStream the stream where this snapshot must be written. This stream is not closed.
+   * @throws IOException if a problem occurs while writing the snapshot.
+   */
+  public void write(final OutputStream outputStream) throws IOException {
+    outputStream.write(toByteArray());
+  }
+
+  /**
+   * Puts the given string, preceded by its byte length, in the given buffer. The string is encoded
+   * in modified UTF-8, like in the class file format, but without any length limit.
+   *
+   * @param output where the string must be put.
+   * @param stringValue a string.
+   */
+  private static void putModifiedUtf8(final EventWriter output, final String stringValue) {
+    int charLength = stringValue.length();
+    int byteLength = 0;
+    for (int i = 0; i < charLength; ++i) {
+      char charValue = stringValue.charAt(i);
+      if (charValue >= '\u0001' && charValue <= '\u007F') {
+        byteLength++;
+      } else if (charValue <= '\u07FF') {
+        byteLength += 2;
+      } else {
+        byteLength += 3;
+      }
+    }
+    output.putUnsigned(byteLength);
+    for (int i = 0; i < charLength; ++i) {
+      char charValue = stringValue.charAt(i);
+      if (charValue >= '\u0001' && charValue <= '\u007F') {
+        output.putByte(charValue);
+      } else if (charValue <= '\u07FF') {
+        output.putByte(0xC0 | charValue >> 6 & 0x1F);
+        output.putByte(0x80 | charValue & 0x3F);
+      } else {
+        output.putByte(0xE0 | charValue >> 12 & 0xF);
+        output.putByte(0x80 | charValue >> 6 & 0x3F);
+        output.putByte(0x80 | charValue & 0x3F);
+      }
+    }
+  }
+}
@@ -0,0 +1,337 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree;
+
+import java.util.ListIterator;
+
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * An {@link InsnList} which shares the instructions of another list until it is modified for the
+ * first time. Until then, all the read only methods are delegated to the shared list. The first
+ * modification copies the shared instructions into this list, and updates the labels of the try
+ * catch blocks and local variables of the method containing this list (see {@link
+ * MethodNode#copyOnWrite()}).
+ */
+final class CopyOnWriteInsnList extends InsnList {
+
+  /** The shared instruction list, or <tt>null</tt> if the instructions have been copied. */
+  private InsnList sharedInsns;
+
+  /** The method whose {@link MethodNode#instructions} field is this list. */
+  private final MethodNode methodNode;
+
+  /**
+   * Constructs a new {@link CopyOnWriteInsnList}.
+   *
+   * @param sharedInsns the instructions to be shared until this list is modified.
+   * @param methodNode the method whose {@link MethodNode#instructions} field is this list.
+   */
+  CopyOnWriteInsnList(final InsnList sharedInsns, final MethodNode methodNode) {
+    this.sharedInsns = sharedInsns;
+    this.methodNode = methodNode;
+  }
+
+  /**
+   * Returns whether this list still shares its instructions with another list.
+   *
+   * @return whether this list still shares its instructions with another list.
+   */
+  boolean isShared() {
+    return sharedInsns != null;
+  }
+
+  @Override
+  void unshare() {
+    if (sharedInsns != null) {
+      InsnList insns = sharedInsns;
+      sharedInsns = null;
+      methodNode.copyInstructions(insns);
+    }
+  }
+
+  /**
+   * Copies the shared instructions, if any, and returns the copy of the given instruction.
+   *
+   * @param insn an instruction of this list, which may have been obtained while the instructions
+   *     were shared (e.g. with {@link #getFirst()} or {@link #get(int)}).
+   * @return the copy of the given instruction if it is a shared instruction, or the given
+   *     instruction itself otherwise.
+   */
+  private AbstractInsnNode unshare(final AbstractInsnNode insn) {
+    if (sharedInsns == null) {
+      return insn;
+    }
+    // Do not use indexOf, which would build the index cache of the shared list.
+    int index = 0;
+    AbstractInsnNode sharedInsn = sharedInsns.getFirst();
+    while (sharedInsn != null && sharedInsn != insn) {
+      sharedInsn = sharedInsn.getNext();
+      ++index;
+    }
+    unshare();
+    return sharedInsn != null ? super.get(index) : insn;
+  }
+
+  // ------------------------------------------------------------------------
+  // Read only methods, delegated to the shared list if any
+  // ------------------------------------------------------------------------
+
+  @Override
+  public int size() {
+    return sharedInsns != null ? sharedInsns.size() : super.size();
+  }
+
+  @Override
+  public AbstractInsnNode getFirst() {
+    return sharedInsns != null ? sharedInsns.getFirst() : super.getFirst();
+  }
+
+  @Override
+  public AbstractInsnNode getLast() {
+    return sharedInsns != null ? sharedInsns.getLast() : super.getLast();
+  }
+
+  @Override
+  public AbstractInsnNode get(final int index) {
+    return sharedInsns != null ? sharedInsns.get(index) : super.get(index);
+  }
+
+  @Override
+  public boolean contains(final AbstractInsnNode insn) {
+    return sharedInsns != null ? sharedInsns.contains(insn) : super.contains(insn);
+  }
+
+  @Override
+  public int indexOf(final AbstractInsnNode insn) {
+    return sharedInsns != null ? sharedInsns.indexOf(insn) : super.indexOf(insn);
+  }
+
+  @Override
+  public void accept(final MethodVisitor mv) {
+    if (sharedInsns != null) {
+      sharedInsns.accept(mv);
+    } else {
+      super.accept(mv);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public ListIterator<AbstractInsnNode> iterator(final int index) {
+    if (sharedInsns != null) {
+      return new CopyOnWriteIterator(index);
+    }
+    return super.iterator(index);
+  }
+
+  @Override
+  public AbstractInsnNode[] toArray() {
+    return sharedInsns != null ? sharedInsns.toArray() : super.toArray();
+  }
+
+  @Override
+  public void resetLabels() {
+    if (sharedInsns != null) {
+      sharedInsns.resetLabels();
+    } else {
+      super.resetLabels();
+    }
+  }
+
+  // ------------------------------------------------------------------------
+  // Modification methods, which copy the shared list first
+  // ------------------------------------------------------------------------
+
+  @Override
+  public InsnIndex getIndex() {
+    unshare();
+    return super.getIndex();
+  }
+
+  @Override
+  public void set(final AbstractInsnNode location, final AbstractInsnNode insn) {
+    super.set(unshare(location), insn);
+  }
+
+  @Override
+  public void add(final AbstractInsnNode insn) {
+    unshare();
+    super.add(insn);
+  }
+
+  @Override
+  public void add(final InsnList insns) {
+    unshare();
+    super.add(insns);
+  }
+
+  @Override
+  public void insert(final AbstractInsnNode insn) {
+    unshare();
+    super.insert(insn);
+  }
+
+  @Override
+  public void insert(final InsnList insns) {
+    unshare();
+    super.insert(insns);
+  }
+
+  @Override
+  public void insert(final AbstractInsnNode location, final AbstractInsnNode insn) {
+    super.insert(unshare(location), insn);
+  }
+
+  @Override
+  public void insert(final AbstractInsnNode location, final InsnList insns) {
+    super.insert(unshare(location), insns);
+  }
+
+  @Override
+  public void insertBefore(final AbstractInsnNode location, final AbstractInsnNode insn) {
+    super.insertBefore(unshare(location), insn);
+  }
+
+  @Override
+  public void insertBefore(final AbstractInsnNode location, final InsnList insns) {
+    super.insertBefore(unshare(location), insns);
+  }
+
+  @Override
+  public void remove(final AbstractInsnNode insn) {
+    super.remove(unshare(insn));
+  }
+
+  @Override
+  public void clear() {
+    if (sharedInsns != null) {
+      // No need to copy the instructions, but the labels of the try catch blocks and local
+      // variables must be copied since they no longer belong to this list.
+      unshare();
+    }
+    super.clear();
+  }
+
+  /**
+   * A list iterator over the shared instructions, which switches to an iterator over the copied
+   * instructions when the first modification occurs.
+   */
+  // this class is not generified because it will create bridges
+  @SuppressWarnings("rawtypes")
+  private final class CopyOnWriteIterator implements ListIterator {
+
+    /** The iterator over the shared or over the copied instructions. */
+    ListIterator<AbstractInsnNode> iterator;
+
+    /** Whether {@link #iterator} is an iterator over the shared instructions. */
+    boolean shared;
+
+    /**
+     * The direction of the last call to {@link #next} or {@link #previous}: 1 for next, -1 for
+     * previous, 0 if there was no such call since the last {@link #add} or {@link #remove}.
+     */
+    int lastMove;
+
+    CopyOnWriteIterator(final int index) {
+      iterator = sharedInsns.iterator(index);
+      shared = true;
+    }
+
+    /** Switches to an iterator over the copied instructions, at the same position. */
+    private void sync() {
+      if (shared && sharedInsns == null) {
+        int index = lastMove > 0 ? iterator.previousIndex() : iterator.nextIndex();
+        iterator = CopyOnWriteInsnList.super.iterator(index);
+        shared = false;
+        if (lastMove > 0) {
+          iterator.next();
+        } else if (lastMove < 0) {
+          iterator.next();
+          iterator.previous();
+        }
+      }
+    }
+
+    private void unshareAndSync() {
+      unshare();
+      sync();
+    }
+
+    public boolean hasNext() {
+      sync();
+      return iterator.hasNext();
+    }
+
+    public Object next() {
+      sync();
+      AbstractInsnNode result = iterator.next();
+      lastMove = 1;
+      return result;
+    }
+
+    public boolean hasPrevious() {
+      sync();
+      return iterator.hasPrevious();
+    }
+
+    public Object previous() {
+      sync();
+      AbstractInsnNode result = iterator.previous();
+      lastMove = -1;
+      return result;
+    }
+
+    public int nextIndex() {
+      sync();
+      return iterator.nextIndex();
+    }
+
+    public int previousIndex() {
+      sync();
+      return iterator.previousIndex();
+    }
+
+    public void remove() {
+      unshareAndSync();
+      iterator.remove();
+      lastMove = 0;
+    }
+
+    public void set(final Object o) {
+      unshareAndSync();
+      iterator.set((AbstractInsnNode) o);
+    }
+
+    public void add(final Object o) {
+      unshareAndSync();
+      iterator.add((AbstractInsnNode) o);
+      lastMove = 0;
+    }
+  }
+}
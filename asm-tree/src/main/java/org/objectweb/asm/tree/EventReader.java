@@ -0,0 +1,920 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ByteVector;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.ModuleVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.TypePath;
+
+/**
+ * A parser to replay the visitor events encoded by an {@link EventWriter}. Subclasses must
+ * provide the strings referenced by the encoded events. When a visitor method returns
+ * <tt>null</tt>, the corresponding nested events are skipped.
+ */
+abstract class EventReader {
+
+  /** A module visitor ignoring all the events it receives. */
+  private static final ModuleVisitor EMPTY_MODULE_VISITOR = new ModuleVisitor(Opcodes.ASM6) {};
+
+  /** A field visitor ignoring all the events it receives. */
+  private static final FieldVisitor EMPTY_FIELD_VISITOR = new FieldVisitor(Opcodes.ASM6) {};
+
+  /** A method visitor ignoring all the events it receives. */
+  private static final MethodVisitor EMPTY_METHOD_VISITOR = new MethodVisitor(Opcodes.ASM6) {};
+
+  /** An annotation visitor ignoring all the events it receives. */
+  private static final AnnotationVisitor EMPTY_ANNOTATION_VISITOR =
+      new AnnotationVisitor(Opcodes.ASM6) {};
+
+  /** The buffer containing the encoded events. */
+  final byte[] b;
+
+  /** The offset of the next byte to be read in {@link #b}. */
+  int offset;
+
+  /** The labels of the method being parsed, indexed by their id in the encoded events. */
+  private Label[] labels;
+
+  /**
+   * Constructs a new {@link EventReader}.
+   *
+   * @param b a buffer containing encoded events.
+   * @param offset the offset of the first byte to be read in b.
+   */
+  EventReader(final byte[] b, final int offset) {
+    this.b = b;
+    this.offset = offset;
+  }
+
+  /**
+   * Returns the string whose index is given.
+   *
+   * @param index the index of a string referenced by the encoded events.
+   * @return the string whose index is given.
+   */
+  abstract String getString(int index);
+
+  // ------------------------------------------------------------------------
+  // Low level decoding methods
+  // ------------------------------------------------------------------------
+
+  final int readByte() {
+    return b[offset++] & 0xFF;
+  }
+
+  final boolean readBoolean() {
+    return b[offset++] != 0;
+  }
+
+  final int readUnsigned() {
+    int value = 0;
+    int shift = 0;
+    int currentByte;
+    do {
+      currentByte = b[offset++];
+      value |= (currentByte & 0x7F) << shift;
+      shift += 7;
+    } while (currentByte < 0);
+    return value;
+  }
+
+  final int readSigned() {
+    int value = readUnsigned();
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  final int readInt() {
+    int value =
+        ((b[offset] & 0xFF) << 24)
+            | ((b[offset + 1] & 0xFF) << 16)
+            | ((b[offset + 2] & 0xFF) << 8)
+            | (b[offset + 3] & 0xFF);
+    offset += 4;
+    return value;
+  }
+
+  final long readLong() {
+    long high = readInt();
+    long low = readInt() & 0xFFFFFFFFL;
+    return (high << 32) | low;
+  }
+
+  final String readString() {
+    int index = readUnsigned();
+    return index == 0 ? null : getString(index - 1);
+  }
+
+  final String[] readStrings() {
+    int length = readUnsigned();
+    if (length == 0) {
+      return null;
+    }
+    String[] strings = new String[length - 1];
+    for (int i = 0; i < strings.length; ++i) {
+      strings[i] = readString();
+    }
+    return strings;
+  }
+
+  private TypePath readTypePath() {
+    String typePath = readString();
+    return typePath == null ? null : TypePath.fromString(typePath);
+  }
+
+  private Handle readHandle() {
+    int tag = readByte();
+    String owner = readString();
+    String name = readString();
+    String descriptor = readString();
+    return new Handle(tag, owner, name, descriptor, readBoolean());
+  }
+
+  private Object readConstant() {
+    int tag = readByte();
+    switch (tag) {
+      case EventWriter.NULL_CONSTANT:
+        return null;
+      case EventWriter.INTEGER_CONSTANT:
+        return readSigned();
+      case EventWriter.FLOAT_CONSTANT:
+        return Float.intBitsToFloat(readInt());
+      case EventWriter.LONG_CONSTANT:
+        return readLong();
+      case EventWriter.DOUBLE_CONSTANT:
+        return Double.longBitsToDouble(readLong());
+      case EventWriter.STRING_CONSTANT:
+        return readString();
+      case EventWriter.TYPE_CONSTANT:
+        return Type.getType(readString());
+      case EventWriter.HANDLE_CONSTANT:
+        return readHandle();
+      case EventWriter.BYTE_CONSTANT:
+        return (byte) readSigned();
+      case EventWriter.BOOLEAN_CONSTANT:
+        return readBoolean();
+      case EventWriter.CHAR_CONSTANT:
+        return (char) readUnsigned();
+      case EventWriter.SHORT_CONSTANT:
+        return (short) readSigned();
+      case EventWriter.BYTE_ARRAY_CONSTANT:
+        {
+          byte[] value = new byte[readUnsigned()];
+          System.arraycopy(b, offset, value, 0, value.length);
+          offset += value.length;
+          return value;
+        }
+      case EventWriter.BOOLEAN_ARRAY_CONSTANT:
+        {
+          boolean[] value = new boolean[readUnsigned()];
+          for (int i = 0; i < value.length; ++i) {
+            value[i] = readBoolean();
+          }
+          return value;
+        }
+      case EventWriter.CHAR_ARRAY_CONSTANT:
+        {
+          char[] value = new char[readUnsigned()];
+          for (int i = 0; i < value.length; ++i) {
+            value[i] = (char) readUnsigned();
+          }
+          return value;
+        }
+      case EventWriter.SHORT_ARRAY_CONSTANT:
+        {
+          short[] value = new short[readUnsigned()];
+          for (int i = 0; i < value.length; ++i) {
+            value[i] = (short) readSigned();
+          }
+          return value;
+        }
+      case EventWriter.INT_ARRAY_CONSTANT:
+        {
+          int[] value = new int[readUnsigned()];
+          for (int i = 0; i < value.length; ++i) {
+            value[i] = readSigned();
+          }
+          return value;
+        }
+      case EventWriter.LONG_ARRAY_CONSTANT:
+        {
+          long[] value = new long[readUnsigned()];
+          for (int i = 0; i < value.length; ++i) {
+            value[i] = readLong();
+          }
+          return value;
+        }
+      case EventWriter.FLOAT_ARRAY_CONSTANT:
+        {
+          float[] value = new float[readUnsigned()];
+          for (int i = 0; i < value.length; ++i) {
+            value[i] = Float.intBitsToFloat(readInt());
+          }
+          return value;
+        }
+      case EventWriter.DOUBLE_ARRAY_CONSTANT:
+        {
+          double[] value = new double[readUnsigned()];
+          for (int i = 0; i < value.length; ++i) {
+            value[i] = Double.longBitsToDouble(readLong());
+          }
+          return value;
+        }
+      default:
+        throw new IllegalArgumentException("Invalid constant tag " + tag);
+    }
+  }
+
+  private Attribute readAttribute() {
+    String type = readString();
+    boolean isCodeAttribute = readBoolean();
+    byte[] content = new byte[readUnsigned()];
+    System.arraycopy(b, offset, content, 0, content.length);
+    offset += content.length;
+    return new OpaqueAttribute(type, isCodeAttribute, content);
+  }
+
+  private Label readLabel() {
+    int index = readUnsigned();
+    if (index >= labels.length) {
+      Label[] newLabels = new Label[Math.max(2 * labels.length, index + 1)];
+      System.arraycopy(labels, 0, newLabels, 0, labels.length);
+      labels = newLabels;
+    }
+    Label label = labels[index];
+    if (label == null) {
+      label = new Label();
+      labels[index] = label;
+    }
+    return label;
+  }
+
+  private Label[] readLabels() {
+    Label[] labelValues = new Label[readUnsigned()];
+    for (int i = 0; i < labelValues.length; ++i) {
+      labelValues[i] = readLabel();
+    }
+    return labelValues;
+  }
+
+  private Object[] readFrameElements(final int count) {
+    if (!readBoolean()) {
+      return null;
+    }
+    Object[] elements = new Object[count];
+    for (int i = 0; i < count; ++i) {
+      int tag = readByte();
+      if (tag == EventWriter.TYPE_FRAME_ELEMENT) {
+        elements[i] = readString();
+      } else if (tag == EventWriter.LABEL_FRAME_ELEMENT) {
+        elements[i] = readLabel();
+      } else {
+        elements[i] = tag;
+      }
+    }
+    return elements;
+  }
+
+  // ------------------------------------------------------------------------
+  // Event parsing methods
+  // ------------------------------------------------------------------------
+
+  /**
+   * Parses the class events encoded at {@link #offset}, and makes the given visitor visit them.
+   *
+   * @param classVisitor the visitor that must visit the class events.
+   */
+  final void acceptClass(final ClassVisitor classVisitor) {
+    int version = readUnsigned();
+    int access = readUnsigned();
+    String name = readString();
+    String signature = readString();
+    String superName = readString();
+    classVisitor.visit(version, access, name, signature, superName, readStrings());
+    while (true) {
+      int tag = readByte();
+      switch (tag) {
+        case EventWriter.SOURCE:
+          {
+            String source = readString();
+            classVisitor.visitSource(source, readString());
+            break;
+          }
+        case EventWriter.MODULE:
+          {
+            String moduleName = readString();
+            int moduleAccess = readUnsigned();
+            String moduleVersion = readString();
+            acceptModule(classVisitor.visitModule(moduleName, moduleAccess, moduleVersion));
+            break;
+          }
+        case EventWriter.OUTER_CLASS:
+          {
+            String owner = readString();
+            String outerName = readString();
+            classVisitor.visitOuterClass(owner, outerName, readString());
+            break;
+          }
+        case EventWriter.ANNOTATION:
+          {
+            String descriptor = readString();
+            acceptAnnotation(classVisitor.visitAnnotation(descriptor, readBoolean()));
+            break;
+          }
+        case EventWriter.TYPE_ANNOTATION:
+          {
+            int typeRef = readUnsigned();
+            TypePath typePath = readTypePath();
+            String descriptor = readString();
+            acceptAnnotation(
+                classVisitor.visitTypeAnnotation(typeRef, typePath, descriptor, readBoolean()));
+            break;
+          }
+        case EventWriter.ATTRIBUTE:
+          classVisitor.visitAttribute(readAttribute());
+          break;
+        case EventWriter.INNER_CLASS:
+          {
+            String innerClassName = readString();
+            String outerName = readString();
+            String innerName = readString();
+            classVisitor.visitInnerClass(innerClassName, outerName, innerName, readUnsigned());
+            break;
+          }
+        case EventWriter.FIELD:
+          {
+            int fieldAccess = readUnsigned();
+            String fieldName = readString();
+            String descriptor = readString();
+            String fieldSignature = readString();
+            acceptField(
+                classVisitor.visitField(
+                    fieldAccess, fieldName, descriptor, fieldSignature, readConstant()));
+            break;
+          }
+        case EventWriter.METHOD:
+          {
+            int methodAccess = readUnsigned();
+            String methodName = readString();
+            String descriptor = readString();
+            String methodSignature = readString();
+            acceptMethod(
+                classVisitor.visitMethod(
+                    methodAccess, methodName, descriptor, methodSignature, readStrings()));
+            break;
+          }
+        case EventWriter.END:
+          classVisitor.visitEnd();
+          return;
+        default:
+          throw new IllegalArgumentException("Invalid class event tag " + tag);
+      }
+    }
+  }
+
+  private void acceptModule(final ModuleVisitor visitor) {
+    ModuleVisitor moduleVisitor = visitor == null ? EMPTY_MODULE_VISITOR : visitor;
+    while (true) {
+      int tag = readByte();
+      switch (tag) {
+        case EventWriter.MAIN_CLASS:
+          moduleVisitor.visitMainClass(readString());
+          break;
+        case EventWriter.PACKAGE:
+          moduleVisitor.visitPackage(readString());
+          break;
+        case EventWriter.REQUIRE:
+          {
+            String module = readString();
+            int access = readUnsigned();
+            moduleVisitor.visitRequire(module, access, readString());
+            break;
+          }
+        case EventWriter.EXPORT:
+          {
+            String packaze = readString();
+            int access = readUnsigned();
+            moduleVisitor.visitExport(packaze, access, readStrings());
+            break;
+          }
+        case EventWriter.OPEN:
+          {
+            String packaze = readString();
+            int access = readUnsigned();
+            moduleVisitor.visitOpen(packaze, access, readStrings());
+            break;
+          }
+        case EventWriter.USE:
+          moduleVisitor.visitUse(readString());
+          break;
+        case EventWriter.PROVIDE:
+          {
+            String service = readString();
+            moduleVisitor.visitProvide(service, readStrings());
+            break;
+          }
+        case EventWriter.END:
+          moduleVisitor.visitEnd();
+          return;
+        default:
+          throw new IllegalArgumentException("Invalid module event tag " + tag);
+      }
+    }
+  }
+
+  private void acceptField(final FieldVisitor visitor) {
+    FieldVisitor fieldVisitor = visitor == null ? EMPTY_FIELD_VISITOR : visitor;
+    while (true) {
+      int tag = readByte();
+      switch (tag) {
+        case EventWriter.ANNOTATION:
+          {
+            String descriptor = readString();
+            acceptAnnotation(fieldVisitor.visitAnnotation(descriptor, readBoolean()));
+            break;
+          }
+        case EventWriter.TYPE_ANNOTATION:
+          {
+            int typeRef = readUnsigned();
+            TypePath typePath = readTypePath();
+            String descriptor = readString();
+            acceptAnnotation(
+                fieldVisitor.visitTypeAnnotation(typeRef, typePath, descriptor, readBoolean()));
+            break;
+          }
+        case EventWriter.ATTRIBUTE:
+          fieldVisitor.visitAttribute(readAttribute());
+          break;
+        case EventWriter.END:
+          fieldVisitor.visitEnd();
+          return;
+        default:
+          throw new IllegalArgumentException("Invalid field event tag " + tag);
+      }
+    }
+  }
+
+  private void acceptAnnotation(final AnnotationVisitor visitor) {
+    AnnotationVisitor annotationVisitor = visitor == null ? EMPTY_ANNOTATION_VISITOR : visitor;
+    while (true) {
+      int tag = readByte();
+      switch (tag) {
+        case EventWriter.VALUE:
+          {
+            String name = readString();
+            annotationVisitor.visit(name, readConstant());
+            break;
+          }
+        case EventWriter.ENUM:
+          {
+            String name = readString();
+            String descriptor = readString();
+            annotationVisitor.visitEnum(name, descriptor, readString());
+            break;
+          }
+        case EventWriter.NESTED_ANNOTATION:
+          {
+            String name = readString();
+            acceptAnnotation(annotationVisitor.visitAnnotation(name, readString()));
+            break;
+          }
+        case EventWriter.ARRAY:
+          acceptAnnotation(annotationVisitor.visitArray(readString()));
+          break;
+        case EventWriter.END:
+          annotationVisitor.visitEnd();
+          return;
+        default:
+          throw new IllegalArgumentException("Invalid annotation event tag " + tag);
+      }
+    }
+  }
+
+  /**
+   * Parses the method events encoded at {@link #offset}, up to and including the visitEnd event,
+   * and makes the given visitor visit them.
+   *
+   * @param visitor the visitor that must visit the method events, or <tt>null</tt> to skip them.
+   */
+  final void acceptMethod(final MethodVisitor visitor) {
+    MethodVisitor methodVisitor = visitor == null ? EMPTY_METHOD_VISITOR : visitor;
+    labels = new Label[16];
+    while (true) {
+      int tag = readByte();
+      switch (tag) {
+        case Opcodes.NOP:
+        case Opcodes.ACONST_NULL:
+        case Opcodes.ICONST_M1:
+        case Opcodes.ICONST_0:
+        case Opcodes.ICONST_1:
+        case Opcodes.ICONST_2:
+        case Opcodes.ICONST_3:
+        case Opcodes.ICONST_4:
+        case Opcodes.ICONST_5:
+        case Opcodes.LCONST_0:
+        case Opcodes.LCONST_1:
+        case Opcodes.FCONST_0:
+        case Opcodes.FCONST_1:
+        case Opcodes.FCONST_2:
+        case Opcodes.DCONST_0:
+        case Opcodes.DCONST_1:
+        case Opcodes.IALOAD:
+        case Opcodes.LALOAD:
+        case Opcodes.FALOAD:
+        case Opcodes.DALOAD:
+        case Opcodes.AALOAD:
+        case Opcodes.BALOAD:
+        case Opcodes.CALOAD:
+        case Opcodes.SALOAD:
+        case Opcodes.IASTORE:
+        case Opcodes.LASTORE:
+        case Opcodes.FASTORE:
+        case Opcodes.DASTORE:
+        case Opcodes.AASTORE:
+        case Opcodes.BASTORE:
+        case Opcodes.CASTORE:
+        case Opcodes.SASTORE:
+        case Opcodes.POP:
+        case Opcodes.POP2:
+        case Opcodes.DUP:
+        case Opcodes.DUP_X1:
+        case Opcodes.DUP_X2:
+        case Opcodes.DUP2:
+        case Opcodes.DUP2_X1:
+        case Opcodes.DUP2_X2:
+        case Opcodes.SWAP:
+        case Opcodes.IADD:
+        case Opcodes.LADD:
+        case Opcodes.FADD:
+        case Opcodes.DADD:
+        case Opcodes.ISUB:
+        case Opcodes.LSUB:
+        case Opcodes.FSUB:
+        case Opcodes.DSUB:
+        case Opcodes.IMUL:
+        case Opcodes.LMUL:
+        case Opcodes.FMUL:
+        case Opcodes.DMUL:
+        case Opcodes.IDIV:
+        case Opcodes.LDIV:
+        case Opcodes.FDIV:
+        case Opcodes.DDIV:
+        case Opcodes.IREM:
+        case Opcodes.LREM:
+        case Opcodes.FREM:
+        case Opcodes.DREM:
+        case Opcodes.INEG:
+        case Opcodes.LNEG:
+        case Opcodes.FNEG:
+        case Opcodes.DNEG:
+        case Opcodes.ISHL:
+        case Opcodes.LSHL:
+        case Opcodes.ISHR:
+        case Opcodes.LSHR:
+        case Opcodes.IUSHR:
+        case Opcodes.LUSHR:
+        case Opcodes.IAND:
+        case Opcodes.LAND:
+        case Opcodes.IOR:
+        case Opcodes.LOR:
+        case Opcodes.IXOR:
+        case Opcodes.LXOR:
+        case Opcodes.I2L:
+        case Opcodes.I2F:
+        case Opcodes.I2D:
+        case Opcodes.L2I:
+        case Opcodes.L2F:
+        case Opcodes.L2D:
+        case Opcodes.F2I:
+        case Opcodes.F2L:
+        case Opcodes.F2D:
+        case Opcodes.D2I:
+        case Opcodes.D2L:
+        case Opcodes.D2F:
+        case Opcodes.I2B:
+        case Opcodes.I2C:
+        case Opcodes.I2S:
+        case Opcodes.LCMP:
+        case Opcodes.FCMPL:
+        case Opcodes.FCMPG:
+        case Opcodes.DCMPL:
+        case Opcodes.DCMPG:
+        case Opcodes.IRETURN:
+        case Opcodes.LRETURN:
+        case Opcodes.FRETURN:
+        case Opcodes.DRETURN:
+        case Opcodes.ARETURN:
+        case Opcodes.RETURN:
+        case Opcodes.ARRAYLENGTH:
+        case Opcodes.ATHROW:
+        case Opcodes.MONITORENTER:
+        case Opcodes.MONITOREXIT:
+          methodVisitor.visitInsn(tag);
+          break;
+        case Opcodes.BIPUSH:
+        case Opcodes.SIPUSH:
+        case Opcodes.NEWARRAY:
+          methodVisitor.visitIntInsn(tag, readSigned());
+          break;
+        case Opcodes.ILOAD:
+        case Opcodes.LLOAD:
+        case Opcodes.FLOAD:
+        case Opcodes.DLOAD:
+        case Opcodes.ALOAD:
+        case Opcodes.ISTORE:
+        case Opcodes.LSTORE:
+        case Opcodes.FSTORE:
+        case Opcodes.DSTORE:
+        case Opcodes.ASTORE:
+        case Opcodes.RET:
+          methodVisitor.visitVarInsn(tag, readUnsigned());
+          break;
+        case Opcodes.NEW:
+        case Opcodes.ANEWARRAY:
+        case Opcodes.CHECKCAST:
+        case Opcodes.INSTANCEOF:
+          methodVisitor.visitTypeInsn(tag, readString());
+          break;
+        case Opcodes.GETSTATIC:
+        case Opcodes.PUTSTATIC:
+        case Opcodes.GETFIELD:
+        case Opcodes.PUTFIELD:
+          {
+            String owner = readString();
+            String name = readString();
+            methodVisitor.visitFieldInsn(tag, owner, name, readString());
+            break;
+          }
+        case Opcodes.INVOKEVIRTUAL:
+        case Opcodes.INVOKESPECIAL:
+        case Opcodes.INVOKESTATIC:
+        case Opcodes.INVOKEINTERFACE:
+          {
+            String owner = readString();
+            String name = readString();
+            String descriptor = readString();
+            methodVisitor.visitMethodInsn(tag, owner, name, descriptor, readBoolean());
+            break;
+          }
+        case Opcodes.INVOKEDYNAMIC:
+          {
+            String name = readString();
+            String descriptor = readString();
+            Handle handle = readHandle();
+            Object[] arguments = new Object[readUnsigned()];
+            for (int i = 0; i < arguments.length; ++i) {
+              arguments[i] = readConstant();
+            }
+            methodVisitor.visitInvokeDynamicInsn(name, descriptor, handle, arguments);
+            break;
+          }
+        case Opcodes.IFEQ:
+        case Opcodes.IFNE:
+        case Opcodes.IFLT:
+        case Opcodes.IFGE:
+        case Opcodes.IFGT:
+        case Opcodes.IFLE:
+        case Opcodes.IF_ICMPEQ:
+        case Opcodes.IF_ICMPNE:
+        case Opcodes.IF_ICMPLT:
+        case Opcodes.IF_ICMPGE:
+        case Opcodes.IF_ICMPGT:
+        case Opcodes.IF_ICMPLE:
+        case Opcodes.IF_ACMPEQ:
+        case Opcodes.IF_ACMPNE:
+        case Opcodes.GOTO:
+        case Opcodes.JSR:
+        case Opcodes.IFNULL:
+        case Opcodes.IFNONNULL:
+          methodVisitor.visitJumpInsn(tag, readLabel());
+          break;
+        case Opcodes.LDC:
+          methodVisitor.visitLdcInsn(readConstant());
+          break;
+        case Opcodes.IINC:
+          {
+            int var = readUnsigned();
+            methodVisitor.visitIincInsn(var, readSigned());
+            break;
+          }
+        case Opcodes.TABLESWITCH:
+          {
+            int min = readSigned();
+            int max = readSigned();
+            Label dflt = readLabel();
+            methodVisitor.visitTableSwitchInsn(min, max, dflt, readLabels());
+            break;
+          }
+        case Opcodes.LOOKUPSWITCH:
+          {
+            Label dflt = readLabel();
+            int[] keys = new int[readUnsigned()];
+            for (int i = 0; i < keys.length; ++i) {
+              keys[i] = readSigned();
+            }
+            methodVisitor.visitLookupSwitchInsn(dflt, keys, readLabels());
+            break;
+          }
+        case Opcodes.MULTIANEWARRAY:
+          {
+            String descriptor = readString();
+            methodVisitor.visitMultiANewArrayInsn(descriptor, readUnsigned());
+            break;
+          }
+        case EventWriter.PARAMETER:
+          {
+            String name = readString();
+            methodVisitor.visitParameter(name, readUnsigned());
+            break;
+          }
+        case EventWriter.ANNOTATION_DEFAULT:
+          acceptAnnotation(methodVisitor.visitAnnotationDefault());
+          break;
+        case EventWriter.ANNOTATION:
+          {
+            String descriptor = readString();
+            acceptAnnotation(methodVisitor.visitAnnotation(descriptor, readBoolean()));
+            break;
+          }
+        case EventWriter.TYPE_ANNOTATION:
+          {
+            int typeRef = readUnsigned();
+            TypePath typePath = readTypePath();
+            String descriptor = readString();
+            acceptAnnotation(
+                methodVisitor.visitTypeAnnotation(typeRef, typePath, descriptor, readBoolean()));
+            break;
+          }
+        case EventWriter.ANNOTABLE_PARAMETER_COUNT:
+          {
+            int parameterCount = readUnsigned();
+            methodVisitor.visitAnnotableParameterCount(parameterCount, readBoolean());
+            break;
+          }
+        case EventWriter.PARAMETER_ANNOTATION:
+          {
+            int parameter = readUnsigned();
+            String descriptor = readString();
+            acceptAnnotation(
+                methodVisitor.visitParameterAnnotation(parameter, descriptor, readBoolean()));
+            break;
+          }
+        case EventWriter.ATTRIBUTE:
+          methodVisitor.visitAttribute(readAttribute());
+          break;
+        case EventWriter.CODE:
+          methodVisitor.visitCode();
+          break;
+        case EventWriter.FRAME:
+          {
+            int type = readSigned();
+            int nLocal = readUnsigned();
+            Object[] local = readFrameElements(nLocal);
+            int nStack = readUnsigned();
+            Object[] stack = readFrameElements(nStack);
+            methodVisitor.visitFrame(type, nLocal, local, nStack, stack);
+            break;
+          }
+        case EventWriter.LABEL:
+          methodVisitor.visitLabel(readLabel());
+          break;
+        case EventWriter.INSN_ANNOTATION:
+          {
+            int typeRef = readUnsigned();
+            TypePath typePath = readTypePath();
+            String descriptor = readString();
+            acceptAnnotation(
+                methodVisitor.visitInsnAnnotation(typeRef, typePath, descriptor, readBoolean()));
+            break;
+          }
+        case EventWriter.TRY_CATCH_BLOCK:
+          {
+            Label start = readLabel();
+            Label end = readLabel();
+            Label handler = readLabel();
+            methodVisitor.visitTryCatchBlock(start, end, handler, readString());
+            break;
+          }
+        case EventWriter.TRY_CATCH_ANNOTATION:
+          {
+            int typeRef = readUnsigned();
+            TypePath typePath = readTypePath();
+            String descriptor = readString();
+            acceptAnnotation(
+                methodVisitor.visitTryCatchAnnotation(
+                    typeRef, typePath, descriptor, readBoolean()));
+            break;
+          }
+        case EventWriter.LOCAL_VARIABLE:
+          {
+            String name = readString();
+            String descriptor = readString();
+            String signature = readString();
+            Label start = readLabel();
+            Label end = readLabel();
+            methodVisitor.visitLocalVariable(name, descriptor, signature, start, end, readUnsigned());
+            break;
+          }
+        case EventWriter.LOCAL_VARIABLE_ANNOTATION:
+          {
+            int typeRef = readUnsigned();
+            TypePath typePath = readTypePath();
+            Label[] start = readLabels();
+            Label[] end = readLabels();
+            int[] index = new int[start.length];
+            for (int i = 0; i < index.length; ++i) {
+              index[i] = readUnsigned();
+            }
+            String descriptor = readString();
+            acceptAnnotation(
+                methodVisitor.visitLocalVariableAnnotation(
+                    typeRef, typePath, start, end, index, descriptor, readBoolean()));
+            break;
+          }
+        case EventWriter.LINE_NUMBER:
+          {
+            int line = readUnsigned();
+            methodVisitor.visitLineNumber(line, readLabel());
+            break;
+          }
+        case EventWriter.MAXS:
+          {
+            int maxStack = readUnsigned();
+            methodVisitor.visitMaxs(maxStack, readUnsigned());
+            break;
+          }
+        case EventWriter.END:
+          methodVisitor.visitEnd();
+          labels = null;
+          return;
+        default:
+          throw new IllegalArgumentException("Invalid method event tag " + tag);
+      }
+    }
+  }
+
+  /** An attribute whose content is given as an opaque byte array. */
+  private static final class OpaqueAttribute extends Attribute {
+
+    /** Whether this attribute is a code attribute. */
+    private final boolean isCodeAttribute;
+
+    /** The content of this attribute. */
+    private final byte[] content;
+
+    OpaqueAttribute(final String type, final boolean isCodeAttribute, final byte[] content) {
+      super(type);
+      this.isCodeAttribute = isCodeAttribute;
+      this.content = content;
+    }
+
+    @Override
+    public boolean isCodeAttribute() {
+      return isCodeAttribute;
+    }
+
+    @Override
+    protected ByteVector write(
+        final ClassWriter classWriter,
+        final byte[] code,
+        final int codeLength,
+        final int maxStack,
+        final int maxLocals) {
+      return new ByteVector(content.length).putByteArray(content, 0, content.length);
+    }
+  }
+}
@@ -0,0 +1,1027 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree;
+
+import java.util.HashMap;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.ModuleVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.TypePath;
+
+/**
+ * A byte buffer containing a compact encoding of visitor events. Strings are not stored in this
+ * buffer. Instead, each string is replaced with its index in a {@link StringTable}, which can be
+ * shared between several buffers. Integers are stored with a variable length encoding (7 bits per
+ * byte), and instructions are stored as their opcode followed by their operands, if any. The
+ * encoded events can be replayed with an {@link EventReader}.
+ *
+ * <p>The visitors returned by the methods of this class must be used according to the visitor
+ * contracts. In particular, the events of a nested visitor (e.g. an annotation visitor) must be
+ * visited before any other event of the enclosing visitor.
+ */
+final class EventWriter {
+
+  // Event tags. Instructions are encoded with their opcode as tag (always less than END).
+
+  static final int END = 200;
+  static final int ANNOTATION = 201;
+  static final int TYPE_ANNOTATION = 202;
+  static final int ATTRIBUTE = 203;
+  static final int SOURCE = 204;
+  static final int MODULE = 205;
+  static final int OUTER_CLASS = 206;
+  static final int INNER_CLASS = 207;
+  static final int FIELD = 208;
+  static final int METHOD = 209;
+  static final int PARAMETER = 210;
+  static final int ANNOTATION_DEFAULT = 211;
+  static final int ANNOTABLE_PARAMETER_COUNT = 212;
+  static final int PARAMETER_ANNOTATION = 213;
+  static final int CODE = 214;
+  static final int FRAME = 215;
+  static final int LABEL = 216;
+  static final int INSN_ANNOTATION = 217;
+  static final int TRY_CATCH_BLOCK = 218;
+  static final int TRY_CATCH_ANNOTATION = 219;
+  static final int LOCAL_VARIABLE = 220;
+  static final int LOCAL_VARIABLE_ANNOTATION = 221;
+  static final int LINE_NUMBER = 222;
+  static final int MAXS = 223;
+  static final int VALUE = 224;
+  static final int ENUM = 225;
+  static final int NESTED_ANNOTATION = 226;
+  static final int ARRAY = 227;
+  static final int MAIN_CLASS = 228;
+  static final int PACKAGE = 229;
+  static final int REQUIRE = 230;
+  static final int EXPORT = 231;
+  static final int OPEN = 232;
+  static final int USE = 233;
+  static final int PROVIDE = 234;
+
+  // Constant tags.
+
+  static final int NULL_CONSTANT = 0;
+  static final int INTEGER_CONSTANT = 1;
+  static final int FLOAT_CONSTANT = 2;
+  static final int LONG_CONSTANT = 3;
+  static final int DOUBLE_CONSTANT = 4;
+  static final int STRING_CONSTANT = 5;
+  static final int TYPE_CONSTANT = 6;
+  static final int HANDLE_CONSTANT = 7;
+  static final int BYTE_CONSTANT = 8;
+  static final int BOOLEAN_CONSTANT = 9;
+  static final int CHAR_CONSTANT = 10;
+  static final int SHORT_CONSTANT = 11;
+  static final int BYTE_ARRAY_CONSTANT = 12;
+  static final int BOOLEAN_ARRAY_CONSTANT = 13;
+  static final int CHAR_ARRAY_CONSTANT = 14;
+  static final int SHORT_ARRAY_CONSTANT = 15;
+  static final int INT_ARRAY_CONSTANT = 16;
+  static final int LONG_ARRAY_CONSTANT = 17;
+  static final int FLOAT_ARRAY_CONSTANT = 18;
+  static final int DOUBLE_ARRAY_CONSTANT = 19;
+
+  // Frame element tags (in addition to the Opcodes.TOP to Opcodes.UNINITIALIZED_THIS values).
+
+  static final int TYPE_FRAME_ELEMENT = 7;
+  static final int LABEL_FRAME_ELEMENT = 8;
+
+  /** The table containing the strings referenced by the encoded events. */
+  final StringTable strings;
+
+  /** The encoded events. */
+  byte[] data;
+
+  /** The number of bytes of {@link #data} actually used. */
+  int length;
+
+  /**
+   * Constructs a new {@link EventWriter}.
+   *
+   * @param strings the table where the strings referenced by the events must be stored.
+   */
+  EventWriter(final StringTable strings) {
+    this.strings = strings;
+    this.data = new byte[256];
+  }
+
+  /**
+   * Returns a class visitor encoding the events it receives in this buffer.
+   *
+   * @return a class visitor encoding the events it receives in this buffer.
+   */
+  ClassVisitor classWriter() {
+    return new ClassEventWriter();
+  }
+
+  /**
+   * Returns a method visitor encoding the events it receives in this buffer. The end of the
+   * events is marked by the visitEnd method.
+   *
+   * @return a method visitor encoding the events it receives in this buffer.
+   */
+  MethodVisitor methodWriter() {
+    return new MethodEventWriter();
+  }
+
+  /** Clears this buffer. */
+  void clear() {
+    length = 0;
+  }
+
+  // ------------------------------------------------------------------------
+  // Low level encoding methods
+  // ------------------------------------------------------------------------
+
+  private void enlarge(final int size) {
+    int newLength = Math.max(2 * data.length, length + size);
+    byte[] newData = new byte[newLength];
+    System.arraycopy(data, 0, newData, 0, length);
+    data = newData;
+  }
+
+  void putByte(final int byteValue) {
+    if (length + 1 > data.length) {
+      enlarge(1);
+    }
+    data[length++] = (byte) byteValue;
+  }
+
+  void putBoolean(final boolean booleanValue) {
+    putByte(booleanValue ? 1 : 0);
+  }
+
+  /**
+   * Puts an unsigned int, with a variable length encoding (from 1 to 5 bytes).
+   *
+   * @param intValue an int, interpreted as unsigned.
+   */
+  void putUnsigned(final int intValue) {
+    if (length + 5 > data.length) {
+      enlarge(5);
+    }
+    int value = intValue;
+    while ((value & ~0x7F) != 0) {
+      data[length++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    data[length++] = (byte) value;
+  }
+
+  /**
+   * Puts a signed int, with a variable length encoding which is compact for small absolute values.
+   *
+   * @param intValue an int.
+   */
+  void putSigned(final int intValue) {
+    putUnsigned((intValue << 1) ^ (intValue >> 31));
+  }
+
+  void putInt(final int intValue) {
+    if (length + 4 > data.length) {
+      enlarge(4);
+    }
+    data[length++] = (byte) (intValue >>> 24);
+    data[length++] = (byte) (intValue >>> 16);
+    data[length++] = (byte) (intValue >>> 8);
+    data[length++] = (byte) intValue;
+  }
+
+  void putLong(final long longValue) {
+    putInt((int) (longValue >>> 32));
+    putInt((int) longValue);
+  }
+
+  void putByteArray(final byte[] byteArrayValue, final int offset, final int byteLength) {
+    if (length + byteLength > data.length) {
+      enlarge(byteLength);
+    }
+    System.arraycopy(byteArrayValue, offset, data, length, byteLength);
+    length += byteLength;
+  }
+
+  /**
+   * Puts a reference to a string (which can be <tt>null</tt>).
+   *
+   * @param stringValue a string, or <tt>null</tt>.
+   */
+  void putString(final String stringValue) {
+    putUnsigned(stringValue == null ? 0 : strings.add(stringValue) + 1);
+  }
+
+  void putStrings(final String[] stringValues) {
+    if (stringValues == null) {
+      putUnsigned(0);
+    } else {
+      putUnsigned(stringValues.length + 1);
+      for (int i = 0; i < stringValues.length; ++i) {
+        putString(stringValues[i]);
+      }
+    }
+  }
+
+  void putTypePath(final TypePath typePath) {
+    putString(typePath == null ? null : typePath.toString());
+  }
+
+  void putHandle(final Handle handle) {
+    putByte(handle.getTag());
+    putString(handle.getOwner());
+    putString(handle.getName());
+    putString(handle.getDesc());
+    putBoolean(handle.isInterface());
+  }
+
+  /**
+   * Puts a constant. The constant can be <tt>null</tt>, an {@link Integer}, a {@link Float}, a
+   * {@link Long}, a {@link Double}, a {@link String}, a {@link Type}, a {@link Handle}, a {@link
+   * Byte}, a {@link Boolean}, a {@link Character}, a {@link Short}, or an array of primitive
+   * values.
+   *
+   * @param value a constant.
+   */
+  void putConstant(final Object value) {
+    if (value == null) {
+      putByte(NULL_CONSTANT);
+    } else if (value instanceof Integer) {
+      putByte(INTEGER_CONSTANT);
+      putSigned(((Integer) value).intValue());
+    } else if (value instanceof Float) {
+      putByte(FLOAT_CONSTANT);
+      putInt(Float.floatToRawIntBits(((Float) value).floatValue()));
+    } else if (value instanceof Long) {
+      putByte(LONG_CONSTANT);
+      putLong(((Long) value).longValue());
+    } else if (value instanceof Double) {
+      putByte(DOUBLE_CONSTANT);
+      putLong(Double.doubleToRawLongBits(((Double) value).doubleValue()));
+    } else if (value instanceof String) {
+      putByte(STRING_CONSTANT);
+      putString((String) value);
+    } else if (value instanceof Type) {
+      putByte(TYPE_CONSTANT);
+      putString(((Type) value).getDescriptor());
+    } else if (value instanceof Handle) {
+      putByte(HANDLE_CONSTANT);
+      putHandle((Handle) value);
+    } else if (value instanceof Byte) {
+      putByte(BYTE_CONSTANT);
+      putSigned(((Byte) value).byteValue());
+    } else if (value instanceof Boolean) {
+      putByte(BOOLEAN_CONSTANT);
+      putBoolean(((Boolean) value).booleanValue());
+    } else if (value instanceof Character) {
+      putByte(CHAR_CONSTANT);
+      putUnsigned(((Character) value).charValue());
+    } else if (value instanceof Short) {
+      putByte(SHORT_CONSTANT);
+      putSigned(((Short) value).shortValue());
+    } else if (value instanceof byte[]) {
+      byte[] v = (byte[]) value;
+      putByte(BYTE_ARRAY_CONSTANT);
+      putUnsigned(v.length);
+      putByteArray(v, 0, v.length);
+    } else if (value instanceof boolean[]) {
+      boolean[] v = (boolean[]) value;
+      putByte(BOOLEAN_ARRAY_CONSTANT);
+      putUnsigned(v.length);
+      for (int i = 0; i < v.length; ++i) {
+        putBoolean(v[i]);
+      }
+    } else if (value instanceof char[]) {
+      char[] v = (char[]) value;
+      putByte(CHAR_ARRAY_CONSTANT);
+      putUnsigned(v.length);
+      for (int i = 0; i < v.length; ++i) {
+        putUnsigned(v[i]);
+      }
+    } else if (value instanceof short[]) {
+      short[] v = (short[]) value;
+      putByte(SHORT_ARRAY_CONSTANT);
+      putUnsigned(v.length);
+      for (int i = 0; i < v.length; ++i) {
+        putSigned(v[i]);
+      }
+    } else if (value instanceof int[]) {
+      int[] v = (int[]) value;
+      putByte(INT_ARRAY_CONSTANT);
+      putUnsigned(v.length);
+      for (int i = 0; i < v.length; ++i) {
+        putSigned(v[i]);
+      }
+    } else if (value instanceof long[]) {
+      long[] v = (long[]) value;
+      putByte(LONG_ARRAY_CONSTANT);
+      putUnsigned(v.length);
+      for (int i = 0; i < v.length; ++i) {
+        putLong(v[i]);
+      }
+    } else if (value instanceof float[]) {
+      float[] v = (float[]) value;
+      putByte(FLOAT_ARRAY_CONSTANT);
+      putUnsigned(v.length);
+      for (int i = 0; i < v.length; ++i) {
+        putInt(Float.floatToRawIntBits(v[i]));
+      }
+    } else if (value instanceof double[]) {
+      double[] v = (double[]) value;
+      putByte(DOUBLE_ARRAY_CONSTANT);
+      putUnsigned(v.length);
+      for (int i = 0; i < v.length; ++i) {
+        putLong(Double.doubleToRawLongBits(v[i]));
+      }
+    } else {
+      throw new IllegalArgumentException("Unsupported constant " + value);
+    }
+  }
+
+  /**
+   * Puts the content of an attribute. Only unknown attributes (see {@link Attribute#isUnknown()})
+   * are supported, since the content of the other attributes may contain constant pool or bytecode
+   * offset references which are not valid outside of their class.
+   *
+   * @param attribute an attribute.
+   */
+  void putAttribute(final Attribute attribute) {
+    if (!attribute.isUnknown()) {
+      throw new IllegalArgumentException("Unsupported attribute " + attribute.type);
+    }
+    // The content of an attribute is only available via a ClassWriter. We thus write the attribute
+    // in an otherwise empty class, and extract its content from the resulting class file.
+    ClassWriter classWriter = new ClassWriter(0);
+    classWriter.visit(Opcodes.V1_1, 0, "A", null, null, null);
+    classWriter.visitAttribute(attribute);
+    classWriter.visitEnd();
+    byte[] classFile = classWriter.toByteArray();
+    // Skip access_flags, this_class, super_class, interfaces_count, fields_count, methods_count,
+    // attributes_count and attribute_name_index.
+    int offset = new ClassReader(classFile).header + 16;
+    int contentLength =
+        ((classFile[offset] & 0xFF) << 24)
+            | ((classFile[offset + 1] & 0xFF) << 16)
+            | ((classFile[offset + 2] & 0xFF) << 8)
+            | (classFile[offset + 3] & 0xFF);
+    putString(attribute.type);
+    putBoolean(attribute.isCodeAttribute());
+    putUnsigned(contentLength);
+    putByteArray(classFile, offset + 4, contentLength);
+  }
+
+  // ------------------------------------------------------------------------
+  // Visitors
+  // ------------------------------------------------------------------------
+
+  /** A class visitor encoding the events it receives in the enclosing buffer. */
+  private final class ClassEventWriter extends ClassVisitor {
+
+    /**
+     * Whether a module visitor is still open. The end of its events is then marked just before the
+     * next class event, since callers are not required to call its visitEnd method.
+     */
+    boolean moduleOpen;
+
+    ClassEventWriter() {
+      super(Opcodes.ASM6);
+    }
+
+    void closeModule() {
+      if (moduleOpen) {
+        putByte(END);
+        moduleOpen = false;
+      }
+    }
+
+    @Override
+    public void visit(
+        final int version,
+        final int access,
+        final String name,
+        final String signature,
+        final String superName,
+        final String[] interfaces) {
+      putUnsigned(version);
+      putUnsigned(access);
+      putString(name);
+      putString(signature);
+      putString(superName);
+      putStrings(interfaces);
+    }
+
+    @Override
+    public void visitSource(final String source, final String debug) {
+      closeModule();
+      putByte(SOURCE);
+      putString(source);
+      putString(debug);
+    }
+
+    @Override
+    public ModuleVisitor visitModule(final String name, final int access, final String version) {
+      closeModule();
+      putByte(MODULE);
+      putString(name);
+      putUnsigned(access);
+      putString(version);
+      moduleOpen = true;
+      return new ModuleEventWriter(this);
+    }
+
+    @Override
+    public void visitOuterClass(final String owner, final String name, final String descriptor) {
+      closeModule();
+      putByte(OUTER_CLASS);
+      putString(owner);
+      putString(name);
+      putString(descriptor);
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(final String descriptor, final boolean visible) {
+      closeModule();
+      putByte(ANNOTATION);
+      putString(descriptor);
+      putBoolean(visible);
+      return new AnnotationEventWriter();
+    }
+
+    @Override
+    public AnnotationVisitor visitTypeAnnotation(
+        final int typeRef, final TypePath typePath, final String descriptor, final boolean visible) {
+      closeModule();
+      putByte(TYPE_ANNOTATION);
+      putUnsigned(typeRef);
+      putTypePath(typePath);
+      putString(descriptor);
+      putBoolean(visible);
+      return new AnnotationEventWriter();
+    }
+
+    @Override
+    public void visitAttribute(final Attribute attribute) {
+      closeModule();
+      putByte(ATTRIBUTE);
+      putAttribute(attribute);
+    }
+
+    @Override
+    public void visitInnerClass(
+        final String name, final String outerName, final String innerName, final int access) {
+      closeModule();
+      putByte(INNER_CLASS);
+      putString(name);
+      putString(outerName);
+      putString(innerName);
+      putUnsigned(access);
+    }
+
+    @Override
+    public FieldVisitor visitField(
+        final int access,
+        final String name,
+        final String descriptor,
+        final String signature,
+        final Object value) {
+      closeModule();
+      putByte(FIELD);
+      putUnsigned(access);
+      putString(name);
+      putString(descriptor);
+      putString(signature);
+      putConstant(value);
+      return new FieldEventWriter();
+    }
+
+    @Override
+    public MethodVisitor visitMethod(
+        final int access,
+        final String name,
+        final String descriptor,
+        final String signature,
+        final String[] exceptions) {
+      closeModule();
+      putByte(METHOD);
+      putUnsigned(access);
+      putString(name);
+      putString(descriptor);
+      putString(signature);
+      putStrings(exceptions);
+      return new MethodEventWriter();
+    }
+
+    @Override
+    public void visitEnd() {
+      closeModule();
+      putByte(END);
+    }
+  }
+
+  /** A module visitor encoding the events it receives in the enclosing buffer. */
+  private final class ModuleEventWriter extends ModuleVisitor {
+
+    private final ClassEventWriter classEventWriter;
+
+    ModuleEventWriter(final ClassEventWriter classEventWriter) {
+      super(Opcodes.ASM6);
+      this.classEventWriter = classEventWriter;
+    }
+
+    @Override
+    public void visitMainClass(final String mainClass) {
+      putByte(MAIN_CLASS);
+      putString(mainClass);
+    }
+
+    @Override
+    public void visitPackage(final String packaze) {
+      putByte(PACKAGE);
+      putString(packaze);
+    }
+
+    @Override
+    public void visitRequire(final String module, final int access, final String version) {
+      putByte(REQUIRE);
+      putString(module);
+      putUnsigned(access);
+      putString(version);
+    }
+
+    @Override
+    public void visitExport(final String packaze, final int access, final String... modules) {
+      putByte(EXPORT);
+      putString(packaze);
+      putUnsigned(access);
+      putStrings(modules);
+    }
+
+    @Override
+    public void visitOpen(final String packaze, final int access, final String... modules) {
+      putByte(OPEN);
+      putString(packaze);
+      putUnsigned(access);
+      putStrings(modules);
+    }
+
+    @Override
+    public void visitUse(final String service) {
+      putByte(USE);
+      putString(service);
+    }
+
+    @Override
+    public void visitProvide(final String service, final String... providers) {
+      putByte(PROVIDE);
+      putString(service);
+      putStrings(providers);
+    }
+
+    @Override
+    public void visitEnd() {
+      classEventWriter.closeModule();
+    }
+  }
+
+  /** A field visitor encoding the events it receives in the enclosing buffer. */
+  private final class FieldEventWriter extends FieldVisitor {
+
+    FieldEventWriter() {
+      super(Opcodes.ASM6);
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(final String descriptor, final boolean visible) {
+      putByte(ANNOTATION);
+      putString(descriptor);
+      putBoolean(visible);
+      return new AnnotationEventWriter();
+    }
+
+    @Override
+    public AnnotationVisitor visitTypeAnnotation(
+        final int typeRef, final TypePath typePath, final String descriptor, final boolean visible) {
+      putByte(TYPE_ANNOTATION);
+      putUnsigned(typeRef);
+      putTypePath(typePath);
+      putString(descriptor);
+      putBoolean(visible);
+      return new AnnotationEventWriter();
+    }
+
+    @Override
+    public void visitAttribute(final Attribute attribute) {
+      putByte(ATTRIBUTE);
+      putAttribute(attribute);
+    }
+
+    @Override
+    public void visitEnd() {
+      putByte(END);
+    }
+  }
+
+  /** An annotation visitor encoding the events it receives in the enclosing buffer. */
+  private final class AnnotationEventWriter extends AnnotationVisitor {
+
+    AnnotationEventWriter() {
+      super(Opcodes.ASM6);
+    }
+
+    @Override
+    public void visit(final String name, final Object value) {
+      putByte(VALUE);
+      putString(name);
+      putConstant(value);
+    }
+
+    @Override
+    public void visitEnum(final String name, final String descriptor, final String value) {
+      putByte(ENUM);
+      putString(name);
+      putString(descriptor);
+      putString(value);
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(final String name, final String descriptor) {
+      putByte(NESTED_ANNOTATION);
+      putString(name);
+      putString(descriptor);
+      return new AnnotationEventWriter();
+    }
+
+    @Override
+    public AnnotationVisitor visitArray(final String name) {
+      putByte(ARRAY);
+      putString(name);
+      return new AnnotationEventWriter();
+    }
+
+    @Override
+    public void visitEnd() {
+      putByte(END);
+    }
+  }
+
+  /** A method visitor encoding the events it receives in the enclosing buffer. */
+  private final class MethodEventWriter extends MethodVisitor {
+
+    /** The index of each label visited so far, in the order in which they were first visited. */
+    private final HashMap<Label, Integer> labels;
+
+    MethodEventWriter() {
+      super(Opcodes.ASM6);
+      this.labels = new HashMap<Label, Integer>();
+    }
+
+    private void putLabel(final Label label) {
+      Integer index = labels.get(label);
+      if (index == null) {
+        index = labels.size();
+        labels.put(label, index);
+      }
+      putUnsigned(index);
+    }
+
+    private void putLabels(final Label[] labelValues) {
+      putUnsigned(labelValues.length);
+      for (int i = 0; i < labelValues.length; ++i) {
+        putLabel(labelValues[i]);
+      }
+    }
+
+    private void putFrameElements(final int count, final Object[] elements) {
+      if (elements == null) {
+        putBoolean(false);
+        return;
+      }
+      putBoolean(true);
+      for (int i = 0; i < count; ++i) {
+        Object element = elements[i];
+        if (element instanceof Integer) {
+          putByte(((Integer) element).intValue());
+        } else if (element instanceof String) {
+          putByte(TYPE_FRAME_ELEMENT);
+          putString((String) element);
+        } else {
+          putByte(LABEL_FRAME_ELEMENT);
+          putLabel((Label) element);
+        }
+      }
+    }
+
+    @Override
+    public void visitParameter(final String name, final int access) {
+      putByte(PARAMETER);
+      putString(name);
+      putUnsigned(access);
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotationDefault() {
+      putByte(ANNOTATION_DEFAULT);
+      return new AnnotationEventWriter();
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(final String descriptor, final boolean visible) {
+      putByte(ANNOTATION);
+      putString(descriptor);
+      putBoolean(visible);
+      return new AnnotationEventWriter();
+    }
+
+    @Override
+    public AnnotationVisitor visitTypeAnnotation(
+        final int typeRef, final TypePath typePath, final String descriptor, final boolean visible) {
+      putByte(TYPE_ANNOTATION);
+      putUnsigned(typeRef);
+      putTypePath(typePath);
+      putString(descriptor);
+      putBoolean(visible);
+      return new AnnotationEventWriter();
+    }
+
+    @Override
+    public void visitAnnotableParameterCount(final int parameterCount, final boolean visible) {
+      putByte(ANNOTABLE_PARAMETER_COUNT);
+      putUnsigned(parameterCount);
+      putBoolean(visible);
+    }
+
+    @Override
+    public AnnotationVisitor visitParameterAnnotation(
+        final int parameter, final String descriptor, final boolean visible) {
+      putByte(PARAMETER_ANNOTATION);
+      putUnsigned(parameter);
+      putString(descriptor);
+      putBoolean(visible);
+      return new AnnotationEventWriter();
+    }
+
+    @Override
+    public void visitAttribute(final Attribute attribute) {
+      putByte(ATTRIBUTE);
+      putAttribute(attribute);
+    }
+
+    @Override
+    public void visitCode() {
+      putByte(CODE);
+    }
+
+    @Override
+    public void visitFrame(
+        final int type,
+        final int nLocal,
+        final Object[] local,
+        final int nStack,
+        final Object[] stack) {
+      putByte(FRAME);
+      putSigned(type);
+      putUnsigned(nLocal);
+      putFrameElements(nLocal, local);
+      putUnsigned(nStack);
+      putFrameElements(nStack, stack);
+    }
+
+    @Override
+    public void visitInsn(final int opcode) {
+      putByte(opcode);
+    }
+
+    @Override
+    public void visitIntInsn(final int opcode, final int operand) {
+      putByte(opcode);
+      putSigned(operand);
+    }
+
+    @Override
+    public void visitVarInsn(final int opcode, final int var) {
+      putByte(opcode);
+      putUnsigned(var);
+    }
+
+    @Override
+    public void visitTypeInsn(final int opcode, final String type) {
+      putByte(opcode);
+      putString(type);
+    }
+
+    @Override
+    public void visitFieldInsn(
+        final int opcode, final String owner, final String name, final String descriptor) {
+      putByte(opcode);
+      putString(owner);
+      putString(name);
+      putString(descriptor);
+    }
+
+    @Override
+    public void visitMethodInsn(
+        final int opcode,
+        final String owner,
+        final String name,
+        final String descriptor,
+        final boolean isInterface) {
+      putByte(opcode);
+      putString(owner);
+      putString(name);
+      putString(descriptor);
+      putBoolean(isInterface);
+    }
+
+    @Override
+    public void visitInvokeDynamicInsn(
+        final String name,
+        final String descriptor,
+        final Handle bootstrapMethodHandle,
+        final Object... bootstrapMethodArguments) {
+      putByte(Opcodes.INVOKEDYNAMIC);
+      putString(name);
+      putString(descriptor);
+      putHandle(bootstrapMethodHandle);
+      putUnsigned(bootstrapMethodArguments.length);
+      for (int i = 0; i < bootstrapMethodArguments.length; ++i) {
+        putConstant(bootstrapMethodArguments[i]);
+      }
+    }
+
+    @Override
+    public void visitJumpInsn(final int opcode, final Label label) {
+      putByte(opcode);
+      putLabel(label);
+    }
+
+    @Override
+    public void visitLabel(final Label label) {
+      putByte(LABEL);
+      putLabel(label);
+    }
+
+    @Override
+    public void visitLdcInsn(final Object value) {
+      putByte(Opcodes.LDC);
+      putConstant(value);
+    }
+
+    @Override
+    public void visitIincInsn(final int var, final int increment) {
+      putByte(Opcodes.IINC);
+      putUnsigned(var);
+      putSigned(increment);
+    }
+
+    @Override
+    public void visitTableSwitchInsn(
+        final int min, final int max, final Label dflt, final Label... labels) {
+      putByte(Opcodes.TABLESWITCH);
+      putSigned(min);
+      putSigned(max);
+      putLabel(dflt);
+      putLabels(labels);
+    }
+
+    @Override
+    public void visitLookupSwitchInsn(final Label dflt, final int[] keys, final Label[] labels) {
+      putByte(Opcodes.LOOKUPSWITCH);
+      putLabel(dflt);
+      putUnsigned(keys.length);
+      for (int i = 0; i < keys.length; ++i) {
+        putSigned(keys[i]);
+      }
+      putLabels(labels);
+    }
+
+    @Override
+    public void visitMultiANewArrayInsn(final String descriptor, final int numDimensions) {
+      putByte(Opcodes.MULTIANEWARRAY);
+      putString(descriptor);
+      putUnsigned(numDimensions);
+    }
+
+    @Override
+    public AnnotationVisitor visitInsnAnnotation(
+        final int typeRef, final TypePath typePath, final String descriptor, final boolean visible) {
+      putByte(INSN_ANNOTATION);
+      putUnsigned(typeRef);
+      putTypePath(typePath);
+      putString(descriptor);
+      putBoolean(visible);
+      return new AnnotationEventWriter();
+    }
+
+    @Override
+    public void visitTryCatchBlock(
+        final Label start, final Label end, final Label handler, final String type) {
+      putByte(TRY_CATCH_BLOCK);
+      putLabel(start);
+      putLabel(end);
+      putLabel(handler);
+      putString(type);
+    }
+
+    @Override
+    public AnnotationVisitor visitTryCatchAnnotation(
+        final int typeRef, final TypePath typePath, final String descriptor, final boolean visible) {
+      putByte(TRY_CATCH_ANNOTATION);
+      putUnsigned(typeRef);
+      putTypePath(typePath);
+      putString(descriptor);
+      putBoolean(visible);
+      return new AnnotationEventWriter();
+    }
+
+    @Override
+    public void visitLocalVariable(
+        final String name,
+        final String descriptor,
+        final String signature,
+        final Label start,
+        final Label end,
+        final int index) {
+      putByte(LOCAL_VARIABLE);
+      putString(name);
+      putString(descriptor);
+      putString(signature);
+      putLabel(start);
+      putLabel(end);
+      putUnsigned(index);
+    }
+
+    @Override
+    public AnnotationVisitor visitLocalVariableAnnotation(
+        final int typeRef,
+        final TypePath typePath,
+        final Label[] start,
+        final Label[] end,
+        final int[] index,
+        final String descriptor,
+        final boolean visible) {
+      putByte(LOCAL_VARIABLE_ANNOTATION);
+      putUnsigned(typeRef);
+      putTypePath(typePath);
+      putLabels(start);
+      putLabels(end);
+      for (int i = 0; i < index.length; ++i) {
+        putUnsigned(index[i]);
+      }
+      putString(descriptor);
+      putBoolean(visible);
+      return new AnnotationEventWriter();
+    }
+
+    @Override
+    public void visitLineNumber(final int line, final Label start) {
+      putByte(LINE_NUMBER);
+      putUnsigned(line);
+      putLabel(start);
+    }
+
+    @Override
+    public void visitMaxs(final int maxStack, final int maxLocals) {
+      putByte(MAXS);
+      putUnsigned(maxStack);
+      putUnsigned(maxLocals);
+    }
+
+    @Override
+    public void visitEnd() {
+      putByte(END);
+    }
+  }
+}
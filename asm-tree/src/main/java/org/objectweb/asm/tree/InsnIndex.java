@@ -0,0 +1,384 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * An index of the instructions of an {@link InsnList}, by opcode, by referenced field or method,
+ * by referenced type and by loaded constant. An index is obtained with {@link InsnList#getIndex()},
+ * and is then automatically updated when instructions are added to or removed from its list.
+ * However, it is <i>not</i> updated when the fields of an instruction of the list are modified
+ * (for instance with {@link FieldInsnNode#setOpcode} or by changing the {@link
+ * MethodInsnNode#owner} field). {@link #update} must be called in this case.
+ *
+ * <p>The lists returned by the lookup methods are new lists, which can be freely modified, and
+ * which are not affected by subsequent changes to the instruction list. Their elements are in no
+ * particular order (use {@link InsnList#indexOf} to sort them, if needed).
+ */
+public class InsnIndex {
+
+  /** The instructions of the indexed list, by opcode. Pseudo instructions are not indexed. */
+  private final HashSet<AbstractInsnNode>[] opcodeInsns;
+
+  /** The field instructions of the indexed list, by field owner and then by field name. */
+  private final HashMap<String, HashMap<String, HashSet<AbstractInsnNode>>> fieldInsns;
+
+  /** The method instructions of the indexed list, by method owner and then by method name. */
+  private final HashMap<String, HashMap<String, HashSet<AbstractInsnNode>>> methodInsns;
+
+  /** The type instructions of the indexed list, by type operand. */
+  private final HashMap<String, HashSet<AbstractInsnNode>> typeInsns;
+
+  /** The LDC instructions of the indexed list, by constant operand. */
+  private final HashMap<Object, HashSet<AbstractInsnNode>> ldcInsns;
+
+  /**
+   * The key buckets in which each instruction of the indexed list is registered, other than its
+   * opcode bucket, with their keys. Also used to find the opcode under which an instruction has
+   * been indexed, even if it has changed since then.
+   */
+  private final HashMap<AbstractInsnNode, Entry> entries;
+
+  /**
+   * Constructs a new {@link InsnIndex}.
+   *
+   * @param insnList the instructions to be indexed.
+   */
+  @SuppressWarnings("unchecked")
+  InsnIndex(final InsnList insnList) {
+    this.opcodeInsns = (HashSet<AbstractInsnNode>[]) new HashSet<?>[256];
+    this.fieldInsns = new HashMap<String, HashMap<String, HashSet<AbstractInsnNode>>>();
+    this.methodInsns = new HashMap<String, HashMap<String, HashSet<AbstractInsnNode>>>();
+    this.typeInsns = new HashMap<String, HashSet<AbstractInsnNode>>();
+    this.ldcInsns = new HashMap<Object, HashSet<AbstractInsnNode>>();
+    this.entries = new HashMap<AbstractInsnNode, Entry>(2 * insnList.size());
+    add(insnList.getFirst(), null);
+  }
+
+  // ------------------------------------------------------------------------
+  // Lookup methods
+  // ------------------------------------------------------------------------
+
+  /**
+   * Returns the instructions with the given opcode.
+   *
+   * @param opcode the opcode of an instruction (i.e. not -1).
+   * @return the instructions of the indexed list which have the given opcode.
+   */
+  public List<AbstractInsnNode> getInsns(final int opcode) {
+    return toList(opcodeInsns[opcode]);
+  }
+
+  /**
+   * Returns the field instructions referencing the given field.
+   *
+   * @param owner the internal name of the field's owner class.
+   * @param name the field's name.
+   * @param desc the field's descriptor, or <tt>null</tt> to match any descriptor.
+   * @return the field instructions of the indexed list referencing the given field.
+   */
+  public List<FieldInsnNode> getFieldInsns(
+      final String owner, final String name, final String desc) {
+    List<FieldInsnNode> result = new ArrayList<FieldInsnNode>();
+    HashSet<AbstractInsnNode> insns = getMemberInsns(fieldInsns, owner, name);
+    if (insns != null) {
+      for (AbstractInsnNode insn : insns) {
+        FieldInsnNode fieldInsn = (FieldInsnNode) insn;
+        if (desc == null || desc.equals(fieldInsn.desc)) {
+          result.add(fieldInsn);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the method instructions referencing the given method.
+   *
+   * @param owner the internal name of the method's owner class.
+   * @param name the method's name.
+   * @param desc the method's descriptor, or <tt>null</tt> to match any descriptor.
+   * @return the method instructions of the indexed list referencing the given method.
+   */
+  public List<MethodInsnNode> getMethodInsns(
+      final String owner, final String name, final String desc) {
+    List<MethodInsnNode> result = new ArrayList<MethodInsnNode>();
+    HashSet<AbstractInsnNode> insns = getMemberInsns(methodInsns, owner, name);
+    if (insns != null) {
+      for (AbstractInsnNode insn : insns) {
+        MethodInsnNode methodInsn = (MethodInsnNode) insn;
+        if (desc == null || desc.equals(methodInsn.desc)) {
+          result.add(methodInsn);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the NEW, ANEWARRAY, CHECKCAST and INSTANCEOF instructions whose operand is the given
+   * type.
+   *
+   * @param type the internal name of a class, or the descriptor of an array type.
+   * @return the type instructions of the indexed list whose operand is the given type.
+   */
+  @SuppressWarnings("unchecked")
+  public List<TypeInsnNode> getTypeInsns(final String type) {
+    return (List<TypeInsnNode>) (List<?>) toList(typeInsns.get(type));
+  }
+
+  /**
+   * Returns the LDC instructions loading the given constant.
+   *
+   * @param cst a constant, as defined in {@link LdcInsnNode#cst}.
+   * @return the LDC instructions of the indexed list loading the given constant.
+   */
+  @SuppressWarnings("unchecked")
+  public List<LdcInsnNode> getLdcInsns(final Object cst) {
+    return (List<LdcInsnNode>) (List<?>) toList(ldcInsns.get(cst));
+  }
+
+  /**
+   * Updates the index entries of the given instruction. This method must be called when the
+   * opcode or the operands of an instruction of the indexed list are modified.
+   *
+   * @param insn an instruction of the indexed list.
+   */
+  public void update(final AbstractInsnNode insn) {
+    remove(insn);
+    add(insn);
+  }
+
+  private static HashSet<AbstractInsnNode> getMemberInsns(
+      final HashMap<String, HashMap<String, HashSet<AbstractInsnNode>>> memberInsns,
+      final String owner,
+      final String name) {
+    HashMap<String, HashSet<AbstractInsnNode>> ownerInsns = memberInsns.get(owner);
+    return ownerInsns == null ? null : ownerInsns.get(name);
+  }
+
+  private static List<AbstractInsnNode> toList(final HashSet<AbstractInsnNode> insns) {
+    return insns == null
+        ? new ArrayList<AbstractInsnNode>()
+        : new ArrayList<AbstractInsnNode>(insns);
+  }
+
+  // ------------------------------------------------------------------------
+  // Update methods, called by InsnList
+  // ------------------------------------------------------------------------
+
+  /**
+   * Adds the given instructions to this index.
+   *
+   * @param firstInsn the first instruction to be added.
+   * @param endInsn the instruction following the last instruction to be added, or <tt>null</tt>
+   *     to add all the instructions from firstInsn to the end of its list.
+   */
+  void add(final AbstractInsnNode firstInsn, final AbstractInsnNode endInsn) {
+    AbstractInsnNode insn = firstInsn;
+    while (insn != endInsn) {
+      add(insn);
+      insn = insn.next;
+    }
+  }
+
+  /**
+   * Adds an instruction to this index.
+   *
+   * @param insn an instruction of the indexed list.
+   */
+  void add(final AbstractInsnNode insn) {
+    int opcode = insn.getOpcode();
+    if (opcode < 0) {
+      return;
+    }
+    getBucket(opcodeInsns, opcode).add(insn);
+    String owner = null;
+    Object key = null;
+    HashSet<AbstractInsnNode> bucket;
+    switch (insn.getType()) {
+      case AbstractInsnNode.FIELD_INSN:
+        {
+          FieldInsnNode fieldInsn = (FieldInsnNode) insn;
+          owner = fieldInsn.owner;
+          key = fieldInsn.name;
+          bucket = getBucket(fieldInsns, fieldInsn.owner, fieldInsn.name);
+          break;
+        }
+      case AbstractInsnNode.METHOD_INSN:
+        {
+          MethodInsnNode methodInsn = (MethodInsnNode) insn;
+          owner = methodInsn.owner;
+          key = methodInsn.name;
+          bucket = getBucket(methodInsns, methodInsn.owner, methodInsn.name);
+          break;
+        }
+      case AbstractInsnNode.TYPE_INSN:
+        key = ((TypeInsnNode) insn).desc;
+        bucket = getBucket(typeInsns, (String) key);
+        break;
+      case AbstractInsnNode.LDC_INSN:
+        key = ((LdcInsnNode) insn).cst;
+        bucket = getBucket(ldcInsns, key);
+        break;
+      default:
+        bucket = null;
+        break;
+    }
+    if (bucket != null) {
+      bucket.add(insn);
+    }
+    entries.put(insn, new Entry(opcode, bucket, owner, key));
+  }
+
+  /**
+   * Removes an instruction from this index.
+   *
+   * @param insn an instruction which has been added to this index.
+   */
+  void remove(final AbstractInsnNode insn) {
+    Entry entry = entries.remove(insn);
+    if (entry == null) {
+      return;
+    }
+    HashSet<AbstractInsnNode> opcodeBucket = opcodeInsns[entry.opcode];
+    opcodeBucket.remove(insn);
+    if (opcodeBucket.isEmpty()) {
+      opcodeInsns[entry.opcode] = null;
+    }
+    if (entry.bucket == null) {
+      return;
+    }
+    entry.bucket.remove(insn);
+    if (entry.bucket.isEmpty()) {
+      switch (insn.getType()) {
+        case AbstractInsnNode.FIELD_INSN:
+          removeBucket(fieldInsns, entry.owner, (String) entry.key);
+          break;
+        case AbstractInsnNode.METHOD_INSN:
+          removeBucket(methodInsns, entry.owner, (String) entry.key);
+          break;
+        case AbstractInsnNode.TYPE_INSN:
+          typeInsns.remove(entry.key);
+          break;
+        default:
+          ldcInsns.remove(entry.key);
+          break;
+      }
+    }
+  }
+
+  /** Removes all the instructions from this index. */
+  void clear() {
+    for (int i = 0; i < opcodeInsns.length; ++i) {
+      opcodeInsns[i] = null;
+    }
+    fieldInsns.clear();
+    methodInsns.clear();
+    typeInsns.clear();
+    ldcInsns.clear();
+    entries.clear();
+  }
+
+  private static HashSet<AbstractInsnNode> getBucket(
+      final HashSet<AbstractInsnNode>[] buckets, final int opcode) {
+    HashSet<AbstractInsnNode> bucket = buckets[opcode];
+    if (bucket == null) {
+      bucket = new HashSet<AbstractInsnNode>();
+      buckets[opcode] = bucket;
+    }
+    return bucket;
+  }
+
+  private static <K> HashSet<AbstractInsnNode> getBucket(
+      final HashMap<K, HashSet<AbstractInsnNode>> buckets, final K key) {
+    HashSet<AbstractInsnNode> bucket = buckets.get(key);
+    if (bucket == null) {
+      bucket = new HashSet<AbstractInsnNode>();
+      buckets.put(key, bucket);
+    }
+    return bucket;
+  }
+
+  private static HashSet<AbstractInsnNode> getBucket(
+      final HashMap<String, HashMap<String, HashSet<AbstractInsnNode>>> buckets,
+      final String owner,
+      final String name) {
+    HashMap<String, HashSet<AbstractInsnNode>> ownerBuckets = buckets.get(owner);
+    if (ownerBuckets == null) {
+      ownerBuckets = new HashMap<String, HashSet<AbstractInsnNode>>();
+      buckets.put(owner, ownerBuckets);
+    }
+    return getBucket(ownerBuckets, name);
+  }
+
+  private static void removeBucket(
+      final HashMap<String, HashMap<String, HashSet<AbstractInsnNode>>> buckets,
+      final String owner,
+      final String name) {
+    HashMap<String, HashSet<AbstractInsnNode>> ownerBuckets = buckets.get(owner);
+    ownerBuckets.remove(name);
+    if (ownerBuckets.isEmpty()) {
+      buckets.remove(owner);
+    }
+  }
+
+  /** The opcode, key bucket and keys under which an instruction has been indexed. */
+  private static final class Entry {
+
+    /** The opcode of the instruction, when it was indexed. */
+    final int opcode;
+
+    /** The key bucket containing the instruction, or <tt>null</tt>. */
+    final HashSet<AbstractInsnNode> bucket;
+
+    /** The owner of the field or method instruction, when it was indexed, or <tt>null</tt>. */
+    final String owner;
+
+    /**
+     * The key of {@link #bucket}, i.e. the field or method name, the type operand or the constant
+     * of the instruction when it was indexed, or <tt>null</tt>.
+     */
+    final Object key;
+
+    Entry(
+        final int opcode,
+        final HashSet<AbstractInsnNode> bucket,
+        final String owner,
+        final Object key) {
+      this.opcode = opcode;
+      this.bucket = bucket;
+      this.owner = owner;
+      this.key = key;
+    }
+  }
+}
@@ -53,6 +53,12 @@ public class InsnList {
    */
   AbstractInsnNode[] cache;
 
+  /**
+   * An index of the instructions of this list, kept up to date when instructions are added or
+   * removed. May be <tt>null</tt>.
+   */
+  private InsnIndex index;
+
   /**
    * Returns the number of instructions in this list.
    *
@@ -134,6 +140,20 @@ public class InsnList {
     return insn.index;
   }
 
+  /**
+   * Returns an index of the instructions of this list. The index is created the first time this
+   * method is called, and is then kept up to date when instructions are added to or removed from
+   * this list (see {@link InsnIndex}).
+   *
+   * @return an index of the instructions of this list.
+   */
+  public InsnIndex getIndex() {
+    if (index == null) {
+      index = new InsnIndex(this);
+    }
+    return index;
+  }
+
   /**
    * Makes the given visitor visit all of the instructions in this list.
    *
@@ -206,15 +226,19 @@ public class InsnList {
       first = insn;
     }
     if (cache != null) {
-      int index = location.index;
-      cache[index] = insn;
-      insn.index = index;
+      int insnIndex = location.index;
+      cache[insnIndex] = insn;
+      insn.index = insnIndex;
     } else {
       insn.index = 0; // insn now belongs to an InsnList
     }
     location.index = -1; // i no longer belongs to an InsnList
     location.prev = null;
     location.next = null;
+    if (index != null) {
+      index.remove(location);
+      index.add(insn);
+    }
   }
 
   /**
@@ -234,6 +258,9 @@ public class InsnList {
     last = insn;
     cache = null;
     insn.index = 0; // insn now belongs to an InsnList
+    if (index != null) {
+      index.add(insn);
+    }
   }
 
   /**
@@ -243,6 +270,7 @@ public class InsnList {
    *     different from 'this'.
    */
   public void add(final InsnList insns) {
+    insns.unshare();
     if (insns.size == 0) {
       return;
     }
@@ -257,6 +285,9 @@ public class InsnList {
       last = insns.last;
     }
     cache = null;
+    if (index != null) {
+      index.add(insns.first, insns.last.next);
+    }
     insns.removeAll(false);
   }
 
@@ -277,6 +308,9 @@ public class InsnList {
     first = insn;
     cache = null;
     insn.index = 0; // insn now belongs to an InsnList
+    if (index != null) {
+      index.add(insn);
+    }
   }
 
   /**
@@ -286,6 +320,7 @@ public class InsnList {
    *     different from 'this'.
    */
   public void insert(final InsnList insns) {
+    insns.unshare();
     if (insns.size == 0) {
       return;
     }
@@ -300,6 +335,9 @@ public class InsnList {
       first = insns.first;
     }
     cache = null;
+    if (index != null) {
+      index.add(insns.first, insns.last.next);
+    }
     insns.removeAll(false);
   }
 
@@ -323,6 +361,9 @@ public class InsnList {
     insn.prev = location;
     cache = null;
     insn.index = 0; // insn now belongs to an InsnList
+    if (index != null) {
+      index.add(insn);
+    }
   }
 
   /**
@@ -334,6 +375,7 @@ public class InsnList {
    *     list must be different from 'this'.
    */
   public void insert(final AbstractInsnNode location, final InsnList insns) {
+    insns.unshare();
     if (insns.size == 0) {
       return;
     }
@@ -350,6 +392,9 @@ public class InsnList {
     ilast.next = next;
     ifirst.prev = location;
     cache = null;
+    if (index != null) {
+      index.add(insns.first, insns.last.next);
+    }
     insns.removeAll(false);
   }
 
@@ -373,6 +418,9 @@ public class InsnList {
     insn.prev = prev;
     cache = null;
     insn.index = 0; // insn now belongs to an InsnList
+    if (index != null) {
+      index.add(insn);
+    }
   }
 
   /**
@@ -384,6 +432,7 @@ public class InsnList {
    *     list must be different from 'this'.
    */
   public void insertBefore(final AbstractInsnNode location, final InsnList insns) {
+    insns.unshare();
     if (insns.size == 0) {
       return;
     }
@@ -400,6 +449,9 @@ public class InsnList {
     ilast.next = location;
     ifirst.prev = prev;
     cache = null;
+    if (index != null) {
+      index.add(insns.first, insns.last.next);
+    }
     insns.removeAll(false);
   }
 
@@ -433,6 +485,9 @@ public class InsnList {
     insn.index = -1; // insn no longer belongs to an InsnList
     insn.prev = null;
     insn.next = null;
+    if (index != null) {
+      index.remove(insn);
+    }
   }
 
   /**
@@ -455,6 +510,9 @@ public class InsnList {
     first = null;
     last = null;
     cache = null;
+    if (index != null) {
+      index.clear();
+    }
   }
 
   /** Removes all of the instructions of this list. */
@@ -462,6 +520,13 @@ public class InsnList {
     removeAll(false);
   }
 
+  /**
+   * Makes sure that the instructions of this list are not shared with another list. This method
+   * does nothing by default. It is overridden in {@link CopyOnWriteInsnList}, and must be called on
+   * a list before accessing its private fields from another list.
+   */
+  void unshare() {}
+
   /**
    * Reset all labels in the instruction list. This method should be called before reusing same
    * instructions list between several <code>ClassWriter</code>s.
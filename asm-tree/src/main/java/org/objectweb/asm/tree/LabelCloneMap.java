@@ -0,0 +1,138 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A map from the labels of an instruction list to their clones, for use with {@link
+ * AbstractInsnNode#clone}. The clones of the labels which belong to the instruction list are stored
+ * in an array, indexed by the label positions in the list, and are created lazily. This avoids the
+ * hash computations and the boxing overhead of a general purpose map. The labels which do not
+ * belong to the instruction list are mapped with a fallback {@link HashMap}.
+ */
+final class LabelCloneMap extends AbstractMap<LabelNode, LabelNode> {
+
+  /**
+   * The instructions whose labels must be cloned. The {@link AbstractInsnNode#index} field of
+   * each instruction must be equal to its index in this array (see {@link InsnList#toArray()}).
+   */
+  private final AbstractInsnNode[] insns;
+
+  /** The clones of the labels of {@link #insns}, indexed like their original label. */
+  private final LabelNode[] clones;
+
+  /** The clones of the labels which do not belong to {@link #insns}. Created lazily. */
+  private HashMap<LabelNode, LabelNode> otherClones;
+
+  /**
+   * Constructs a new {@link LabelCloneMap}.
+   *
+   * @param insns the instructions whose labels must be cloned, as returned by {@link
+   *     InsnList#toArray()}.
+   */
+  LabelCloneMap(final AbstractInsnNode[] insns) {
+    this.insns = insns;
+    this.clones = new LabelNode[insns.length];
+  }
+
+  /**
+   * Returns the index of the given label in {@link #insns}.
+   *
+   * @param label a label.
+   * @return the index of the given label in {@link #insns}, or -1 if it does not belong to it.
+   */
+  private int indexOf(final LabelNode label) {
+    int index = label.index;
+    return index >= 0 && index < insns.length && insns[index] == label ? index : -1;
+  }
+
+  /**
+   * Returns the clone of the given label, creating it if necessary.
+   *
+   * @param key a {@link LabelNode}.
+   * @return the clone of the given label.
+   */
+  @Override
+  public LabelNode get(final Object key) {
+    LabelNode label = (LabelNode) key;
+    int index = indexOf(label);
+    if (index != -1) {
+      LabelNode clone = clones[index];
+      if (clone == null) {
+        clone = new LabelNode();
+        clones[index] = clone;
+      }
+      return clone;
+    }
+    if (otherClones == null) {
+      otherClones = new HashMap<LabelNode, LabelNode>();
+    }
+    LabelNode clone = otherClones.get(label);
+    if (clone == null) {
+      clone = new LabelNode();
+      otherClones.put(label, clone);
+    }
+    return clone;
+  }
+
+  /**
+   * Returns the clone of the given label, if it belongs to the cloned instructions.
+   *
+   * @param label a label.
+   * @return the clone of the given label if it belongs to the cloned instructions, or the given
+   *     label itself otherwise.
+   */
+  LabelNode remap(final LabelNode label) {
+    return label == null || indexOf(label) == -1 ? label : get(label);
+  }
+
+  /**
+   * Returns the labels cloned so far, with their clones. The returned set is an unmodifiable
+   * snapshot of this map, which does not reflect the clones created afterwards.
+   *
+   * @return the labels cloned so far, with their clones.
+   */
+  @Override
+  public Set<Map.Entry<LabelNode, LabelNode>> entrySet() {
+    HashMap<LabelNode, LabelNode> entries = new HashMap<LabelNode, LabelNode>();
+    for (int i = 0; i < clones.length; ++i) {
+      if (clones[i] != null) {
+        entries.put((LabelNode) insns[i], clones[i]);
+      }
+    }
+    if (otherClones != null) {
+      entries.putAll(otherClones);
+    }
+    return Collections.unmodifiableMap(entries).entrySet();
+  }
+}
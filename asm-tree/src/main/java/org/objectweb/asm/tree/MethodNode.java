@@ -614,6 +614,233 @@ public class MethodNode extends MethodVisitor {
     return nodes;
   }
 
+  // ------------------------------------------------------------------------
+  // Copy methods
+  // ------------------------------------------------------------------------
+
+  /**
+   * Returns a deep copy of this method. The copy does not share any node with this method, except
+   * the non standard attributes, which are shared. The labels are mapped to their copies with an
+   * array indexed by instruction position, instead of a hash map.
+   *
+   * @return a deep copy of this method, as a {@link MethodNode} (even if this method is an instance
+   *     of a subclass of MethodNode).
+   */
+  public MethodNode copy() {
+    MethodNode methodNode = copyWithoutInstructions();
+    methodNode.copyInstructions(instructions);
+    return methodNode;
+  }
+
+  /**
+   * Returns a copy-on-write copy of this method. The instructions of the copy are copied from this
+   * method only when the copy's instruction list is modified for the first time (or when an index is
+   * requested with {@link InsnList#getIndex()}). Until then, the copy's instruction list is a view
+   * of this method's instruction list, which makes this method much cheaper than {@link #copy()} if
+   * the copy is discarded without having been modified. The other nodes of this method are copied
+   * immediately, as in {@link #copy()}.
+   *
+   * <p>While its instructions are shared, the instruction, label, try catch block and local
+   * variable nodes of the copy must be treated as read only: instructions must only be modified
+   * via the copy's {@link InsnList} methods, and the try catch blocks and local variables must not
+   * be modified in place (they can be replaced with new nodes). Also, this method must not be
+   * modified as long as the copy has not been modified.
+   *
+   * @return a copy-on-write copy of this method, as a {@link MethodNode} (even if this method is an
+   *     instance of a subclass of MethodNode).
+   */
+  public MethodNode copyOnWrite() {
+    MethodNode methodNode = copyWithoutInstructions();
+    methodNode.instructions = new CopyOnWriteInsnList(instructions, methodNode);
+    // The shared labels may have been used in a previous visit of this method: they must be reset
+    // before each visit of the copy (see accept).
+    methodNode.visited = true;
+    return methodNode;
+  }
+
+  /**
+   * Returns a deep copy of this method, except for its instructions. The try catch blocks, local
+   * variables and local variable annotations of the copy are new nodes, but they reference the
+   * labels of this method.
+   *
+   * @return a deep copy of this method, with an empty instruction list.
+   */
+  @SuppressWarnings("unchecked")
+  private MethodNode copyWithoutInstructions() {
+    MethodNode methodNode = new MethodNode(api, access, name, desc, signature, null);
+    methodNode.exceptions.addAll(exceptions);
+    if (parameters != null) {
+      methodNode.parameters = new ArrayList<ParameterNode>(parameters.size());
+      for (ParameterNode parameter : parameters) {
+        methodNode.parameters.add(new ParameterNode(parameter.name, parameter.access));
+      }
+    }
+    methodNode.visibleAnnotations = copyAnnotations(visibleAnnotations);
+    methodNode.invisibleAnnotations = copyAnnotations(invisibleAnnotations);
+    methodNode.visibleTypeAnnotations = copyTypeAnnotations(visibleTypeAnnotations);
+    methodNode.invisibleTypeAnnotations = copyTypeAnnotations(invisibleTypeAnnotations);
+    if (attrs != null) {
+      methodNode.attrs = new ArrayList<Attribute>(attrs);
+    }
+    if (annotationDefault != null) {
+      AnnotationVisitor av = methodNode.visitAnnotationDefault();
+      AnnotationNode.accept(av, null, annotationDefault);
+      av.visitEnd();
+    }
+    methodNode.visibleAnnotableParameterCount = visibleAnnotableParameterCount;
+    if (visibleParameterAnnotations != null) {
+      methodNode.visibleParameterAnnotations =
+          (List<AnnotationNode>[]) new List<?>[visibleParameterAnnotations.length];
+      for (int i = 0; i < visibleParameterAnnotations.length; ++i) {
+        methodNode.visibleParameterAnnotations[i] =
+            copyAnnotations(visibleParameterAnnotations[i]);
+      }
+    }
+    methodNode.invisibleAnnotableParameterCount = invisibleAnnotableParameterCount;
+    if (invisibleParameterAnnotations != null) {
+      methodNode.invisibleParameterAnnotations =
+          (List<AnnotationNode>[]) new List<?>[invisibleParameterAnnotations.length];
+      for (int i = 0; i < invisibleParameterAnnotations.length; ++i) {
+        methodNode.invisibleParameterAnnotations[i] =
+            copyAnnotations(invisibleParameterAnnotations[i]);
+      }
+    }
+    if (tryCatchBlocks == null) {
+      methodNode.tryCatchBlocks = null;
+    } else {
+      for (TryCatchBlockNode tryCatchBlock : tryCatchBlocks) {
+        TryCatchBlockNode tryCatchBlockCopy =
+            new TryCatchBlockNode(
+                tryCatchBlock.start, tryCatchBlock.end, tryCatchBlock.handler, tryCatchBlock.type);
+        tryCatchBlockCopy.visibleTypeAnnotations =
+            copyTypeAnnotations(tryCatchBlock.visibleTypeAnnotations);
+        tryCatchBlockCopy.invisibleTypeAnnotations =
+            copyTypeAnnotations(tryCatchBlock.invisibleTypeAnnotations);
+        methodNode.tryCatchBlocks.add(tryCatchBlockCopy);
+      }
+    }
+    methodNode.maxStack = maxStack;
+    methodNode.maxLocals = maxLocals;
+    if (localVariables == null) {
+      methodNode.localVariables = null;
+    } else {
+      methodNode.localVariables = new ArrayList<LocalVariableNode>(localVariables.size());
+      for (LocalVariableNode localVariable : localVariables) {
+        methodNode.localVariables.add(
+            new LocalVariableNode(
+                localVariable.name,
+                localVariable.desc,
+                localVariable.signature,
+                localVariable.start,
+                localVariable.end,
+                localVariable.index));
+      }
+    }
+    methodNode.visibleLocalVariableAnnotations =
+        copyLocalVariableAnnotations(visibleLocalVariableAnnotations);
+    methodNode.invisibleLocalVariableAnnotations =
+        copyLocalVariableAnnotations(invisibleLocalVariableAnnotations);
+    return methodNode;
+  }
+
+  /**
+   * Sets the instructions of this method to a copy of the given instructions, and replaces the
+   * references to the original labels in the try catch blocks, local variables and local variable
+   * annotations of this method with references to their copies.
+   *
+   * @param originalInstructions the instructions to be copied into {@link #instructions}, which
+   *     must be empty.
+   */
+  void copyInstructions(final InsnList originalInstructions) {
+    AbstractInsnNode[] insns = originalInstructions.toArray();
+    LabelCloneMap labelCloneMap = new LabelCloneMap(insns);
+    for (int i = 0; i < insns.length; ++i) {
+      instructions.add(insns[i].clone(labelCloneMap));
+    }
+    if (tryCatchBlocks != null) {
+      for (TryCatchBlockNode tryCatchBlock : tryCatchBlocks) {
+        tryCatchBlock.start = labelCloneMap.remap(tryCatchBlock.start);
+        tryCatchBlock.end = labelCloneMap.remap(tryCatchBlock.end);
+        tryCatchBlock.handler = labelCloneMap.remap(tryCatchBlock.handler);
+      }
+    }
+    if (localVariables != null) {
+      for (LocalVariableNode localVariable : localVariables) {
+        localVariable.start = labelCloneMap.remap(localVariable.start);
+        localVariable.end = labelCloneMap.remap(localVariable.end);
+      }
+    }
+    remapLocalVariableAnnotations(visibleLocalVariableAnnotations, labelCloneMap);
+    remapLocalVariableAnnotations(invisibleLocalVariableAnnotations, labelCloneMap);
+  }
+
+  private static List<AnnotationNode> copyAnnotations(final List<AnnotationNode> annotations) {
+    if (annotations == null) {
+      return null;
+    }
+    List<AnnotationNode> copies = new ArrayList<AnnotationNode>(annotations.size());
+    for (AnnotationNode annotation : annotations) {
+      AnnotationNode copy = new AnnotationNode(annotation.desc);
+      annotation.accept(copy);
+      copies.add(copy);
+    }
+    return copies;
+  }
+
+  private static List<TypeAnnotationNode> copyTypeAnnotations(
+      final List<TypeAnnotationNode> annotations) {
+    if (annotations == null) {
+      return null;
+    }
+    List<TypeAnnotationNode> copies = new ArrayList<TypeAnnotationNode>(annotations.size());
+    for (TypeAnnotationNode annotation : annotations) {
+      TypeAnnotationNode copy =
+          new TypeAnnotationNode(annotation.typeRef, annotation.typePath, annotation.desc);
+      annotation.accept(copy);
+      copies.add(copy);
+    }
+    return copies;
+  }
+
+  private static List<LocalVariableAnnotationNode> copyLocalVariableAnnotations(
+      final List<LocalVariableAnnotationNode> annotations) {
+    if (annotations == null) {
+      return null;
+    }
+    List<LocalVariableAnnotationNode> copies =
+        new ArrayList<LocalVariableAnnotationNode>(annotations.size());
+    for (LocalVariableAnnotationNode annotation : annotations) {
+      LocalVariableAnnotationNode copy =
+          new LocalVariableAnnotationNode(
+              annotation.typeRef,
+              annotation.typePath,
+              new LabelNode[0],
+              new LabelNode[0],
+              new int[0],
+              annotation.desc);
+      copy.start.addAll(annotation.start);
+      copy.end.addAll(annotation.end);
+      copy.index.addAll(annotation.index);
+      annotation.accept(copy);
+      copies.add(copy);
+    }
+    return copies;
+  }
+
+  private static void remapLocalVariableAnnotations(
+      final List<LocalVariableAnnotationNode> annotations, final LabelCloneMap labelCloneMap) {
+    if (annotations != null) {
+      for (LocalVariableAnnotationNode annotation : annotations) {
+        for (int i = 0; i < annotation.start.size(); ++i) {
+          annotation.start.set(i, labelCloneMap.remap(annotation.start.get(i)));
+        }
+        for (int i = 0; i < annotation.end.size(); ++i) {
+          annotation.end.set(i, labelCloneMap.remap(annotation.end.get(i)));
+        }
+      }
+    }
+  }
+
   // ------------------------------------------------------------------------
   // Accept method
   // ------------------------------------------------------------------------
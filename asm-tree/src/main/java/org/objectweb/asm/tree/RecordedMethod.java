@@ -0,0 +1,130 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree;
+
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * A compact recording of the events of a method visitor. This is a lightweight alternative to
+ * {@link MethodNode} to buffer the content of a method: the events are encoded in a single byte
+ * array, with their strings stored in a table which can be shared between several recorded
+ * methods, instead of one node per instruction. Once the visitEnd method has been called, the
+ * recorded events can be replayed any number of times with {@link #accept}. Each replay uses new
+ * {@link org.objectweb.asm.Label} objects. Recorded methods sharing the same strings must not be
+ * recorded concurrently.
+ */
+public final class RecordedMethod extends MethodVisitor {
+
+  /** The table containing the strings referenced by the recorded events. */
+  private final StringTable strings;
+
+  /**
+   * The buffer where the events are recorded, or <tt>null</tt> if the visitEnd method has been
+   * called.
+   */
+  private EventWriter eventWriter;
+
+  /** The recorded events, or <tt>null</tt> if the visitEnd method has not been called yet. */
+  private byte[] events;
+
+  /** Constructs a new, empty {@link RecordedMethod}, with its own string table. */
+  public RecordedMethod() {
+    this(new StringTable());
+  }
+
+  /**
+   * Constructs a new, empty {@link RecordedMethod} sharing the string table of the given recorded
+   * method.
+   *
+   * @param recordedMethod the recorded method whose string table must be used by this recorded
+   *     method.
+   */
+  public RecordedMethod(final RecordedMethod recordedMethod) {
+    this(recordedMethod.strings);
+  }
+
+  private RecordedMethod(final StringTable strings) {
+    this(strings, new EventWriter(strings));
+  }
+
+  private RecordedMethod(final StringTable strings, final EventWriter eventWriter) {
+    super(Opcodes.ASM6, eventWriter.methodWriter());
+    this.strings = strings;
+    this.eventWriter = eventWriter;
+  }
+
+  /**
+   * Returns whether the visitEnd method of this recorded method has been called.
+   *
+   * @return whether all the events of this recorded method have been recorded.
+   */
+  public boolean isComplete() {
+    return events != null;
+  }
+
+  /**
+   * Returns the size of the recorded events.
+   *
+   * @return the size of the recorded events, in bytes, excluding their strings.
+   */
+  public int getSize() {
+    return events == null ? eventWriter.length : events.length;
+  }
+
+  @Override
+  public void visitEnd() {
+    if (events != null) {
+      throw new IllegalStateException("visitEnd has already been called");
+    }
+    super.visitEnd();
+    events = new byte[eventWriter.length];
+    System.arraycopy(eventWriter.data, 0, events, 0, eventWriter.length);
+    eventWriter = null;
+    mv = null;
+  }
+
+  /**
+   * Makes the given method visitor visit the recorded events, including the final visitEnd event.
+   *
+   * @param methodVisitor a method visitor.
+   * @throws IllegalStateException if the visitEnd method of this recorded method has not been
+   *     called.
+   */
+  public void accept(final MethodVisitor methodVisitor) {
+    if (events == null) {
+      throw new IllegalStateException("visitEnd has not been called");
+    }
+    new EventReader(events, 0) {
+      @Override
+      String getString(final int index) {
+        return strings.get(index);
+      }
+    }.acceptMethod(methodVisitor);
+  }
+}
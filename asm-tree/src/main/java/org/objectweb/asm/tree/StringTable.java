@@ -0,0 +1,96 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A table of distinct strings, each identified by its index in the table. Used to share the
+ * strings of several encoded classes or methods (see {@link EventWriter}).
+ */
+final class StringTable {
+
+  /** The strings of this table, in the order in which they have been added. */
+  private final ArrayList<String> strings;
+
+  /** The index of each string of {@link #strings}. */
+  private final HashMap<String, Integer> indices;
+
+  /** Constructs a new, empty {@link StringTable}. */
+  StringTable() {
+    this.strings = new ArrayList<String>();
+    this.indices = new HashMap<String, Integer>();
+  }
+
+  /**
+   * Adds a string to this table, if it is not already present.
+   *
+   * @param value a string.
+   * @return the index of the given string in this table.
+   */
+  int add(final String value) {
+    Integer index = indices.get(value);
+    if (index == null) {
+      index = strings.size();
+      strings.add(value);
+      indices.put(value, index);
+    }
+    return index;
+  }
+
+  /**
+   * Returns the string whose index is given.
+   *
+   * @param index the index of a string of this table.
+   * @return the string whose index is given.
+   */
+  String get(final int index) {
+    return strings.get(index);
+  }
+
+  /**
+   * Returns the number of strings in this table.
+   *
+   * @return the number of strings in this table.
+   */
+  int size() {
+    return strings.size();
+  }
+
+  /**
+   * Removes the strings which have been added after the given number of strings.
+   *
+   * @param size the number of strings to keep in this table.
+   */
+  void truncate(final int size) {
+    for (int i = strings.size() - 1; i >= size; --i) {
+      indices.remove(strings.remove(i));
+    }
+  }
+}
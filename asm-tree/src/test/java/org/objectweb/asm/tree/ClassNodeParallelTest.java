@@ -0,0 +1,175 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+
+/** ClassNode parallel write tests. */
+public class ClassNodeParallelTest extends AsmTest implements Opcodes {
+
+  private ExecutorService executor;
+
+  @BeforeEach
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /** Tests that writing methods in parallel gives the same result as writing them sequentially. */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testToByteArray(PrecompiledClass classParameter, Api apiParameter) {
+    ClassNode classNode = new ClassNode(apiParameter.value());
+    new ClassReader(classParameter.getBytes()).accept(classNode, 0);
+
+    for (int flags : new int[] {0, ClassWriter.COMPUTE_MAXS, ClassWriter.COMPUTE_FRAMES}) {
+      ClassWriter classWriter = new ClassWriter(flags);
+      // jdk3.AllInstructions and jdk3.LargeMethod contain JSR/RET instructions,
+      // incompatible with COMPUTE_FRAMES.
+      if (flags == ClassWriter.COMPUTE_FRAMES
+          && (classParameter == PrecompiledClass.JDK3_ALL_INSTRUCTIONS
+              || classParameter == PrecompiledClass.JDK3_LARGE_METHOD)) {
+        assertThrows(RuntimeException.class, () -> classNode.accept(classWriter));
+        assertThrows(RuntimeException.class, () -> classNode.toByteArray(flags, executor));
+        continue;
+      }
+      classNode.accept(classWriter);
+      byte[] expectedClassFile = classWriter.toByteArray();
+      assertArrayEquals(expectedClassFile, classNode.toByteArray(flags, executor));
+      // Check that the class node can still be written after a parallel write.
+      assertArrayEquals(expectedClassFile, classNode.toByteArray(flags, executor));
+    }
+  }
+
+  /**
+   * Tests that writing methods in parallel gives the same result as writing them sequentially, with
+   * many methods containing dead code, merged reference types and local variables.
+   */
+  @Test
+  public void testToByteArrayWithManyMethods() {
+    ClassNode classNode = newClassNode(500);
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    classNode.accept(classWriter);
+
+    assertArrayEquals(
+        classWriter.toByteArray(), classNode.toByteArray(ClassWriter.COMPUTE_FRAMES, executor));
+  }
+
+  /** Tests that the exceptions thrown when writing methods in parallel are propagated. */
+  @Test
+  public void testToByteArrayWithException() {
+    ClassNode classNode = newClassNode(50);
+    RuntimeException exception = new RuntimeException();
+    ClassNode failingClassNode =
+        new ClassNode(Opcodes.ASM6) {
+          @Override
+          protected ClassWriter newClassWriter(final int flags) {
+            return new ClassWriter(flags) {
+              @Override
+              protected String getCommonSuperClass(final String type1, final String type2) {
+                throw exception;
+              }
+            };
+          }
+        };
+    classNode.accept(failingClassNode);
+
+    assertSame(
+        exception,
+        assertThrows(
+            RuntimeException.class,
+            () -> failingClassNode.toByteArray(ClassWriter.COMPUTE_FRAMES, executor)));
+  }
+
+  private static ClassNode newClassNode(final int methodCount) {
+    ClassNode classNode = new ClassNode(Opcodes.ASM6);
+    classNode.visit(V1_8, ACC_PUBLIC, "C", null, "java/lang/Object", null);
+    classNode.visitField(ACC_PUBLIC, "f", "Ljava/lang/String;", null, null);
+    for (int i = 0; i < methodCount; ++i) {
+      MethodVisitor mv =
+          classNode.visitMethod(ACC_PUBLIC, "m" + i, "(Z)Ljava/lang/Object;", null, null);
+      Label start = new Label();
+      Label elseLabel = new Label();
+      Label endIf = new Label();
+      Label end = new Label();
+      mv.visitCode();
+      mv.visitLabel(start);
+      mv.visitVarInsn(ILOAD, 1);
+      mv.visitJumpInsn(IFEQ, elseLabel);
+      mv.visitTypeInsn(NEW, "java/lang/StringBuilder");
+      mv.visitInsn(DUP);
+      mv.visitLdcInsn("value" + i);
+      mv.visitMethodInsn(
+          INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "(Ljava/lang/String;)V", false);
+      mv.visitJumpInsn(GOTO, endIf);
+      mv.visitLabel(elseLabel);
+      mv.visitTypeInsn(NEW, "java/lang/StringBuffer");
+      mv.visitInsn(DUP);
+      mv.visitMethodInsn(INVOKESPECIAL, "java/lang/StringBuffer", "<init>", "()V", false);
+      mv.visitLabel(endIf);
+      mv.visitVarInsn(ASTORE, 2);
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitFieldInsn(GETFIELD, "C", "f", "Ljava/lang/String;");
+      mv.visitVarInsn(ALOAD, 2);
+      mv.visitInsn(ARETURN);
+      // Dead code.
+      mv.visitLdcInsn(Long.valueOf(i));
+      mv.visitTypeInsn(ANEWARRAY, "D" + i);
+      mv.visitInsn(ARETURN);
+      mv.visitLabel(end);
+      mv.visitLocalVariable("this", "LC;", null, start, end, 0);
+      mv.visitLocalVariable("b", "Z", null, start, end, 1);
+      mv.visitLocalVariable("v" + i, "Ljava/lang/Object;", "TT" + i + ";", endIf, end, 2);
+      mv.visitMaxs(0, 0);
+      mv.visitEnd();
+    }
+    classNode.visitEnd();
+    return classNode;
+  }
+}
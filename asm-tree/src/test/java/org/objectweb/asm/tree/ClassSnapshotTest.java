@@ -0,0 +1,161 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+
+/** ClassSnapshot tests. */
+public class ClassSnapshotTest extends AsmTest {
+
+  /** Tests that classes are unchanged with a ClassNode->ClassSnapshot->ClassNode transform. */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testWriteAndRead(PrecompiledClass classParameter, Api apiParameter) {
+    ClassNode classNode = new ClassNode(apiParameter.value());
+    new ClassReader(classParameter.getBytes()).accept(classNode, 0);
+    byte[] classFile = toByteArray(classNode);
+    ClassSnapshotWriter snapshotWriter = new ClassSnapshotWriter();
+    snapshotWriter.add(classNode);
+
+    ClassSnapshot snapshot = new ClassSnapshot(snapshotWriter.toByteArray());
+    assertEquals(1, snapshot.getClassCount());
+    assertTrue(snapshot.contains(classNode.name));
+    assertThatClass(toByteArray(snapshot.getClassNode(classNode.name))).isEqualTo(classFile);
+  }
+
+  /** Tests that several classes can be written to a file and memory mapped back. */
+  @Test
+  public void testWriteAndReadFile() throws IOException {
+    ClassSnapshotWriter snapshotWriter = new ClassSnapshotWriter();
+    HashMap<String, byte[]> classFiles = new HashMap<String, byte[]>();
+    for (PrecompiledClass precompiledClass : PrecompiledClass.values()) {
+      ClassNode classNode = new ClassNode(Opcodes.ASM6);
+      new ClassReader(precompiledClass.getBytes()).accept(classNode, 0);
+      snapshotWriter.add(classNode);
+      classFiles.put(classNode.name, toByteArray(classNode));
+    }
+    File file = File.createTempFile("snapshot", ".bin");
+    file.deleteOnExit();
+    OutputStream outputStream = new FileOutputStream(file);
+    try {
+      snapshotWriter.write(outputStream);
+    } finally {
+      outputStream.close();
+    }
+
+    ClassSnapshot snapshot = ClassSnapshot.read(file);
+    assertEquals(PrecompiledClass.values().length, snapshot.getClassCount());
+    for (PrecompiledClass precompiledClass : PrecompiledClass.values()) {
+      String className = precompiledClass.getInternalName();
+      assertTrue(snapshot.getClassNames().contains(className));
+      ClassNode classNode = snapshot.getClassNode(className);
+      assertSame(classNode, snapshot.getClassNode(className));
+      ClassWriter classWriter = new ClassWriter(0);
+      snapshot.accept(className, classWriter);
+      assertThatClass(classWriter.toByteArray()).isEqualTo(classFiles.get(className));
+    }
+    assertFalse(snapshot.contains("java/lang/Object"));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> snapshot.accept("java/lang/Object", new ClassNode(Opcodes.ASM6)));
+  }
+
+  /** Tests that a class can't be added twice. */
+  @Test
+  public void testDuplicateClass() {
+    ClassNode classNode = new ClassNode(Opcodes.ASM6);
+    new ClassReader(PrecompiledClass.JDK3_ALL_STRUCTURES.getBytes()).accept(classNode, 0);
+    ClassSnapshotWriter snapshotWriter = new ClassSnapshotWriter();
+    snapshotWriter.add(classNode);
+    assertThrows(IllegalArgumentException.class, () -> snapshotWriter.add(classNode));
+  }
+
+  /** Tests that a class which can't be added leaves the snapshot unchanged. */
+  @Test
+  public void testAddInvalidClass() {
+    ClassNode classNode = new ClassNode(Opcodes.ASM6);
+    new ClassReader(PrecompiledClass.JDK3_ALL_STRUCTURES.getBytes()).accept(classNode, 0);
+    ClassSnapshotWriter snapshotWriter = new ClassSnapshotWriter();
+    snapshotWriter.add(classNode);
+    byte[] snapshot = snapshotWriter.toByteArray();
+    ClassNode invalidClassNode =
+        new ClassNode(Opcodes.ASM6) {
+          @Override
+          public void accept(final ClassVisitor cv) {
+            cv.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC, "C", null, "java/lang/Object", null);
+            cv.visitField(Opcodes.ACC_PUBLIC, "newField", "LNewType;", null, null);
+            throw new IllegalStateException();
+          }
+        };
+    invalidClassNode.name = "C";
+
+    assertThrows(IllegalStateException.class, () -> snapshotWriter.add(invalidClassNode));
+    assertArrayEquals(snapshot, snapshotWriter.toByteArray());
+  }
+
+  /** Tests that invalid or unsupported snapshots are rejected. */
+  @Test
+  public void testInvalidSnapshot() {
+    assertThrows(IllegalArgumentException.class, () -> new ClassSnapshot(new byte[4]));
+    byte[] snapshot = new ClassSnapshotWriter().toByteArray();
+    assertEquals(0, new ClassSnapshot(snapshot).getClassCount());
+    byte[] invalidMagic = Arrays.copyOf(snapshot, snapshot.length);
+    invalidMagic[0] = 0;
+    assertThrows(IllegalArgumentException.class, () -> new ClassSnapshot(invalidMagic));
+    byte[] invalidVersion = Arrays.copyOf(snapshot, snapshot.length);
+    invalidVersion[5] = 2;
+    assertThrows(IllegalArgumentException.class, () -> new ClassSnapshot(invalidVersion));
+  }
+
+  private static byte[] toByteArray(ClassNode classNode) {
+    ClassWriter classWriter = new ClassWriter(0);
+    classNode.accept(classWriter);
+    return classWriter.toByteArray();
+  }
+}
@@ -0,0 +1,182 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ListIterator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+
+/** InsnIndex tests. */
+public class InsnIndexTest extends AsmTest implements Opcodes {
+
+  @Test
+  public void testLookup() {
+    InsnList insnList = new InsnList();
+    FieldInsnNode getField = new FieldInsnNode(GETFIELD, "A", "f", "I");
+    FieldInsnNode putField = new FieldInsnNode(PUTFIELD, "A", "f", "J");
+    MethodInsnNode invoke = new MethodInsnNode(INVOKEVIRTUAL, "A", "m", "()V", false);
+    TypeInsnNode newInsn = new TypeInsnNode(NEW, "A");
+    LdcInsnNode ldc = new LdcInsnNode("s");
+    insnList.add(new LabelNode());
+    insnList.add(getField);
+    insnList.add(putField);
+    insnList.add(invoke);
+    insnList.add(newInsn);
+    insnList.add(ldc);
+    InsnIndex index = insnList.getIndex();
+
+    assertSame(index, insnList.getIndex());
+    assertEquals(asList(getField), index.getInsns(GETFIELD));
+    assertEquals(0, index.getInsns(NOP).size());
+    assertEquals(2, index.getFieldInsns("A", "f", null).size());
+    assertEquals(asList(putField), index.getFieldInsns("A", "f", "J"));
+    assertEquals(0, index.getFieldInsns("B", "f", null).size());
+    assertEquals(asList(invoke), index.getMethodInsns("A", "m", "()V"));
+    assertEquals(0, index.getMethodInsns("A", "m", "()I").size());
+    assertEquals(asList(newInsn), index.getTypeInsns("A"));
+    assertEquals(asList(ldc), index.getLdcInsns("s"));
+    assertEquals(0, index.getLdcInsns(Integer.valueOf(1)).size());
+  }
+
+  @Test
+  public void testEdits() {
+    InsnList insnList = new InsnList();
+    InsnIndex index = insnList.getIndex();
+    InsnNode nop = new InsnNode(NOP);
+    InsnNode pop = new InsnNode(POP);
+    insnList.add(nop);
+    insnList.insert(pop);
+    assertEquals(asList(nop), index.getInsns(NOP));
+    assertEquals(asList(pop), index.getInsns(POP));
+
+    InsnNode dup = new InsnNode(DUP);
+    insnList.set(nop, dup);
+    assertEquals(0, index.getInsns(NOP).size());
+    assertEquals(asList(dup), index.getInsns(DUP));
+
+    insnList.remove(pop);
+    assertEquals(0, index.getInsns(POP).size());
+
+    InsnList otherList = new InsnList();
+    InsnNode swap = new InsnNode(SWAP);
+    otherList.add(swap);
+    InsnIndex otherIndex = otherList.getIndex();
+    insnList.insertBefore(dup, otherList);
+    assertEquals(asList(swap), index.getInsns(SWAP));
+    assertEquals(0, otherIndex.getInsns(SWAP).size());
+
+    ListIterator<AbstractInsnNode> iterator = insnList.iterator();
+    iterator.next();
+    iterator.remove();
+    iterator.add(new InsnNode(NOP));
+    assertEquals(0, index.getInsns(SWAP).size());
+    assertEquals(1, index.getInsns(NOP).size());
+
+    insnList.clear();
+    assertEquals(0, index.getInsns(NOP).size());
+    assertEquals(0, index.getInsns(DUP).size());
+  }
+
+  @Test
+  public void testUpdate() {
+    InsnList insnList = new InsnList();
+    MethodInsnNode invoke = new MethodInsnNode(INVOKEVIRTUAL, "A", "m", "()V", false);
+    insnList.add(invoke);
+    InsnIndex index = insnList.getIndex();
+
+    invoke.setOpcode(INVOKESPECIAL);
+    invoke.owner = "B";
+    index.update(invoke);
+    assertEquals(0, index.getInsns(INVOKEVIRTUAL).size());
+    assertEquals(asList(invoke), index.getInsns(INVOKESPECIAL));
+    assertEquals(0, index.getMethodInsns("A", "m", null).size());
+    assertEquals(asList(invoke), index.getMethodInsns("B", "m", null));
+  }
+
+  /** Tests that the index of each method of the precompiled classes is correct. */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testIndex(PrecompiledClass classParameter, Api apiParameter) {
+    ClassNode classNode = new ClassNode(apiParameter.value());
+    new ClassReader(classParameter.getBytes()).accept(classNode, 0);
+    for (MethodNode methodNode : classNode.methods) {
+      InsnIndex index = methodNode.instructions.getIndex();
+      for (AbstractInsnNode insn : methodNode.instructions.toArray()) {
+        int opcode = insn.getOpcode();
+        if (opcode < 0) {
+          continue;
+        }
+        assertTrue(index.getInsns(opcode).contains(insn));
+        if (insn instanceof FieldInsnNode) {
+          FieldInsnNode fieldInsn = (FieldInsnNode) insn;
+          assertTrue(
+              index.getFieldInsns(fieldInsn.owner, fieldInsn.name, fieldInsn.desc).contains(insn));
+        } else if (insn instanceof MethodInsnNode) {
+          MethodInsnNode methodInsn = (MethodInsnNode) insn;
+          assertTrue(
+              index
+                  .getMethodInsns(methodInsn.owner, methodInsn.name, methodInsn.desc)
+                  .contains(insn));
+        } else if (insn instanceof TypeInsnNode) {
+          assertTrue(index.getTypeInsns(((TypeInsnNode) insn).desc).contains(insn));
+        } else if (insn instanceof LdcInsnNode) {
+          assertTrue(index.getLdcInsns(((LdcInsnNode) insn).cst).contains(insn));
+        }
+      }
+      int indexedInsnCount = 0;
+      for (int opcode = 0; opcode <= IFNONNULL; ++opcode) {
+        indexedInsnCount += new HashSet<AbstractInsnNode>(index.getInsns(opcode)).size();
+      }
+      int insnCount = 0;
+      for (AbstractInsnNode insn : methodNode.instructions.toArray()) {
+        if (insn.getOpcode() >= 0) {
+          insnCount++;
+        }
+      }
+      assertEquals(insnCount, indexedInsnCount);
+    }
+  }
+
+  private static List<AbstractInsnNode> asList(final AbstractInsnNode insn) {
+    List<AbstractInsnNode> list = new ArrayList<AbstractInsnNode>();
+    list.add(insn);
+    return list;
+  }
+}
@@ -0,0 +1,279 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.ListIterator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+
+/** MethodNode copy tests. */
+public class MethodNodeCopyTest extends AsmTest implements Opcodes {
+
+  /** Tests that classes are unchanged when their methods are replaced with deep copies. */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testCopy(PrecompiledClass classParameter, Api apiParameter) {
+    ClassNode classNode = new ClassNode(apiParameter.value());
+    new ClassReader(classParameter.getBytes()).accept(classNode, 0);
+    byte[] expectedClassFile = toByteArray(classNode);
+
+    List<MethodNode> originalMethods = new ArrayList<MethodNode>(classNode.methods);
+    for (int i = 0; i < classNode.methods.size(); ++i) {
+      MethodNode copy = classNode.methods.get(i).copy();
+      assertDisjoint(classNode.methods.get(i), copy);
+      classNode.methods.set(i, copy);
+    }
+    assertThatClass(toByteArray(classNode)).isEqualTo(expectedClassFile);
+    classNode.methods = originalMethods;
+    assertThatClass(toByteArray(classNode)).isEqualTo(expectedClassFile);
+  }
+
+  /**
+   * Tests that classes are unchanged when their methods are replaced with copy-on-write copies,
+   * modified or not.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testCopyOnWrite(PrecompiledClass classParameter, Api apiParameter) {
+    ClassNode classNode = new ClassNode(apiParameter.value());
+    new ClassReader(classParameter.getBytes()).accept(classNode, 0);
+    byte[] expectedClassFile = toByteArray(classNode);
+
+    List<MethodNode> originalMethods = new ArrayList<MethodNode>(classNode.methods);
+    for (int i = 0; i < classNode.methods.size(); ++i) {
+      classNode.methods.set(i, classNode.methods.get(i).copyOnWrite());
+    }
+    assertThatClass(toByteArray(classNode)).isEqualTo(expectedClassFile);
+
+    for (int i = 0; i < classNode.methods.size(); ++i) {
+      MethodNode copy = classNode.methods.get(i);
+      assertTrue(((CopyOnWriteInsnList) copy.instructions).isShared());
+      if (copy.instructions.size() > 0) {
+        InsnNode nop = new InsnNode(NOP);
+        copy.instructions.insert(nop);
+        assertFalse(((CopyOnWriteInsnList) copy.instructions).isShared());
+        assertFalse(originalMethods.get(i).instructions.contains(nop));
+        copy.instructions.remove(nop);
+        assertDisjoint(originalMethods.get(i), copy);
+      }
+    }
+    assertThatClass(toByteArray(classNode)).isEqualTo(expectedClassFile);
+    classNode.methods = originalMethods;
+    assertThatClass(toByteArray(classNode)).isEqualTo(expectedClassFile);
+  }
+
+  /** Tests that a copy-on-write list can be modified with an iterator. */
+  @Test
+  public void testCopyOnWriteIterator() {
+    MethodNode methodNode = new MethodNode(ACC_STATIC, "m", "()V", null, null);
+    LabelNode label = new LabelNode();
+    methodNode.instructions.add(label);
+    methodNode.instructions.add(new InsnNode(ICONST_0));
+    methodNode.instructions.add(new InsnNode(POP));
+    methodNode.instructions.add(new JumpInsnNode(GOTO, label));
+    MethodNode copy = methodNode.copyOnWrite();
+
+    ListIterator<AbstractInsnNode> iterator = copy.instructions.iterator();
+    assertSame(label, iterator.next());
+    assertSame(methodNode.instructions.get(1), iterator.next());
+    iterator.remove();
+    assertEquals(POP, iterator.next().getOpcode());
+    iterator.set(new InsnNode(NOP));
+    iterator.add(new InsnNode(ICONST_1));
+    assertEquals(GOTO, iterator.next().getOpcode());
+    assertFalse(iterator.hasNext());
+
+    assertEquals(4, methodNode.instructions.size());
+    assertEquals(4, copy.instructions.size());
+    assertEquals(NOP, copy.instructions.get(1).getOpcode());
+    assertEquals(ICONST_1, copy.instructions.get(2).getOpcode());
+    JumpInsnNode jump = (JumpInsnNode) copy.instructions.getLast();
+    assertSame(copy.instructions.getFirst(), jump.label);
+    assertNotSame(label, jump.label);
+  }
+
+  /**
+   * Tests that a copy-on-write list can be modified with instructions obtained while they were
+   * shared, without changing the original list.
+   */
+  @Test
+  public void testCopyOnWriteWithSharedLocation() {
+    MethodNode methodNode = new MethodNode(ACC_STATIC, "m", "()V", null, null);
+    LabelNode label = new LabelNode();
+    methodNode.instructions.add(label);
+    methodNode.instructions.add(new InsnNode(ICONST_0));
+    methodNode.instructions.add(new InsnNode(POP));
+    methodNode.instructions.add(new JumpInsnNode(GOTO, label));
+    String original = "-1 3 87 167";
+
+    MethodNode copy = methodNode.copyOnWrite();
+    copy.instructions.set(copy.instructions.get(1), new InsnNode(ICONST_1));
+    assertEquals(original, opcodes(methodNode.instructions));
+    assertEquals("-1 4 87 167", opcodes(copy.instructions));
+
+    copy = methodNode.copyOnWrite();
+    copy.instructions.insert(copy.instructions.get(1), new InsnNode(NOP));
+    assertEquals(original, opcodes(methodNode.instructions));
+    assertEquals("-1 3 0 87 167", opcodes(copy.instructions));
+
+    copy = methodNode.copyOnWrite();
+    copy.instructions.insert(copy.instructions.get(1), singleton(new InsnNode(NOP)));
+    assertEquals(original, opcodes(methodNode.instructions));
+    assertEquals("-1 3 0 87 167", opcodes(copy.instructions));
+
+    copy = methodNode.copyOnWrite();
+    copy.instructions.insertBefore(copy.instructions.get(1), new InsnNode(NOP));
+    assertEquals(original, opcodes(methodNode.instructions));
+    assertEquals("-1 0 3 87 167", opcodes(copy.instructions));
+
+    copy = methodNode.copyOnWrite();
+    copy.instructions.insertBefore(copy.instructions.get(1), singleton(new InsnNode(NOP)));
+    assertEquals(original, opcodes(methodNode.instructions));
+    assertEquals("-1 0 3 87 167", opcodes(copy.instructions));
+
+    copy = methodNode.copyOnWrite();
+    copy.instructions.remove(copy.instructions.getFirst());
+    assertEquals(original, opcodes(methodNode.instructions));
+    assertEquals("3 87 167", opcodes(copy.instructions));
+    assertSame(label, methodNode.instructions.getFirst());
+  }
+
+  /** Tests that modifying a copy on write list does not modify the shared list. */
+  @Test
+  public void testCopyOnWriteDoesNotModifySharedList() {
+    MethodNode methodNode = new MethodNode(ACC_STATIC, "m", "()V", null, null);
+    methodNode.instructions.add(new InsnNode(ICONST_0));
+    methodNode.instructions.add(new InsnNode(POP));
+    methodNode.instructions.add(new InsnNode(RETURN));
+
+    MethodNode copy = methodNode.copyOnWrite();
+    copy.instructions.remove(copy.instructions.getFirst().getNext());
+
+    assertNull(methodNode.instructions.cache);
+    assertEquals("3 87 177", opcodes(methodNode.instructions));
+    assertEquals("3 177", opcodes(copy.instructions));
+  }
+
+  /** Tests that the map used to clone labels can be inspected like any other map. */
+  @Test
+  public void testLabelCloneMap() {
+    LabelNode label = new LabelNode();
+    LabelNode otherLabel = new LabelNode();
+    InsnList insns = new InsnList();
+    insns.add(new InsnNode(NOP));
+    insns.add(label);
+    LabelCloneMap labelCloneMap = new LabelCloneMap(insns.toArray());
+    assertTrue(labelCloneMap.isEmpty());
+
+    LabelNode clone = labelCloneMap.get(label);
+    LabelNode otherClone = labelCloneMap.get(otherLabel);
+
+    assertSame(clone, labelCloneMap.get(label));
+    assertSame(clone, labelCloneMap.remap(label));
+    assertEquals(2, labelCloneMap.size());
+    assertTrue(labelCloneMap.containsKey(label));
+    assertTrue(labelCloneMap.containsValue(otherClone));
+    HashMap<LabelNode, LabelNode> expectedMap = new HashMap<LabelNode, LabelNode>();
+    expectedMap.put(label, clone);
+    expectedMap.put(otherLabel, otherClone);
+    assertEquals(expectedMap, labelCloneMap);
+    assertEquals(expectedMap.toString().length(), labelCloneMap.toString().length());
+  }
+
+  private static InsnList singleton(AbstractInsnNode insn) {
+    InsnList insns = new InsnList();
+    insns.add(insn);
+    return insns;
+  }
+
+  /**
+   * Returns the opcodes of the given instructions, checking that the links between them are
+   * consistent with the size of the list.
+   */
+  private static String opcodes(InsnList insns) {
+    StringBuilder result = new StringBuilder();
+    int count = 0;
+    AbstractInsnNode previous = null;
+    for (AbstractInsnNode insn = insns.getFirst(); insn != null; insn = insn.getNext()) {
+      assertSame(previous, insn.getPrevious());
+      if (count++ > 0) {
+        result.append(' ');
+      }
+      result.append(insn.getOpcode());
+      previous = insn;
+    }
+    assertSame(previous, insns.getLast());
+    assertEquals(insns.size(), count);
+    return result.toString();
+  }
+
+  private static void assertDisjoint(MethodNode methodNode, MethodNode copy) {
+    IdentityHashMap<Object, Boolean> nodes = new IdentityHashMap<Object, Boolean>();
+    for (AbstractInsnNode insn : methodNode.instructions.toArray()) {
+      nodes.put(insn, Boolean.TRUE);
+    }
+    for (AbstractInsnNode insn : copy.instructions.toArray()) {
+      assertFalse(nodes.containsKey(insn));
+    }
+    if (copy.tryCatchBlocks != null) {
+      for (TryCatchBlockNode tryCatchBlock : copy.tryCatchBlocks) {
+        assertTrue(copy.instructions.contains(tryCatchBlock.start));
+        assertTrue(copy.instructions.contains(tryCatchBlock.handler));
+      }
+    }
+    if (copy.localVariables != null) {
+      for (LocalVariableNode localVariable : copy.localVariables) {
+        assertTrue(copy.instructions.contains(localVariable.start));
+        assertTrue(copy.instructions.contains(localVariable.end));
+      }
+    }
+  }
+
+  private static byte[] toByteArray(ClassNode classNode) {
+    ClassWriter classWriter = new ClassWriter(0);
+    classNode.accept(classWriter);
+    return classWriter.toByteArray();
+  }
+}
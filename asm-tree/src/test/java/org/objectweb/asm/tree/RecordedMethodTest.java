@@ -0,0 +1,135 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+
+/** RecordedMethod tests. */
+public class RecordedMethodTest extends AsmTest implements Opcodes {
+
+  /**
+   * Tests that recording the methods of a class and replaying them, twice, gives the same result as
+   * the original class.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testRecordAndReplay(PrecompiledClass classParameter, Api apiParameter) {
+    ClassReader classReader = new ClassReader(classParameter.getBytes());
+    ClassWriter expectedClassWriter = new ClassWriter(0);
+    classReader.accept(expectedClassWriter, 0);
+    byte[] expectedClassFile = expectedClassWriter.toByteArray();
+
+    ClassWriter classWriter = new ClassWriter(0);
+    classReader.accept(new ReplayingClassAdapter(classWriter, 2), 0);
+
+    assertThatClass(classWriter.toByteArray()).isEqualTo(expectedClassFile);
+  }
+
+  /** Tests that recorded methods can share their strings. */
+  @Test
+  public void testSharedStrings() {
+    RecordedMethod recordedMethod1 = new RecordedMethod();
+    RecordedMethod recordedMethod2 = new RecordedMethod(recordedMethod1);
+    for (RecordedMethod recordedMethod : new RecordedMethod[] {recordedMethod1, recordedMethod2}) {
+      recordedMethod.visitCode();
+      recordedMethod.visitLdcInsn("a long string constant shared by the two methods");
+      recordedMethod.visitInsn(ARETURN);
+      recordedMethod.visitMaxs(1, 0);
+      recordedMethod.visitEnd();
+    }
+
+    MethodNode methodNode = new MethodNode(ACC_PUBLIC, "m", "()Ljava/lang/Object;", null, null);
+    recordedMethod2.accept(methodNode);
+
+    assertEquals(recordedMethod1.getSize(), recordedMethod2.getSize());
+    assertEquals(
+        "a long string constant shared by the two methods",
+        ((LdcInsnNode) methodNode.instructions.getFirst()).cst);
+    assertTrue(recordedMethod1.getSize() < 10);
+  }
+
+  /** Tests that a recorded method can't be replayed before it is complete. */
+  @Test
+  public void testAcceptBeforeVisitEnd() {
+    RecordedMethod recordedMethod = new RecordedMethod();
+    recordedMethod.visitCode();
+    recordedMethod.visitInsn(RETURN);
+
+    assertFalse(recordedMethod.isComplete());
+    assertThrows(IllegalStateException.class, () -> recordedMethod.accept(new MethodNode()));
+    recordedMethod.visitEnd();
+    assertTrue(recordedMethod.isComplete());
+    assertThrows(IllegalStateException.class, () -> recordedMethod.visitEnd());
+  }
+
+  /** A class adapter which records each method and replays it several times. */
+  private static class ReplayingClassAdapter extends ClassVisitor {
+
+    private final int replayCount;
+
+    ReplayingClassAdapter(final ClassVisitor cv, final int replayCount) {
+      super(Opcodes.ASM6, cv);
+      this.replayCount = replayCount;
+    }
+
+    @Override
+    public MethodVisitor visitMethod(
+        final int access,
+        final String name,
+        final String desc,
+        final String signature,
+        final String[] exceptions) {
+      final MethodVisitor methodWriter =
+          super.visitMethod(access, name, desc, signature, exceptions);
+      return new MethodVisitor(Opcodes.ASM6, new RecordedMethod()) {
+        @Override
+        public void visitEnd() {
+          super.visitEnd();
+          RecordedMethod recordedMethod = (RecordedMethod) mv;
+          for (int i = 0; i < replayCount - 1; ++i) {
+            recordedMethod.accept(new MethodNode(access, name, desc, signature, exceptions));
+          }
+          recordedMethod.accept(methodWriter);
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,185 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import org.objectweb.asm.commons.JSRInlinerAdapter;
+
+/**
+ * Performance tests for the {@link JSRInlinerAdapter} class, on pathological nested subroutines.
+ * Each test method contains a sequence of try/finally blocks, whose finally block is a subroutine
+ * containing a try/finally block whose finally block is another subroutine, and so on up to a
+ * given depth. Each subroutine is invoked twice (once on the normal path and once in the exception
+ * handler), so that a method with b blocks and a nesting depth d has 2b * (2^(d+1) - 1) subroutine
+ * instantiations. The time to inline the subroutines of these methods, and the number of
+ * instructions of the original and of the inlined code, are measured.
+ */
+public class JSRInlinerPerfTest {
+
+  private static final int REPEATS = 10;
+
+  /** The number of try/finally blocks and the nesting depth of the test methods. */
+  private static final int[][] SHAPES = {
+    {10, 0}, {100, 0}, {500, 0}, {1, 6}, {1, 10}, {10, 6}, {50, 4}
+  };
+
+  public static void main(final String[] args) {
+    byte[][] classes = new byte[SHAPES.length][];
+    for (int i = 0; i < SHAPES.length; ++i) {
+      classes[i] = generateClass(SHAPES[i][0], SHAPES[i][1]);
+    }
+    for (int i = 0; i < REPEATS; ++i) {
+      System.out.println("\n> Run " + (i + 1));
+      for (int j = 0; j < SHAPES.length; ++j) {
+        inline(SHAPES[j][0], SHAPES[j][1], classes[j]);
+      }
+    }
+  }
+
+  private static void inline(final int blocks, final int depth, final byte[] classFile) {
+    final JSRInlinerAdapter[] inliner = new JSRInlinerAdapter[1];
+    final int[] insnCount = new int[1];
+    long time = System.nanoTime();
+    new ClassReader(classFile)
+        .accept(
+            new ClassVisitor(Opcodes.ASM6) {
+              @Override
+              public MethodVisitor visitMethod(
+                  final int access,
+                  final String name,
+                  final String desc,
+                  final String signature,
+                  final String[] exceptions) {
+                inliner[0] = new JSRInlinerAdapter(null, access, name, desc, signature, exceptions);
+                return new MethodVisitor(Opcodes.ASM6, inliner[0]) {
+                  @Override
+                  public void visitInsn(final int opcode) {
+                    ++insnCount[0];
+                    super.visitInsn(opcode);
+                  }
+
+                  @Override
+                  public void visitVarInsn(final int opcode, final int var) {
+                    ++insnCount[0];
+                    super.visitVarInsn(opcode, var);
+                  }
+
+                  @Override
+                  public void visitIincInsn(final int var, final int increment) {
+                    ++insnCount[0];
+                    super.visitIincInsn(var, increment);
+                  }
+
+                  @Override
+                  public void visitJumpInsn(final int opcode, final Label label) {
+                    ++insnCount[0];
+                    super.visitJumpInsn(opcode, label);
+                  }
+                };
+              }
+            },
+            0);
+    time = System.nanoTime() - time;
+    System.out.println(
+        blocks
+            + " blocks, depth "
+            + depth
+            + ": "
+            + time / 1000000
+            + " ms ("
+            + insnCount[0]
+            + " instructions, "
+            + inliner[0].instructions.size()
+            + " inlined instructions and labels)");
+  }
+
+  /**
+   * Generates a class with a single method containing the given number of try/finally blocks,
+   * whose finally blocks contain nested try/finally blocks up to the given depth.
+   *
+   * @param blocks the number of try/finally blocks in the method.
+   * @param depth the nesting depth of the finally blocks.
+   * @return the generated class.
+   */
+  static byte[] generateClass(final int blocks, final int depth) {
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    classWriter.visit(
+        Opcodes.V1_2, Opcodes.ACC_PUBLIC, "Jsr" + blocks + "x" + depth, null, "java/lang/Object",
+        null);
+    MethodVisitor methodVisitor =
+        classWriter.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "m", "(I)I", null, null);
+    methodVisitor.visitCode();
+    Label[] subroutines = new Label[depth + 1];
+    for (int i = 0; i <= depth; ++i) {
+      subroutines[i] = new Label();
+    }
+    for (int i = 0; i < blocks; ++i) {
+      generateTryFinally(methodVisitor, subroutines[0], 1, i);
+    }
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+    methodVisitor.visitInsn(Opcodes.IRETURN);
+    for (int i = 0; i <= depth; ++i) {
+      int returnAddressVar = 2 + 2 * i;
+      methodVisitor.visitLabel(subroutines[i]);
+      methodVisitor.visitVarInsn(Opcodes.ASTORE, returnAddressVar);
+      if (i < depth) {
+        generateTryFinally(methodVisitor, subroutines[i + 1], returnAddressVar + 1, blocks + i);
+      } else {
+        methodVisitor.visitIincInsn(0, -1);
+      }
+      methodVisitor.visitVarInsn(Opcodes.RET, returnAddressVar);
+    }
+    methodVisitor.visitMaxs(0, 0);
+    methodVisitor.visitEnd();
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+
+  private static void generateTryFinally(
+      final MethodVisitor methodVisitor,
+      final Label subroutine,
+      final int exceptionVar,
+      final int lineNumber) {
+    Label tryStart = new Label();
+    Label tryEnd = new Label();
+    Label handler = new Label();
+    Label end = new Label();
+    methodVisitor.visitTryCatchBlock(tryStart, tryEnd, handler, null);
+    methodVisitor.visitLabel(tryStart);
+    methodVisitor.visitLineNumber(lineNumber, tryStart);
+    methodVisitor.visitIincInsn(0, 1);
+    methodVisitor.visitLabel(tryEnd);
+    methodVisitor.visitJumpInsn(Opcodes.JSR, subroutine);
+    methodVisitor.visitJumpInsn(Opcodes.GOTO, end);
+    methodVisitor.visitLabel(handler);
+    methodVisitor.visitVarInsn(Opcodes.ASTORE, exceptionVar);
+    methodVisitor.visitJumpInsn(Opcodes.JSR, subroutine);
+    methodVisitor.visitVarInsn(Opcodes.ALOAD, exceptionVar);
+    methodVisitor.visitInsn(Opcodes.ATHROW);
+    methodVisitor.visitLabel(end);
+  }
+}
@@ -0,0 +1,236 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.objectweb.asm.commons.CachingRemapper;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.ConstantPoolRemapper;
+import org.objectweb.asm.commons.IndexedRemapper;
+import org.objectweb.asm.commons.Remapper;
+import org.objectweb.asm.commons.SimpleRemapper;
+
+/**
+ * Performance tests for the {@link SimpleRemapper}, {@link IndexedRemapper} and {@link
+ * CachingRemapper} classes. The
+ * classes of a jar are remapped with a mapping renaming all the classes, one field out of two and
+ * one method out of two. The time to look up the member names of all the field and method
+ * references of these classes, and the time to remap these classes with a {@link ClassRemapper},
+ * are measured for each remapper. The time to move all these classes to another package (without
+ * renaming their members) is also measured, with a {@link ClassRemapper} and with a {@link
+ * ConstantPoolRemapper}.
+ */
+public class RemapperPerfTest {
+
+  private static final int REPEATS = 10;
+
+  public static void main(final String[] args) throws IOException {
+    if (args.length < 1) {
+      System.out.println("java RemapperPerfTest <jar-file>");
+      System.exit(1);
+    }
+    List<byte[]> classes = new ArrayList<byte[]>();
+    ZipFile zipFile = new ZipFile(args[0]);
+    try {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        if (entry.getName().endsWith(".class")) {
+          InputStream inputStream = zipFile.getInputStream(entry);
+          try {
+            classes.add(new ClassReader(inputStream).b);
+          } finally {
+            inputStream.close();
+          }
+        }
+      }
+    } finally {
+      zipFile.close();
+    }
+
+    final Map<String, String> mapping = new HashMap<String, String>();
+    final List<String[]> fieldRefs = new ArrayList<String[]>();
+    final List<String[]> methodRefs = new ArrayList<String[]>();
+    for (byte[] classFile : classes) {
+      new ClassReader(classFile)
+          .accept(
+              new ClassVisitor(Opcodes.ASM6) {
+                String className;
+
+                @Override
+                public void visit(
+                    final int version,
+                    final int access,
+                    final String name,
+                    final String signature,
+                    final String superName,
+                    final String[] interfaces) {
+                  className = name;
+                  mapping.put(name, name + "$");
+                }
+
+                @Override
+                public FieldVisitor visitField(
+                    final int access,
+                    final String name,
+                    final String desc,
+                    final String signature,
+                    final Object value) {
+                  if (mapping.size() % 2 == 0) {
+                    mapping.put(className + '.' + name, name + '$');
+                  }
+                  return null;
+                }
+
+                @Override
+                public MethodVisitor visitMethod(
+                    final int access,
+                    final String name,
+                    final String desc,
+                    final String signature,
+                    final String[] exceptions) {
+                  if (mapping.size() % 2 == 0 && name.charAt(0) != '<') {
+                    mapping.put(className + '.' + name + desc, name + '$');
+                  }
+                  return new MethodVisitor(Opcodes.ASM6) {
+                    @Override
+                    public void visitFieldInsn(
+                        final int opcode,
+                        final String owner,
+                        final String name,
+                        final String desc) {
+                      fieldRefs.add(new String[] {owner, name, desc});
+                    }
+
+                    @Override
+                    public void visitMethodInsn(
+                        final int opcode,
+                        final String owner,
+                        final String name,
+                        final String desc,
+                        final boolean itf) {
+                      methodRefs.add(new String[] {owner, name, desc});
+                    }
+                  };
+                }
+              },
+              ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+    }
+    System.out.println(
+        classes.size()
+            + " classes, "
+            + mapping.size()
+            + " mappings, "
+            + fieldRefs.size()
+            + " field references, "
+            + methodRefs.size()
+            + " method references");
+
+    Remapper simpleRemapper = new SimpleRemapper(mapping);
+    Remapper indexedRemapper = new IndexedRemapper(mapping);
+    CachingRemapper cachingRemapper = new CachingRemapper(indexedRemapper);
+    Remapper shadingRemapper =
+        new Remapper() {
+          @Override
+          public String map(final String typeName) {
+            return typeName.startsWith("java/") ? typeName : "shaded/" + typeName;
+          }
+        };
+    for (int i = 0; i < REPEATS; ++i) {
+      System.out.println("\n> Run " + (i + 1));
+      lookup("SimpleRemapper", simpleRemapper, fieldRefs, methodRefs);
+      lookup("IndexedRemapper", indexedRemapper, fieldRefs, methodRefs);
+      remap("SimpleRemapper", simpleRemapper, classes);
+      remap("IndexedRemapper", indexedRemapper, classes);
+      remap("CachingRemapper", cachingRemapper, classes);
+      remap("Shading", shadingRemapper, classes);
+      shade(shadingRemapper, classes);
+    }
+    System.out.println(
+        "\nCachingRemapper: "
+            + cachingRemapper.getHitCount()
+            + " hits, "
+            + cachingRemapper.getMissCount()
+            + " misses");
+  }
+
+  private static void lookup(
+      final String remapperName,
+      final Remapper remapper,
+      final List<String[]> fieldRefs,
+      final List<String[]> methodRefs) {
+    long time = System.nanoTime();
+    int mapped = 0;
+    for (int i = 0; i < fieldRefs.size(); ++i) {
+      String[] ref = fieldRefs.get(i);
+      if (remapper.mapFieldName(ref[0], ref[1], ref[2]) != ref[1]) {
+        ++mapped;
+      }
+    }
+    for (int i = 0; i < methodRefs.size(); ++i) {
+      String[] ref = methodRefs.get(i);
+      if (remapper.mapMethodName(ref[0], ref[1], ref[2]) != ref[1]) {
+        ++mapped;
+      }
+    }
+    time = System.nanoTime() - time;
+    System.out.println(
+        remapperName + " lookup: " + time / 1000000 + " ms (" + mapped + " mapped references)");
+  }
+
+  private static void remap(
+      final String remapperName, final Remapper remapper, final List<byte[]> classes) {
+    long time = System.nanoTime();
+    for (int i = 0; i < classes.size(); ++i) {
+      ClassWriter classWriter = new ClassWriter(0);
+      new ClassReader(classes.get(i)).accept(new ClassRemapper(classWriter, remapper), 0);
+      classWriter.toByteArray();
+    }
+    time = System.nanoTime() - time;
+    System.out.println(remapperName + " remap: " + time / 1000000 + " ms");
+  }
+
+  private static void shade(final Remapper remapper, final List<byte[]> classes) {
+    ConstantPoolRemapper constantPoolRemapper = new ConstantPoolRemapper(remapper);
+    long time = System.nanoTime();
+    for (int i = 0; i < classes.size(); ++i) {
+      constantPoolRemapper.remap(classes.get(i));
+    }
+    time = System.nanoTime() - time;
+    System.out.println("Shading ConstantPoolRemapper: " + time / 1000000 + " ms");
+  }
+}